@@ -18,6 +18,8 @@ import com.google.appinventor.client.output.OdeLog;
 import com.google.appinventor.client.settings.project.ProjectSettings;
 import com.google.appinventor.shared.rpc.BlocksTruncatedException;
 import com.google.appinventor.shared.rpc.project.FileDescriptorWithContent;
+import com.google.appinventor.shared.rpc.project.FilePatch;
+import com.google.appinventor.shared.rpc.project.FilePatchMismatchException;
 import com.google.appinventor.shared.rpc.project.ProjectRootNode;
 import com.google.common.collect.Maps;
 import com.google.gwt.user.client.Command;
@@ -25,6 +27,7 @@ import com.google.gwt.user.client.Timer;
 
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -51,9 +54,18 @@ public final class EditorManager {
   // TODO(user): Make this configurable.
   private static final int AUTO_SAVE_FORCED_TIMEOUT = 30000;
 
+  // Files smaller than this (in characters) are always saved whole, the
+  // patch would not save enough to be worth computing.
+  private static final int MIN_PATCH_FILE_SIZE = 4096;
+
   // Fields used for saving and auto-saving.
   private final Set<ProjectSettings> dirtyProjectSettings;
   private final Set<FileEditor> dirtyFileEditors;
+
+  // Content of each file as last acknowledged by the server, keyed by
+  // savedContentKey(). Saves send a patch against this content when we have it.
+  private final Map<String, String> savedContents;
+
   private final Timer autoSaveTimer;
   private boolean autoSaveIsScheduled;
   private long autoSaveRequestTime;
@@ -71,6 +83,7 @@ public final class EditorManager {
 
     dirtyProjectSettings = new HashSet<ProjectSettings>();
     dirtyFileEditors = new HashSet<FileEditor>();
+    savedContents = Maps.newHashMap();
 
     autoSaveTimer = new Timer() {
       @Override
@@ -148,6 +161,7 @@ public final class EditorManager {
         if (fileEditor != null) {
           dirtyFileEditors.remove(fileEditor);
         }
+        savedContents.remove(savedContentKey(projectId, fileId));
       }
       projectEditor.closeFileEditors(fileIds);
     }
@@ -167,6 +181,12 @@ public final class EditorManager {
     ProjectSettings projectSettings = project.getSettings();
     dirtyProjectSettings.remove(projectSettings);
     openProjectEditors.remove(projectId);
+    String prefix = projectId + "/";
+    for (Iterator<String> it = savedContents.keySet().iterator(); it.hasNext(); ) {
+      if (it.next().startsWith(prefix)) {
+        it.remove();
+      }
+    }
   }
 
   /**
@@ -363,6 +383,10 @@ public final class EditorManager {
    * a trivial blocks workspace is attempting to be written over a non-trival
    * file.
    *
+   * Once the server has acknowledged a version of a large file, later saves
+   * only send a patch against that version. If the server no longer has that
+   * version the patch is rejected and we fall back to sending the whole file.
+   *
    * If any unhandled errors occur while saving, the afterSavingFiles
    * command will not be executed.  If filesWithContent is empty, the
    * afterSavingFiles command is called immediately, not
@@ -386,35 +410,56 @@ public final class EditorManager {
         final long projectId = fileDescriptor.getProjectId();
         final String fileId = fileDescriptor.getFileId();
         final String content = fileDescriptor.getContent();
-        Ode.getInstance().getProjectService().save2(Ode.getInstance().getSessionId(),
-          projectId, fileId, false, content, new OdeAsyncCallback<Long>(MESSAGES.saveErrorMultipleFiles()) {
-            @Override
-            public void onSuccess(Long date) {
-              if (dateHolder.date != 0) {
-                // This sets the project modification time to that of one of
-                // the successful file saves. It doesn't really matter which
-                // file date we use, they will all be close. However it is important
-                // to use some files date because that will be based on the server's
-                // time. If we used the local clients time, then we may be off if the
-                // client's computer's time isn't set correctly.
-                dateHolder.date = date;
-                dateHolder.projectId = projectId;
-              }
-              if (afterSavingFiles != null) {
-                afterSavingFiles.execute();
-              }
+        final String savedKey = savedContentKey(projectId, fileId);
+        OdeAsyncCallback<Long> callback = new OdeAsyncCallback<Long>(MESSAGES.saveErrorMultipleFiles()) {
+          @Override
+          public void onSuccess(Long date) {
+            savedContents.put(savedKey, content);
+            if (dateHolder.date != 0) {
+              // This sets the project modification time to that of one of
+              // the successful file saves. It doesn't really matter which
+              // file date we use, they will all be close. However it is important
+              // to use some files date because that will be based on the server's
+              // time. If we used the local clients time, then we may be off if the
+              // client's computer's time isn't set correctly.
+              dateHolder.date = date;
+              dateHolder.projectId = projectId;
             }
-            @Override
-            public void onFailure(Throwable caught) {
-              // Here is where we handle BlocksTruncatedException
-              if (caught instanceof BlocksTruncatedException) {
-                Ode.getInstance().blocksTruncatedDialog(projectId, fileId, content, this);
-              } else {
-                super.onFailure(caught);
-              }
+            if (afterSavingFiles != null) {
+              afterSavingFiles.execute();
             }
-          });
+          }
+          @Override
+          public void onFailure(Throwable caught) {
+            // Here is where we handle BlocksTruncatedException
+            if (caught instanceof BlocksTruncatedException) {
+              Ode.getInstance().blocksTruncatedDialog(projectId, fileId, content, this);
+            } else if (caught instanceof FilePatchMismatchException) {
+              // The server has a different version than we thought, send everything
+              savedContents.remove(savedKey);
+              Ode.getInstance().getProjectService().save2(Ode.getInstance().getSessionId(),
+                  projectId, fileId, false, content, this);
+            } else {
+              super.onFailure(caught);
+            }
+          }
+        };
+        String savedContent = savedContents.get(savedKey);
+        if (savedContent != null && content.length() >= MIN_PATCH_FILE_SIZE) {
+          FilePatch patch = FilePatch.create(savedContent, content);
+          if (patch.getInsertLength() < content.length() / 2) {
+            Ode.getInstance().getProjectService().savePatch(Ode.getInstance().getSessionId(),
+                projectId, fileId, false, patch, callback);
+            continue;
+          }
+        }
+        Ode.getInstance().getProjectService().save2(Ode.getInstance().getSessionId(),
+            projectId, fileId, false, content, callback);
       }
     }
   }
+
+  private static String savedContentKey(long projectId, String fileId) {
+    return projectId + "/" + fileId;
+  }
 }
@@ -88,6 +88,7 @@ public final class YaFormEditor extends SimpleEditor implements FormChangeListen
 
   private static class FileContentHolder {
     private String content;
+    private JSONObject properties;  // content, already parsed
 
     FileContentHolder(String content) {
       this.content = content;
@@ -100,6 +101,14 @@ public final class YaFormEditor extends SimpleEditor implements FormChangeListen
     String getFileContent() {
       return content;
     }
+
+    void setProperties(JSONObject properties) {
+      this.properties = properties;
+    }
+
+    JSONObject getProperties() {
+      return properties;
+    }
   }
 
   private static final String ERROR_EXISTING_UUID = "Component with UUID \"%1$s\" already exists.";
@@ -227,7 +236,7 @@ public final class YaFormEditor extends SimpleEditor implements FormChangeListen
           @Override
           public void execute() {
             try {
-              onFileLoaded(fileContentHolder.getFileContent());
+              onFileLoaded(fileContentHolder.getProperties());
             } catch(IllegalArgumentException e) {
               return;
             }
@@ -427,6 +436,9 @@ public final class YaFormEditor extends SimpleEditor implements FormChangeListen
    * If no upgrade is necessary, the afterSavingFiles command is called
    * immediately.
    *
+   * Either way, the parsed (and possibly upgraded) properties are left in
+   * the fileContentHolder, so that onFileLoaded does not parse the file again.
+   *
    * @param fileContentHolder  holds the file content
    * @param afterUpgradeComplete  optional command to be executed after the
    *                              file has upgraded and saved back to the ODE
@@ -434,8 +446,12 @@ public final class YaFormEditor extends SimpleEditor implements FormChangeListen
    */
   private void upgradeFile(FileContentHolder fileContentHolder,
       final Command afterUpgradeComplete) {
-    JSONObject propertiesObject = YoungAndroidSourceAnalyzer.parseSourceFile(
-        fileContentHolder.getFileContent(), JSON_PARSER);
+    // [lyn, 2014/10/13] remember pre-upgrade component versions. The $JSON section of the file
+    // holds exactly the JSON we need, so there is no need to serialize propertiesObject again.
+    preUpgradeJsonString =
+        YoungAndroidSourceAnalyzer.getJsonSection(fileContentHolder.getFileContent());
+    JSONObject propertiesObject = JSON_PARSER.parse(preUpgradeJsonString).asObject();
+    fileContentHolder.setProperties(propertiesObject);
 
     // BEGIN PROJECT TAGGING CODE
 
@@ -497,7 +513,6 @@ public final class YaFormEditor extends SimpleEditor implements FormChangeListen
 
     // END OF PROJECT TAGGING CODE
 
-    preUpgradeJsonString =  propertiesObject.toJson(); // [lyn, [2014/10/13] remember pre-upgrade component versions.
     if (YoungAndroidFormUpgrader.upgradeSourceProperties(propertiesObject.getProperties())) {
       String upgradedContent = YoungAndroidSourceAnalyzer.generateSourceFile(propertiesObject);
       fileContentHolder.setFileContent(upgradedContent);
@@ -528,9 +543,7 @@ public final class YaFormEditor extends SimpleEditor implements FormChangeListen
     }
   }
 
-  private void onFileLoaded(String content) {
-    JSONObject propertiesObject = YoungAndroidSourceAnalyzer.parseSourceFile(
-        content, JSON_PARSER);
+  private void onFileLoaded(JSONObject propertiesObject) {
     try {
       form = createMockForm(propertiesObject.getProperties().get("Properties").asObject());
     } catch(ComponentNotFoundException e) {
@@ -23,9 +23,14 @@ import com.google.gwt.user.client.Timer;
  *
  * <p/>This command is often chained with SaveAllEditorsCommand and BuildCommand.
  *
+ * <p/>When the next command is a WaitForBuildResultCommand, the progress bar
+ * is fed by the results that command receives instead of asking the server
+ * on its own.
+ *
  * @author markf@google.com (Mark Friedman)
  */
-public class ShowProgressBarCommand extends ChainableCommand {
+public class ShowProgressBarCommand extends ChainableCommand
+    implements WaitForBuildResultCommand.BuildResultListener {
   private static final String DOWNLOAD_ACTION = "DownloadAction";
   private static final String DOWNLOAD_TO_PHONE_ACTION = "DownloadToPhoneAction";
 
@@ -57,6 +62,9 @@ public class ShowProgressBarCommand extends ChainableCommand {
     this.nextCommand = nextCommand;
     this.buildRequestTime = DateTimeFormat.getMediumDateTimeFormat().format(new Date());
     this.serviceName = serviceName;
+    if (nextCommand instanceof WaitForBuildResultCommand) {
+      ((WaitForBuildResultCommand) nextCommand).setBuildResultListener(this);
+    }
   }
 
   @Override
@@ -73,6 +81,9 @@ public class ShowProgressBarCommand extends ChainableCommand {
       minPB = new ProgressBarDialogBox(serviceName, node);
       minPB.center();
       executeNextCommand(node);
+      if (nextCommand instanceof WaitForBuildResultCommand) {
+        return;  // onBuildResult will be called with the results
+      }
     }
     counter++;
     //call back function - dynamic DialogBox
@@ -102,6 +113,14 @@ public class ShowProgressBarCommand extends ChainableCommand {
     ode.getProjectService().getBuildResult(node.getProjectId(), target, callback);
   }
 
+  @Override
+  public void onBuildResult(ProjectNode node, RpcResult result) {
+    addMessages(node.getName(), result);
+    if (result.succeeded()) {
+      minPB.hide();
+    }
+  }
+
   public void addMessages(String projectName, RpcResult result) {
     String labelContent;
     int currentProgress = 0;
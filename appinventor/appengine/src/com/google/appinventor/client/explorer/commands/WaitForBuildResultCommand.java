@@ -23,7 +23,6 @@ import com.google.gwt.json.client.JSONObject;
 import com.google.gwt.json.client.JSONParser;
 import com.google.gwt.json.client.JSONString;
 import com.google.gwt.json.client.JSONValue;
-import com.google.gwt.user.client.Timer;
 
 import java.util.Date;
 
@@ -32,14 +31,29 @@ import static com.google.appinventor.client.Ode.MESSAGES;
 /**
  * Command to wait for the result of a build
  *
+ * <p>The command keeps a single waitForBuildResult call outstanding while the
+ * build runs. The server answers as soon as the progress changes, so there
+ * is no polling timer on the client.
+ *
  * @author markf@google.com (Mark Friedman)
  */
 public class WaitForBuildResultCommand extends ChainableCommand {
+
+  /**
+   * Receives every result that arrives while waiting for the build, for
+   * example to show progress.
+   */
+  public interface BuildResultListener {
+    void onBuildResult(ProjectNode node, RpcResult result);
+  }
+
   // The build target
   private final String target;
-  private static final int WAIT_INTERVAL_MILLIS = 10000;
   private final MessagesOutput messagesOutput;
   private final String buildRequestTime;
+  private BuildResultListener resultListener;
+  // Output (progress) of the last unfinished result, null before the first one
+  private String lastProgress;
 
   /**
    * Creates a new WaitForBuildResultCommand.
@@ -64,6 +78,15 @@ public class WaitForBuildResultCommand extends ChainableCommand {
     buildRequestTime = DateTimeFormat.getMediumDateTimeFormat().format(new Date());
   }
 
+  /**
+   * Sets the listener that receives every result while waiting.
+   *
+   * @param listener the listener, or null
+   */
+  public void setBuildResultListener(BuildResultListener listener) {
+    resultListener = listener;
+  }
+
   @Override
   public boolean willCallExecuteNextCommand() {
     return true;
@@ -83,6 +106,9 @@ public class WaitForBuildResultCommand extends ChainableCommand {
             MESSAGES.buildError()) {
       @Override
       public void onSuccess(RpcResult result) {
+        if (resultListener != null) {
+          resultListener.onBuildResult(node, result);
+        }
         messagesOutput.addMessages("Waiting for " + getElapsedMillis() / 1000 + " seconds.");
         messagesOutput.addMessages(result.getOutput());
         messagesOutput.addMessages(result.getError());
@@ -112,15 +138,9 @@ public class WaitForBuildResultCommand extends ChainableCommand {
           }
           executionFailedOrCanceled();
         } else {
-          // Build isn't done yet
-          Timer timer = new Timer() {
-            @Override
-            public void run() {
-              execute(node);
-            }
-          };
-          // TODO(user): Maybe do an exponential backoff here.
-          timer.schedule(WAIT_INTERVAL_MILLIS);
+          // Build isn't done yet, the server holds the next call until there is news
+          lastProgress = result.getOutput();
+          execute(node);
         }
       }
 
@@ -131,7 +151,8 @@ public class WaitForBuildResultCommand extends ChainableCommand {
       }
     };
 
-    ode.getProjectService().getBuildResult(node.getProjectId(), target, callback);
+    ode.getProjectService().waitForBuildResult(node.getProjectId(), target, lastProgress,
+        callback);
   }
 
   private static YoungAndroidBlocksNode findBlocksNode(YoungAndroidProjectNode projectRootNode,
@@ -9,8 +9,10 @@ package com.google.appinventor.client.explorer.project;
 import com.google.appinventor.client.Ode;
 import static com.google.appinventor.client.Ode.MESSAGES;
 import com.google.appinventor.client.OdeAsyncCallback;
+import com.google.appinventor.client.output.OdeLog;
 import com.google.appinventor.shared.rpc.project.ProjectNode;
 import com.google.appinventor.shared.rpc.project.UserProject;
+import com.google.gwt.core.client.Duration;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -23,6 +25,9 @@ import java.util.Map;
  * @author lizlooney@google.com (Liz Looney)
  */
 public final class ProjectManager {
+  // Number of project infos requested per call when loading the project list
+  private static final int PROJECT_INFOS_PAGE_SIZE = 200;
+
   // Map to find the project from a project ID.
   private final Map<Long, Project> projectsMap;
 
@@ -40,15 +45,38 @@ public final class ProjectManager {
   public ProjectManager() {
     projectsMap = new HashMap<Long, Project>();
     projectManagerEventListeners = new ArrayList<ProjectManagerEventListener>();
-    Ode.getInstance().getProjectService().getProjectInfos(
+    loadProjectInfos(0, new Duration());
+  }
+
+  /**
+   * Loads the project infos one page at a time, so that the project list
+   * fills in while the rest of the pages are still on their way.
+   *
+   * @param afterProjectId  ID of the last project loaded, or 0 to load the
+   *                        first page
+   * @param duration  time since loading started
+   */
+  private void loadProjectInfos(long afterProjectId, final Duration duration) {
+    Ode.getInstance().getProjectService().getProjectInfosPage(afterProjectId,
+      PROJECT_INFOS_PAGE_SIZE,
       new OdeAsyncCallback<List<UserProject>>(
         MESSAGES.projectInformationRetrievalError()) {
         @Override
         public void onSuccess(List<UserProject> projectInfos) {
           for (UserProject projectInfo : projectInfos) {
-            addProject(projectInfo);
+            // A project created while we were loading may already be here
+            if (!projectsMap.containsKey(projectInfo.getProjectId())) {
+              addProject(projectInfo);
+            }
+          }
+          if (projectInfos.size() == PROJECT_INFOS_PAGE_SIZE) {
+            // Pages are ordered by project ID, so the next one starts after the last of this one
+            loadProjectInfos(projectInfos.get(projectInfos.size() - 1).getProjectId(), duration);
+          } else {
+            OdeLog.log("ProjectManager: loaded " + projectsMap.size() + " projects in "
+                + duration.elapsedMillis() + " ms");
+            fireProjectsLoaded();
           }
-          fireProjectsLoaded();
         }
       });
   }
@@ -254,9 +254,15 @@ public final class YoungAndroidFormUpgrader {
       } else if (componentType.equals("Clock")) {
         srcCompVersion = upgradeClockProperties(componentProperties, srcCompVersion);
 
+      } else if (componentType.equals("CloudDB")) {
+        srcCompVersion = upgradeCloudDBProperties(componentProperties, srcCompVersion);
+
       } else if (componentType.equals("ContactPicker")) {
         srcCompVersion = upgradeContactPickerProperties(componentProperties, srcCompVersion);
 
+      } else if (componentType.equals("DataFile")) {
+        srcCompVersion = upgradeDataFileProperties(componentProperties, srcCompVersion);
+
       } else if (componentType.equals("DatePicker")) {
         srcCompVersion = upgradeDatePickerProperties(componentProperties, srcCompVersion);
 
@@ -272,6 +278,9 @@ public final class YoungAndroidFormUpgrader {
       } else if (componentType.equals("FusiontablesControl")) {
         srcCompVersion = upgradeFusiontablesControlProperties(componentProperties, srcCompVersion);
 
+      } else if (componentType.equals("GraphQL")) {
+        srcCompVersion = upgradeGraphQLProperties(componentProperties, srcCompVersion);
+
       } else if (componentType.equals("HorizontalArrangement")) {
         srcCompVersion = upgradeHorizontalArrangementProperties(componentProperties, srcCompVersion);
 
@@ -311,6 +320,9 @@ public final class YoungAndroidFormUpgrader {
       } else if (componentType.equals("Player")) {
         srcCompVersion = upgradePlayerProperties(componentProperties, srcCompVersion);
 
+      } else if (componentType.equals("LdpCoapClient")) {
+        srcCompVersion = upgradeLdpCoapClientProperties(componentProperties, srcCompVersion);
+
       } else if (componentType.equals("LinkedData")) {
         srcCompVersion = upgradeLinkedDataProperties(componentProperties, srcCompVersion);
 
@@ -320,6 +332,10 @@ public final class YoungAndroidFormUpgrader {
       } else if (componentType.equals("LinkedDataListPicker")) {
         srcCompVersion = upgradeLinkedDataListProperties(componentProperties, srcCompVersion);
 
+      } else if (componentType.equals("LinkedDataStreamingClient")) {
+        srcCompVersion = upgradeLinkedDataStreamingClientProperties(componentProperties,
+            srcCompVersion);
+
       } else if (componentType.equals("SemanticWebListPicker")) {
         srcCompVersion = upgradeSemanticWebListPickerProperties(componentProperties, srcCompVersion);
 
@@ -752,6 +768,14 @@ public final class YoungAndroidFormUpgrader {
       // The BackgroundImageinBase64 property was added in version 13.
       srcCompVersion = 13;
     }
+    if (srcCompVersion < 14) {
+      // The BatchCollisionDetection property was added in version 14.
+      srcCompVersion = 14;
+    }
+    if (srcCompVersion < 15) {
+      // The FrameStatistics property was added in version 15.
+      srcCompVersion = 15;
+    }
     return srcCompVersion;
   }
 
@@ -780,6 +804,16 @@ public final class YoungAndroidFormUpgrader {
     return srcCompVersion;
   }
 
+  private static int upgradeCloudDBProperties(Map<String, JSONValue> componentProperties,
+      int srcCompVersion) {
+    if (srcCompVersion < 2) {
+      // The BatchWindow property and the BatchFailed and BatchStored events were added.
+      // No properties need to be modified to upgrade to version 2.
+      srcCompVersion = 2;
+    }
+    return srcCompVersion;
+  }
+
   private static int upgradeContactPickerProperties(Map<String, JSONValue> componentProperties,
       int srcCompVersion) {
     if (srcCompVersion < 2) {
@@ -810,6 +844,16 @@ public final class YoungAndroidFormUpgrader {
     return srcCompVersion;
   }
 
+  private static int upgradeDataFileProperties(Map<String, JSONValue> componentProperties,
+      int srcCompVersion) {
+    if (srcCompVersion < 2) {
+      // The ReadProgress event was added.
+      // No properties need to be modified to upgrade to version 2.
+      srcCompVersion = 2;
+    }
+    return srcCompVersion;
+  }
+
   private static int upgradeDatePickerProperties(Map<String, JSONValue> componentProperties,
       int srcCompVersion) {
     if (srcCompVersion < 2) {
@@ -1079,6 +1123,16 @@ public final class YoungAndroidFormUpgrader {
     return srcCompVersion;
   }
 
+  private static int upgradeGraphQLProperties(Map<String, JSONValue> componentProperties,
+      int srcCompVersion) {
+    if (srcCompVersion < 2) {
+      // The GqlBatchWindow, GqlCacheTimeToLive and GqlPersistedQueries properties were added.
+      // No properties need to be modified to upgrade to version 2.
+      srcCompVersion = 2;
+    }
+    return srcCompVersion;
+  }
+
   private static int upgradeHorizontalArrangementProperties(Map<String, JSONValue> componentProperties,
       int srcCompVersion) {
     if (srcCompVersion < 2) {
@@ -1372,6 +1426,16 @@ public final class YoungAndroidFormUpgrader {
     return srcCompVersion;
   }
 
+  private static int upgradeLdpCoapClientProperties(Map<String, JSONValue> componentProperties,
+      int srcCompVersion) {
+    if (srcCompVersion < 2) {
+      // The BlockSize property and the asynchronous methods and events were added.
+      // No properties need to be modified to upgrade to version 2.
+      srcCompVersion = 2;
+    }
+    return srcCompVersion;
+  }
+
   private static int upgradeLinkedDataProperties(Map<String, JSONValue> componentProperties,
       int srcCompVersion) {
     if ( srcCompVersion < 3 ) {
@@ -1411,6 +1475,16 @@ public final class YoungAndroidFormUpgrader {
     return srcCompVersion;
   }
 
+  private static int upgradeLinkedDataStreamingClientProperties(
+      Map<String, JSONValue> componentProperties, int srcCompVersion) {
+    if (srcCompVersion < 2) {
+      // The methods and the event of the local streaming engine were added.
+      // No properties need to be modified to upgrade to version 2.
+      srcCompVersion = 2;
+    }
+    return srcCompVersion;
+  }
+
   private static int upgradeSemanticWebListPickerProperties(Map<String, JSONValue> componentProperties,
       int srcCompVersion) {
     if ( srcCompVersion < 2 ) {
@@ -1761,6 +1835,12 @@ public final class YoungAndroidFormUpgrader {
       // The ScaleUnits and ShowScale properties were added
       srcCompVersion = 5;
     }
+    if (srcCompVersion < 6) {
+      // The FeaturesContainingPoint, FeaturesInBoundingBox, FeaturesWithinDistance and
+      // NearestFeatures methods were added.
+      // No properties need to be modified to upgrade to version 6.
+      srcCompVersion = 6;
+    }
     return srcCompVersion;
   }
   
@@ -1825,6 +1905,12 @@ public final class YoungAndroidFormUpgrader {
       // The GotGeoJSON and GeoJSONError events were renamed in the blocks editor.
       srcCompVersion = 2;
     }
+    if (srcCompVersion < 3) {
+      // The FeaturesContainingPoint, FeaturesInBoundingBox, FeaturesWithinDistance and
+      // NearestFeatures methods were added.
+      // No properties need to be modified to upgrade to version 3.
+      srcCompVersion = 3;
+    }
     return srcCompVersion;
   }
 
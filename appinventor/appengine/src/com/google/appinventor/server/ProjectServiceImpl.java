@@ -25,6 +25,8 @@ import com.google.appinventor.shared.rpc.project.ChecksumedFileException;
 import com.google.appinventor.shared.rpc.project.ChecksumedLoadFile;
 import com.google.appinventor.shared.rpc.project.FileDescriptor;
 import com.google.appinventor.shared.rpc.project.FileDescriptorWithContent;
+import com.google.appinventor.shared.rpc.project.FilePatch;
+import com.google.appinventor.shared.rpc.project.FilePatchMismatchException;
 import com.google.appinventor.shared.rpc.project.NewProjectParameters;
 import com.google.appinventor.shared.rpc.project.ProjectRootNode;
 import com.google.appinventor.shared.rpc.project.ProjectService;
@@ -43,6 +45,8 @@ import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
@@ -70,6 +74,10 @@ public class ProjectServiceImpl extends OdeRemoteServiceServlet implements Proje
 
   private static final boolean DEBUG = Flag.createFlag("appinventor.debugging", false).get();
 
+  // Largest page getProjectInfosPage returns. Keeps each page to a single
+  // datastore batch get, which is limited to 1000 keys.
+  private static final int MAX_PROJECT_INFOS_PAGE = 500;
+
   /**
    * Creates a new project.
    * @param projectType  type of new project
@@ -306,6 +314,43 @@ public class ProjectServiceImpl extends OdeRemoteServiceServlet implements Proje
     return makeUserProjects(userId, projectIds);
   }
 
+  /**
+   * Returns one page of the list of project infos. Pages are ordered by
+   * project ID, and start after the last project of the previous page, so
+   * that projects created or deleted between pages do not shift the rest.
+   *
+   * @param afterProjectId  ID of the last project of the previous page, or 0
+   *                        for the first page
+   * @param count  maximum number of project infos to return
+   * @return list of project infos found by backend
+   */
+  @Override
+  public List<UserProject> getProjectInfosPage(long afterProjectId, int count) {
+    String userId = userInfoProvider.getUserId();
+    List<Long> projectIds = storageIo.getProjects(userId);
+    Collections.sort(projectIds);
+    int limit = Math.max(0, Math.min(count, MAX_PROJECT_INFOS_PAGE));
+    int from = Collections.binarySearch(projectIds, afterProjectId);
+    from = from >= 0 ? from + 1 : -from - 1;
+    List<UserProject> projects = new ArrayList<UserProject>();
+    // Projects deleted since the ID list was read have no project info, so
+    // keep reading until the page is full or there are no more projects.
+    // Only the last page is shorter than count.
+    while (projects.size() < limit && from < projectIds.size()) {
+      int to = Math.min(projectIds.size(), from + limit - projects.size());
+      projects.addAll(makeUserProjects(userId,
+          new ArrayList<Long>(projectIds.subList(from, to))));
+      from = to;
+    }
+    Collections.sort(projects, new Comparator<UserProject>() {
+      @Override
+      public int compare(UserProject p1, UserProject p2) {
+        return Long.compare(p1.getProjectId(), p2.getProjectId());
+      }
+    });
+    return projects;
+  }
+
   /**
    * Returns the root node for the given project.
    * @param projectId  project ID as received by {@link #getProjects()}
@@ -663,6 +708,29 @@ public class ProjectServiceImpl extends OdeRemoteServiceServlet implements Proje
         content);
   }
 
+  /**
+   * Saves the content of the file associated with a node in the project tree
+   * by applying a patch to the content stored on the server.
+   *
+   * @param sessionId session id
+   * @param projectId  project ID
+   * @param fileId  project node whose source should be saved
+   * @param force whether to write an empty blocks workspace
+   * @param patch  patch from the last saved content to the new content
+   * @return modification date for project
+   *
+   * @see #save2(String, long, String, boolean, String)
+   */
+  @Override
+  public long savePatch(String sessionId, long projectId, String fileId, boolean force,
+      FilePatch patch) throws InvalidSessionException, BlocksTruncatedException,
+      FilePatchMismatchException {
+    validateSessionId(sessionId);
+    final String userId = userInfoProvider.getUserId();
+    return getProjectRpcImpl(userId, projectId).savePatch(userId, projectId, fileId, force,
+        patch);
+  }
+
   /**
    * Saves the contents of multiple files.
    *
@@ -729,6 +797,23 @@ public class ProjectServiceImpl extends OdeRemoteServiceServlet implements Proje
       userInfoProvider.getUser(), projectId, target);
   }
 
+  /**
+   * Waits for the result of a build command for the project to change.
+   *
+   * @param projectId  project ID
+   * @param target  build target (optional, implementation dependent)
+   * @param lastProgress  the output (progress) of the previous result, or null
+   *
+   * @return  results of build, see {@link #getBuildResult(long, String)}
+   */
+  @Override
+  public RpcResult waitForBuildResult(long projectId, String target, String lastProgress) {
+    // Dispatch
+    final String userId = userInfoProvider.getUserId();
+    return getProjectRpcImpl(userId, projectId).waitForBuildResult(
+      userInfoProvider.getUser(), projectId, target, lastProgress);
+  }
+
   /*
    * Write the serialized response out to stdout. This is a very unusual thing
    * to do, but it allows us to create a static file version of the response
@@ -11,6 +11,8 @@ import com.google.appinventor.shared.rpc.BlocksTruncatedException;
 import com.google.appinventor.shared.rpc.RpcResult;
 import com.google.appinventor.shared.rpc.project.ChecksumedLoadFile;
 import com.google.appinventor.shared.rpc.project.ChecksumedFileException;
+import com.google.appinventor.shared.rpc.project.FilePatch;
+import com.google.appinventor.shared.rpc.project.FilePatchMismatchException;
 import com.google.appinventor.shared.rpc.project.NewProjectParameters;
 import com.google.appinventor.shared.rpc.project.ProjectRootNode;
 import com.google.appinventor.shared.rpc.project.TextFile;
@@ -334,6 +336,31 @@ public abstract class CommonProjectService {
     }
   }
 
+  /**
+   * Saves the content of the file associated with a node in the project tree
+   * by applying a patch to the content currently stored.
+   *
+   * @param userId the user id
+   * @param projectId  project root node ID
+   * @param fileId  project node whose source should be saved
+   * @param force whether to write an empty blocks workspace
+   * @param patch  patch from the last saved content to the new content
+   * @return modification date for project
+   * @throws FilePatchMismatchException if the patch does not apply to the
+   *         stored content
+   *
+   * @see com.google.appinventor.shared.rpc.project.ProjectService#savePatch(String, long, String, boolean, FilePatch)
+   */
+  public long savePatch(String userId, long projectId, String fileId, boolean force,
+      FilePatch patch) throws BlocksTruncatedException, FilePatchMismatchException {
+    String content = patch.apply(storageIo.downloadFile(userId, projectId, fileId,
+        StorageUtil.DEFAULT_CHARSET));
+    if (content == null) {
+      throw new FilePatchMismatchException("Patch does not apply to " + fileId);
+    }
+    return save2(userId, projectId, fileId, force, content);
+  }
+
   /**
    * Saves a screenshot of a current blocks editor. This is called from the client side
    * whenever the user leaves a blocks editor. The data is shipped to us in base64 encoding
@@ -382,6 +409,21 @@ public abstract class CommonProjectService {
    */
   public abstract RpcResult getBuildResult(User user, long projectId, String target);
 
+  /**
+   * Waits for the result of a build command for the project to change. The
+   * default implementation does not wait.
+   *
+   * @param user the User that owns the {@code projectId}.
+   * @param projectId  project id to be built
+   * @param target  build target (optional, implementation dependent.
+   * @param lastProgress  the output (progress) of the previous result, or null
+   * @return  build results, see {@link #getBuildResult(User, long, String)}
+   */
+  public RpcResult waitForBuildResult(User user, long projectId, String target,
+      String lastProgress) {
+    return getBuildResult(user, projectId, target);
+  }
+
   public TextFile importMedia(String userId, long projectId, String urlString, boolean save) throws IOException {
     InputStream is = null;
     try {
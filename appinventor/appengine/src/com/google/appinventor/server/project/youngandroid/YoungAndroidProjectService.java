@@ -129,6 +129,12 @@ public final class YoungAndroidProjectService extends CommonProjectService {
   // Build folder path
   private static final String BUILD_FOLDER = "build";
 
+  // How long waitForBuildResult holds on to a request, and how often it checks
+  // for news in the meantime. Keep the wait well below the request deadline.
+  private static final int BUILD_RESULT_WAIT_MILLIS =
+      Flag.createFlag("build.result.wait.millis", 20000).get();
+  private static final int BUILD_RESULT_POLL_MILLIS = 1000;
+
   public static final String PROJECT_KEYSTORE_LOCATION = "android.keystore";
 
   // host[:port] to use for connecting to the build server
@@ -1449,6 +1455,38 @@ public final class YoungAndroidProjectService extends CommonProjectService {
     return buildResult;
   }
 
+  /**
+   * Waits until the build finishes or its progress differs from
+   * {@code lastProgress}, checking every BUILD_RESULT_POLL_MILLIS for at most
+   * BUILD_RESULT_WAIT_MILLIS. The checks only touch memcache and the project
+   * cache, which is much cheaper than a client round trip for each of them.
+   *
+   * @param user the User that owns the {@code projectId}.
+   * @param projectId  project id to be built
+   * @param target  build target (optional, implementation dependent)
+   * @param lastProgress  the output (progress) of the previous result, or null
+   * @return an RpcResult, see {@link #getBuildResult(User, long, String)}
+   */
+  @Override
+  public RpcResult waitForBuildResult(User user, long projectId, String target,
+      String lastProgress) {
+    long deadline = System.currentTimeMillis() + BUILD_RESULT_WAIT_MILLIS;
+    while (true) {
+      RpcResult result = getBuildResult(user, projectId, target);
+      if (result.getResult() != -1 || lastProgress == null
+          || !lastProgress.equals(result.getOutput())
+          || System.currentTimeMillis() + BUILD_RESULT_POLL_MILLIS > deadline) {
+        return result;
+      }
+      try {
+        Thread.sleep(BUILD_RESULT_POLL_MILLIS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return result;
+      }
+    }
+  }
+
   /**
    * Check if there are any build progress available for the given user's project
    *
@@ -129,6 +129,14 @@ public class ObjectifyStorageIo implements  StorageIo {
 
   private final MemcacheService memcache = MemcacheServiceFactory.getMemcacheService();
 
+  // Size of the per-instance tier of projectCache, in kilobytes
+  private static final int PROJECT_CACHE_KB = Flag.createFlag("project.cache.kb", 16 * 1024).get();
+
+  // Cache in front of memcache, the datastore and GCS for project file contents
+  // and file lists. Every write to a project must call projectCache.invalidate().
+  private final ProjectCache projectCache =
+      new ProjectCache(memcache, PROJECT_CACHE_KB * 1024L);
+
   private final GcsService gcsService;
 
   private static final String GCS_BUCKET_NAME;
@@ -188,6 +196,36 @@ public class ObjectifyStorageIo implements  StorageIo {
     T t;
   }
 
+  // What projectCache holds for a file. We keep the owner so that cached
+  // reads make the same access check as uncached ones.
+  private static class CachedFile implements java.io.Serializable {
+    private static final long serialVersionUID = 1L;
+
+    final String userId;
+    final byte[] content;
+
+    CachedFile(String userId, byte[] content) {
+      this.userId = userId;
+      this.content = content;
+    }
+  }
+
+  // Names of projectCache entries
+  private static final String CACHE_SOURCE_FILES = "sourceFiles";
+  private static final String CACHE_OUTPUT_FILES = "outputFiles";
+  private static final String CACHE_FILE_PREFIX = "file:";
+
+  // Memcache key prefix for the cached list of a user's project ids
+  private static final String USER_PROJECTS_KEY_PREFIX = "ObjectifyStorageIo.userProjects:";
+
+  // After a user's project list changes, memcache refuses to re-add the
+  // cached list for this long. This keeps a reader that queried the datastore
+  // before the change from putting back a stale list.
+  private static final long USER_PROJECTS_HOLD_MILLIS = 2000;
+
+  // Bounds how long a stale list can survive if memcache drops a delete
+  private static final int USER_PROJECTS_EXPIRATION_SECONDS = 10 * 60;
+
   static {
     // Register the data object classes stored in the database
     ObjectifyService.register(UserData.class);
@@ -565,6 +603,7 @@ public class ObjectifyStorageIo implements  StorageIo {
           datastore.put(upd);
         }
       }, true);
+      invalidateUserProjects(userId);
     } catch (ObjectifyException e) {
       for (FileData addedFile : addedFiles) {
         if (isTrue(addedFile.isGCS)) {  // Do something
@@ -629,6 +668,7 @@ public class ObjectifyStorageIo implements  StorageIo {
           // delete any FileData objects associated with this project
         }
       }, true);
+      invalidateUserProjects(userId);
       // second job deletes the project files and ProjectData in the project's
       // entity group
       runJobWithRetries(new JobRetryHelper() {
@@ -648,6 +688,7 @@ public class ObjectifyStorageIo implements  StorageIo {
           datastore.delete(projectKey);
         }
       }, true);
+      projectCache.invalidate(projectId);
       // have to delete the blobs outside of the user and project jobs
       for (String blobKeyString: blobKeys) {
         deleteBlobstoreFile(blobKeyString);
@@ -686,12 +727,21 @@ public class ObjectifyStorageIo implements  StorageIo {
 
   @Override
   public List<Long> getProjects(final String userId) {
-    final List<Long> projects = new ArrayList<Long>();
+    // The project list is read every time a user opens App Inventor, and
+    // the ancestor query behind it is not cached by Objectify.
+    String cacheKey = USER_PROJECTS_KEY_PREFIX + userId;
+    @SuppressWarnings("unchecked")
+    ArrayList<Long> cached = (ArrayList<Long>) memcache.get(cacheKey);
+    if (cached != null) {
+      return new ArrayList<Long>(cached);
+    }
+    final ArrayList<Long> projects = new ArrayList<Long>();
     try {
       runJobWithRetries(new JobRetryHelper() {
         @Override
         public void run(Objectify datastore) {
           Key<UserData> userKey = userKey(userId);
+          projects.clear();     // in case of a retry
           for (UserProjectData upd : datastore.query(UserProjectData.class).ancestor(userKey)) {
             projects.add(upd.projectId);
           }
@@ -700,10 +750,18 @@ public class ObjectifyStorageIo implements  StorageIo {
     } catch (ObjectifyException e) {
       throw CrashReport.createAndLogError(LOG, null, collectUserErrorInfo(userId), e);
     }
-
+    memcache.put(cacheKey, new ArrayList<Long>(projects),
+        Expiration.byDeltaSeconds(USER_PROJECTS_EXPIRATION_SECONDS),
+        SetPolicy.ADD_ONLY_IF_NOT_PRESENT);
     return projects;
   }
 
+  // Drops the cached project list of a user. Must be called after every
+  // change to the user's UserProjectData entities has been committed.
+  private void invalidateUserProjects(String userId) {
+    memcache.delete(USER_PROJECTS_KEY_PREFIX + userId, USER_PROJECTS_HOLD_MILLIS);
+  }
+
   @Override
   public String loadProjectSettings(final String userId, final long projectId) {
     final Result<String> settings = new Result<String>();
@@ -1144,6 +1202,7 @@ public class ObjectifyStorageIo implements  StorageIo {
           addFilesToProject(datastore, projectId, FileData.RoleEnum.SOURCE, changeModDate, userId, fileNames);
         }
       }, true);
+      projectCache.invalidate(projectId);
     } catch (ObjectifyException e) {
       throw CrashReport.createAndLogError(LOG, null,
           collectProjectErrorInfo(userId, projectId, fileNames[0]), e);
@@ -1160,6 +1219,7 @@ public class ObjectifyStorageIo implements  StorageIo {
           addFilesToProject(datastore, projectId, FileData.RoleEnum.TARGET, false, userId, fileNames);
         }
       }, true);
+      projectCache.invalidate(projectId);
     } catch (ObjectifyException e) {
       throw CrashReport.createAndLogError(LOG, null,
           collectProjectErrorInfo(userId, projectId, fileNames[0]), e);
@@ -1210,6 +1270,7 @@ public class ObjectifyStorageIo implements  StorageIo {
           removeFilesFromProject(datastore, projectId, FileData.RoleEnum.SOURCE, changeModDate, fileNames);
         }
       }, true);
+      projectCache.invalidate(projectId);
     } catch (ObjectifyException e) {
       throw CrashReport.createAndLogError(LOG, null,
           collectProjectErrorInfo(userId, projectId, fileNames[0]), e);
@@ -1226,6 +1287,7 @@ public class ObjectifyStorageIo implements  StorageIo {
           removeFilesFromProject(datastore, projectId, FileData.RoleEnum.TARGET, false, fileNames);
         }
       }, true);
+      projectCache.invalidate(projectId);
     } catch (ObjectifyException e) {
       throw CrashReport.createAndLogError(LOG, null,
           collectProjectErrorInfo(userId, projectId, fileNames[0]), e);
@@ -1258,35 +1320,41 @@ public class ObjectifyStorageIo implements  StorageIo {
 
   @Override
   public List<String> getProjectSourceFiles(final String userId, final long projectId) {
-    final Result<List<String>> result = new Result<List<String>>();
-    try {
-      runJobWithRetries(new JobRetryHelper() {
-        @Override
-        public void run(Objectify datastore) {
-          result.t = getProjectFiles(datastore, projectId, FileData.RoleEnum.SOURCE);
-        }
-      }, false);
-    } catch (ObjectifyException e) {
-      throw CrashReport.createAndLogError(LOG, null,
-          collectUserProjectErrorInfo(userId, projectId), e);
-    }
-    return result.t;
+    return getCachedProjectFiles(userId, projectId, FileData.RoleEnum.SOURCE, CACHE_SOURCE_FILES);
   }
 
   @Override
   public List<String> getProjectOutputFiles(final String userId, final long projectId) {
-   final Result<List<String>> result = new Result<List<String>>();
-   try {
+    return getCachedProjectFiles(userId, projectId, FileData.RoleEnum.TARGET, CACHE_OUTPUT_FILES);
+  }
+
+  // The file list comes from an ancestor query, which Objectify does not
+  // cache for us, so it is worth keeping in projectCache.
+  @SuppressWarnings("unchecked")
+  private List<String> getCachedProjectFiles(final String userId, final long projectId,
+      final FileData.RoleEnum role, String cacheName) {
+    long version = projectCache.getVersion(projectId);
+    ArrayList<String> cached = (ArrayList<String>) projectCache.get(projectId, version, cacheName);
+    if (cached != null) {
+      return new ArrayList<String>(cached);
+    }
+    final Result<List<String>> result = new Result<List<String>>();
+    try {
       runJobWithRetries(new JobRetryHelper() {
         @Override
         public void run(Objectify datastore) {
-          result.t = getProjectFiles(datastore, projectId, FileData.RoleEnum.TARGET);
+          result.t = getProjectFiles(datastore, projectId, role);
         }
       }, false);
     } catch (ObjectifyException e) {
       throw CrashReport.createAndLogError(LOG, null,
           collectUserProjectErrorInfo(userId, projectId), e);
     }
+    int size = 0;
+    for (String fileName : result.t) {
+      size += fileName.length() * 2;
+    }
+    projectCache.put(projectId, version, cacheName, new ArrayList<String>(result.t), size);
     return result.t;
   }
 
@@ -1484,6 +1552,7 @@ public class ObjectifyStorageIo implements  StorageIo {
         }
       }, false);        // Use transaction for blobstore, otherwise we don't need one
                                // and without one the caching code comes into play.
+      projectCache.invalidate(projectId);
 
       // It would have been convenient to delete the old blobstore file within the run() method
       // above but that caused an exception where the app engine datastore claimed to be doing
@@ -1566,6 +1635,7 @@ public class ObjectifyStorageIo implements  StorageIo {
           modTime.t = updateProjectModDate(datastore, projectId, false);
         }
       }, true);
+      projectCache.invalidate(projectId);
     } catch (ObjectifyException e) {
       throw CrashReport.createAndLogError(LOG, null,
           collectProjectErrorInfo(userId, projectId, fileName), e);
@@ -1622,6 +1692,21 @@ public class ObjectifyStorageIo implements  StorageIo {
   @Override
   public byte[] downloadRawFile(final String userId, final long projectId, final String fileName) {
     validateGCS();
+    // Read the version before the file, so that a concurrent write makes us
+    // cache what we read under a version nobody will ask for again.
+    final long version = projectCache.getVersion(projectId);
+    CachedFile cached = (CachedFile) projectCache.get(projectId, version,
+        CACHE_FILE_PREFIX + fileName);
+    if (cached != null) {
+      if (cached.userId != null && !cached.userId.equals("")) {
+        if (!cached.userId.equals(userId)) {
+          throw CrashReport.createAndLogError(LOG, null,
+            collectUserProjectErrorInfo(userId, projectId),
+            new UnauthorizedAccessException(userId, projectId, null));
+        }
+      }
+      return cached.content.clone();
+    }
     final Result<byte[]> result = new Result<byte[]>();
     final Result<FileData> fd = new Result<FileData>();
     try {
@@ -1754,6 +1839,8 @@ public class ObjectifyStorageIo implements  StorageIo {
           result.t = fileData.content;
         }
       }
+      projectCache.put(projectId, version, CACHE_FILE_PREFIX + fileName,
+          new CachedFile(fileData.userId, result.t.clone()), result.t.length);
     } else {
       throw CrashReport.createAndLogError(LOG, null,
           collectProjectErrorInfo(userId, projectId, fileName),
@@ -0,0 +1,263 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.server.storage;
+
+import com.google.appengine.api.memcache.Expiration;
+import com.google.appengine.api.memcache.MemcacheService;
+import com.google.appengine.api.memcache.MemcacheService.SetPolicy;
+import com.google.common.annotations.VisibleForTesting;
+
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A two-tier cache for project data read by {@link ObjectifyStorageIo}.
+ *
+ * <p>The first tier is a small LRU map that lives in this server instance.
+ * The second tier is memcache, which is shared by all instances. Both sit
+ * in front of the datastore.
+ *
+ * <p>Every entry is stored under a key that includes the current version of
+ * its project. The version is a counter kept in memcache and bumped by
+ * {@link #invalidate(long)} whenever the project is written. Invalidating a
+ * project therefore costs a single memcache increment: old entries are never
+ * looked up again and age out of both tiers on their own.
+ *
+ * <p>Values handed out by the cache are shared, so callers must not modify
+ * them.
+ */
+final class ProjectCache {
+
+  private static final Logger LOG = Logger.getLogger(ProjectCache.class.getName());
+
+  /**
+   * Version returned when memcache cannot tell us the current version of a
+   * project. Lookups and stores using this version are ignored.
+   */
+  static final long NO_VERSION = -1;
+
+  // Prefixes keep our keys apart from the other things we put in memcache
+  private static final String VERSION_PREFIX = "ProjectCache.version:";
+  private static final String ENTRY_PREFIX = "ProjectCache.entry:";
+
+  // Memcache refuses values larger than 1 MB, we stay well below that
+  private static final int MAX_ENTRY_BYTES = 512 * 1024;
+
+  private static final int MEMCACHE_EXPIRATION_SECONDS = 60 * 60;
+
+  // Local entries expire even if the version never changes. This bounds how
+  // long we can serve stale data if a version bump is lost (memcache down).
+  private static final long LOCAL_TTL_MILLIS = 60 * 1000;
+
+  private static final int STATS_LOG_INTERVAL = 1000;
+
+  private final MemcacheService memcache;
+  private final long maxLocalBytes;
+
+  // Access ordered, so iteration starts at the least recently used entry
+  private final LinkedHashMap<String, LocalEntry> local =
+      new LinkedHashMap<String, LocalEntry>(16, 0.75f, true);
+  private long localBytes = 0;
+
+  private final AtomicLong localHits = new AtomicLong();
+  private final AtomicLong memcacheHits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  private static class LocalEntry {
+    final Object value;
+    final int size;
+    final long expires;
+
+    LocalEntry(Object value, int size, long expires) {
+      this.value = value;
+      this.size = size;
+      this.expires = expires;
+    }
+  }
+
+  ProjectCache(MemcacheService memcache, long maxLocalBytes) {
+    this.memcache = memcache;
+    this.maxLocalBytes = maxLocalBytes;
+  }
+
+  /**
+   * Returns the current version of a project, creating one if memcache does
+   * not know about the project yet.
+   *
+   * @param projectId the project id
+   * @return the version, or {@link #NO_VERSION} if memcache is unavailable
+   */
+  long getVersion(long projectId) {
+    String key = VERSION_PREFIX + projectId;
+    Object version = memcache.get(key);
+    if (version == null) {
+      // Seed with the current time, so that a version evicted from memcache
+      // never comes back with a value old entries were stored under.
+      memcache.put(key, System.currentTimeMillis(), null, SetPolicy.ADD_ONLY_IF_NOT_PRESENT);
+      version = memcache.get(key);
+    }
+    return (version instanceof Long) ? (Long) version : NO_VERSION;
+  }
+
+  /**
+   * Bumps the version of a project. Must be called after every change to the
+   * project has been committed to the datastore.
+   *
+   * @param projectId the project id
+   */
+  void invalidate(long projectId) {
+    memcache.increment(VERSION_PREFIX + projectId, 1L, System.currentTimeMillis());
+  }
+
+  /**
+   * Looks up an entry, first in the local tier, then in memcache.
+   *
+   * @param projectId the project id
+   * @param version the version returned by {@link #getVersion(long)}
+   * @param name the name of the entry within the project
+   * @return the cached value, or {@code null} on a miss
+   */
+  Object get(long projectId, long version, String name) {
+    if (version == NO_VERSION) {
+      return null;
+    }
+    String key = entryKey(projectId, version, name);
+    Object value = getLocal(key);
+    if (value != null) {
+      localHits.incrementAndGet();
+    } else {
+      value = memcache.get(key);
+      if (value instanceof SizedValue) {
+        memcacheHits.incrementAndGet();
+        putLocal(key, value, ((SizedValue) value).size);
+      } else {
+        value = null;
+        misses.incrementAndGet();
+      }
+    }
+    maybeLogStats();
+    return (value == null) ? null : ((SizedValue) value).value;
+  }
+
+  /**
+   * Stores an entry in both tiers. Entries larger than the memcache limit
+   * are silently dropped.
+   *
+   * @param projectId the project id
+   * @param version the version returned by {@link #getVersion(long)} before
+   *                the value was read from the datastore
+   * @param name the name of the entry within the project
+   * @param value the value to cache
+   * @param size an estimate of the size of {@code value} in bytes
+   */
+  void put(long projectId, long version, String name, Serializable value, int size) {
+    if (version == NO_VERSION || size > MAX_ENTRY_BYTES) {
+      return;
+    }
+    String key = entryKey(projectId, version, name);
+    SizedValue sized = new SizedValue(value, size);
+    putLocal(key, sized, size);
+    memcache.put(key, sized, Expiration.byDeltaSeconds(MEMCACHE_EXPIRATION_SECONDS));
+  }
+
+  long getLocalHits() {
+    return localHits.get();
+  }
+
+  long getMemcacheHits() {
+    return memcacheHits.get();
+  }
+
+  long getMisses() {
+    return misses.get();
+  }
+
+  /**
+   * Returns a one line summary of the hit counters, suitable for logging.
+   */
+  String getStats() {
+    long l1 = localHits.get();
+    long l2 = memcacheHits.get();
+    long miss = misses.get();
+    long total = l1 + l2 + miss;
+    return "ProjectCache: lookups = " + total
+        + ", local hits = " + l1 + " (" + percent(l1, total) + "%)"
+        + ", memcache hits = " + l2 + " (" + percent(l2, total) + "%)"
+        + ", misses = " + miss + " (" + percent(miss, total) + "%)"
+        + ", local bytes = " + getLocalBytes();
+  }
+
+  @VisibleForTesting
+  synchronized long getLocalBytes() {
+    return localBytes;
+  }
+
+  @VisibleForTesting
+  synchronized void clearLocal() {
+    local.clear();
+    localBytes = 0;
+  }
+
+  private static String entryKey(long projectId, long version, String name) {
+    return ENTRY_PREFIX + projectId + ":" + version + ":" + name;
+  }
+
+  private static long percent(long part, long total) {
+    return (total == 0) ? 0 : (part * 100) / total;
+  }
+
+  private synchronized Object getLocal(String key) {
+    LocalEntry entry = local.get(key);
+    if (entry == null) {
+      return null;
+    }
+    if (entry.expires < System.currentTimeMillis()) {
+      local.remove(key);
+      localBytes -= entry.size;
+      return null;
+    }
+    return entry.value;
+  }
+
+  private synchronized void putLocal(String key, Object value, int size) {
+    LocalEntry old = local.put(key,
+        new LocalEntry(value, size, System.currentTimeMillis() + LOCAL_TTL_MILLIS));
+    if (old != null) {
+      localBytes -= old.size;
+    }
+    localBytes += size;
+    Iterator<LocalEntry> it = local.values().iterator();
+    while (localBytes > maxLocalBytes && it.hasNext()) {
+      localBytes -= it.next().size;
+      it.remove();
+    }
+  }
+
+  private void maybeLogStats() {
+    long total = localHits.get() + memcacheHits.get() + misses.get();
+    if (total % STATS_LOG_INTERVAL == 0) {
+      LOG.log(Level.INFO, getStats());
+    }
+  }
+
+  // What we actually store in memcache. Remembering the size lets us account
+  // for the value in the local tier when it is fetched from memcache.
+  private static class SizedValue implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    final Serializable value;
+    final int size;
+
+    SizedValue(Serializable value, int size) {
+      this.value = value;
+      this.size = size;
+    }
+  }
+}
@@ -0,0 +1,128 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.shared.rpc.project;
+
+import java.io.Serializable;
+
+/**
+ * Describes a change to the content of a text file, so that the client can
+ * send the change instead of the whole file when it saves.
+ *
+ * A patch replaces a single region of the file: everything between the
+ * common prefix and the common suffix of the old and the new content. Edits
+ * in the designer and the blocks editor usually touch one small part of a
+ * large file, so this keeps most saves down to a few hundred characters.
+ *
+ * The patch carries a hash of the content it was computed against and a
+ * hash of the content it produces. {@link #apply(String)} refuses to apply
+ * the patch if either hash does not match, in which case the client has to
+ * send the whole file.
+ *
+ * This class is shared between the client and the server, so it only uses
+ * code that GWT can translate.
+ */
+public final class FilePatch implements Serializable {
+
+  // For serialization
+  private static final long serialVersionUID = 3187526340938216718L;
+
+  private String baseHash;
+  private String resultHash;
+  private int start;
+  private int deleteCount;
+  private String insert;
+
+  /**
+   * Default constructor (for serialization only).
+   * Unfortunately this will prevent any fields from being marked as final!
+   */
+  @SuppressWarnings("unused")
+  private FilePatch() {
+  }
+
+  private FilePatch(String baseHash, String resultHash, int start, int deleteCount,
+      String insert) {
+    this.baseHash = baseHash;
+    this.resultHash = resultHash;
+    this.start = start;
+    this.deleteCount = deleteCount;
+    this.insert = insert;
+  }
+
+  /**
+   * Creates the patch that turns {@code base} into {@code result}.
+   *
+   * @param base  the content last acknowledged by the server
+   * @param result  the new content
+   * @return  patch from {@code base} to {@code result}
+   */
+  public static FilePatch create(String base, String result) {
+    int baseLength = base.length();
+    int resultLength = result.length();
+    int maxPrefix = Math.min(baseLength, resultLength);
+    int prefix = 0;
+    while (prefix < maxPrefix && base.charAt(prefix) == result.charAt(prefix)) {
+      prefix++;
+    }
+    int maxSuffix = maxPrefix - prefix;
+    int suffix = 0;
+    while (suffix < maxSuffix
+        && base.charAt(baseLength - 1 - suffix) == result.charAt(resultLength - 1 - suffix)) {
+      suffix++;
+    }
+    return new FilePatch(hash(base), hash(result), prefix, baseLength - prefix - suffix,
+        result.substring(prefix, resultLength - suffix));
+  }
+
+  /**
+   * Applies the patch.
+   *
+   * @param base  the current content of the file
+   * @return  the patched content, or {@code null} if the patch was not
+   *          computed against {@code base}
+   */
+  public String apply(String base) {
+    if (!baseHash.equals(hash(base)) || start + deleteCount > base.length()) {
+      return null;
+    }
+    String result = base.substring(0, start) + insert + base.substring(start + deleteCount);
+    if (!resultHash.equals(hash(result))) {
+      return null;
+    }
+    return result;
+  }
+
+  /**
+   * Returns the number of characters the patch inserts. The client uses this
+   * to decide whether sending the patch is worth it.
+   *
+   * @return  length of the inserted text
+   */
+  public int getInsertLength() {
+    return insert.length();
+  }
+
+  /**
+   * Computes the hash used to identify file contents. The hash combines the
+   * length with two independent 32 bit polynomial hashes. It only needs to
+   * tell versions of the same file apart, and the result hash makes a wrongly
+   * applied patch fail anyway.
+   *
+   * @param content  file content
+   * @return  hash of {@code content}
+   */
+  public static String hash(String content) {
+    int h1 = 0;
+    int h2 = 0;
+    int length = content.length();
+    for (int i = 0; i < length; i++) {
+      char c = content.charAt(i);
+      h1 = 31 * h1 + c;
+      h2 = 1000003 * h2 + c;
+    }
+    return length + ":" + Integer.toHexString(h1) + ":" + Integer.toHexString(h2);
+  }
+}
@@ -0,0 +1,31 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.shared.rpc.project;
+
+import java.io.Serializable;
+
+/**
+ * Thrown when a {@link FilePatch} sent by the client does not apply to the
+ * file stored on the server. The client responds by sending the whole file.
+ */
+public class FilePatchMismatchException extends Exception implements Serializable {
+
+    private String message;
+
+    public FilePatchMismatchException() {
+      super();
+    }
+
+    public FilePatchMismatchException(String message) {
+      super();
+      this.message = message;
+    }
+
+    public String getMessage() {
+      return message;
+    }
+
+}
@@ -129,6 +129,18 @@ public interface ProjectService extends RemoteService {
    */
   List<UserProject> getProjectInfos();
 
+  /**
+   * Returns one page of the list of project infos, ordered by project ID.
+   * Pages hold at most 500 project infos, and a page shorter than
+   * {@code count} is the last one.
+   *
+   * @param afterProjectId  ID of the last project of the previous page, or 0
+   *                        for the first page
+   * @param count  maximum number of project infos to return
+   * @return list of project infos found by the back-end
+   */
+  List<UserProject> getProjectInfosPage(long afterProjectId, int count);
+
   /**
    * Returns the root node for the given project.
    * @param projectId  project ID as received by
@@ -296,6 +308,24 @@ public interface ProjectService extends RemoteService {
   long save2(String sessionId, long projectId, String fileId, boolean force, String content) throws InvalidSessionException,
       BlocksTruncatedException;
 
+  /**
+   * Saves the content of the file associated with a node in the project tree
+   * by applying a patch to the content stored on the server. Throws a
+   * FilePatchMismatchException if the patch was not computed against the
+   * stored content, in which case the caller should use save2 instead.
+   *
+   * @param sessionId current session id
+   * @param projectId  project ID
+   * @param fileId  project node whose source should be saved
+   * @param force whether to write an empty blocks workspace
+   * @param patch  patch from the last saved content to the new content
+   * @return modification date for project
+   *
+   * @see #save2(String, long, String, boolean, String)
+   */
+  long savePatch(String sessionId, long projectId, String fileId, boolean force, FilePatch patch)
+      throws InvalidSessionException, BlocksTruncatedException, FilePatchMismatchException;
+
   /**
    * Saves the contents of multiple files.
    *
@@ -345,6 +375,21 @@ public interface ProjectService extends RemoteService {
    */
   RpcResult getBuildResult(long projectId, String target);
 
+  /**
+   * Waits for the result of a build command to change. The call returns as
+   * soon as the build finishes or its progress differs from
+   * {@code lastProgress}, or after a server defined timeout. Clients call it
+   * again right away while the build is running, instead of polling
+   * {@link #getBuildResult(long, String)} on a timer.
+   *
+   * @param projectId  project ID
+   * @param target  build target (optional, implementation dependent)
+   * @param lastProgress  the output (progress) of the previous result, or null
+   *
+   * @return  results of build, see {@link #getBuildResult(long, String)}
+   */
+  RpcResult waitForBuildResult(long projectId, String target, String lastProgress);
+
   /**
    * Adds a new file to the given project.
    *
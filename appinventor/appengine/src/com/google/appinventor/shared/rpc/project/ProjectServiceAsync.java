@@ -85,6 +85,12 @@ public interface ProjectServiceAsync {
    */
   void getProjectInfos(AsyncCallback<List<UserProject>> callback);
 
+  /**
+   * @see ProjectService#getProjectInfosPage(long, int)
+   */
+  void getProjectInfosPage(long afterProjectId, int count,
+      AsyncCallback<List<UserProject>> callback);
+
   /**
    * @see ProjectService#getProject(long)
    */
@@ -160,6 +166,11 @@ public interface ProjectServiceAsync {
    */
   void save2(String sessionId, long projectId, String fileId, boolean force, String source, AsyncCallback<Long> callback);
 
+  /**
+   * @see ProjectService#savePatch(String, long, String, boolean, FilePatch)
+   */
+  void savePatch(String sessionId, long projectId, String fileId, boolean force, FilePatch patch, AsyncCallback<Long> callback);
+
   /**
    * @see ProjectService#save(String, List)
    */
@@ -182,6 +193,11 @@ public interface ProjectServiceAsync {
    */
   void getBuildResult(long projectId, String target, AsyncCallback<RpcResult> callback);
 
+  /**
+   * @see ProjectService#waitForBuildResult(long, String, String)
+   */
+  void waitForBuildResult(long projectId, String target, String lastProgress, AsyncCallback<RpcResult> callback);
+
   /**
    * @see ProjectService#addFile(long, String)
    */
@@ -57,6 +57,16 @@ public class YoungAndroidSourceAnalyzer {
    * @return the properties as a JSONObject
    */
   public static JSONObject parseSourceFile(String source, JSONParser jsonParser) {
+    return jsonParser.parse(getJsonSection(source)).asObject();
+  }
+
+  /**
+   * Returns the $JSON section of a complete source file, without parsing it.
+   *
+   * @param source a complete source file
+   * @return the properties as a JSON string
+   */
+  public static String getJsonSection(String source) {
     source = source.replaceAll("\r\n", "\n");
     // First, locate the beginning of the $JSON section.
     // Older files have a $Properties before the $JSON section and we need to make sure we skip
@@ -77,9 +87,7 @@ public class YoungAndroidSourceAnalyzer {
           "Unable to parse file - cannot locate end of $JSON section");
     }
 
-    String jsonPropertiesString = source.substring(beginningOfJsonSection,
-        endOfJsonSection);
-    return jsonParser.parse(jsonPropertiesString).asObject();
+    return source.substring(beginningOfJsonSection, endOfJsonSection);
   }
 
   /**
@@ -44,6 +44,7 @@ import org.powermock.core.classloader.annotations.PowerMockIgnore;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -293,6 +294,31 @@ public class ProjectServiceTest {
     PowerMock.verifyAll();
   }
 
+  @Test
+  public void testProjectInfosPages() throws Exception {
+    expect(localUserMock.getUserId()).andReturn(USER_ID_ONE).anyTimes();
+    PowerMock.replayAll();
+    do_init();
+
+    long[] projectIds = new long[3];
+    for (int i = 0; i < projectIds.length; i++) {
+      projectIds[i] = getBuildableYoungAndroidProjectId(USER_ID_ONE, "Project" + i);
+    }
+    Arrays.sort(projectIds);
+
+    List<UserProject> page = projectServiceImpl.getProjectInfosPage(0, 2);
+    assertEquals(2, page.size());
+    assertEquals(projectIds[0], page.get(0).getProjectId());
+    assertEquals(projectIds[1], page.get(1).getProjectId());
+
+    // Deleting a project already loaded must not shift the next page past a project
+    projectServiceImpl.deleteProject(projectIds[0]);
+    page = projectServiceImpl.getProjectInfosPage(page.get(1).getProjectId(), 2);
+    assertEquals(1, page.size());
+    assertEquals(projectIds[2], page.get(0).getProjectId());
+    PowerMock.verifyAll();
+  }
+
   @Test
   public void testCopyProject() throws Exception {
     // Since only USER_ID_ONE is used in this test, we don't care how
@@ -333,6 +333,56 @@ public class ObjectifyStorageIoTest extends LocalDatastoreTestCase {
     assertFalse(storage.getProjectOutputFiles(USER_ID, projectId).contains(FILE_NAME_OUTPUT));
   }
 
+  public void testCachedReadsSeeWrites() throws BlocksTruncatedException {
+    final String USER_ID = "1250";
+    final String USER_EMAIL = "newuser1250@test.com";
+    storage.getUser(USER_ID, USER_EMAIL);
+    long projectId = createProject(USER_ID, PROJECT_NAME, FAKE_PROJECT_TYPE, FORM_QUALIFIED_NAME);
+    storage.addSourceFilesToProject(USER_ID, projectId, false, FILE_NAME1);
+    storage.uploadFile(projectId, FILE_NAME1, USER_ID, FILE_CONTENT1, StorageUtil.DEFAULT_CHARSET);
+
+    // The second read of each kind is served from the cache
+    for (int i = 0; i < 2; i++) {
+      assertEquals(FILE_CONTENT1, storage.downloadFile(USER_ID, projectId, FILE_NAME1,
+          StorageUtil.DEFAULT_CHARSET));
+      assertTrue(storage.getProjectSourceFiles(USER_ID, projectId).contains(FILE_NAME1));
+    }
+
+    storage.uploadFile(projectId, FILE_NAME1, USER_ID, FILE_CONTENT2, StorageUtil.DEFAULT_CHARSET);
+    assertEquals(FILE_CONTENT2, storage.downloadFile(USER_ID, projectId, FILE_NAME1,
+        StorageUtil.DEFAULT_CHARSET));
+
+    // Another instance shares memcache, but not the local tier
+    ObjectifyStorageIo storage2 = new ObjectifyStorageIo();
+    assertEquals(FILE_CONTENT2, storage2.downloadFile(USER_ID, projectId, FILE_NAME1,
+        StorageUtil.DEFAULT_CHARSET));
+    storage2.uploadFile(projectId, FILE_NAME1, USER_ID, FILE_CONTENT1, StorageUtil.DEFAULT_CHARSET);
+    assertEquals(FILE_CONTENT1, storage.downloadFile(USER_ID, projectId, FILE_NAME1,
+        StorageUtil.DEFAULT_CHARSET));
+
+    storage.removeSourceFilesFromProject(USER_ID, projectId, false, FILE_NAME1);
+    assertFalse(storage.getProjectSourceFiles(USER_ID, projectId).contains(FILE_NAME1));
+  }
+
+  public void testCachedProjectListSeesWrites() {
+    final String USER_ID = "1260";
+    final String USER_EMAIL = "newuser1260@test.com";
+    storage.getUser(USER_ID, USER_EMAIL);
+    long projectId1 = createProject(USER_ID, PROJECT_NAME, FAKE_PROJECT_TYPE, FORM_QUALIFIED_NAME);
+    assertEquals(Arrays.asList(projectId1), storage.getProjects(USER_ID));
+    // Served from memcache
+    assertEquals(Arrays.asList(projectId1), storage.getProjects(USER_ID));
+
+    long projectId2 = createProject(USER_ID, PROJECT_NAME, FAKE_PROJECT_TYPE, FORM_QUALIFIED_NAME);
+    List<Long> projects = storage.getProjects(USER_ID);
+    assertEquals(2, projects.size());
+    assertTrue(projects.contains(projectId2));
+
+    storage.deleteProject(USER_ID, projectId1);
+    assertEquals(Arrays.asList(projectId2), storage.getProjects(USER_ID));
+    assertEquals(Arrays.asList(projectId2), new ObjectifyStorageIo().getProjects(USER_ID));
+  }
+
   public void testAddRemoveUserFile() {
     // Note that neither FILE_NAME1 nor FILE_NAME_OUTPUT should exist
     // at the start of this test
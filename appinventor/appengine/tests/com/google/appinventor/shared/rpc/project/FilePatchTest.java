@@ -0,0 +1,57 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.shared.rpc.project;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link FilePatch}.
+ */
+public class FilePatchTest extends TestCase {
+  private static final String BASE = "<xml><block type=\"text\" x=\"10\" y=\"20\"></block></xml>";
+
+  public void testRoundTrip() {
+    String[] results = {
+        BASE,
+        "",
+        "<xml><block type=\"text\" x=\"15\" y=\"20\"></block></xml>",
+        "<xml></xml>",
+        "prefix " + BASE,
+        BASE + " suffix",
+        "<xml><block type=\"text\" x=\"10\" y=\"20\"></block><block/></xml>",
+    };
+    for (String result : results) {
+      FilePatch patch = FilePatch.create(BASE, result);
+      assertEquals(result, patch.apply(BASE));
+    }
+  }
+
+  public void testPatchIsSmall() {
+    FilePatch patch = FilePatch.create(BASE,
+        "<xml><block type=\"text\" x=\"15\" y=\"20\"></block></xml>");
+    assertEquals(1, patch.getInsertLength());
+  }
+
+  public void testRepeatedCharacters() {
+    // The common prefix and suffix must not overlap
+    FilePatch patch = FilePatch.create("aaaa", "aaaaaa");
+    assertEquals("aaaaaa", patch.apply("aaaa"));
+    patch = FilePatch.create("aaaaaa", "aaaa");
+    assertEquals("aaaa", patch.apply("aaaaaa"));
+  }
+
+  public void testWrongBaseIsRejected() {
+    FilePatch patch = FilePatch.create(BASE, BASE + "more");
+    assertNull(patch.apply(BASE + "other"));
+    assertNull(patch.apply(""));
+  }
+
+  public void testHash() {
+    assertEquals(FilePatch.hash(BASE), FilePatch.hash(new String(BASE)));
+    assertFalse(FilePatch.hash(BASE).equals(FilePatch.hash(BASE + " ")));
+    assertFalse(FilePatch.hash("ab").equals(FilePatch.hash("ba")));
+  }
+}
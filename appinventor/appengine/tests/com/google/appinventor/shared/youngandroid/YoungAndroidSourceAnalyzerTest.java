@@ -213,6 +213,15 @@ public class YoungAndroidSourceAnalyzerTest extends TestCase {
         COMPLETE_FILE_FORM_WITH_CONTAINER, COMPLETE_FILE_FORM_WITH_NEWLINE_IN_PROPERTY);
   }
 
+  public void testGetJsonSection() {
+    assertEquals("{\"Source\":\"Form\",\"YaVersion\":\"1\",\"Properties\":{\"$Version\":\"1\"," +
+        "\"$Type\":\"Form\",\"$Name\":\"Screen1\",\"Title\":\"Screen1\"}}",
+        YoungAndroidSourceAnalyzer.getJsonSection(OLD_COMPLETE_FILE_FORM));
+    assertEquals(YoungAndroidSourceAnalyzer.getJsonSection(COMPLETE_FILE_FORM_WITH_CONTAINER),
+        YoungAndroidSourceAnalyzer.getJsonSection(
+            COMPLETE_FILE_FORM_WITH_CONTAINER.replace("\n", "\r\n")));
+  }
+
   public void doTestParseSourceFile(String completeFileForm, String completeFileFormWithComponents,
       String completeFileFormWithContainer, String completeFileFormWithNewlineInProperty) {
     // Check empty form
@@ -636,6 +636,10 @@ Blockly.ReplMgr.putYail = (function() {
                 return;
             }
             // We only get here if we are not using webrtc
+            if (top.loadAll && rs.phoneState.bulk && rs.phoneState.phoneQueue.length > 1) {
+                engine.sendbulk();
+                return;
+            }
             if (top.loadAll) {
                 var chunk;
                 var allcode = "";
@@ -727,6 +731,83 @@ Blockly.ReplMgr.putYail = (function() {
             var stuff = encoder.toString();
             conn.send(stuff);
         },
+        // Send everything in the queue in one /_bulkblocks request. Each
+        // block is a separate frame, a 4 byte length followed by the
+        // block id and then by its code, and the Companion evaluates each
+        // one on its own, so an error is reported against the block that
+        // caused it rather than failing the whole chunk. The code is
+        // plain ASCII because putYail quotes everything else. Event
+        // handlers and procedures are sent as strings, which the Companion
+        // evaluates the first time they are called, so loading a project
+        // does not expand code that never runs.
+        'sendbulk' : function() {
+            var queue = rs.phoneState.phoneQueue;
+            rs.phoneState.phoneQueue = [];
+            var frame = function(s) {
+                var n = s.length;
+                return String.fromCharCode((n >>> 24) & 255, (n >>> 16) & 255, (n >>> 8) & 255, n & 255) + s;
+            };
+            var lazy = function(block, code) {
+                if (!block || !code) {
+                    return code;
+                }
+                var definition = ' "' + code.replace(/\\/g, '\\\\').replace(/"/g, '\\"') + '")';
+                if (block.type == 'component_event' && code.indexOf(Blockly.Yail.YAIL_DEFINE_GENERIC_EVENT) == 0) {
+                    return "(define-generic-event-lazily '" + block.typeName + " '" + block.eventName +
+                        " 'any$" + block.typeName + "$" + block.eventName + definition;
+                } else if (block.type == 'component_event' && code.indexOf(Blockly.Yail.YAIL_DEFINE_EVENT) == 0) {
+                    var component = block.getFieldValue("COMPONENT_SELECTOR");
+                    return "(define-event-lazily '" + component + " '" + block.eventName +
+                        " '" + component + "$" + block.eventName + definition;
+                } else if (block.type == 'procedures_defnoreturn' || block.type == 'procedures_defreturn') {
+                    var name = Blockly.ReplMgr.quoteUnicode(Blockly.Yail.YAIL_PROC_TAG + block.getFieldValue('NAME'));
+                    return "(define-procedure-lazily '" + name + definition;
+                }
+                return code;
+            };
+            var body = [];
+            queue.forEach(function(work) {
+                // Quote blockId as a string, as pollphone does
+                body.push(frame(work.block ? '"' + work.block.id + '"' : "-1"));
+                body.push(frame(lazy(work.block, work.code) || ""));
+            });
+            body = body.join('');
+            conn = goog.net.XmlHttp();
+            conn.open('POST', rs.baseurl + '_bulkblocks?seq=' + rs.seq_count + '&mac=' +
+                      Blockly.ReplMgr.hmac(body + rs.seq_count), true);
+            conn.setRequestHeader('Content-Type', 'application/octet-stream');
+            conn.onreadystatechange = function() {
+                if (this.readyState == 4 && this.status == 200) {
+                    var json = goog.json.parse(this.response);
+                    queue.forEach(function(work) {
+                        if (json.status != 'OK') {
+                            if (work.failure)
+                                work.failure(Blockly.Msg.REPL_ERROR_FROM_COMPANION);
+                        } else {
+                            if (work.success)
+                                work.success();
+                        }
+                    });
+                    context.processRetvals(json.values);
+                    rs.seq_count += 1;
+                    if (rs.phoneState.initialized) // Only continue if we are still initialized
+                        engine.pollphone(); // And on to the next!
+                } else if (this.readyState == 4) {
+                    console.log("sendbulk: status = " + this.status);
+                    queue.forEach(function(work) {
+                        if (work.failure)
+                            work.failure(Blockly.Msg.REPL_NETWORK_CONNECTION_ERROR);
+                    });
+                    var dialog = new Blockly.Util.Dialog(Blockly.Msg.REPL_NETWORK_ERROR, Blockly.Msg.REPL_NETWORK_ERROR_RESTART, Blockly.Msg.REPL_OK, false, null, 0,
+                        function() {
+                            dialog.hide();
+                            context.hardreset(context.formName);
+                        });
+                    engine.resetcompanion();
+                }
+            };
+            conn.send(new Uint8Array(Blockly.ReplMgr.string_to_bytes(body)));
+        },
         'doversioncheck' : function() {
             var conn = goog.net.XmlHttp();
             conn.open('GET', rs.versionurl, true);
@@ -763,6 +844,8 @@ Blockly.ReplMgr.putYail = (function() {
                         } else {
                             rs.phoneState.nofqcn = false;
                         }
+                        // Companions that accept blocks in bulk say so
+                        rs.phoneState.bulk = !!json.bulk;
                     }
                     // We have to reset the yail state because
                     // we may have a queue of pending yail, yet we may
@@ -1110,6 +1193,9 @@ Blockly.ReplMgr.processRetvals = function(responses) {
         case "assetTransferred":
             top.AssetManager_markAssetTransferred(r.value);
             break;
+        case "bulkLoaded":
+            console.log("processRetVals: Companion loaded " + r.blocks + " blocks in " + r.value + " ms");
+            break;
         case "extensionsLoaded":
             rs.state = Blockly.ReplMgr.rsState.CONNECTED;
             Blockly.mainWorkspace.fireChangeListener(new AI.Events.CompanionConnect());
@@ -1398,7 +1398,15 @@ Blockly.Versioning.AllUpgradeMaps =
 
     //  BackgroundImageinBase64 was added
     // No blocks need to be modified to upgrade to version 13.
-    13: "noUpgrade"
+    13: "noUpgrade",
+
+    // BatchCollisionDetection was added
+    // No blocks need to be modified to upgrade to version 14.
+    14: "noUpgrade",
+
+    // FrameStatistics was added
+    // No blocks need to be modified to upgrade to version 15.
+    15: "noUpgrade"
 
   }, // End Canvas upgraders
 
@@ -1448,7 +1456,10 @@ Blockly.Versioning.AllUpgradeMaps =
   "CloudDB": {
 
     //This is initial version. Placeholder for future upgrades
-    1: "noUpgrade"
+    1: "noUpgrade",
+
+    // AI2: The BatchWindow property and the BatchFailed and BatchStored events were added.
+    2: "noUpgrade"
 
   },
 
@@ -1479,6 +1490,9 @@ Blockly.Versioning.AllUpgradeMaps =
 
   "DataFile": {
 
+    // AI2: The ReadProgress event was added.
+    2: "noUpgrade"
+
   }, // End DataFile upgraders
 
 
@@ -1522,7 +1536,11 @@ Blockly.Versioning.AllUpgradeMaps =
       Blockly.Versioning.changeEventName('FeatureCollection', 'GeoGeoJSON', 'GotFeatures'),
       Blockly.Versioning.changeEventName('FeatureCollection', 'ErrorLoadingFeatureCollection', 'LoadError'),
       Blockly.Versioning.changeEventName('FeatureCollection', 'LoadedFeatureCollection', 'GotFeatures')
-    ]
+    ],
+
+    // AI2: The FeaturesContainingPoint, FeaturesInBoundingBox, FeaturesWithinDistance and
+    // NearestFeatures methods were added.
+    3: "noUpgrade"
   },
 
   "File": {
@@ -1573,6 +1591,13 @@ Blockly.Versioning.AllUpgradeMaps =
 
   }, // End GameClient upgraders
 
+  "GraphQL": {
+
+    // AI2: The GqlBatchWindow, GqlCacheTimeToLive and GqlPersistedQueries properties were added.
+    2: "noUpgrade"
+
+  }, // End GraphQL upgraders
+
   "GyroscopeSensor": {
 
     // This is initial version. Placeholder for future upgrades
@@ -1943,7 +1968,12 @@ Blockly.Versioning.AllUpgradeMaps =
 
     // AI2:
     // - The ScaleUnits and ShowScale properties were added to Map
-    5: "noUpgrade"
+    5: "noUpgrade",
+
+    // AI2:
+    // - The FeaturesContainingPoint, FeaturesInBoundingBox, FeaturesWithinDistance and
+    //   NearestFeatures methods were added to Map
+    6: "noUpgrade"
 
   }, // End Map upgraders
 
@@ -2736,10 +2766,27 @@ Blockly.Versioning.AllUpgradeMaps =
 
   }, // End YandexTranslate upgraders
 
+  "LdpCoapClient": {
+
+    // AI2: The BlockSize property, the GetAsync, PostAsync, PutAsync, PatchAsync, DeleteAsync,
+    // Observe and StopObserving methods and the GotResponse, ResourceChanged and RequestFailed
+    // events were added.
+    2: "noUpgrade"
+
+  }, // End LdpCoapClient upgraders
+
   "LinkedDataListPicker" : {
     1: "noUpgrade",
     2: "noUpgrade",
     3: "noUpgrade"
-  }
+  },
+
+  "LinkedDataStreamingClient": {
+
+    // AI2: The RegisterLocalQuery, UnregisterLocalQuery and AddTriple methods and the
+    // LocalStreamingResultReceived event were added.
+    2: "noUpgrade"
+
+  } // End LinkedDataStreamingClient upgraders
 
 };
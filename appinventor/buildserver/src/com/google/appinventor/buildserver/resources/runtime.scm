@@ -28,8 +28,13 @@
 ;;; inside a phone, so components are not defined
 (define *testing* #f)
 
-(define (android-log message)
-  (when *debug* (android.util.Log:i "YAIL" message)))
+;;; android-log is a macro so that the message, which is usually built
+;;; with format, is only computed when *debug* is set. A procedure would
+;;; format its argument on every call and then throw the string away.
+(define-syntax android-log
+  (syntax-rules ()
+    ((_ message)
+     (when *debug* (android.util.Log:i "YAIL" message)))))
 
 ;;;; add-component
 (define-constant simple-component-package-name "com.google.appinventor.components.runtime")
@@ -199,7 +204,7 @@
 ;;; (get-property 'Label1 'Text)
 (define (get-property component prop-name)
   (let ((component (coerce-to-component-and-verify component)))
-    (sanitize-component-data (invoke component prop-name))))
+    (sanitize-component-data (invoke-component-method component prop-name '()))))
 
 (define (coerce-to-component-and-verify possible-component)
   (let ((component (coerce-to-component possible-component)))
@@ -218,7 +223,7 @@
                  component-type
                  (*:getSimpleName (*:getClass possible-component)))
          "Problem with application")
-        (sanitize-component-data (invoke component prop-name)))))
+        (sanitize-component-data (invoke-component-method component prop-name '())))))
 
 (define (set-and-coerce-property-and-check! possible-component comp-type prop-sym property-value property-type)
   (let ((component (coerce-to-component-of-type possible-component comp-type)))
@@ -328,7 +333,8 @@
          (gnu.mapping.Environment:make (symbol->string 'form-name)))
 
        (define (add-to-form-environment name :: gnu.mapping.Symbol object)
-         (android-log-form (format #f "Adding ~A to env ~A with value ~A" name form-environment object))
+         (when *debug-form*
+           (android-log-form (format #f "Adding ~A to env ~A with value ~A" name form-environment object)))
          (gnu.mapping.Environment:put form-environment name object))
 
        (define (lookup-in-form-environment name :: gnu.mapping.Symbol #!optional (default-value #f))
@@ -346,7 +352,8 @@
                                         "-global-vars")))
 
        (define (add-to-global-var-environment name :: gnu.mapping.Symbol object)
-         (android-log-form (format #f "Adding ~A to env ~A with value ~A" name global-var-environment object))
+         (when *debug-form*
+           (android-log-form (format #f "Adding ~A to env ~A with value ~A" name global-var-environment object)))
          (gnu.mapping.Environment:put global-var-environment name object))
 
        ;; Simple wants there to be a variable named the same as the class.  It will
@@ -359,6 +366,9 @@
        ;; List of events to get registered in the $define method.
        (define events-to-register  :: gnu.lists.LList '())
 
+       ;; List of generic events to get registered in the $define method.
+       (define generic-events-to-register  :: gnu.lists.LList '())
+
        ;; List of components to get created in the $define method.
        ;; Each component item is the component is represented as a list
        ;; (container-name component-type component-name init-thunk)
@@ -371,6 +381,13 @@
                (cons (cons component-name event-name)
                      events-to-register)))
 
+       ;; A call to add-to-generic-events is generated by define-generic-event to add the
+       ;; event to generic-events-to-register
+       (define (add-to-generic-events component-type event-name)
+         (set! generic-events-to-register
+               (cons (cons component-type event-name)
+                     generic-events-to-register)))
+
        ;; A call to add-to-components is generated by add-component to add the component to
        ;; components-to-create
        (define (add-to-components container-name component-type component-name init-thunk)
@@ -542,6 +559,17 @@
                         (cdr event-info)))
                      events))
 
+         ;; Register the generic events with the Simple event dispatcher
+         (define (register-generic-events events)
+           (define-alias SimpleEventDispatcher
+             <com.google.appinventor.components.runtime.EventDispatcher>)
+           (for-each (lambda (event-info)
+                       (SimpleEventDispatcher:registerGenericEventForDelegation
+                        (as com.google.appinventor.components.runtime.HandlesEventDispatching (this))
+                        (car event-info)
+                        (cdr event-info)))
+                     events))
+
          ;; Add the initial global variable bindings to the global variable environment
          (define (init-global-variables var-val-pairs)
            ;; (android-log-form (format #f "initializing global vars: ~A" var-val-pairs))
@@ -613,6 +641,7 @@
          (add-to-form-environment 'form-name (this))
 
          (register-events events-to-register)
+         (register-generic-events generic-events-to-register)
 
          (try-catch
           (let ((components (reverse components-to-create)))
@@ -692,7 +721,13 @@
          ;; need to be sanitized before we can operate on them in Yail.  See
          ;; the comments on sanitize below
          (let ((arg (sanitize-component-data arg)) ...)
-           expr ...))
+           ;; YailTrace:start returns 0 unless tracing was turned on with
+           ;; yail-trace-enable!, and YailTrace:end ignores that.
+           (let ((trace-start (com.google.appinventor.components.runtime.util.YailTrace:start)))
+             (try-finally
+              (begin expr ...)
+              (com.google.appinventor.components.runtime.util.YailTrace:end
+               'event-func-name trace-start)))))
        (if *this-is-the-repl*
            (add-to-current-form-environment 'event-func-name event-func-name)
            (add-to-form-environment 'event-func-name event-func-name))))))
@@ -741,7 +776,15 @@
     (syntax-case stx ()
       ((_ component-type event-name args . body)
        #`(begin
-           (define-event-helper ,(gen-generic-event-name #`component-type #`event-name) args body))))))
+           (define-event-helper ,(gen-generic-event-name #`component-type #`event-name) args body)
+           ;; The event dispatcher only dispatches generic events that are registered
+           (if *this-is-the-repl*
+               (com.google.appinventor.components.runtime.EventDispatcher:registerGenericEventForDelegation
+                (as com.google.appinventor.components.runtime.HandlesEventDispatching *this-form*)
+                'component-type
+                'event-name)
+               ;; If it's not the REPL the form's $define() method will do the registration
+               (add-to-generic-events 'component-type 'event-name)))))))
 
 ;;;; def
 
@@ -980,7 +1023,9 @@
 (define-alias YailNumberToString <com.google.appinventor.components.runtime.util.YailNumberToString>)
 (define-alias YailRuntimeError <com.google.appinventor.components.runtime.errors.YailRuntimeError>)
 (define-alias PermissionException <com.google.appinventor.components.runtime.errors.PermissionException>)
+(define-alias ComponentMethodInvoker <com.google.appinventor.components.runtime.util.ComponentMethodInvoker>)
 (define-alias JavaStringUtils <com.google.appinventor.components.runtime.util.JavaStringUtils>)
+(define-alias YailTrace <com.google.appinventor.components.runtime.util.YailTrace>)
 
 (define-alias JavaCollection <java.util.Collection>)
 (define-alias JavaIterator <java.util.Iterator>)
@@ -1048,15 +1093,25 @@
 ;;; values they will receive.
 
 
+;;; Call a method of a component object with already coerced args.
+;;; ComponentMethodInvoker remembers the Java method for each component class,
+;;; method name and number of args, so that we do not pay for Kawa's reflective
+;;; method lookup on every call. Calls it cannot handle (overloaded methods,
+;;; arguments that need Kawa's conversions) go through invoke as before.
+(define (invoke-component-method component method-name args)
+  (let ((result (ComponentMethodInvoker:invoke component method-name args)))
+    (if (eq? result ComponentMethodInvoker:NOT_HANDLED)
+        (apply invoke `(,component ,method-name ,@args))
+        result)))
+
 (define (call-component-method component-name method-name arglist typelist)
   (let ((coerced-args (coerce-args method-name arglist typelist)))
     (let ((result
            (if (all-coercible? coerced-args)
                (try-catch
-                (apply invoke
-                       `(,(lookup-in-current-form-environment component-name)
-                         ,method-name
-                         ,@coerced-args))
+                (invoke-component-method (lookup-in-current-form-environment component-name)
+                                         method-name
+                                         coerced-args)
                 (exception PermissionException
                            (*:dispatchPermissionDeniedEvent (SimpleForm:getActiveForm) (lookup-in-current-form-environment component-name) method-name exception)))
                (generate-runtime-type-error method-name arglist))))
@@ -1083,10 +1138,7 @@
                                      (list (get-display-representation possible-component)))
         (let ((result
                (if (all-coercible? coerced-args)
-                   (apply invoke
-                          `(,component-value
-                            ,method-name
-                            ,@coerced-args))
+                   (invoke-component-method component-value method-name coerced-args)
                    (generate-runtime-type-error method-name arglist))))
           ;; TODO(markf): this should probably be generalized but for now this is OK, I think
           (sanitize-component-data result)))))
@@ -1284,7 +1336,9 @@
     (android-log (format #f "coerced property value was: ~A " coerced-arg))
     (if (all-coercible? (list coerced-arg))
         (try-catch
-         (invoke comp prop-name coerced-arg)
+         (begin
+           (invoke-component-method comp prop-name (list coerced-arg))
+           #!void)
          (exception PermissionException
                     (*:dispatchPermissionDeniedEvent (SimpleForm:getActiveForm) comp prop-name exception)))
         (generate-runtime-type-error prop-name (list property-value)))))
@@ -1347,17 +1401,20 @@
 
 (define (coerce-arg arg type)
   (let ((arg (sanitize-atomic arg)))
+    ;; Types are always symbols, so eq? is enough and much cheaper than
+    ;; equal?. The common types come first, and values that already have
+    ;; the right type are passed through without calling a coercer.
     (cond
-     ((equal? type 'number) (coerce-to-number arg))
-     ((equal? type 'text) (coerce-to-text arg))
-     ((equal? type 'boolean) (coerce-to-boolean arg))
-     ((equal? type 'list) (coerce-to-yail-list arg))
-     ((equal? type 'InstantInTime) (coerce-to-instant arg))
-     ((equal? type 'component) (coerce-to-component arg))
-     ((equal? type 'pair) (coerce-to-pair arg))
-     ((equal? type 'key) (coerce-to-key arg))
-     ((equal? type 'dictionary) (coerce-to-dictionary arg))
-     ((equal? type 'any) arg)
+     ((eq? type 'number) (if (number? arg) arg (coerce-to-number arg)))
+     ((eq? type 'text) (if (string? arg) arg (coerce-to-text arg)))
+     ((eq? type 'boolean) (coerce-to-boolean arg))
+     ((eq? type 'any) arg)
+     ((eq? type 'list) (coerce-to-yail-list arg))
+     ((eq? type 'InstantInTime) (coerce-to-instant arg))
+     ((eq? type 'component) (coerce-to-component arg))
+     ((eq? type 'pair) (coerce-to-pair arg))
+     ((eq? type 'key) (coerce-to-key arg))
+     ((eq? type 'dictionary) (coerce-to-dictionary arg))
      (else (coerce-to-component-of-type arg type)))))
 
 ;;; We can coerce *the-null-value* to a string for printing in error messages
@@ -2091,7 +2148,22 @@ list, use the make-yail-list constructor with no arguments.
   (cdr yail-list))
 
 (define (set-yail-list-contents! yail-list contents)
-  (set-cdr! yail-list contents))
+  (set-cdr! yail-list contents)
+  (yail-list-structure-changed! yail-list))
+
+;; YailList caches its length, its last pair and the position of the last
+;; item accessed by index. Anything that changes the pairs of a yail list
+;; with set-cdr! must tell it with this procedure.
+(define (yail-list-structure-changed! yail-list)
+  (if (instance? yail-list YailList)
+      (*:structureChanged (as YailList yail-list))))
+
+;; True if the item at index can be accessed through the cached position
+;; of the YailList instead of walking the list from its start.
+(define (yail-list-random-access? yail-list index)
+  (and (instance? yail-list YailList)
+       (exact? index)
+       (integer? index)))
 
 
 (define (insert-yail-list-header x)
@@ -2200,7 +2272,9 @@ list, use the make-yail-list constructor with no arguments.
 
 ;; Implements the Blocks length operation
 (define (yail-list-length yail-list)
-  (length (yail-list-contents yail-list)))
+  (if (instance? yail-list YailList)
+      (*:size (as YailList yail-list))
+      (length (yail-list-contents yail-list))))
 
 ;; These are removed, to simplify the API to lists
 ;; ;; Implements the Blocks first operation
@@ -2245,7 +2319,9 @@ list, use the make-yail-list constructor with no arguments.
                  len
                  (get-display-representation yail-list))
          "Select list item: List index too large")
-    (list-ref (yail-list-contents yail-list) (- index 1)))))
+    (if (yail-list-random-access? yail-list index)
+        (*:getObject (as YailList yail-list) (- index 1))
+        (list-ref (yail-list-contents yail-list) (- index 1))))))
 
 
 ;; Implements the Blocks set list item operation
@@ -2264,7 +2340,9 @@ list, use the make-yail-list constructor with no arguments.
                  len
                  (get-display-representation yail-list))
          "List index too large")))
-  (set-car! (list-tail (yail-list-contents yail-list) (- index 1)) value))
+  (if (yail-list-random-access? yail-list index)
+      (*:setObject (as YailList yail-list) (- index 1) value)
+      (set-car! (list-tail (yail-list-contents yail-list) (- index 1)) value)))
 
 
 
@@ -2296,7 +2374,8 @@ list, use the make-yail-list constructor with no arguments.
                    (get-display-representation yail-list))
            "List index too large"))
       (let ((pair-pointing-to-deletion (list-tail yail-list (- index2 1))))
-        (set-cdr! pair-pointing-to-deletion (cddr pair-pointing-to-deletion))))))
+        (set-cdr! pair-pointing-to-deletion (cddr pair-pointing-to-deletion))
+        (yail-list-structure-changed! yail-list)))))
 
 
 ;; Implements the Blocks insert list item operation
@@ -2329,7 +2408,8 @@ list, use the make-yail-list constructor with no arguments.
         (if (= index2 1)
             (set-yail-list-contents! yail-list (cons item contents))
             (let ((at-item (list-tail contents (- index2 2))))
-              (set-cdr! at-item (cons item (cdr at-item)))))))))
+              (set-cdr! at-item (cons item (cdr at-item)))
+              (yail-list-structure-changed! yail-list)))))))
 
 ;; Extends list A by appending the elements of list B to it
 ;; Modifies list A
@@ -2343,10 +2423,15 @@ list, use the make-yail-list constructor with no arguments.
     (if (null? l)
     '()
     (cons (car l) (list-copy (cdr l)))))
-  ;; We have to operate on the yail-list itself, not the contents, because
-  ;; the contents might be empty
-  (set-cdr! (list-tail yail-list-A (length (yail-list-contents yail-list-A)))
-        (list-copy (yail-list-contents yail-list-B))))
+  ;; A YailList knows its last pair, so appending to it does not walk the
+  ;; list. This keeps building a list with add items to list linear.
+  (if (instance? yail-list-A YailList)
+      (*:appendContents (as YailList yail-list-A)
+                        (list-copy (yail-list-contents yail-list-B)))
+      ;; We have to operate on the yail-list itself, not the contents, because
+      ;; the contents might be empty
+      (set-cdr! (list-tail yail-list-A (length (yail-list-contents yail-list-A)))
+                (list-copy (yail-list-contents yail-list-B)))))
 
 
 ;; Extend list A by appending the items to it
@@ -2984,6 +3069,39 @@ Dictionary implementation.
     (com.google.appinventor.components.runtime.util.RetValManager:appendReturnValue blockid good value)
     ))
 
+;;; When the blocks editor loads a whole project into the repl, it sends
+;;; event handlers and procedures as strings holding their definitions.
+;;; These bind the name to a LazyReplDefinition, which evaluates the
+;;; definition the first time it is called, so that handlers and procedures
+;;; that are never called are never expanded.
+;;; (define-event-lazily 'Button1 'Click 'Button1$Click "(define-event Button1 Click () ...)")
+
+(define (define-event-lazily component-name event-name handler-name definition)
+  (add-to-current-form-environment
+   handler-name
+   (make com.google.appinventor.components.runtime.util.LazyReplDefinition
+    handler-name definition lookup-in-current-form-environment))
+  (com.google.appinventor.components.runtime.EventDispatcher:registerEventForDelegation
+   (as com.google.appinventor.components.runtime.HandlesEventDispatching *this-form*)
+   component-name
+   event-name))
+
+(define (define-generic-event-lazily component-type event-name handler-name definition)
+  (add-to-current-form-environment
+   handler-name
+   (make com.google.appinventor.components.runtime.util.LazyReplDefinition
+    handler-name definition lookup-in-current-form-environment))
+  (com.google.appinventor.components.runtime.EventDispatcher:registerGenericEventForDelegation
+   (as com.google.appinventor.components.runtime.HandlesEventDispatching *this-form*)
+   component-type
+   event-name))
+
+(define (define-procedure-lazily procedure-name definition)
+  (add-global-var-to-current-form-environment
+   procedure-name
+   (make com.google.appinventor.components.runtime.util.LazyReplDefinition
+    procedure-name definition lookup-global-var-in-current-form-environment)))
+
 (define (clear-current-form)
   (when (not (eq? *this-form* #!null))
     (clear-init-thunks)
@@ -3006,7 +3124,8 @@ Dictionary implementation.
 (define (rename-component old-component-name new-component-name)
   (rename-in-current-form-environment
    (string->symbol old-component-name)
-   (string->symbol new-component-name)))
+   (string->symbol new-component-name))
+  (com.google.appinventor.components.runtime.EventDispatcher:componentIdsChanged))
 
 ;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;;
 ;;;; End Support for REPL
@@ -3051,6 +3170,19 @@ Dictionary implementation.
                  (#t (car sl)))))
         (cons sp (clarify1 (cdr sl))))))
 
+;; Tracing of event handlers. When enabled, every event handler records
+;; how long it ran into YailTrace, which keeps the last records in a ring
+;; buffer along with a count and total time per handler.
+
+(define (yail-trace-enable! enable)
+  (YailTrace:setEnabled enable))
+
+(define (yail-trace-clear!)
+  (YailTrace:clear))
+
+(define (yail-trace-summary)
+  (YailTrace:getSummary))
+
 ;; Support for WebRTC communication between browser and Companion
 ;; as well as learning which assets we need to load
 
@@ -591,7 +591,24 @@ public class YaVersion {
   // - BLUETOOTH_CLIENT_COMPONENT_VERSION was incremented to 7
   // For YOUNG_ANDROID_VERSION 238
   // - GRAPHQL_COMPONENT_VERSION was added.
-  public static final int YOUNG_ANDROID_VERSION = 238;
+  // For YOUNG_ANDROID_VERSION 239
+  // - CANVAS_COMPONENT_VERSION was incremented to 14
+  // For YOUNG_ANDROID_VERSION 240
+  // - CANVAS_COMPONENT_VERSION was incremented to 15
+  // For YOUNG_ANDROID_VERSION 241
+  // - DATA_FILE_COMPONENT_VERSION was incremented to 2
+  // For YOUNG_ANDROID_VERSION 242
+  // - GRAPHQL_COMPONENT_VERSION was incremented to 2
+  // For YOUNG_ANDROID_VERSION 243
+  // - LDPCOAP_CLIENT_COMPONENT_VERSION was incremented to 2
+  // For YOUNG_ANDROID_VERSION 244
+  // - LINKEDDATASTREAMING_COMPONENT_VERSION was incremented to 2
+  // For YOUNG_ANDROID_VERSION 245
+  // - CLOUDDB_COMPONENT_VERSION was incremented to 2
+  // For YOUNG_ANDROID_VERSION 246
+  // - FEATURE_COLLECTION_COMPONENT_VERSION was incremented to 3
+  // - MAP_COMPONENT_VERSION was incremented to 6
+  public static final int YOUNG_ANDROID_VERSION = 246;
 
   // ............................... Blocks Language Version Number ...............................
 
@@ -837,7 +854,11 @@ public class YaVersion {
   // - ExtendMovesOutsideCanvas was added
   // For CANVAS_COMPONENT_VERSION 13
   // - BackgroundImageinBase64 was added
-  public static final int CANVAS_COMPONENT_VERSION = 13;
+  // For CANVAS_COMPONENT_VERSION 14
+  // - BatchCollisionDetection was added
+  // For CANVAS_COMPONENT_VERSION 15
+  // - FrameStatistics was added
+  public static final int CANVAS_COMPONENT_VERSION = 15;
 
   public static final int CHART_COMPONENT_VERSION = 1;
 
@@ -879,7 +900,9 @@ public class YaVersion {
 
   public static final int DATA_VIS_COMPONENT_VERSION = 2;
   
-  public static final int DATA_FILE_COMPONENT_VERSION = 1;
+  // For DATA_FILE_COMPONENT_VERSION 2:
+  // - The ReadProgress event was added.
+  public static final int DATA_FILE_COMPONENT_VERSION = 2;
 
   // For DATEPICKER_COMPONENT_VERSION 2:
   // The datepicker dialog was updated to show the current date
@@ -906,7 +929,10 @@ public class YaVersion {
   // - GotGeoJSON event was renamed to GotFeatures
   // - ErrorLoadingFeatureCollection event was removed
   // - LoadedFeatureCollection event was removed
-  public static final int FEATURE_COLLECTION_COMPONENT_VERSION = 2;
+  // For FEATURE_COLLECTION_COMPONENT_VERSION 3:
+  // - The FeaturesContainingPoint, FeaturesInBoundingBox, FeaturesWithinDistance and
+  //   NearestFeatures methods were added
+  public static final int FEATURE_COLLECTION_COMPONENT_VERSION = 3;
 
   // For FILE_COMPONENT_VERSION 2:
   // - The AfterFileSaved event was added.
@@ -1058,7 +1084,11 @@ public class YaVersion {
 
   public static final int LD_COMPONENT_VERSION = 1;
 
-  public static final int LDPCOAP_CLIENT_COMPONENT_VERSION = 1;
+  // For LDPCOAP_CLIENT_COMPONENT_VERSION 2:
+  // - The BlockSize property, the GetAsync, PostAsync, PutAsync, PatchAsync, DeleteAsync, Observe
+  //   and StopObserving methods and the GotResponse, ResourceChanged and RequestFailed events
+  //   were added.
+  public static final int LDPCOAP_CLIENT_COMPONENT_VERSION = 2;
 
   // For LINESTRING_COMPONENT_VERSION 1:
   // - Initial LineString implementation for Maps
@@ -1088,7 +1118,10 @@ public class YaVersion {
   public static final int LINKED_DATA_LISTPICKER_COMPONENT_VERSION = 3;
 
   // For LINKEDDATASTREAMING_COMPONENT_VERSION 1:
-  public static final int LINKEDDATASTREAMING_COMPONENT_VERSION = 1;
+  // For LINKEDDATASTREAMING_COMPONENT_VERSION 2:
+  // - The RegisterLocalQuery, UnregisterLocalQuery and AddTriple methods and the
+  //   LocalStreamingResultReceived event were added.
+  public static final int LINKEDDATASTREAMING_COMPONENT_VERSION = 2;
 
   // For LISTPICKER_COMPONENT_VERSION 2:
   // - The Alignment property was renamed to TextAlignment.
@@ -1142,7 +1175,10 @@ public class YaVersion {
   // For MAP_COMPONENT_VERSION 5:
   // - Added ShowScale property
   // - Added ScaleUnits property
-  public static final int MAP_COMPONENT_VERSION = 5;
+  // For MAP_COMPONENT_VERSION 6:
+  // - Added FeaturesContainingPoint, FeaturesInBoundingBox, FeaturesWithinDistance and
+  //   NearestFeatures methods
+  public static final int MAP_COMPONENT_VERSION = 6;
 
   // For MARKER_COMPONENT_VERSION 1:
   // - Initial Marker implementation using OpenStreetMap
@@ -1408,11 +1444,15 @@ public class YaVersion {
 
   // For CLOUDDB_COMPONENT_VERSION 1:
   // - CloudDB component introduced
-  public static final int CLOUDDB_COMPONENT_VERSION = 1;
+  // For CLOUDDB_COMPONENT_VERSION 2:
+  // - The BatchWindow property and the BatchFailed and BatchStored events were added.
+  public static final int CLOUDDB_COMPONENT_VERSION = 2;
 
   // For GRAPHQL_COMPONENT_VERSION 1:
   // - GraphQL component introduced.
-  public static final int GRAPHQL_COMPONENT_VERSION = 1;
+  // For GRAPHQL_COMPONENT_VERSION 2:
+  // - The GqlBatchWindow, GqlCacheTimeToLive and GqlPersistedQueries properties were added.
+  public static final int GRAPHQL_COMPONENT_VERSION = 2;
 
   // For TWITTER_COMPONENT_VERSION 2:
   // - The Authorize method and IsAuthorized event handler were added to support
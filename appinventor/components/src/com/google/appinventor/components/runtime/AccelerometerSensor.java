@@ -260,7 +260,9 @@ public class AccelerometerSensor extends AndroidNonvisibleComponent
       Shaking();
     }
 
-    EventDispatcher.dispatchEvent(this, "AccelerationChanged", xAccel, yAccel, zAccel);
+    if (EventDispatcher.hasEventHandler(this, "AccelerationChanged")) {
+      EventDispatcher.dispatchEvent(this, "AccelerationChanged", xAccel, yAccel, zAccel);
+    }
   }
 
 public int getDeviceDefaultOrientation() {
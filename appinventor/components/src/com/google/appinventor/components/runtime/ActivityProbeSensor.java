@@ -68,6 +68,8 @@ public class ActivityProbeSensor extends ProbeBase{
 			Log.i(TAG, "activity_level:" + data.get(ActivityKeys.ACTIVITY_LEVEL).getAsString());
 			Log.i(TAG, "timestamp:" + data.get(CellKeys.TIMESTAMP).getAsLong());
 			
+			publishToStreams(completeProbeUri, data);
+
 			//save data to DB is enabledSaveToDB is true
 			if(enabledSaveToDB){
 				
@@ -88,6 +88,8 @@ public class BatterySensor extends ProbeBase{
 			Log.i(TAG, "DATA: " + data.toString());
 			//debug
 			
+			publishToStreams(completeProbeUri, data);
+
 			//save data to DB is enabledSaveToDB is true
 			if(enabledSaveToDB){
 				
@@ -108,6 +108,8 @@ public class CallLogHistory extends ProbeBase{
 			
 			Log.i(TAG, "DATA: " + data.toString());
 			
+			publishToStreams(completeProbeUri, data);
+
 			//save data to DB is enabledSaveToDB is true
 			if(enabledSaveToDB){
 				
@@ -23,6 +23,8 @@ import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.ColorDrawable;
 import android.graphics.drawable.Drawable;
 
+import android.os.Handler;
+
 import android.text.TextUtils;
 
 import android.util.Base64;
@@ -60,6 +62,8 @@ import com.google.appinventor.components.runtime.util.FileUtil;
 import com.google.appinventor.components.runtime.util.MediaUtil;
 import com.google.appinventor.components.runtime.util.PaintUtil;
 import com.google.appinventor.components.runtime.util.SdkLevel;
+import com.google.appinventor.components.runtime.util.SpatialGrid;
+import com.google.appinventor.components.runtime.util.YailDictionary;
 import com.google.appinventor.components.runtime.util.YailList;
 
 import java.io.File;
@@ -68,9 +72,13 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -155,11 +163,42 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
   private static final int DEFAULT_BACKGROUND_COLOR = Component.COLOR_WHITE;
   private static final int DEFAULT_TEXTALIGNMENT = Component.ALIGNMENT_CENTER;
   private static final int FLING_INTERVAL = 1000;  // ms
+  private static final int COLLISION_CELL_SIZE = 64;  // pixels
+  // Number of frames a sprite must go unchanged before it can be drawn from
+  // the cached layer
+  private static final int STATIC_FRAMES = 30;
+  private static final long FRAME_NANOS = 16666667;  // one frame at 60 frames per second
 
   // Keep track of enclosed sprites.  This list should always be
   // sorted by increasing sprite.Z().
   private final List<Sprite> sprites;
 
+  // The same sprites, for constant time membership checks.
+  private final Set<Sprite> spriteSet = new HashSet<Sprite>();
+
+  // How each sprite was last drawn
+  private final Map<Sprite, SpriteDrawState> spriteDrawStates =
+      new HashMap<Sprite, SpriteDrawState>();
+
+  // The enclosed sprites indexed by their bounding boxes, so that collision
+  // detection only has to look at the sprites near the one that moved.
+  // Sprites are added when they first report a change.
+  private final SpatialGrid<Sprite> spriteGrid =
+      new SpatialGrid<Sprite>(COLLISION_CELL_SIZE);
+
+  // If batchCollisionDetection is true, the sprites that changed since
+  // collisions were last detected.  Collisions are detected for all of them
+  // once the sprites that move at the same time have all moved.
+  private boolean batchCollisionDetection = false;
+  private final Set<Sprite> pendingCollisionChecks = new LinkedHashSet<Sprite>();
+  private final Handler androidUIHandler = new Handler();
+  private final Runnable pendingCollisionCheckRunner = new Runnable() {
+    @Override
+    public void run() {
+      runPendingCollisionChecks();
+    }
+  };
+
   // Handle touches and drags
   private final MotionEventParser motionEventParser;
 
@@ -390,9 +429,32 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
     }
   }
 
+  /**
+   * What the view knows about how a sprite was last drawn.
+   */
+  private static final class SpriteDrawState {
+    // The area the sprite was last drawn into, empty if it has not been drawn
+    final Rect drawnBounds = new Rect();
+    // The frame in which the sprite last changed
+    int changedFrame;
+    // Whether the sprite is drawn from the cached layer
+    boolean inLayer;
+
+    SpriteDrawState(int changedFrame) {
+      this.changedFrame = changedFrame;
+    }
+  }
+
   /**
    * Panel for drawing and manipulating sprites.
    *
+   * <p>To keep the cost of a frame down when only some sprites move, the view
+   * invalidates just the area a changed sprite was drawn into and now covers,
+   * and it caches the drawing layer together with the sprites at the bottom
+   * of the Z order that have not changed for {@link #STATIC_FRAMES} frames in
+   * a single bitmap.  Note that hardware accelerated views ignore the
+   * invalidated area and redraw everything; the cached layer still saves
+   * drawing the static sprites.
    */
   private final class CanvasView extends View {
     // Variables to implement View
@@ -414,6 +476,26 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
     // when the Canvas is saved to a file.
     private Bitmap completeCache;
 
+    // layerBitmap holds the drawing layer and the first layerSpriteCount
+    // sprites, if layerValid is true.  layerChangedFrame is the frame in
+    // which the drawing layer, the order of the sprites or one of the sprites
+    // in the layer last changed.
+    private Bitmap layerBitmap;
+    private boolean layerValid;
+    private int layerSpriteCount;
+    private int layerChangedFrame;
+
+    // Statistics reported by FrameStatistics.  invalidateRequestedNanos is
+    // when the view was first invalidated since it was last drawn, or 0.
+    private int frameCount;
+    private long totalDrawNanos;
+    private long lastDrawNanos;
+    private long droppedFrames;
+    private long invalidateRequestedNanos;
+
+    private final Rect dirtyRect = new Rect();
+    private final Rect clipRect = new Rect();
+
     public CanvasView(Context context) {
       super(context);
       bitmap = Bitmap.createBitmap(ComponentConstants.CANVAS_PREFERRED_WIDTH,
@@ -446,21 +528,158 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
 
     @Override
     public void onDraw(android.graphics.Canvas canvas0) {
+      long drawStart = System.nanoTime();
+      if (invalidateRequestedNanos != 0) {
+        // Each frame period that passed between the request and now is a frame we missed.
+        droppedFrames += (drawStart - invalidateRequestedNanos) / FRAME_NANOS;
+        invalidateRequestedNanos = 0;
+      }
+      frameCount++;
       completeCache = null;
 
       // This will draw the background image and color, if present.
       super.onDraw(canvas0);
 
       // Redraw anything that had been directly drawn on the old Canvas,
-      // such as lines and circles but not Sprites.
-      canvas0.drawBitmap(bitmap, 0, 0, null);
+      // such as lines and circles but not Sprites, along with any sprites
+      // in the cached layer.
+      int cachedSprites = drawLayer(canvas0);
 
       // sprites is sorted by Z level, so sprites with low Z values will be
       // drawn first, potentially being hidden by Sprites with higher Z values.
+      // Sprites outside the invalidated area do not need to be drawn.
+      canvas0.getClipBounds(clipRect);
+      int index = 0;
       for (Sprite sprite : sprites) {
-        sprite.onDraw(canvas0);
+        if (index++ < cachedSprites) {
+          continue;
+        }
+        SpriteDrawState state = spriteDrawStates.get(sprite);
+        sprite.getDrawingBounds(state.drawnBounds);
+        if (Rect.intersects(clipRect, state.drawnBounds)) {
+          sprite.onDraw(canvas0);
+        }
       }
       drawn = true;
+      lastDrawNanos = System.nanoTime() - drawStart;
+      totalDrawNanos += lastDrawNanos;
+    }
+
+    @Override
+    public void invalidate() {
+      noteInvalidate();
+      super.invalidate();
+    }
+
+    private void noteInvalidate() {
+      if (invalidateRequestedNanos == 0) {
+        invalidateRequestedNanos = System.nanoTime();
+      }
+    }
+
+    // Draws the cached layer if there is one, otherwise the drawing layer.
+    // Returns the number of sprites that were drawn with it.
+    private int drawLayer(android.graphics.Canvas canvas0) {
+      if (!layerValid && frameCount - layerChangedFrame >= STATIC_FRAMES) {
+        buildLayer();
+      }
+      if (layerValid) {
+        canvas0.drawBitmap(layerBitmap, 0, 0, null);
+        return layerSpriteCount;
+      }
+      canvas0.drawBitmap(bitmap, 0, 0, null);
+      return 0;
+    }
+
+    private void buildLayer() {
+      // Don't look again for another STATIC_FRAMES frames if this fails.
+      layerChangedFrame = frameCount;
+      int count = 0;
+      for (Sprite sprite : sprites) {
+        if (frameCount - spriteDrawStates.get(sprite).changedFrame < STATIC_FRAMES) {
+          break;
+        }
+        count++;
+      }
+      if (count == 0) {
+        // The layer would only hold the drawing layer, which we have anyway.
+        layerBitmap = null;
+        return;
+      }
+      int width = bitmap.getWidth();
+      int height = bitmap.getHeight();
+      if (layerBitmap == null || layerBitmap.getWidth() != width
+          || layerBitmap.getHeight() != height) {
+        try {
+          layerBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        } catch (OutOfMemoryError e) {
+          Log.w(LOG_TAG, "Not enough memory to cache static sprites");
+          layerBitmap = null;
+          return;
+        }
+      } else {
+        layerBitmap.eraseColor(Color.TRANSPARENT);
+      }
+      android.graphics.Canvas layerCanvas = new android.graphics.Canvas(layerBitmap);
+      layerCanvas.drawBitmap(bitmap, 0, 0, null);
+      int index = 0;
+      for (Sprite sprite : sprites) {
+        if (index++ == count) {
+          break;
+        }
+        SpriteDrawState state = spriteDrawStates.get(sprite);
+        sprite.getDrawingBounds(state.drawnBounds);
+        sprite.onDraw(layerCanvas);
+        state.inLayer = true;
+      }
+      layerSpriteCount = count;
+      layerValid = true;
+    }
+
+    // Called when the content of the cached layer is out of date.
+    void layerChanged() {
+      if (layerValid) {
+        layerValid = false;
+        for (SpriteDrawState state : spriteDrawStates.values()) {
+          state.inLayer = false;
+        }
+      }
+      layerChangedFrame = frameCount;
+    }
+
+    // Called after drawing on the drawing layer.
+    void invalidateDrawingLayer() {
+      layerChanged();
+      invalidate();
+    }
+
+    // Called when a sprite has moved or changed its appearance.
+    @SuppressWarnings("deprecation")  // invalidate(Rect) still helps without hardware acceleration
+    void spriteChanged(Sprite sprite) {
+      SpriteDrawState state = spriteDrawStates.get(sprite);
+      if (state == null) {
+        // The sprite has been deleted.
+        invalidate();
+        return;
+      }
+      state.changedFrame = frameCount;
+      if (state.inLayer) {
+        layerChanged();
+      }
+      // Redraw the area the sprite was drawn into and the area it covers now.
+      sprite.getDrawingBounds(dirtyRect);
+      dirtyRect.union(state.drawnBounds);
+      noteInvalidate();
+      invalidate(dirtyRect);
+    }
+
+    YailDictionary getFrameStatistics() {
+      double averageMillis = (frameCount == 0) ? 0 : totalDrawNanos / 1e6 / frameCount;
+      return YailDictionary.makeDictionary(
+          "Frames", frameCount,
+          "AverageDrawTime", averageMillis,
+          "LastDrawTime", lastDrawNanos / 1e6,
+          "DroppedFrames", droppedFrames);
     }
 
     @Override
@@ -468,6 +687,7 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
       int oldBitmapWidth = bitmap.getWidth();
       int oldBitmapHeight = bitmap.getHeight();
       if (w != oldBitmapWidth || h != oldBitmapHeight) {
+        layerChanged();
         Bitmap oldBitmap = bitmap;
 
         // Create a new bitmap by scaling the old bitmap that contained the
@@ -641,7 +861,7 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
 
     private void clearDrawingLayer() {
       canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
-      invalidate();
+      invalidateDrawingLayer();
     }
 
     // This mutates backgroundColor in the outer class.
@@ -662,7 +882,7 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
       canvas.rotate(-angle, x, y);
       canvas.drawText(text, x, y, paint);
       canvas.restore();
-      invalidate();
+      invalidateDrawingLayer();
     }
 
     // This intentionally ignores sprites.
@@ -831,6 +1051,12 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
    * @param sprite the sprite to add
    */
   void addSprite(Sprite sprite) {
+    spriteSet.add(sprite);
+    if (!spriteDrawStates.containsKey(sprite)) {
+      spriteDrawStates.put(sprite, new SpriteDrawState(view.frameCount));
+    }
+    // The new sprite may go below sprites in the cached layer.
+    view.layerChanged();
     // Add before first element with greater Z value.
     // This ensures not only that items are in increasing Z value
     // but that sprites whose Z values are always equal are
@@ -855,6 +1081,14 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
    */
   void removeSprite(Sprite sprite) {
     sprites.remove(sprite);
+    spriteSet.remove(sprite);
+    spriteGrid.remove(sprite);
+    pendingCollisionChecks.remove(sprite);
+    SpriteDrawState state = spriteDrawStates.remove(sprite);
+    if (state != null && state.inLayer) {
+      view.layerChanged();
+    }
+    view.invalidate();
   }
 
   /**
@@ -864,7 +1098,7 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
    * @param sprite the Sprite whose Z property has changed
    */
   void changeSpriteLayer(Sprite sprite) {
-    removeSprite(sprite);
+    sprites.remove(sprite);
     addSprite(sprite);
     view.invalidate();
   }
@@ -908,8 +1142,45 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
    * @param sprite the sprite whose location, size, or appearance has changed
    */
   void registerChange(Sprite sprite) {
-    view.invalidate();
-    findSpriteCollisions(sprite);
+    view.spriteChanged(sprite);
+    updateSpriteBounds(sprite);
+    if (batchCollisionDetection) {
+      if (pendingCollisionChecks.isEmpty()) {
+        androidUIHandler.post(pendingCollisionCheckRunner);
+      }
+      pendingCollisionChecks.add(sprite);
+    } else {
+      findSpriteCollisions(sprite);
+    }
+  }
+
+  /**
+   * Indicates that a sprite that has not been initialized yet has changed,
+   * triggering invalidation of the view but not a check for collisions.
+   *
+   * @param sprite the sprite whose location, size, or appearance has changed
+   */
+  void registerUninitializedChange(Sprite sprite) {
+    view.spriteChanged(sprite);
+    updateSpriteBounds(sprite);
+  }
+
+  // Records the current bounding box of a sprite for collision detection.
+  private void updateSpriteBounds(Sprite sprite) {
+    if (!spriteSet.contains(sprite)) {
+      // The sprite has been deleted
+      return;
+    }
+    BoundingBox box = sprite.getBoundingBox(1);
+    spriteGrid.update(sprite, box.getLeft(), box.getTop(), box.getRight(), box.getBottom());
+  }
+
+  private void runPendingCollisionChecks() {
+    List<Sprite> moved = new ArrayList<Sprite>(pendingCollisionChecks);
+    pendingCollisionChecks.clear();
+    for (Sprite sprite : moved) {
+      findSpriteCollisions(sprite);
+    }
   }
 
 
@@ -931,7 +1202,17 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
    * @param movedSprite the sprite that has just changed position
    */
   protected void findSpriteCollisions(Sprite movedSprite) {
-    for (Sprite sprite : sprites) {
+    // Only sprites near the moved sprite can have started colliding with it,
+    // and only the sprites it was colliding with can have stopped.
+    Set<Sprite> candidates = new LinkedHashSet<Sprite>();
+    BoundingBox box = movedSprite.getBoundingBox(1);
+    spriteGrid.query(box.getLeft(), box.getTop(), box.getRight(), box.getBottom(), candidates);
+    for (Sprite sprite : movedSprite.getRegisteredCollisions()) {
+      if (spriteGrid.contains(sprite)) {
+        candidates.add(sprite);
+      }
+    }
+    for (Sprite sprite : candidates) {
       if (sprite != movedSprite) {
         // Check whether we already raised an event for their collision.
         if (movedSprite.CollidingWith(sprite)) {
@@ -1248,6 +1529,54 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
     extendMovesOutsideCanvas = extend;   
   }
 
+  /**
+   * Statistics about drawing the Canvas, to help find out why an animation is not smooth.
+   * The dictionary has the keys `Frames` (the number of times the Canvas was drawn),
+   * `AverageDrawTime` and `LastDrawTime` (the time in milliseconds spent drawing the
+   * background and the sprites) and `DroppedFrames` (the number of frames at 60 frames per
+   * second that passed between a change and the Canvas being drawn again).
+   */
+  @SimpleProperty(description = "Statistics about drawing the Canvas, to help find out why " +
+      "an animation is not smooth. The dictionary has the keys Frames (the number of times " +
+      "the Canvas was drawn), AverageDrawTime and LastDrawTime (the time in milliseconds " +
+      "spent drawing the background and the sprites) and DroppedFrames (the number of frames " +
+      "at 60 frames per second that passed between a change and the Canvas being drawn again).",
+      category = PropertyCategory.BEHAVIOR)
+  public YailDictionary FrameStatistics() {
+    return view.getFrameStatistics();
+  }
+
+  /**
+   * Determines whether collisions between sprites are detected once for all of the sprites that
+   * move at the same time, rather than after each individual move. This makes games with many
+   * moving sprites faster. The `CollidedWith` and `NoLongerCollidingWith` events are raised as
+   * before, but `CollidingWith` may not reflect a move until the other sprites have moved too.
+   */
+  @SimpleProperty(description = "Determines whether collisions between sprites are " +
+      "detected once for all of the sprites that move at the same time, rather than after " +
+      "each individual move. This makes games with many moving sprites faster. The " +
+      "CollidedWith and NoLongerCollidingWith events are raised as before, but CollidingWith " +
+      "may not reflect a move until the other sprites have moved too.",
+      category = PropertyCategory.BEHAVIOR)
+  public boolean BatchCollisionDetection() {
+    return batchCollisionDetection;
+  }
+
+  /**
+   * @suppressdoc
+   * @param batch
+   */
+  @DesignerProperty(editorType = PropertyTypeConstants.PROPERTY_TYPE_BOOLEAN,
+      defaultValue = "False")
+  @SimpleProperty
+  public void BatchCollisionDetection(boolean batch) {
+    batchCollisionDetection = batch;
+    if (!batch && !pendingCollisionChecks.isEmpty()) {
+      androidUIHandler.removeCallbacks(pendingCollisionCheckRunner);
+      runPendingCollisionChecks();
+    }
+  }
+
   // Methods supporting event handling
 
   /**
@@ -1335,8 +1664,10 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
   @SimpleEvent
   public void Dragged(float startX, float startY, float prevX, float prevY,
                       float currentX, float currentY, boolean draggedAnySprite) {
-    EventDispatcher.dispatchEvent(this, "Dragged", startX, startY,
-                                  prevX, prevY, currentX, currentY, draggedAnySprite);
+    if (EventDispatcher.hasEventHandler(this, "Dragged")) {
+      EventDispatcher.dispatchEvent(this, "Dragged", startX, startY,
+                                    prevX, prevY, currentX, currentY, draggedAnySprite);
+    }
   }
 
   // Functions
@@ -1362,7 +1693,7 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
     float correctedX = x * $form().deviceDensity();
     float correctedY = y * $form().deviceDensity();
     view.canvas.drawPoint(correctedX, correctedY, paint);
-    view.invalidate();
+    view.invalidateDrawingLayer();
   }
 
  /**
@@ -1382,7 +1713,7 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
     Paint p = new Paint(paint);
     p.setStyle(fill ? Paint.Style.FILL : Paint.Style.STROKE);
     view.canvas.drawCircle(correctedX, correctedY, correctedR, p);
-    view.invalidate();
+    view.invalidateDrawingLayer();
   }
 
   /**
@@ -1400,7 +1731,7 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
     float correctedX2 = x2 * $form().deviceDensity();
     float correctedY2 = y2 * $form().deviceDensity();
     view.canvas.drawLine(correctedX1, correctedY1, correctedX2, correctedY2, paint);
-    view.invalidate();
+    view.invalidateDrawingLayer();
   }
 
   /**
@@ -1430,7 +1761,7 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
     Paint p = new Paint(paint);
     p.setStyle(fill ? Paint.Style.FILL : Paint.Style.STROKE);
     view.canvas.drawPath(path, p);
-    view.invalidate();
+    view.invalidateDrawingLayer();
   }
 
   private Path parsePath(float[][] points) throws IllegalArgumentException {
@@ -1507,7 +1838,7 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
       new RectF(scalingFactor * left, scalingFactor * top,
                 scalingFactor * right, scalingFactor * bottom),
       startAngle, sweepAngle, useCenter, p);
-    view.invalidate();
+    view.invalidateDrawingLayer();
   }
 
   /**
@@ -1526,7 +1857,7 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
     float correctedX = x * fontScalingFactor;
     float correctedY = y * fontScalingFactor;
     view.canvas.drawText(text, correctedX, correctedY, paint);
-    view.invalidate();
+    view.invalidateDrawingLayer();
   }
 
   /**
@@ -1581,7 +1912,7 @@ public final class Canvas extends AndroidViewComponent implements ComponentConta
     int correctedX = (int) (x * $form().deviceDensity());
     int correctedY = (int) (y * $form().deviceDensity());
     view.canvas.drawPoint(correctedX, correctedY, pixelPaint);
-    view.invalidate();
+    view.invalidateDrawingLayer();
   }
 
   /**
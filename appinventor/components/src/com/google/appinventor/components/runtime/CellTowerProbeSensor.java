@@ -150,6 +150,8 @@ public class CellTowerProbeSensor extends ProbeBase{
 			Log.i(TAG, "locationAreaCode:" + data.get(CellKeys.LAC).getAsLong() );
 			Log.i(TAG, "timestamp:" + data.get(CellKeys.TIMESTAMP).getAsLong());
 			
+			publishToStreams(completeProbeUri, data);
+
 			//save data to DB is enabledSaveToDB is true
 			if(enabledSaveToDB){
 				
@@ -572,4 +572,17 @@ public abstract class ChartDataModel<T extends DataSet, D extends ChartData, V e
   public List<Entry> getEntries() {
     return Collections.unmodifiableList(entries);
   }
+
+  /**
+   * Returns the entries to draw on the Chart, which can be fewer than all
+   * the entries if the Data Series has more entries than can be told apart
+   * on the Chart. Data Series that cannot be reduced without changing the
+   * Chart return all the entries.
+   *
+   * @param maximumEntries number of entries above which the entries may be reduced
+   * @return List of entries to draw
+   */
+  public List<Entry> getEntriesForDisplay(int maximumEntries) {
+    return getEntries();
+  }
 }
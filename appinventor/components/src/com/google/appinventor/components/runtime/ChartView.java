@@ -38,6 +38,12 @@ public abstract class ChartView<C extends Chart, D extends ChartData> {
 
   protected Handler uiHandler = new Handler();
 
+  /**
+   * Number of entries per pixel of the Chart's width above which
+   * Data Series may draw fewer entries than they have.
+   */
+  private static final int DISPLAYED_ENTRIES_PER_PIXEL = 2;
+
   /**
    * Used to store a single Runnable to refresh the Chart.
    * The AtomicReference acts as an accumulator in throttling the
@@ -128,8 +134,14 @@ public abstract class ChartView<C extends Chart, D extends ChartData> {
    * @param model Chart Data Model to update & refresh
    */
   public void Refresh(final ChartDataModel model) {
-    // Create a new RefreshTask with the model's current List of Entries
-    RefreshTask refreshTask = new RefreshTask(model.getEntries());
+    // Create a new RefreshTask with the model's current List of Entries,
+    // reduced to a few entries per pixel of the Chart's width. Before the
+    // Chart has been laid out, all of the entries are used.
+    int width = getView().getWidth();
+    List<Entry> entries = (width > 0)
+        ? model.getEntriesForDisplay(width * DISPLAYED_ENTRIES_PER_PIXEL)
+        : model.getEntries();
+    RefreshTask refreshTask = new RefreshTask(entries);
 
     // Execute the RefreshTask with the ChartDataModel argument
     refreshTask.execute(model);
@@ -36,6 +36,7 @@ import com.google.appinventor.components.runtime.errors.YailRuntimeError;
 
 import com.google.appinventor.components.runtime.util.BulkPermissionRequest;
 import com.google.appinventor.components.runtime.util.CloudDBJedisListener;
+import com.google.appinventor.components.runtime.util.CloudDBPipeline;
 import com.google.appinventor.components.runtime.util.FileUtil;
 import com.google.appinventor.components.runtime.util.JsonUtil;
 import com.google.appinventor.components.runtime.util.YailList;
@@ -51,7 +52,6 @@ import java.security.cert.CertificateFactory;
 import java.security.cert.X509Certificate;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -70,6 +70,8 @@ import org.json.JSONArray;
 import org.json.JSONException;
 
 import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
 import redis.clients.jedis.exceptions.JedisConnectionException;
 import redis.clients.jedis.exceptions.JedisDataException;
 import redis.clients.jedis.exceptions.JedisException;
@@ -243,10 +245,63 @@ public final class CloudDB extends AndroidNonvisibleComponent implements Compone
   // Store can be called frequenly and quickly in some situations. For example
   // using store inside of a Canvas Drag event (for realtime updating of a remote
   // canvas). Or in a handler for the Accelerometer (gasp!). To make storing as
-  // effecient as possible, we have a queue of pending store requests and we
-  // have a background task that drains this queue as fast as possible and
-  // iterates over the queue until it is drained.
-  private final List<storedValue> storeQueue = Collections.synchronizedList(new ArrayList());
+  // effecient as possible, all the Redis commands go through a queue, and we
+  // have a background task that drains this queue as fast as possible, sending
+  // the waiting commands to the server together in pipelines. Stores to the
+  // same tag that are waiting together become a single command.
+  private final CloudDBPipeline pipeline = new CloudDBPipeline(new CloudDBPipeline.BatchListener() {
+      @Override
+      public void onBatchSent(final List<String> writtenTags, final List<String> failedTags,
+          final String error) {
+        androidUIHandler.post(new Runnable() {
+            @Override
+            public void run() {
+              if (!writtenTags.isEmpty()) {
+                BatchStored(writtenTags);
+              }
+              if (error == null) {
+                return;
+              }
+              if (failedTags.isEmpty()) {
+                CloudDBError(error);
+              } else {
+                BatchFailed(failedTags, error);
+              }
+            }
+          });
+      }
+    });
+
+  // The number of milliseconds that commands wait for more commands before they are
+  // sent, see BatchWindow.
+  private volatile int batchWindow = 0;
+
+  private final Runnable sendPendingCommands = new Runnable() {
+      public void run() {
+        Jedis jedis = getJedis();
+        if (jedis == null) {    // getJedis has reported the error
+          pipeline.clear();
+          return;
+        }
+        try {
+          pipeline.sendPending(jedis);
+        } catch (JedisException e) {
+          // The batch has already been reported as failed
+          flushJedis(true);
+          pipeline.clear();     // Flush pending changes, we are in
+                                // an error state
+        } catch (Exception e) {
+          Log.e(LOG_TAG, "Exception in command worker!", e);
+          pipeline.clear();
+        }
+      }
+    };
+
+  private final Runnable submitPendingCommands = new Runnable() {
+      public void run() {
+        background.submit(sendPendingCommands);
+      }
+    };
 
   private ConnectivityManager cm;
 
@@ -257,20 +312,32 @@ public final class CloudDB extends AndroidNonvisibleComponent implements Compone
   private final HashSet<DataSink<ObservableDataSource<String, Future<List<?>>>>> dataSourceObservers
       = new HashSet<>();
 
-  private static class storedValue {
-    private String tag;
-    private JSONArray  valueList;
-    storedValue(String tag, JSONArray valueList) {
-      this.tag = tag;
-      this.valueList = valueList;
+  // Stores a value under a tag. Later stores to the same tag absorbed while the
+  // command waits replace the stored value, and all of their values are published.
+  private class StoreCommand extends CloudDBPipeline.ScriptCommand {
+    private final String project = projectID;
+    private final JSONArray valueList = new JSONArray();
+    private String value;
+
+    StoreCommand(String tag, String value) {
+      super(tag, true, SET_SUB_SCRIPT, SET_SUB_SCRIPT_SHA1, 1);
+      this.value = value;
+      valueList.put(value);
     }
 
-    public String getTag() {
-      return tag;
+    @Override
+    protected String[] getArgs() {
+      return new String[] { getTag(), value, valueList.toString(), project };
     }
 
-    public JSONArray getValueList() {
-      return valueList;
+    @Override
+    protected boolean merge(CloudDBPipeline.Command later) {
+      if (!(later instanceof StoreCommand) || !project.equals(((StoreCommand) later).project)) {
+        return false;
+      }
+      value = ((StoreCommand) later).value;
+      valueList.put(value);
+      return true;
     }
   }
 
@@ -564,6 +631,43 @@ public final class CloudDB extends AndroidNonvisibleComponent implements Compone
     return useSSL;
   }
 
+  /**
+   * Gets the number of milliseconds that commands wait for more commands before they are
+   * sent to the server together.
+   *
+   * @return the batch window in milliseconds.
+   */
+  @SimpleProperty(category = PropertyCategory.BEHAVIOR,
+      description = "Gets the number of milliseconds that commands wait for more commands " +
+          "before they are sent to the server together.")
+  public int BatchWindow() {
+    return batchWindow;
+  }
+
+  /**
+   * Specifies the number of milliseconds that `CloudDB` waits for more commands after a
+   * command is given, before sending them all to the server together. Commands are always
+   * sent together when they are given faster than the server answers, so a window of 0 adds
+   * no delay. A longer window lets a burst of stores cost a single round trip on a slow
+   * network, but commands still waiting when the app closes are lost.
+   *
+   * @param milliseconds the batch window in milliseconds.
+   */
+  @DesignerProperty(editorType = PropertyTypeConstants.PROPERTY_TYPE_NON_NEGATIVE_INTEGER,
+      defaultValue = "0")
+  @SimpleProperty(description = "Sets the number of milliseconds that commands wait for " +
+      "more commands before they are sent to the server together. A window of 0 sends " +
+      "commands as soon as the connection is free.")
+  public void BatchWindow(int milliseconds) {
+    batchWindow = Math.max(0, milliseconds);
+
+    // Commands that are waiting should not wait longer than the new window.
+    if (batchWindow > 0 && pipeline.size() > 0) {
+      androidUIHandler.removeCallbacks(submitPendingCommands);
+      androidUIHandler.postDelayed(submitPendingCommands, batchWindow);
+    }
+  }
+
   private static final String SET_SUB_SCRIPT =
     "local key = KEYS[1];" +
     "local value = ARGV[1];" +
@@ -623,120 +727,7 @@ public final class CloudDB extends AndroidNonvisibleComponent implements Compone
       if (DEBUG) {
         Log.d(LOG_TAG,"Device is online...");
       }
-      synchronized(storeQueue) {
-        boolean kickit = false;
-        if (storeQueue.size() == 0) { // Need to kick off the background task
-          if (DEBUG) {
-            Log.d(LOG_TAG, "storeQueue is zero length, kicking background");
-          }
-          kickit = true;
-        } else {
-          if (DEBUG) {
-            Log.d(LOG_TAG, "storeQueue has " + storeQueue.size() + " entries");
-          }
-        }
-        JSONArray valueList = new JSONArray();
-        try {
-          valueList.put(0, value);
-        } catch (JSONException e) {
-          throw new YailRuntimeError("JSON Error putting value.", "value is not convertable");
-        }
-        storedValue work  = new storedValue(tag, valueList);
-        storeQueue.add(work);
-        if (kickit) {
-          background.submit(new Runnable() {
-              public void run() {
-                JSONArray pendingValueList = null;
-                String pendingTag = null;
-                String pendingValue = null;
-                try {
-                  storedValue work;
-                  if (DEBUG) {
-                    Log.d(LOG_TAG, "store background task running.");
-                  }
-                  while (true) {
-                    synchronized(storeQueue) {
-                      if (DEBUG) {
-                        Log.d(LOG_TAG, "store: In background synchronized block");
-                      }
-                      int size = storeQueue.size();
-                      if (size == 0) {
-                        if (DEBUG) {
-                          Log.d(LOG_TAG, "store background task exiting.");
-                        }
-                        work = null;
-                      } else {
-                        if (DEBUG) {
-                          Log.d(LOG_TAG, "store: storeQueue.size() == " + size);
-                        }
-                        work = storeQueue.remove(0);
-                        if (DEBUG) {
-                          Log.d(LOG_TAG, "store: got work.");
-                        }
-                      }
-                    }
-                    if (DEBUG) {
-                      Log.d(LOG_TAG, "store: left synchronized block");
-                    }
-                    if (work == null) {
-                      try {
-                        if (pendingTag != null) {
-                          String jsonValueList = pendingValueList.toString();
-                          if (DEBUG) {
-                            Log.d(LOG_TAG, "Workqueue empty, sending pendingTag, valueListLength = " + pendingValueList.length());
-                          }
-                          jEval(SET_SUB_SCRIPT, SET_SUB_SCRIPT_SHA1, 1, pendingTag, pendingValue, jsonValueList, projectID);
-                        }
-                      } catch (JedisException e) {
-                        CloudDBError(e.getMessage());
-                        flushJedis(true);
-                      }
-                      return;
-                    }
-
-                    String tag = work.getTag();
-                    JSONArray valueList = work.getValueList();
-                    if (tag == null || valueList == null) {
-                      if (DEBUG) {
-                        Log.d(LOG_TAG, "Either tag or value is null!");
-                      }
-                    } else {
-                      if (DEBUG) {
-                        Log.d(LOG_TAG, "Got Work: tag = " + tag + " value = " + valueList.get(0));
-                      }
-                    }
-                    if (pendingTag == null) { // First time through this invocation
-                      pendingTag = tag;
-                      pendingValueList = valueList;
-                      pendingValue = valueList.getString(0);
-                    } else if (pendingTag.equals(tag)) { // work is for the same tag
-                      pendingValue = valueList.getString(0);
-                      pendingValueList.put(pendingValue);
-                    } else {    // Work is for a different tag, send what we have
-                      try {     // and add the new tag,incoming valuelist for the next round
-                        String jsonValueList = pendingValueList.toString();
-                        if (DEBUG) {
-                          Log.d(LOG_TAG, "pendingTag changed sending pendingTag, valueListLength = " + pendingValueList.length());
-                        }
-                        jEval(SET_SUB_SCRIPT, SET_SUB_SCRIPT_SHA1, 1, pendingTag, pendingValue, jsonValueList, projectID);
-                      } catch (JedisException e) {
-                        CloudDBError(e.getMessage());
-                        flushJedis(true);
-                        storeQueue.clear(); // Flush pending changes, we are in
-                        return;             // an error state
-                      }
-                      pendingTag = tag;
-                      pendingValueList = valueList;
-                      pendingValue = valueList.getString(0);
-                    }
-                  }
-                } catch (Exception e) {
-                Log.e(LOG_TAG, "Exception in store worker!", e);
-                }
-              }
-            });
-        }
-      }
+      queueCommand(new StoreCommand(tag, value));
     } else {
       CloudDBError("Cannot store values off-line.");
     }
@@ -780,12 +771,19 @@ public final class CloudDB extends AndroidNonvisibleComponent implements Compone
     if (isConnected) {
       // Set value to either the JSON from the CloudDB
       // or the JSON representation of valueIfTagNotThere
-      background.submit(new Runnable() {
-          public void run() {
-            final AtomicReference<Object> value = getValueByTag(tag, valueIfTagNotThere);
+      final String key = projectID + ":" + tag;
+      queueCommand(new CloudDBPipeline.Command(tag, false) {
+          @Override
+          protected Response<?> send(Pipeline pipeline) {
+            return pipeline.get(key);
+          }
 
-            // Value stored is null; Return
-            if (value.get() == null) {
+          @Override
+          protected void onReply(Object reply) {
+            final Object value = decodeValue(tag, (String) reply, valueIfTagNotThere);
+
+            // Value could not be converted; Return
+            if (value == null) {
               return;
             }
 
@@ -794,7 +792,7 @@ public final class CloudDB extends AndroidNonvisibleComponent implements Compone
                   // Signal an event to indicate that the value was
                   // received.  We post this to run in the Application's main
                   // UI thread.
-                  GotValue(tag, value.get());
+                  GotValue(tag, value);
                 }
               });
           }
@@ -830,20 +828,7 @@ public final class CloudDB extends AndroidNonvisibleComponent implements Compone
       if (DEBUG) {
         Log.d(LOG_TAG, "finished call jedis.get()");
       }
-      if (returnValue != null) {
-        String val = JsonUtil.getJsonRepresentationIfValueFileName(returnValue);
-        if(val != null) value.set(val);
-        else value.set(returnValue);
-      }
-      else {
-        if (DEBUG) {
-          Log.d(CloudDB.LOG_TAG,"Value retrieved is null");
-        }
-        value.set(JsonUtil.getJsonRepresentation(valueIfTagNotThere));
-      }
-    } catch (JSONException e) {
-      CloudDBError("JSON conversion error for " + tag);
-      value.set(null);
+      value.set(decodeValue(tag, returnValue, valueIfTagNotThere));
     } catch (NullPointerException e) {
       CloudDBError("System Error getting tag " + tag);
       flushJedis(true);
@@ -857,6 +842,31 @@ public final class CloudDB extends AndroidNonvisibleComponent implements Compone
 
     return value;
   }
+
+  /**
+   * Converts a value returned by the Redis server to the value passed to
+   * {@link #GotValue(String, Object)}, or returns null after reporting an error.
+   *
+   * @param tag  tag of the value
+   * @param returnValue  the value stored under the tag, or null if it is not present
+   * @param valueIfTagNotThere  value to use if the tag is not present
+   * @return  the JSON of the value, or null in case of errors
+   */
+  private Object decodeValue(String tag, String returnValue, Object valueIfTagNotThere) {
+    try {
+      if (returnValue != null) {
+        String val = JsonUtil.getJsonRepresentationIfValueFileName(returnValue);
+        return val != null ? val : returnValue;
+      }
+      if (DEBUG) {
+        Log.d(CloudDB.LOG_TAG,"Value retrieved is null");
+      }
+      return JsonUtil.getJsonRepresentation(valueIfTagNotThere);
+    } catch (JSONException e) {
+      CloudDBError("JSON conversion error for " + tag);
+      return null;
+    }
+  }
  
   /**
    * Returns `true`{:.logic.block} if we are on the network and will likely be able to connect to
@@ -943,15 +953,11 @@ public final class CloudDB extends AndroidNonvisibleComponent implements Compone
 
     final String key = tag;
 
-    background.submit(new Runnable() {
-        public void run() {
-          Jedis jedis = getJedis();
-          try {
-            FirstRemoved(jEval(POP_FIRST_SCRIPT, POP_FIRST_SCRIPT_SHA1, 1, key, projectID));
-          } catch (JedisException e) {
-            CloudDBError(e.getMessage());
-            flushJedis(true);
-          }
+    queueCommand(new CloudDBPipeline.ScriptCommand(key, true, POP_FIRST_SCRIPT,
+        POP_FIRST_SCRIPT_SHA1, 1, key, projectID) {
+        @Override
+        protected void onReply(Object reply) {
+          FirstRemoved(reply);
         }
       });
   }
@@ -1001,17 +1007,8 @@ public final class CloudDB extends AndroidNonvisibleComponent implements Compone
     final String item = (String) itemObject;
     final String key = tag;
 
-    background.submit(new Runnable() {
-        public void run() {
-          Jedis jedis = getJedis();
-          try {
-            jEval(APPEND_SCRIPT, APPEND_SCRIPT_SHA1, 1, key, item, projectID);
-          } catch(JedisException e) {
-            CloudDBError(e.getMessage());
-            flushJedis(true);
-          }
-        }
-      });
+    queueCommand(new CloudDBPipeline.ScriptCommand(key, true, APPEND_SCRIPT,
+        APPEND_SCRIPT_SHA1, 1, key, item, projectID));
   }
 
   /**
@@ -1060,17 +1057,17 @@ public final class CloudDB extends AndroidNonvisibleComponent implements Compone
   @SimpleFunction(description = "Remove the tag from CloudDB.")
   public void ClearTag(final String tag) {
     checkProjectIDNotBlank();
-    background.submit(new Runnable() {
-        public void run() {
-          try {
-            Jedis jedis = getJedis();
-            jedis.del(projectID + ":" + tag);
-            // Notify all the Data Source observers of the change
-            notifyDataObservers(tag, null);
-          } catch (Exception e) {
-            CloudDBError(e.getMessage());
-            flushJedis(true);
-          }
+    final String key = projectID + ":" + tag;
+    queueCommand(new CloudDBPipeline.Command(tag, true) {
+        @Override
+        protected Response<?> send(Pipeline pipeline) {
+          return pipeline.del(key);
+        }
+
+        @Override
+        protected void onReply(Object reply) {
+          // Notify all the Data Source observers of the change
+          notifyDataObservers(tag, null);
         }
       });
   }
@@ -1087,22 +1084,20 @@ public final class CloudDB extends AndroidNonvisibleComponent implements Compone
     NetworkInfo networkInfo = cm.getActiveNetworkInfo();
     boolean isConnected = networkInfo != null && networkInfo.isConnected();
     if (isConnected) {
-      background.submit(new Runnable() {
-          public void run() {
+      final String prefix = projectID + ":";
+      queueCommand(new CloudDBPipeline.Command("*", false) {
+          @Override
+          protected Response<?> send(Pipeline pipeline) {
+            return pipeline.keys(prefix + "*");
+          }
 
-            Jedis jedis = getJedis();
-            Set<String> value = null;
-            try {
-              value = jedis.keys(projectID + ":*");
-            } catch (JedisException e) {
-              CloudDBError(e.getMessage());
-              flushJedis(true);
-              return;
-            }
-            final List<String> listValue = new ArrayList<String>(value);
+          @Override
+          @SuppressWarnings("unchecked")
+          protected void onReply(Object reply) {
+            final List<String> listValue = new ArrayList<String>((Set<String>) reply);
 
             for(int i = 0; i < listValue.size(); i++){
-              listValue.set(i, listValue.get(i).substring((projectID + ":").length()));
+              listValue.set(i, listValue.get(i).substring(prefix.length()));
             }
 
             androidUIHandler.post(new Runnable() {
@@ -1131,6 +1126,37 @@ public final class CloudDB extends AndroidNonvisibleComponent implements Compone
     EventDispatcher.dispatchEvent(this, "TagList", value);
   }
 
+  /**
+   * Indicates that a batch of commands that change tags has been written to the server.
+   * `tags`{:.list.block} holds the tags that were changed.
+   *
+   * @param tags the tags changed by the batch.
+   */
+  @SimpleEvent(description = "Indicates that a batch of commands that change tags has been " +
+      "written to the server. The argument \"tags\" holds the tags that were changed.")
+  public void BatchStored(List<String> tags) {
+    EventDispatcher.dispatchEvent(this, "BatchStored", tags);
+  }
+
+  /**
+   * Indicates that commands in a batch that change tags could not be written to the server.
+   * `tags`{:.list.block} holds the tags that were not changed, and `message`{:.text.block}
+   * the first error. If this event has no handler, {@link #CloudDBError(String)} is
+   * triggered instead.
+   *
+   * @param tags the tags that were not changed.
+   * @param message the error message.
+   */
+  @SimpleEvent(description = "Indicates that commands in a batch that change tags could not " +
+      "be written to the server. The argument \"tags\" holds the tags that were not changed " +
+      "and \"message\" the first error. If this event has no handler, \"CloudDBError\" is " +
+      "triggered instead.")
+  public void BatchFailed(List<String> tags, String message) {
+    if (!EventDispatcher.dispatchEvent(this, "BatchFailed", tags, message)) {
+      CloudDBError(message);
+    }
+  }
+
   /**
    * Indicates that the data in the CloudDB project has changed. Launches an event with the
    * `tag`{:.text.block} that has been updated and the `value`{:.variable.block} it now has.
@@ -1271,6 +1297,9 @@ public final class CloudDB extends AndroidNonvisibleComponent implements Compone
       // XXX
     }
     INSTANCE = null;
+    // Waiting commands were meant for the old connection
+    androidUIHandler.removeCallbacks(submitPendingCommands);
+    pipeline.clear();
     // We are now going to kill the executor, as it may
     // have hung tasks. We do this on the UI thread as a
     // way to synchronize things.
@@ -1336,6 +1365,21 @@ public final class CloudDB extends AndroidNonvisibleComponent implements Compone
     return dotIndex == -1 ? "" : fileName.substring(dotIndex + 1);
   }
 
+  /*
+   * queueCommand -- Queue a command for the server. The command is sent
+   * by the background executor, together with the other waiting commands,
+   * once BatchWindow has passed.
+   */
+  private void queueCommand(CloudDBPipeline.Command command) {
+    if (pipeline.add(command)) {  // Need to kick off the background task
+      if (batchWindow > 0) {
+        androidUIHandler.postDelayed(submitPendingCommands, batchWindow);
+      } else {
+        background.submit(sendPendingCommands);
+      }
+    }
+  }
+
   public ExecutorService getBackground() {
     return background;
   }
@@ -171,6 +171,8 @@ public class ContactInfo extends ProbeBase{
 //	  Log.i(TAG, "DATA: " + data.toString());
   	  
 	  	
+	  publishToStreams(completeProbeUri, data);
+
 	  // save data to DB is enabledSaveToDB is true
 	  if (enabledSaveToDB) {
 
@@ -13,8 +13,10 @@ import com.google.appinventor.components.common.YaVersion;
 import com.google.appinventor.components.runtime.util.*;
 import org.json.JSONException;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
@@ -39,6 +41,10 @@ import java.util.concurrent.Future;
 public class DataFile extends FileBase implements DataSource<YailList, Future<YailList>> {
   private String sourceFile;
 
+  // For CSV files, the parsed table. The rows and columns Lists are then
+  // only built when they are first requested.
+  private CsvTable csvTable;
+
   private YailList rows;
   private YailList columns;
   private YailList columnNames; // Elements of the first column
@@ -71,6 +77,9 @@ public class DataFile extends FileBase implements DataSource<YailList, Future<Ya
     return getYailListPropertyHelper(new Callable<YailList>() {
       @Override
       public YailList call() throws Exception {
+        if (rows == null) {
+          rows = csvTable.getRows();
+        }
         return rows;
       }
     });
@@ -88,6 +97,9 @@ public class DataFile extends FileBase implements DataSource<YailList, Future<Ya
     return getYailListPropertyHelper(new Callable<YailList>() {
       @Override
       public YailList call() throws Exception {
+        if (columns == null) {
+          columns = csvTable.getColumns();
+        }
         return columns;
       }
     });
@@ -182,6 +194,11 @@ public class DataFile extends FileBase implements DataSource<YailList, Future<Ya
    * @return YailList of elements in the column
    */
   public YailList getColumn(String column) {
+    if (csvTable != null) {
+      int index = csvTable.getColumnIndex(column);
+      return (index < 0) ? new YailList() : csvTable.getColumn(index);
+    }
+
     // Get the index of the column (first row - column names)
     // 1 is subtracted from the index since YailList indexOf
     // returns an index that is 1-based.
@@ -195,6 +212,22 @@ public class DataFile extends FileBase implements DataSource<YailList, Future<Ya
     return (YailList) columns.getObject(index);
   }
 
+  /**
+   * Indicates how many rows of a CSV file have been read so far. The event is raised every
+   * 10000 rows while a large file is being read, and once more with the total number of rows
+   * when reading ends. The contents of the file are available in the Rows, Columns and
+   * ColumnNames properties once reading has ended.
+   *
+   * @param rowsRead the number of rows read so far
+   */
+  @SimpleEvent(description = "Indicates how many rows of a CSV file have been read so far. "
+      + "The event is raised every 10000 rows while a large file is being read, and once more "
+      + "with the total number of rows when reading ends. The contents of the file are "
+      + "available in the Rows, Columns and ColumnNames properties once reading has ended.")
+  public void ReadProgress(int rowsRead) {
+    EventDispatcher.dispatchEvent(this, "ReadProgress", rowsRead);
+  }
+
   @Override
   protected void AsyncRead(final InputStream inputStream, final String fileName) {
     // Add runnable to the Single Thread runner to read File asynchronously
@@ -202,8 +235,11 @@ public class DataFile extends FileBase implements DataSource<YailList, Future<Ya
       @Override
       public void run() {
         try {
-          // Parse InputStream to String
-          final String result = readFromInputStream(inputStream);
+          // Peek at the first character to decide on the format
+          InputStream input = new BufferedInputStream(inputStream);
+          input.mark(1);
+          int firstChar = input.read();
+          input.reset();
 
           // First character is a curly bracket; Assume JSON
           // TODO: When fetching columns and rows, in the case of
@@ -213,7 +249,9 @@ public class DataFile extends FileBase implements DataSource<YailList, Future<Ya
           // TODO: have uneven sized Lists. For consistency, this should be
           // TODO: handled, but currently there is a bit too much overhead in doing
           // TODO: so due to YailLists not supporting the add() operation)
-          if (result.charAt(0) == '{') {
+          if (firstChar == '{') {
+            // Parse InputStream to String
+            final String result = readFromInputStream(input);
             try {
               // Parse columns from the result
               columns = JsonUtil.getColumnsFromJSON(result);
@@ -225,21 +263,36 @@ public class DataFile extends FileBase implements DataSource<YailList, Future<Ya
               rows = CsvUtil.fromCsvTable(result);
               columns = ChartDataSourceUtil.getTranspose(rows);
             }
-          } else { // Assume CSV otherwise
-            // Parse rows from the result
-            rows = CsvUtil.fromCsvTable(result);
+            csvTable = null;
 
-            // Construct column lists from rows
-            columns = ChartDataSourceUtil.getTranspose(rows);
+            // If rows size is non-zero, set column names to first row. Otherwise,
+            // set it to an empty List.
+            columnNames = (rows.size() > 0) ? ((YailList) rows.getObject(0)) : new YailList();
+          } else { // Assume CSV otherwise
+            // Parse the file row by row into columns, without holding the
+            // whole file in memory.
+            csvTable = CsvTable.read(new InputStreamReader(input, "UTF-8"),
+                new CsvTable.ProgressListener() {
+                  @Override
+                  public void onProgress(final int rowsRead) {
+                    activity.runOnUiThread(new Runnable() {
+                      @Override
+                      public void run() {
+                        ReadProgress(rowsRead);
+                      }
+                    });
+                  }
+                });
+            rows = null;
+            columns = null;
+            columnNames = csvTable.getColumnNames();
           }
-
-          // If rows size is non-zero, set column names to first row. Otherwise,
-          // set it to an empty List.
-          columnNames = (rows.size() > 0) ? ((YailList) rows.getObject(0)) : new YailList();
         } catch (IOException e) {
           Log.e(this.getClass().getName(), e.getMessage());
         } catch (Exception e) {
           Log.e(this.getClass().getName(), e.getMessage());
+        } finally {
+          IOUtils.closeQuietly(LOG_TAG, inputStream);
         }
       }
     });
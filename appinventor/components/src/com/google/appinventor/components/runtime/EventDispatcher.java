@@ -8,10 +8,12 @@ package com.google.appinventor.components.runtime;
 
 import android.util.Log;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
 
 /**
  * Dispatches events to component event handlers.
@@ -63,12 +65,24 @@ public class EventDispatcher {
   private static final class EventRegistry {
     private final HandlesEventDispatching dispatchDelegate;
 
-    // Mapping of event names to a set of event closures.
-    // Note that by using a Set here, we'll only have one closure corresponding to a
+    // Mapping of event names to the event closures for that event, by component id.
+    // Note that by using a Map here, we'll only have one closure corresponding to a
     // given componentId-eventName.  We do not support invoking multiple handlers for a
     // single event.
-    private final HashMap<String, Set<EventClosure>> eventClosuresMap =
-        new HashMap<String, Set<EventClosure>>();
+    private final HashMap<String, Map<String, EventClosure>> eventClosuresMap =
+        new HashMap<String, Map<String, EventClosure>>();
+
+    // Mapping of event names to the simple class names of the component types that have a
+    // generic event handler for that event.
+    private final HashMap<String, Set<String>> genericEventsMap =
+        new HashMap<String, Set<String>>();
+
+    // The component id under which each component last had an event dispatched. This lets
+    // us find the event closure for a component without asking the dispatch delegate about
+    // every closure registered for the event. It is cleared whenever the registered closures
+    // or the component names change.
+    private final WeakHashMap<Component, String> componentIds =
+        new WeakHashMap<Component, String>();
 
     EventRegistry(HandlesEventDispatching dispatchDelegate) {
       this.dispatchDelegate = dispatchDelegate;
@@ -109,19 +123,45 @@ public class EventDispatcher {
   public static void registerEventForDelegation(HandlesEventDispatching dispatchDelegate,
                                                 String componentId, String eventName) {
     EventRegistry er = getEventRegistry(dispatchDelegate);
-    Set<EventClosure> eventClosures = er.eventClosuresMap.get(eventName);
+    Map<String, EventClosure> eventClosures = er.eventClosuresMap.get(eventName);
     if (eventClosures == null) {
-      eventClosures = new HashSet<EventClosure>();
+      eventClosures = new HashMap<String, EventClosure>();
       er.eventClosuresMap.put(eventName, eventClosures);
     }
 
-    eventClosures.add(new EventClosure(componentId, eventName));
+    eventClosures.put(componentId, new EventClosure(componentId, eventName));
+    er.componentIds.clear();
     if (DEBUG) {
       Log.i("EventDispatcher", "Registered event closure for " +
           componentId + "." + eventName);
     }
   }
 
+  /**
+   * Registers a dispatchDelegate for handling the generic event with the specified component
+   * type and event name. Generic events are dispatched by
+   * {@link HandlesEventDispatching#dispatchGenericEvent} only if they have been registered.
+   *
+   * @param dispatchDelegate  object responsible for dispatching the event
+   * @param componentType  simple class name of the component type
+   * @param eventName  name of event
+   */
+  // Don't delete this method. It's called from runtime.scm.
+  public static void registerGenericEventForDelegation(HandlesEventDispatching dispatchDelegate,
+                                                       String componentType, String eventName) {
+    EventRegistry er = getEventRegistry(dispatchDelegate);
+    Set<String> componentTypes = er.genericEventsMap.get(eventName);
+    if (componentTypes == null) {
+      componentTypes = new HashSet<String>();
+      er.genericEventsMap.put(eventName, componentTypes);
+    }
+    componentTypes.add(componentType);
+    if (DEBUG) {
+      Log.i("EventDispatcher", "Registered generic event for " +
+          componentType + "." + eventName);
+    }
+  }
+
   /**
    * Unregisters a dispatchDelegate for handling event dispatching for the event with the specified
    * component id and event name.
@@ -134,33 +174,41 @@ public class EventDispatcher {
   public static void unregisterEventForDelegation(HandlesEventDispatching dispatchDelegate,
                                                   String componentId, String eventName) {
     EventRegistry er = getEventRegistry(dispatchDelegate);
-    Set<EventClosure> eventClosures = er.eventClosuresMap.get(eventName);
+    Map<String, EventClosure> eventClosures = er.eventClosuresMap.get(eventName);
     if (eventClosures == null || eventClosures.isEmpty()) {
       return;
     }
-    Set<EventClosure> toDelete = new HashSet<EventClosure>();
-    for (EventClosure eventClosure : eventClosures) {
-      if (eventClosure.componentId.equals(componentId)) {
-        toDelete.add(eventClosure);
-      }
-    }
-    for (EventClosure eventClosure : toDelete) {
+    if (eventClosures.remove(componentId) != null) {
       if (DEBUG) {
         Log.i("EventDispatcher", "Deleting event closure for " +
-            eventClosure.componentId + "." + eventClosure.eventName);
+            componentId + "." + eventName);
       }
-      eventClosures.remove(eventClosure);
+      er.componentIds.clear();
     }
   }
 
   /**
    * Removes all event closures previously registered via
-   * {@link EventDispatcher#registerEventForDelegation}.
+   * {@link EventDispatcher#registerEventForDelegation} and
+   * {@link EventDispatcher#registerGenericEventForDelegation}.
    */
   // Don't delete this method. It's called from runtime.scm.
   public static void unregisterAllEventsForDelegation() {
     for (EventRegistry er : mapDispatchDelegateToEventRegistry.values()) {
       er.eventClosuresMap.clear();
+      er.genericEventsMap.clear();
+      er.componentIds.clear();
+    }
+  }
+
+  /**
+   * Forgets which component ids the components were dispatched under. Called when the REPL
+   * renames a component, because the component object then has a different id.
+   */
+  // Don't delete this method. It's called from runtime.scm.
+  public static void componentIdsChanged() {
+    for (EventRegistry er : mapDispatchDelegateToEventRegistry.values()) {
+      er.componentIds.clear();
     }
   }
 
@@ -175,9 +223,45 @@ public class EventDispatcher {
     EventRegistry er = removeEventRegistry(dispatchDelegate);
     if (er != null) {
       er.eventClosuresMap.clear();
+      er.genericEventsMap.clear();
+      er.componentIds.clear();
     }
   }
 
+  /**
+   * Returns whether an event handler, or a generic event handler for the component's type, is
+   * registered for the event. Components that raise events at a high rate can check this
+   * before computing and boxing the arguments of the event.
+   *
+   * <p>A {@code true} result does not mean that the event will be handled: the handler may be
+   * registered for a different component with the same event.
+   *
+   * @param component  the component raising the event
+   * @param eventName  name of event being raised
+   * @return {@code false} if {@link #dispatchEvent} would certainly not run any handler
+   */
+  public static boolean hasEventHandler(Component component, String eventName) {
+    EventRegistry er = mapDispatchDelegateToEventRegistry.get(component.getDispatchDelegate());
+    if (er == null) {
+      return false;
+    }
+    Map<String, EventClosure> eventClosures = er.eventClosuresMap.get(eventName);
+    if (eventClosures != null && !eventClosures.isEmpty()) {
+      String componentId = er.componentIds.get(component);
+      if (componentId == null || eventClosures.containsKey(componentId)) {
+        return true;
+      }
+    }
+    return hasGenericEventHandler(er, component, eventName);
+  }
+
+  private static boolean hasGenericEventHandler(EventRegistry er, Component component,
+                                                String eventName) {
+    Set<String> componentTypes = er.genericEventsMap.get(eventName);
+    return componentTypes != null
+        && componentTypes.contains(component.getClass().getSimpleName());
+  }
+
   /**
    * Dispatches an event based on its name to any registered handlers.
    *
@@ -192,12 +276,17 @@ public class EventDispatcher {
     boolean dispatched = false;
     HandlesEventDispatching dispatchDelegate = component.getDispatchDelegate();
     if (dispatchDelegate.canDispatchEvent(component, eventName)) {
-      EventRegistry er = getEventRegistry(dispatchDelegate);
-      Set<EventClosure> eventClosures = er.eventClosuresMap.get(eventName);
+      EventRegistry er = mapDispatchDelegateToEventRegistry.get(dispatchDelegate);
+      if (er == null) {
+        return false;
+      }
+      Map<String, EventClosure> eventClosures = er.eventClosuresMap.get(eventName);
       if (eventClosures != null && eventClosures.size() > 0) {
-        dispatched = delegateDispatchEvent(dispatchDelegate, eventClosures, component, args);
+        dispatched = delegateDispatchEvent(er, eventClosures, component, args);
+      }
+      if (hasGenericEventHandler(er, component, eventName)) {
+        dispatchDelegate.dispatchGenericEvent(component, eventName, !dispatched, args);
       }
-      dispatchDelegate.dispatchGenericEvent(component, eventName, !dispatched, args);
     }
     return dispatched;
   }
@@ -205,19 +294,28 @@ public class EventDispatcher {
   /**
    * Delegates the dispatch of an event to the dispatch delegate.
    *
-   * @param eventClosures set of event closures matching the event name
+   * @param er the event registry of the dispatch delegate
+   * @param eventClosures event closures matching the event name, by component id
    * @param component the component that generated the event
    * @param args  arguments to event handler
    */
-  private static boolean delegateDispatchEvent(HandlesEventDispatching dispatchDelegate,
-                                               Set<EventClosure> eventClosures,
+  private static boolean delegateDispatchEvent(EventRegistry er,
+                                               Map<String, EventClosure> eventClosures,
                                                Component component, Object... args) {
-    // The event closures set will contain all event closures matching the event name.
     // We depend on the delegate's dispatchEvent method to check the registered event closure and
     // only dispatch the event if the registered component matches the component that generated the
     // event.  This should only be true for one (or zero) of the closures.
-    boolean dispatched = false;
-    for (EventClosure eventClosure : eventClosures) {
+    HandlesEventDispatching dispatchDelegate = er.dispatchDelegate;
+    String componentId = er.componentIds.get(component);
+    if (componentId != null) {
+      // We know the component's id, so at most the closure registered for that id matches.
+      EventClosure eventClosure = eventClosures.get(componentId);
+      return eventClosure != null && dispatchDelegate.dispatchEvent(component,
+          eventClosure.componentId, eventClosure.eventName, args);
+    }
+
+    // The delegate may unregister closures while we iterate, so iterate over a copy.
+    for (EventClosure eventClosure : new ArrayList<EventClosure>(eventClosures.values())) {
       if (dispatchDelegate.dispatchEvent(component,
                                          eventClosure.componentId,
                                          eventClosure.eventName,
@@ -226,10 +324,11 @@ public class EventDispatcher {
           Log.i("EventDispatcher", "Successfully dispatched event " +
               eventClosure.componentId + "." + eventClosure.eventName);
         }
-        dispatched = true;  // break here or keep iterating through loop?
+        er.componentIds.put(component, eventClosure.componentId);
+        return true;
       }
     }
-    return dispatched;
+    return false;
   }
 
   // Don't delete this method. It's called from runtime.scm.
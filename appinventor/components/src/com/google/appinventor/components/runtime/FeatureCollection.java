@@ -15,11 +15,13 @@ import com.google.appinventor.components.common.ComponentCategory;
 import com.google.appinventor.components.common.PropertyTypeConstants;
 import com.google.appinventor.components.common.YaVersion;
 import com.google.appinventor.components.runtime.util.ErrorMessages;
+import com.google.appinventor.components.runtime.util.GeoJSONReader;
 import com.google.appinventor.components.runtime.util.MapFactory;
 import com.google.appinventor.components.runtime.util.MapFactory.MapFeatureCollection;
 import com.google.appinventor.components.runtime.util.YailList;
 
 import android.view.View;
+import java.util.List;
 import org.json.JSONException;
 
 /**
@@ -83,6 +85,12 @@ public class FeatureCollection extends MapFeatureContainerBase implements MapFea
     super.GotFeatures(url, features);
   }
 
+  @Override
+  protected void processFeatures(String url, List<GeoJSONReader.Feature> features) {
+    source = url;
+    super.processFeatures(url, features);
+  }
+
   @Override
   @DesignerProperty(editorType = PropertyTypeConstants.PROPERTY_TYPE_GEOJSON_TYPE)
   public void Source(String source) {
@@ -915,6 +915,13 @@ public class Form extends AppInventorCompatActivity
     super.onDestroy();
   }
 
+  @Override
+  public void onLowMemory() {
+    super.onLowMemory();
+    // Decoded images can be decoded again when they are next needed.
+    MediaUtil.clearImageCache();
+  }
+
   public void registerForOnDestroy(OnDestroyListener component) {
     onDestroyListeners.add(component);
   }
@@ -2224,6 +2231,14 @@ public class Form extends AppInventorCompatActivity
     components.add(component);
   }
 
+  /**
+   * Hides the Screen's components, or shows them again. Components added
+   * while they are hidden do not cause the Screen to be laid out.
+   */
+  void deferLayout(boolean defer) {
+    viewLayout.getLayoutManager().setVisibility(defer ? View.GONE : View.VISIBLE);
+  }
+
   public float deviceDensity(){
     return this.deviceDensity;
   }
@@ -25,7 +25,9 @@ import com.google.appinventor.components.runtime.util.AsynchUtil;
 import com.google.appinventor.components.runtime.util.ErrorMessages;
 import com.google.appinventor.components.runtime.util.FileUtil;
 import com.google.appinventor.components.runtime.util.GingerbreadUtil;
+import com.google.appinventor.components.runtime.util.GqlResponseCache;
 import com.google.appinventor.components.runtime.util.JsonUtil;
+import com.google.appinventor.components.runtime.util.SharedHttpClient;
 import gnu.lists.FString;
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -41,13 +43,17 @@ import java.net.HttpURLConnection;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * The {@link GraphQL} component communicates with a GraphQL endpoint to execute queries and mutations. It represents
@@ -78,6 +84,54 @@ public class GraphQL extends AndroidNonvisibleComponent implements Component {
   private String endpointURL;
   private String httpHeaders;
 
+  private int batchWindow = 0;
+  private boolean persistedQueries = false;
+
+  // Queries waiting to be sent together in one request, see GqlBatchWindow. Only used on the
+  // application's main thread.
+  private final List<PendingQuery> pendingQueries = new ArrayList<>();
+  private final Runnable sendPendingQueries = new Runnable() {
+    @Override
+    public void run() {
+      sendPendingQueries();
+    }
+  };
+
+  // Hashes of the queries that the endpoint is known to have stored, see GqlPersistedQueries.
+  private final Set<String> persistedHashes = Collections.synchronizedSet(new HashSet<String>());
+
+  private final GqlResponseCache responseCache = new GqlResponseCache();
+
+  /**
+   * A query that has been requested but not answered yet.
+   */
+  private static final class PendingQuery {
+    final String name;
+    final String query;
+    final String normalizedQuery;
+
+    // The key of the query's response in the response cache.
+    final String cacheKey;
+
+    // The SHA-256 hash of the query if it is sent as a persisted query, or null.
+    String hash;
+
+    // Whether the query text was included in the last request.
+    boolean sentQuery;
+
+    // Whether the query has been sent again after a persisted query error.
+    boolean retried;
+
+    PendingQuery(final String name, final String query, final String normalizedQuery,
+        final String cacheKey, final String hash) {
+      this.name = name;
+      this.query = query;
+      this.normalizedQuery = normalizedQuery;
+      this.cacheKey = cacheKey;
+      this.hash = hash;
+    }
+  }
+
   /**
    * Creates a new GraphQL component.
    *
@@ -133,6 +187,9 @@ public class GraphQL extends AndroidNonvisibleComponent implements Component {
     // Set the new URL.
     endpointURL = gqlUrl;
 
+    // Responses from the old endpoint are never used again.
+    responseCache.clear();
+
     // Log URL change.
     Log.d(LOG_TAG, "Endpoint URL changed to " + gqlUrl + ".");
   }
@@ -148,6 +205,9 @@ public class GraphQL extends AndroidNonvisibleComponent implements Component {
     // Set the new HTTP headers string.
     httpHeaders = gqlHttpHeaders;
 
+    // Responses for the old headers are never used again.
+    responseCache.clear();
+
     // Log header change.
     Log.d(LOG_TAG, "HTTP headers changed to " + gqlHttpHeaders + ".");
 
@@ -198,6 +258,93 @@ public class GraphQL extends AndroidNonvisibleComponent implements Component {
     }
   }
 
+  /**
+   * Getter for the batch window.
+   *
+   * @return the number of milliseconds that queries are collected before they are sent together.
+   */
+  @SimpleProperty(category = PropertyCategory.BEHAVIOR,
+      description = "Gets the number of milliseconds that queries are collected before they are sent "
+          + "together.")
+  public int GqlBatchWindow() {
+    return batchWindow;
+  }
+
+  /**
+   * Specifies the number of milliseconds that queries are collected before they are sent together
+   * in one request. The endpoint must accept an array of queries, and the result of each query
+   * still triggers its own event. A window of 0 sends every query on its own.
+   *
+   * @param milliseconds the batch window in milliseconds.
+   */
+  @DesignerProperty(editorType = PropertyTypeConstants.PROPERTY_TYPE_NON_NEGATIVE_INTEGER,
+      defaultValue = "0")
+  @SimpleProperty(description = "Sets the number of milliseconds that queries are collected before "
+      + "they are sent together in one request. The endpoint must support batched queries. A "
+      + "window of 0 sends every query on its own.")
+  public void GqlBatchWindow(final int milliseconds) {
+    batchWindow = Math.max(0, milliseconds);
+
+    // Queries that are waiting should not wait longer than the new window.
+    if (!pendingQueries.isEmpty()) {
+      androidUIHandler.removeCallbacks(sendPendingQueries);
+      androidUIHandler.postDelayed(sendPendingQueries, batchWindow);
+    }
+  }
+
+  /**
+   * Getter for whether persisted queries are used.
+   *
+   * @return true if queries are sent as persisted queries.
+   */
+  @SimpleProperty(category = PropertyCategory.BEHAVIOR,
+      description = "Gets whether queries are sent as automatic persisted queries.")
+  public boolean GqlPersistedQueries() {
+    return persistedQueries;
+  }
+
+  /**
+   * Specifies whether queries are sent as automatic persisted queries. The first time a query is
+   * sent, its text is sent together with its SHA-256 hash, and the endpoint stores it. After that
+   * only the hash is sent. Endpoints that do not support persisted queries are sent the full text.
+   *
+   * @param enabled true to send queries as persisted queries.
+   */
+  @DesignerProperty(editorType = PropertyTypeConstants.PROPERTY_TYPE_BOOLEAN,
+      defaultValue = "False")
+  @SimpleProperty(description = "Sets whether queries are sent as automatic persisted queries, "
+      + "which sends only the hash of a query once the endpoint has stored it.")
+  public void GqlPersistedQueries(final boolean enabled) {
+    persistedQueries = enabled;
+  }
+
+  /**
+   * Getter for the cache time to live.
+   *
+   * @return the number of milliseconds that responses are cached.
+   */
+  @SimpleProperty(category = PropertyCategory.BEHAVIOR,
+      description = "Gets the number of milliseconds that query responses are cached.")
+  public int GqlCacheTimeToLive() {
+    return (int) responseCache.getTimeToLive();
+  }
+
+  /**
+   * Specifies the number of milliseconds that responses are cached. Running a query again within
+   * this time, even if it is formatted differently, triggers the response event with the cached
+   * data without contacting the endpoint. Responses with errors and responses to mutations are not
+   * cached, and every mutation empties the cache. A time of 0 disables the cache.
+   *
+   * @param milliseconds the cache time to live in milliseconds.
+   */
+  @DesignerProperty(editorType = PropertyTypeConstants.PROPERTY_TYPE_NON_NEGATIVE_INTEGER,
+      defaultValue = "0")
+  @SimpleProperty(description = "Sets the number of milliseconds that query responses are cached. "
+      + "Mutations are never cached and empty the cache. A time of 0 disables the cache.")
+  public void GqlCacheTimeToLive(final int milliseconds) {
+    responseCache.setTimeToLive(milliseconds);
+  }
+
   /**
    * Triggers an event indicating that the given operation has successfully executed and returned data. This method
    * should be executed in the application's main thread.
@@ -236,18 +383,67 @@ public class GraphQL extends AndroidNonvisibleComponent implements Component {
    */
   @SimpleFunction(description = "Execute a GraphQL query against the endpoint.")
   public void GqlQuery(final String gqlQueryName, final String gqlQuery) {
+    final String normalizedQuery = GqlResponseCache.normalize(gqlQuery);
+    final String cacheKey = cacheKey(normalizedQuery);
+
+    if (GqlResponseCache.isMutation(normalizedQuery)) {
+      // A mutation may change any of the cached data.
+      responseCache.clear();
+    } else if (dispatchCachedResponse(gqlQueryName, cacheKey)) {
+      return;
+    }
+
+    final PendingQuery query = new PendingQuery(gqlQueryName, gqlQuery, normalizedQuery,
+        cacheKey, persistedQueries ? sha256(gqlQuery) : null);
+
+    // Collect the query if batching is enabled.
+    if (batchWindow > 0) {
+      pendingQueries.add(query);
+      if (pendingQueries.size() == 1) {
+        androidUIHandler.postDelayed(sendPendingQueries, batchWindow);
+      }
+
+      // Log query request.
+      Log.d(LOG_TAG, "Query for " + gqlQueryName + " has been batched.");
+      return;
+    }
+
+    sendQueries(Collections.singletonList(query));
+
+    // Log query request.
+    Log.d(LOG_TAG, "Query for " + gqlQueryName + " has been enqueued.");
+  }
+
+  /**
+   * Sends the queries collected during the batch window in one request.
+   */
+  private void sendPendingQueries() {
+    if (pendingQueries.isEmpty()) {
+      return;
+    }
+    final List<PendingQuery> queries = new ArrayList<>(pendingQueries);
+    pendingQueries.clear();
+    sendQueries(queries);
+
+    // Log batch request.
+    Log.d(LOG_TAG, "Batch of " + queries.size() + " queries has been enqueued.");
+  }
+
+  /**
+   * Asynchronously sends queries in one request.
+   *
+   * @param queries the queries to send.
+   */
+  private void sendQueries(final List<PendingQuery> queries) {
     // Method name for error handling.
     final String METHOD = "GqlQuery";
 
-    // Build the post data.
-    final byte[] postData = buildPost(gqlQuery, null, null);
-
     // Asynchronously complete request.
     AsynchUtil.runAsynchronously(new Runnable() {
       @Override
       public void run() {
         try {
-          performRequest(gqlQueryName, postData);
+          performRequest(queries);
         } catch (final PermissionException e) {
           form.dispatchPermissionDeniedEvent(GraphQL.this, METHOD, e);
         } catch (final FileUtil.FileException e) {
@@ -258,32 +454,76 @@ public class GraphQL extends AndroidNonvisibleComponent implements Component {
         }
       }
     });
+  }
 
-    // Log query request.
-    Log.d(LOG_TAG, "Query for " + gqlQueryName + " has been enqueued.");
+  /**
+   * Returns the key of the response to a query in the response cache. Responses depend on the
+   * endpoint and on the headers, which may carry the user's credentials, as well as the query.
+   *
+   * @param normalizedQuery the normalized query string.
+   */
+  private String cacheKey(final String normalizedQuery) {
+    return endpointURL + "\n" + httpHeaders + "\n" + normalizedQuery;
+  }
+
+  /**
+   * Triggers the response event with cached data, if there is any.
+   *
+   * @param queryName the query name associated with the response.
+   * @param cacheKey  the key of the response in the cache.
+   * @return true if a cached response was found.
+   */
+  private boolean dispatchCachedResponse(final String queryName, final String cacheKey) {
+    final String cached = responseCache.get(cacheKey);
+    if (cached == null) {
+      return false;
+    }
+    final Object listOfListData;
+    try {
+      listOfListData = JsonUtil.convertJsonItem(new JSONObject(cached));
+    } catch (final JSONException e) {
+      // We do not expect to get here, since only valid JSON is cached.
+      return false;
+    }
+
+    // Post data on the application's main UI thread, as if it came from the endpoint.
+    androidUIHandler.post(new Runnable() {
+      @Override
+      public void run() {
+        GqlGotResponse(queryName, listOfListData);
+      }
+    });
+
+    // Log cache hit.
+    Log.d(LOG_TAG, "Query for " + queryName + " was answered from the cache.");
+    return true;
   }
 
   /**
-   * Gets the bytes for the body of a GraphQL query POST request.
+   * Gets the bytes for the body of a GraphQL POST request. A single query is sent as an object, and
+   * several queries as an array of objects.
    *
-   * @param query         the input query string.
-   * @param operationName the operation name of the query, which can be null.
-   * @param variables     the variables associated with this query, which can be null.
+   * @param queries the queries to send.
    * @return a byte array representing the POST request body.
    */
-  private static byte[] buildPost(final String query, final String operationName, final Map<String, Object> variables) {
+  private byte[] buildPost(final List<PendingQuery> queries) {
     try {
-      // Construct the GraphQL query in standard JSON format.
-      final JSONObject queryBody = new JSONObject();
-      queryBody.put("query", query);
-      queryBody.put("operationName", (operationName == null) ? JSONObject.NULL : operationName);
-      queryBody.put("variables", (variables == null) ? JSONObject.NULL : new JSONObject(variables));
+      final String body;
+      if (queries.size() == 1) {
+        body = buildQuery(queries.get(0)).toString();
+      } else {
+        final JSONArray batch = new JSONArray();
+        for (final PendingQuery query : queries) {
+          batch.put(buildQuery(query));
+        }
+        body = batch.toString();
+      }
 
       // Log query.
-      Log.d(LOG_TAG, "Building query " + queryBody + ".");
+      Log.d(LOG_TAG, "Building query " + body + ".");
 
       // Get the byte encoding.
-      return queryBody.toString().getBytes(StandardCharsets.UTF_8);
+      return body.getBytes(StandardCharsets.UTF_8);
     } catch (final JSONException e) {
       // We do not expect to get here.
       Log.e(LOG_TAG, "Error building post body.", e);
@@ -291,10 +531,64 @@ public class GraphQL extends AndroidNonvisibleComponent implements Component {
     }
   }
 
-  private void performRequest(final String queryName, final byte[] postData) throws IOException {
+  /**
+   * Builds a GraphQL query in standard JSON format. The query text is left out if it is sent as a
+   * persisted query that the endpoint has already stored.
+   *
+   * @param query the query to send.
+   * @return the JSON object for the query.
+   */
+  private JSONObject buildQuery(final PendingQuery query) throws JSONException {
+    final JSONObject queryBody = new JSONObject();
+    query.sentQuery = query.hash == null || !persistedHashes.contains(query.hash);
+    if (query.sentQuery) {
+      queryBody.put("query", query.query);
+    }
+    queryBody.put("operationName", JSONObject.NULL);
+    queryBody.put("variables", JSONObject.NULL);
+    if (query.hash != null) {
+      final JSONObject persistedQuery = new JSONObject();
+      persistedQuery.put("version", 1);
+      persistedQuery.put("sha256Hash", query.hash);
+      final JSONObject extensions = new JSONObject();
+      extensions.put("persistedQuery", persistedQuery);
+      queryBody.put("extensions", extensions);
+    }
+    return queryBody;
+  }
+
+  /**
+   * Gets the lowercase hexadecimal SHA-256 hash of a query, as used by automatic persisted queries.
+   *
+   * @param query the query string.
+   * @return the hash of the UTF-8 bytes of the query.
+   */
+  private static String sha256(final String query) {
+    final byte[] digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256").digest(query.getBytes(StandardCharsets.UTF_8));
+    } catch (final NoSuchAlgorithmException e) {
+      // Every Java platform supports SHA-256.
+      throw new RuntimeException(e);
+    }
+    final StringBuilder sb = new StringBuilder(2 * digest.length);
+    for (final byte b : digest) {
+      sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+      sb.append(Character.forDigit(b & 0xf, 16));
+    }
+    return sb.toString();
+  }
+
+  private void performRequest(final List<PendingQuery> queries) throws IOException {
+    // Build the post data.
+    final byte[] postData = buildPost(queries);
+
     // Open the connection.
     final HttpURLConnection connection = openConnection();
 
+    // Queries that must be sent again after a persisted query error.
+    final List<PendingQuery> retries;
+
     // Always close the connection.
     try {
       // Set the length of data to be posted.
@@ -310,10 +604,14 @@ public class GraphQL extends AndroidNonvisibleComponent implements Component {
       processResponseCookies(connection);
 
       // Handle the response.
-      handleResponse(queryName, connection);
+      retries = handleResponse(queries, connection);
     } finally {
-      // Destroy the connection.
-      connection.disconnect();
+      // Hand the connection back so that the next query can reuse it.
+      SharedHttpClient.release(connection);
+    }
+
+    if (!retries.isEmpty()) {
+      performRequest(retries);
     }
   }
 
@@ -323,40 +621,45 @@ public class GraphQL extends AndroidNonvisibleComponent implements Component {
   private HttpURLConnection openConnection() throws IOException {
     // Open a connection to the endpoint.
     final URL url = new URL(endpointURL);
-    final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-
-    // We are sending a POST request.
-    connection.setRequestMethod("POST");
-    connection.setDoOutput(true);
-
-    // Add custom request headers.
-    for (final Map.Entry<String, List<String>> header : headersMap.entrySet()) {
-      final String name = header.getKey();
-      for (final String value : header.getValue()) {
-        connection.addRequestProperty(name, value);
+    final HttpURLConnection connection = SharedHttpClient.open(url);
+    try {
+      // We are sending a POST request.
+      connection.setRequestMethod("POST");
+      connection.setDoOutput(true);
+
+      // Add custom request headers.
+      for (final Map.Entry<String, List<String>> header : headersMap.entrySet()) {
+        final String name = header.getKey();
+        for (final String value : header.getValue()) {
+          connection.addRequestProperty(name, value);
+        }
       }
-    }
 
-    // Set the content type.
-    connection.setRequestProperty("Content-Type", "application/json; charset=utf-8");
+      // Set the content type.
+      connection.setRequestProperty("Content-Type", "application/json; charset=utf-8");
 
-    // Get the cookies.
-    try {
-      cookiesMap.clear();
-      cookiesMap = cookieHandler.get(url.toURI(), headersMap);
-    } catch (final IOException | URISyntaxException e) {
-      // Sorry, no cookies for you.
-    }
+      // Get the cookies.
+      try {
+        cookiesMap.clear();
+        cookiesMap = cookieHandler.get(url.toURI(), headersMap);
+      } catch (final IOException | URISyntaxException e) {
+        // Sorry, no cookies for you.
+      }
 
-    // Add cookies.
-    for (final Map.Entry<String, List<String>> cookie : cookiesMap.entrySet()) {
-      final String name = cookie.getKey();
-      for (String value : cookie.getValue()) {
-        connection.addRequestProperty(name, value);
+      // Add cookies.
+      for (final Map.Entry<String, List<String>> cookie : cookiesMap.entrySet()) {
+        final String name = cookie.getKey();
+        for (String value : cookie.getValue()) {
+          connection.addRequestProperty(name, value);
+        }
       }
-    }
 
-    return connection;
+      return connection;
+    } catch (Throwable e) {
+      // Return the permit taken by open before passing on the failure
+      SharedHttpClient.release(connection);
+      throw e;
+    }
   }
 
   /**
@@ -387,12 +690,7 @@ public class GraphQL extends AndroidNonvisibleComponent implements Component {
     }
 
     // Determine the input stream.
-    InputStream inputStream;
-    try {
-      inputStream = connection.getInputStream();
-    } catch (final IOException e) {
-      inputStream = connection.getErrorStream();
-    }
+    final InputStream inputStream = SharedHttpClient.getResponseStream(connection);
 
     if (inputStream == null) {
       return null;
@@ -429,54 +727,156 @@ public class GraphQL extends AndroidNonvisibleComponent implements Component {
     });
   }
 
-  private void handleResponse(final String queryName, final HttpURLConnection connection) throws IOException {
+  /**
+   * Dispatches the results of a request to the events of the queries it contained.
+   *
+   * @param queries    the queries sent in the request.
+   * @param connection the HTTP connection object.
+   * @return the queries that must be sent again because of a persisted query error.
+   */
+  private List<PendingQuery> handleResponse(final List<PendingQuery> queries,
+      final HttpURLConnection connection) throws IOException {
+    final List<PendingQuery> retries = new ArrayList<>();
+
+    // The queries whose events have been dispatched, or that will be sent again.
+    final Set<PendingQuery> handled = new HashSet<>();
+
     // Get the response string.
     final String responseString = getResponseContent(connection);
 
     // If there is no response, indicate the response code.
     if (responseString == null) {
-      dispatchError(queryName, "Got unexpected response code " + connection.getResponseCode() + ".");
+      for (final PendingQuery query : queries) {
+        dispatchError(query.name, "Got unexpected response code " + connection.getResponseCode() + ".");
+      }
+      return retries;
     }
 
     // Any JSON errors should indicate that the response is malformed.
     try {
       // Parse the response JSON into a known format for further processing.
-      final JSONObject responseMap = (JSONObject) (new JSONTokener(responseString)).nextValue();
+      final Object response = (new JSONTokener(responseString)).nextValue();
+
+      if (response instanceof JSONArray) {
+        // A batch is answered with the results in the order of the queries.
+        final JSONArray results = (JSONArray) response;
+        for (int i = 0; i < queries.size(); i++) {
+          handleResult(queries.get(i), results.optJSONObject(i), retries, handled);
+        }
+      } else {
+        // A single query, or a batch that the endpoint rejected as a whole.
+        final JSONObject responseMap = (JSONObject) response;
+        for (final PendingQuery query : queries) {
+          handleResult(query, responseMap, retries, handled);
+        }
+      }
+    } catch (final JSONException | ClassCastException e) {
+      for (final PendingQuery query : queries) {
+        if (handled.add(query)) {
+          dispatchError(query.name, "Response JSON is malformed.");
+        }
+      }
+    }
+    return retries;
+  }
 
-      // If there were errors, trigger the appropriate event.
-      if (responseMap.has("errors")) {
-        // Get the error JSON array.
-        final JSONArray jsonArray = responseMap.getJSONArray("errors");
+  /**
+   * Dispatches the result of a single query, or an error if the result is malformed.
+   *
+   * @param query       the query.
+   * @param responseMap the result of the query, or null if there is none.
+   * @param retries     the list to add the query to if it must be sent again.
+   * @param handled     the set to add the query to once it has been dispatched.
+   */
+  private void handleResult(final PendingQuery query, final JSONObject responseMap,
+      final List<PendingQuery> retries, final Set<PendingQuery> handled) {
+    if (responseMap != null) {
+      try {
+        dispatchResult(query, responseMap, retries, handled);
+        return;
+      } catch (final JSONException | ClassCastException e) {
+        // Fall through to fail the query.
+      }
+    }
+    // Only fail the query if neither an event nor a retry was already dispatched for it.
+    if (handled.add(query)) {
+      dispatchError(query.name, "Response JSON is malformed.");
+    }
+  }
 
-        // Construct a list of error messages.
-        final List<String> errorMessages = new ArrayList<String>();
+  /**
+   * Dispatches the result of a single query.
+   *
+   * @param query       the query.
+   * @param responseMap the result of the query.
+   * @param retries     the list to add the query to if it must be sent again.
+   * @param handled     the set to add the query to once it has been dispatched.
+   */
+  private void dispatchResult(final PendingQuery query, final JSONObject responseMap,
+      final List<PendingQuery> retries, final Set<PendingQuery> handled) throws JSONException {
+    final String queryName = query.name;
+    final boolean hasErrors = responseMap.has("errors");
+
+    // If there were errors, trigger the appropriate event.
+    if (hasErrors) {
+      // Get the error JSON array.
+      final JSONArray jsonArray = responseMap.getJSONArray("errors");
+
+      // Construct a list of error messages.
+      final List<String> errorMessages = new ArrayList<String>();
+
+      // Populate error messages.
+      for (int i = 0; i < jsonArray.length(); i++) {
+        final JSONObject errorObject = jsonArray.getJSONObject(i);
+        errorMessages.add(errorObject.getString("message"));
+      }
 
-        // Populate error messages.
-        for (int i = 0; i < jsonArray.length(); i++) {
-          final JSONObject errorObject = jsonArray.getJSONObject(i);
-          errorMessages.add(errorObject.getString("message"));
+      // Send the query again if the endpoint did not know or did not support its hash.
+      if (query.hash != null && !query.retried) {
+        if (errorMessages.contains("PersistedQueryNotFound")) {
+          persistedHashes.remove(query.hash);
+          query.retried = true;
+          retries.add(query);
+          handled.add(query);
+          return;
+        } else if (errorMessages.contains("PersistedQueryNotSupported")) {
+          query.hash = null;
+          query.retried = true;
+          retries.add(query);
+          handled.add(query);
+          return;
         }
-
-        // Dispatch errors.
-        dispatchError(queryName, errorMessages);
       }
 
-      // If there were data entries, trigger the appropriate event.
-      if (responseMap.has("data")) {
-        // Extract data from response and convert to a list of list representation.
-        final JSONObject jsonObject = responseMap.getJSONObject("data");
-        final Object listOfListData = JsonUtil.convertJsonItem(jsonObject);
-
-        // Post data on the application's main UI thread.
-        androidUIHandler.post(new Runnable() {
-          @Override
-          public void run() {
-            GqlGotResponse(queryName, listOfListData);
-          }
-        });
+      // Dispatch errors.
+      dispatchError(queryName, errorMessages);
+      handled.add(query);
+    } else if (query.hash != null && query.sentQuery) {
+      // The endpoint has stored the query, so its hash is enough from now on.
+      persistedHashes.add(query.hash);
+    }
+
+    // If there were data entries, trigger the appropriate event.
+    if (responseMap.has("data")) {
+      // Extract data from response and convert to a list of list representation.
+      final JSONObject jsonObject = responseMap.getJSONObject("data");
+      final Object listOfListData = JsonUtil.convertJsonItem(jsonObject);
+
+      // Cache complete responses to queries, unless the endpoint or headers changed since the
+      // query was made.
+      if (!hasErrors && !GqlResponseCache.isMutation(query.normalizedQuery)
+          && query.cacheKey.equals(cacheKey(query.normalizedQuery))) {
+        responseCache.put(query.cacheKey, jsonObject.toString());
       }
-    } catch (final JSONException e) {
-      dispatchError(queryName, "Response JSON is malformed.");
+
+      // Post data on the application's main UI thread.
+      androidUIHandler.post(new Runnable() {
+        @Override
+        public void run() {
+          GqlGotResponse(queryName, listOfListData);
+        }
+      });
+      handled.add(query);
     }
   }
 
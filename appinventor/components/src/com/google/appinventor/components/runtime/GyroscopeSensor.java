@@ -104,8 +104,10 @@ public class GyroscopeSensor extends AndroidNonvisibleComponent
       "timestamp parameter is the time in nanoseconds at which the event occurred.")
   public void GyroscopeChanged(
       float xAngularVelocity, float yAngularVelocity, float zAngularVelocity, long timestamp) {
-    EventDispatcher.dispatchEvent(this, "GyroscopeChanged",
-        xAngularVelocity, yAngularVelocity, zAngularVelocity, timestamp);
+    if (EventDispatcher.hasEventHandler(this, "GyroscopeChanged")) {
+      EventDispatcher.dispatchEvent(this, "GyroscopeChanged",
+          xAngularVelocity, yAngularVelocity, zAngularVelocity, timestamp);
+    }
   }
 
   // Properties
@@ -31,6 +31,7 @@ import android.graphics.drawable.Drawable;
 import android.util.Log;
 import android.view.View;
 import android.view.View.OnClickListener;
+import android.view.ViewGroup;
 import android.widget.ImageView;
 
 import java.io.IOException;
@@ -157,9 +158,14 @@ public final class Image extends AndroidViewComponent {
     }
     picturePath = (path == null) ? "" : path;
 
+    // An image shown in a view of a fixed size need not be decoded any larger than the view.
+    ViewGroup.LayoutParams params = view.getLayoutParams();
+    int width = params != null && params.width > 0 ? params.width : 0;
+    int height = params != null && params.height > 0 ? params.height : 0;
+
     Drawable drawable;
     try {
-      drawable = MediaUtil.getBitmapDrawable(container.$form(), picturePath);
+      drawable = MediaUtil.getBitmapDrawable(container.$form(), picturePath, width, height);
     } catch (IOException ioe) {
       Log.e("Image", "Unable to load " + picturePath);
       drawable = null;
@@ -9,6 +9,7 @@ package com.google.appinventor.components.runtime;
 import java.io.IOException;
 
 import android.graphics.Bitmap;
+import android.graphics.Rect;
 import android.graphics.drawable.BitmapDrawable;
 import android.util.Log;
 
@@ -113,6 +114,19 @@ public class ImageSprite extends Sprite {
     }
   }
  
+  @Override
+  void getDrawingBounds(Rect bounds) {
+    super.getDrawingBounds(bounds);
+    if (rotates) {
+      // A rotated picture stays within the circle through its corners.
+      int halfDiagonal = (int) Math.ceil(Math.hypot(bounds.width(), bounds.height()) / 2);
+      int centerX = bounds.centerX();
+      int centerY = bounds.centerY();
+      bounds.set(centerX - halfDiagonal, centerY - halfDiagonal,
+          centerX + halfDiagonal, centerY + halfDiagonal);
+    }
+  }
+
   /**
    * Returns the path of the sprite's picture
    *
@@ -140,7 +154,10 @@ public class ImageSprite extends Sprite {
   public void Picture(String path) {
     picturePath = (path == null) ? "" : path;
     try {
-      drawable = MediaUtil.getBitmapDrawable(form, picturePath);
+      // A sprite of a fixed size need not be decoded any larger than it is drawn.
+      int width = widthHint > 0 ? (int) (widthHint * form.deviceDensity()) : 0;
+      int height = heightHint > 0 ? (int) (heightHint * form.deviceDensity()) : 0;
+      drawable = MediaUtil.getBitmapDrawable(form, picturePath, width, height);
     } catch (IOException ioe) {
       Log.e("ImageSprite", "Unable to load " + picturePath);
       drawable = null;
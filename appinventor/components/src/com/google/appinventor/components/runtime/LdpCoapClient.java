@@ -19,6 +19,7 @@ import com.google.appinventor.components.common.PropertyTypeConstants;
 import com.google.appinventor.components.common.YaVersion;
 import com.google.appinventor.components.runtime.errors.PermissionException;
 import com.google.appinventor.components.runtime.util.BulkPermissionRequest;
+import com.google.appinventor.components.runtime.util.CoapSession;
 import com.google.appinventor.components.runtime.util.ErrorMessages;
 import com.google.appinventor.components.runtime.util.FileUtil;
 import android.Manifest;
@@ -32,6 +33,7 @@ import org.eclipse.californium.core.CoapResponse;
 import org.eclipse.californium.core.coap.MediaTypeRegistry;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
 
 import com.google.appinventor.components.annotations.UsesLibraries;
 
@@ -55,7 +57,7 @@ import com.google.appinventor.components.annotations.UsesLibraries;
 "element-connector-1.0.7.jar")
 
 public final class LdpCoapClient extends AndroidNonvisibleComponent
-        implements Component {
+        implements Component, OnDestroyListener, Deleteable {
 
     private static final String TAG = "LdpCoapClient";
 
@@ -63,8 +65,41 @@ public final class LdpCoapClient extends AndroidNonvisibleComponent
     protected CoapResponse resp = null;
     protected String containerType = "ldp:BasicContainer";
 
+    // All requests of this component go through the endpoint of this session
+    private final CoapSession session;
+
     public LdpCoapClient(final ComponentContainer<? extends Component> container) {
         super(container.$form());
+        session = new CoapSession(new CoapSession.ResponseListener() {
+            @Override
+            public void onResponse(final int requestId, final CoapResponse response) {
+                form.runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (response == null) {
+                            RequestFailed(requestId);
+                        } else {
+                            GotResponse(requestId, response.getCode().toString(),
+                                MediaTypeRegistry.toString(response.getOptions().getContentFormat()),
+                                response.getResponseText());
+                        }
+                    }
+                });
+            }
+
+            @Override
+            public void onNotification(final int requestId, final CoapResponse response) {
+                form.runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        ResourceChanged(requestId,
+                            MediaTypeRegistry.toString(response.getOptions().getContentFormat()),
+                            response.getResponseText());
+                    }
+                });
+            }
+        });
+        form.registerForOnDestroy(this);
     }
     
 
@@ -153,56 +188,56 @@ public final class LdpCoapClient extends AndroidNonvisibleComponent
     @SimpleFunction(description = "LDP-CoAP Get method")
     public void Get(String resource, int type) {
         CoapClient client;
-        client = new CoapClient(BASE_URI + "/" + resource);
+        client = session.newClient(BASE_URI + "/" + resource);
         resp = client.get(type);
     }
 
     @SimpleFunction(description = "Discover resources in text/turtle format")
     public void DiscoverResourcesTextTurtle() {
         CoapClient client;
-        client = new CoapClient(BASE_URI + "/.well-known/core");
+        client = session.newClient(BASE_URI + "/.well-known/core");
         resp = client.get(MediaTypeRegistry.TEXT_TURTLE);
     }
 
     @SimpleFunction(description = "Discover resources in text/plain format")
     public void DiscoverResourcesTextPlain() {
         CoapClient client;
-        client = new CoapClient(BASE_URI + "/.well-known/core");
+        client = session.newClient(BASE_URI + "/.well-known/core");
         resp = client.get(MediaTypeRegistry.TEXT_PLAIN);
     }
 
     @SimpleFunction(description = "LDiscover resources in application/rdf-patch format")
     public void DiscoverResourcesRdfPatch() {
         CoapClient client;
-        client = new CoapClient(BASE_URI + "/.well-known/core");
+        client = session.newClient(BASE_URI + "/.well-known/core");
         resp = client.get(MediaTypeRegistry.APPLICATION_RDF_PATCH);
     }
 
     @SimpleFunction(description = "Discover resources of a specific type in text/turtle format")
     public void DiscoverTypeResourcesTextTurtle(String type) {
         CoapClient client;
-        client = new CoapClient(BASE_URI + "/.well-known/core?rt=" + type);
+        client = session.newClient(BASE_URI + "/.well-known/core?rt=" + type);
         resp = client.get(MediaTypeRegistry.TEXT_TURTLE);
     }
 
     @SimpleFunction(description = "Discover resources of a specific type in text/plain format")
     public void DiscoverTypeResourcesTextPlain(String type) {
         CoapClient client;
-        client = new CoapClient(BASE_URI + "/.well-known/core?rt=" + type);
+        client = session.newClient(BASE_URI + "/.well-known/core?rt=" + type);
         resp = client.get(MediaTypeRegistry.TEXT_PLAIN);
     }
 
     @SimpleFunction(description = "Discover resources of a specific type in application/rdf-patch format")
     public void DiscoverTypeResourcesRdfPatch(String type) {
         CoapClient client;
-        client = new CoapClient(BASE_URI + "/.well-known/core?rt=" + type);
+        client = session.newClient(BASE_URI + "/.well-known/core?rt=" + type);
         resp = client.get(MediaTypeRegistry.APPLICATION_RDF_PATCH);
     }
 
     @SimpleFunction(description = "CoAP Delete resource")
     public void Delete(String resource) {
         CoapClient client;
-        client = new CoapClient(BASE_URI + "/" + resource);
+        client = session.newClient(BASE_URI + "/" + resource);
         resp = client.delete();
     }
 
@@ -210,10 +245,10 @@ public final class LdpCoapClient extends AndroidNonvisibleComponent
     public void Post(String resource, int type, String data, String title) {
         CoapClient client;
         if(resource.contains("?")){
-            client = new CoapClient(BASE_URI + "/" + resource + "&title=" + title);
+            client = session.newClient(BASE_URI + "/" + resource + "&title=" + title);
         }
         else {
-            client = new CoapClient(BASE_URI + "/" + resource + "?title=" + title);
+            client = session.newClient(BASE_URI + "/" + resource + "?title=" + title);
         }
         resp = client.post(data, type);
     }
@@ -222,10 +257,10 @@ public final class LdpCoapClient extends AndroidNonvisibleComponent
     public void Head(String resource) {
         CoapClient client;
         if(resource.contains("?")){
-            client = new CoapClient(BASE_URI + "/" + resource + "&ldp=head");
+            client = session.newClient(BASE_URI + "/" + resource + "&ldp=head");
         }
         else {
-            client = new CoapClient(BASE_URI + "/" + resource + "?ldp=head");
+            client = session.newClient(BASE_URI + "/" + resource + "?ldp=head");
         }
         resp = client.get();
     }
@@ -252,10 +287,10 @@ public final class LdpCoapClient extends AndroidNonvisibleComponent
     public void Options(String resource) {
         CoapClient client;
         if(resource.contains("?")){
-            client = new CoapClient(BASE_URI + "/" + resource + "&ldp=options");
+            client = session.newClient(BASE_URI + "/" + resource + "&ldp=options");
         }
         else {
-            client = new CoapClient(BASE_URI + "/" + resource + "?ldp=options");
+            client = session.newClient(BASE_URI + "/" + resource + "?ldp=options");
         }
         resp = client.get();
     }
@@ -273,7 +308,7 @@ public final class LdpCoapClient extends AndroidNonvisibleComponent
     @SimpleFunction(description = "PUT Request")
     public void Put(String resource, int type, String data) {
         CoapClient client;
-        client = new CoapClient(BASE_URI + "/" + resource);
+        client = session.newClient(BASE_URI + "/" + resource);
         resp = client.get(type);
         if(resp!=null && CoAP.ResponseCode.isSuccess(resp.getCode())) {
             byte[] etag = computeETag(resp.getOptions().toString().substring(10, 26));
@@ -287,19 +322,19 @@ public final class LdpCoapClient extends AndroidNonvisibleComponent
     @SimpleFunction(description = "PUT Request")
     public void PutEtagInput(String resource, int type, String data, String etag) {
         CoapClient client;
-        client = new CoapClient(BASE_URI + "/" + resource);
+        client = session.newClient(BASE_URI + "/" + resource);
         resp = client.putIfMatch(data, type, computeETag(etag));
     }
     @SimpleFunction(description = "PATCH Request")
     public void Patch(String resource, int type, String data) {
         CoapClient client;
-        client = new CoapClient(BASE_URI + "/" + resource);
+        client = session.newClient(BASE_URI + "/" + resource);
         resp = client.get();
         if(resource.contains("?")){
-            client = new CoapClient(BASE_URI + "/" + resource + "$ldp=patch");
+            client = session.newClient(BASE_URI + "/" + resource + "$ldp=patch");
         }
         else {
-            client = new CoapClient(BASE_URI + "/" + resource + "?ldp=patch");
+            client = session.newClient(BASE_URI + "/" + resource + "?ldp=patch");
         }
         if(CoAP.ResponseCode.isSuccess(resp.getCode())) {
             byte[] etag = computeETag(resp.getOptions().toString().substring(10, 26));
@@ -310,13 +345,112 @@ public final class LdpCoapClient extends AndroidNonvisibleComponent
     public void PatchEtagInput(String resource, int type, String data, String etag) {
         CoapClient client;
         if(resource.contains("?")){
-            client = new CoapClient(BASE_URI + "/" + resource + "$ldp=patch");
+            client = session.newClient(BASE_URI + "/" + resource + "$ldp=patch");
         }
         else {
-            client = new CoapClient(BASE_URI + "/" + resource + "?ldp=patch");
+            client = session.newClient(BASE_URI + "/" + resource + "?ldp=patch");
         }
         resp = client.putIfMatch(data, type, computeETag(etag));
     }
+
+    @SimpleProperty(description = "The largest payload in bytes that is sent or received in "
+        + "one message. Larger payloads are transferred in blocks of this size.",
+        category = PropertyCategory.BEHAVIOR)
+    public int BlockSize() {
+        return session.getBlockSize();
+    }
+
+    /**
+     * Specifies the block size for block-wise transfers of large payloads. The size is rounded
+     * down to a power of two between 16 and 1024 bytes.
+     */
+    @DesignerProperty(editorType = PropertyTypeConstants.PROPERTY_TYPE_NON_NEGATIVE_INTEGER,
+        defaultValue = "512")
+    @SimpleProperty
+    public void BlockSize(int size) {
+        session.setBlockSize(Integer.highestOneBit(Math.min(1024, Math.max(16, size))));
+    }
+
+    @SimpleFunction(description = "Sends a GET request without waiting for the response, "
+        + "and returns the id of the request. The GotResponse event reports the response.")
+    public int GetAsync(String resource, int type) {
+        return session.get(BASE_URI + "/" + resource, type);
+    }
+
+    @SimpleFunction(description = "Sends a POST request without waiting for the response, "
+        + "and returns the id of the request. The GotResponse event reports the response.")
+    public int PostAsync(String resource, int type, String data, String title) {
+        return session.post(resourceUri(resource, "title=" + title),
+            data.getBytes(StandardCharsets.UTF_8), type);
+    }
+
+    @SimpleFunction(description = "Sends a PUT request without waiting for the response, "
+        + "and returns the id of the request. If etag is not empty, the resource is only "
+        + "replaced if it still has that ETag. The GotResponse event reports the response.")
+    public int PutAsync(String resource, int type, String data, String etag) {
+        return session.put(BASE_URI + "/" + resource, data.getBytes(StandardCharsets.UTF_8),
+            type, etag.isEmpty() ? null : computeETag(etag));
+    }
+
+    @SimpleFunction(description = "Sends a PATCH request without waiting for the response, "
+        + "and returns the id of the request. If etag is not empty, the resource is only "
+        + "patched if it still has that ETag. The GotResponse event reports the response.")
+    public int PatchAsync(String resource, int type, String data, String etag) {
+        return session.put(resourceUri(resource, "ldp=patch"),
+            data.getBytes(StandardCharsets.UTF_8), type, etag.isEmpty() ? null : computeETag(etag));
+    }
+
+    @SimpleFunction(description = "Sends a DELETE request without waiting for the response, "
+        + "and returns the id of the request. The GotResponse event reports the response.")
+    public int DeleteAsync(String resource) {
+        return session.delete(BASE_URI + "/" + resource);
+    }
+
+    @SimpleFunction(description = "Starts observing a resource, and returns the id of the "
+        + "observation. The ResourceChanged event reports the current content of the resource "
+        + "and then every change, until StopObserving is called.")
+    public int Observe(String resource, int type) {
+        return session.observe(BASE_URI + "/" + resource, type);
+    }
+
+    @SimpleFunction(description = "Stops observing a resource. Returns false if the id does not "
+        + "belong to an observation that is still active.")
+    public boolean StopObserving(int requestId) {
+        return session.cancelObservation(requestId);
+    }
+
+    @SimpleEvent(description = "Indicates that the response to an asynchronous request arrived.")
+    public void GotResponse(int requestId, String responseCode, String contentFormat,
+        String responseText) {
+        EventDispatcher.dispatchEvent(this, "GotResponse", requestId, responseCode,
+            contentFormat, responseText);
+    }
+
+    @SimpleEvent(description = "Indicates that an observed resource has changed.")
+    public void ResourceChanged(int requestId, String contentFormat, String content) {
+        EventDispatcher.dispatchEvent(this, "ResourceChanged", requestId, contentFormat, content);
+    }
+
+    @SimpleEvent(description = "Indicates that an asynchronous request or an observation failed, "
+        + "because the server rejected it or did not answer in time.")
+    public void RequestFailed(int requestId) {
+        EventDispatcher.dispatchEvent(this, "RequestFailed", requestId);
+    }
+
+    @Override
+    public void onDestroy() {
+        session.shutdown();
+    }
+
+    @Override
+    public void onDelete() {
+        session.shutdown();
+    }
+
+    private String resourceUri(String resource, String query) {
+        return BASE_URI + "/" + resource + (resource.contains("?") ? "&" : "?") + query;
+    }
+
     @SimpleProperty(description = "text/plain code")
     public int TextPlain() {
         return MediaTypeRegistry.TEXT_PLAIN;
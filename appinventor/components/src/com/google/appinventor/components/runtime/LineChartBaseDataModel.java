@@ -8,14 +8,14 @@ package com.google.appinventor.components.runtime;
 import com.github.mikephil.charting.data.Entry;
 import com.github.mikephil.charting.data.LineData;
 import com.github.mikephil.charting.data.LineDataSet;
-import com.github.mikephil.charting.utils.EntryXComparator;
 import com.google.appinventor.components.common.ComponentConstants;
+import com.google.appinventor.components.runtime.util.TimeSeriesBuffer;
 import com.google.appinventor.components.runtime.util.YailList;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
+import java.util.RandomAccess;
 
 /**
  * Handles the data operations & model-specific styling for line-based
@@ -27,6 +27,55 @@ import java.util.List;
  */
 public abstract class LineChartBaseDataModel<V extends LineChartViewBase>
     extends PointChartDataModel<LineDataSet, LineData, V> {
+  /**
+   * The x and y values of the entries, sorted by x value. The entries
+   * List of the model is a view of the series.
+   */
+  private final TimeSeriesBuffer series = new TimeSeriesBuffer();
+
+  /**
+   * List of entries backed by the series. Entries are created when they
+   * are retrieved, so changes to a retrieved Entry are not stored.
+   */
+  private class SeriesEntryList extends AbstractList<Entry> implements RandomAccess {
+    @Override
+    public Entry get(int index) {
+      return new Entry(series.getX(index), series.getY(index));
+    }
+
+    @Override
+    public int size() {
+      return series.size();
+    }
+
+    @Override
+    public Entry set(int index, Entry entry) {
+      Entry previous = get(index);
+      series.set(index, entry.getX(), entry.getY());
+      return previous;
+    }
+
+    @Override
+    public void add(int index, Entry entry) {
+      series.insert(index, entry.getX(), entry.getY());
+      modCount++;
+    }
+
+    @Override
+    public Entry remove(int index) {
+      Entry previous = get(index);
+      series.remove(index);
+      modCount++;
+      return previous;
+    }
+
+    @Override
+    public void clear() {
+      series.clear();
+      modCount++;
+    }
+  }
+
   /**
    * Initializes a new LineChartBaseDataModel object instance.
    *
@@ -35,6 +84,7 @@ public abstract class LineChartBaseDataModel<V extends LineChartViewBase>
    */
   protected LineChartBaseDataModel(LineData data, V view) {
     super(data, view);
+    entries = new SeriesEntryList();
     dataset = new LineDataSet(new ArrayList<Entry>(), "");
     this.data.addDataSet(dataset); // Safe add
     setDefaultStylingProperties();
@@ -45,39 +95,58 @@ public abstract class LineChartBaseDataModel<V extends LineChartViewBase>
     Entry entry = getEntryFromTuple(tuple);
 
     if (entry != null) {
-            /* TODO: The commented out line should be used, however, it breaks in certain cases.
-               When this is fixed in MPAndroidChart, this method should use the commented method instead
-               of the current implementation.
-               See: https://github.com/PhilJay/MPAndroidChart/issues/4616
-            */
-      // getDataset().addEntryOrdered(entry);
-
-
-      // In Line Chart based data series, the data is already pre-sorted.
-      // We can thus run binary search by comparing with the x value, and
-      // using an x+1 value to find the insertion point
-      int index = Collections.binarySearch(entries, // Use the list of entries
-          entry, // Search for the same x value as the entry to be added
-          new EntryXComparator()); // Compare by x value
-
-      // Value not found: insertion point can be derived from it
-      if (index < 0) {
-        // result is (-(insertion point) - 1)
-        index = -index - 1;
-      } else {
-        // Get the entry count of the Data Set
-        int entryCount = entries.size();
-
-        // Iterate until an entry with a differing (higher) x value is found (this
-        // is where the value should be inserted)
-        // The reason for a loop is to pass through all the duplicate entries.
-        while (index < entryCount && entries.get(index).getX() == entry.getX()) {
-          index++;
-        }
+      /* TODO: getDataset().addEntryOrdered(entry) should be used, however, it breaks in
+         certain cases. See: https://github.com/PhilJay/MPAndroidChart/issues/4616
+      */
+
+      // In Line Chart based data series, the data is kept sorted by x value.
+      // The series finds the insertion point (after all the entries with the
+      // same x value) with a binary search.
+      series.add(entry.getX(), entry.getY());
+    }
+  }
+
+  @Override
+  public YailList findEntriesByCriterion(String value, EntryCriterion criterion) {
+    if (criterion != EntryCriterion.XValue) {
+      return super.findEntriesByCriterion(value, criterion);
+    }
+
+    List<YailList> tuples = new ArrayList<YailList>();
+
+    try {
+      // The entries with the x value are next to each other, so the
+      // matching range can be found with a binary search.
+      float xValue = Float.parseFloat(value);
+      int end = series.upperBound(xValue);
+      for (int i = series.lowerBound(xValue); i < end; ++i) {
+        tuples.add(getTupleFromEntry(entries.get(i)));
       }
+    } catch (NumberFormatException e) {
+      // Do nothing (no entries match)
+    }
+
+    return YailList.makeList(tuples);
+  }
+
+  @Override
+  protected int findEntryIndex(Entry entry) {
+    return series.indexOf(entry.getX(), entry.getY());
+  }
+
+  @Override
+  public List<Entry> getEntriesForDisplay(int maximumEntries) {
+    if (series.size() <= maximumEntries) {
+      return getEntries();
+    }
 
-      entries.add(index, entry);
+    // Pick the entries that keep the shape of the line
+    int[] indices = series.downsample(maximumEntries);
+    List<Entry> displayed = new ArrayList<Entry>(indices.length);
+    for (int index : indices) {
+      displayed.add(entries.get(index));
     }
+    return displayed;
   }
 
   @Override
@@ -3,6 +3,7 @@ package com.google.appinventor.components.runtime;
 import com.google.appinventor.components.annotations.SimpleFunction;
 import com.google.appinventor.components.annotations.SimpleObject;
 import com.google.appinventor.components.runtime.util.AsynchUtil;
+import com.google.appinventor.components.runtime.util.SharedHttpClient;
 import com.hp.hpl.jena.rdf.model.Model;
 import com.hp.hpl.jena.rdf.model.Property;
 import com.hp.hpl.jena.rdf.model.RDFNode;
@@ -11,6 +12,7 @@ import com.hp.hpl.jena.rdf.model.ResourceFactory;
 import com.hp.hpl.jena.rdf.model.Statement;
 import com.hp.hpl.jena.rdf.model.StmtIterator;
 import com.hp.hpl.jena.vocabulary.RDF;
+import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.util.ArrayList;
@@ -106,20 +108,28 @@ public class LinkedDataBase<T extends Model> extends AndroidNonvisibleComponent
         @Override
         public Boolean call() throws Exception {
           URL parsedUrl = new URL(url);
-          HttpURLConnection conn = (HttpURLConnection) parsedUrl.openConnection();
-          conn.setRequestProperty("Accept", "text/turtle, text/n-triples, application/rdf+xml");
-          conn.setInstanceFollowRedirects(true);
-          conn.setDoInput(true);
-          conn.connect();
-          String contentType = conn.getContentType();
-          String lang = "RDF/XML";
-          if (contentType.startsWith("text/turtle")) {
-            lang = "TURTLE";
-          } else if (contentType.startsWith("text/n3")) {
-            lang = "N3";
+          HttpURLConnection conn = SharedHttpClient.open(parsedUrl);
+          try {
+            conn.setRequestProperty("Accept", "text/turtle, text/n-triples, application/rdf+xml");
+            conn.setInstanceFollowRedirects(true);
+            conn.setDoInput(true);
+            conn.connect();
+            int status = SharedHttpClient.getResponseCode(conn);
+            if (status >= 400) {
+              throw new IOException("Unable to load " + url + ": HTTP " + status);
+            }
+            String contentType = conn.getContentType();
+            String lang = "RDF/XML";
+            if (contentType.startsWith("text/turtle")) {
+              lang = "TURTLE";
+            } else if (contentType.startsWith("text/n3")) {
+              lang = "N3";
+            }
+            model.read(SharedHttpClient.getResponseStream(conn), url, lang);
+            return true;
+          } finally {
+            SharedHttpClient.release(conn);
           }
-          model.read(conn.getInputStream(), url, lang);
-          return true;
         }
       });
     } catch (InterruptedException e) {
@@ -14,6 +14,8 @@ import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLEncoder;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.concurrent.locks.Lock;
 
 import com.google.appinventor.components.annotations.DesignerComponent;
@@ -31,6 +33,11 @@ import com.google.appinventor.components.runtime.util.AsynchUtil;
 import com.google.appinventor.components.runtime.util.ErrorMessages;
 import com.google.appinventor.components.runtime.util.FileUtil;
 import com.google.appinventor.components.runtime.util.RdfUtil;
+import com.google.appinventor.components.runtime.util.SparqlStreamEngine;
+import com.google.appinventor.components.runtime.util.YailList;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.query.ResultSetRewindable;
 
 import android.R;
 import android.app.Activity;
@@ -103,6 +110,9 @@ public final class LinkedDataStreamingClient extends AndroidNonvisibleComponent
     private static final String REG_ID_TAG = "RegistrationId";
     private final SharedPreferences sharedPreferences;
 
+    // the queries this component registered with the local streaming engine
+    private final Set<String> localQueries = new HashSet<String>();
+
     // private final SharedPreferences sharedPreferences;
 
     public LinkedDataStreamingClient(ComponentContainer container) {
@@ -149,6 +159,11 @@ public final class LinkedDataStreamingClient extends AndroidNonvisibleComponent
 
     @Override
     public void onDestroy() {
+        SparqlStreamEngine engine = SparqlStreamEngine.getInstance();
+        for (String queryName : localQueries) {
+            engine.unregister(queryName);
+        }
+        localQueries.clear();
         // remember to unbind
         Log.i(TAG, "My GoogleCloudMessaging.java got destroyed");
         if (mIsBound && mConnection != null) {
@@ -698,6 +713,91 @@ public final class LinkedDataStreamingClient extends AndroidNonvisibleComponent
       }
     }
     
+    /**
+     * Registers a query with the streaming engine on the device, which evaluates it over a
+     * sliding window of the named stream without contacting a server.
+     *
+     * @param queryName the name of the query, passed to LocalStreamingResultReceived
+     * @param querytext the SPARQL SELECT query, optionally in C-SPARQL syntax
+     * @param streamName the stream the query runs over
+     * @param window the range of the window, such as 10s
+     * @param step the time between evaluations of the window, such as 5s
+     */
+    @SimpleFunction(description = "Registers a SELECT query with the streaming engine on the " +
+        "device, which evaluates it every step over the triples added to the stream in the last " +
+        "window, such as 10s, 500ms or 1m. The query may use C-SPARQL syntax, in which case " +
+        "empty stream, window and step arguments are taken from its FROM STREAM clause. Sensor " +
+        "readings are added to the stream named " + SparqlStreamEngine.SENSOR_NS + " followed " +
+        "by the name of the probe, such as BatteryProbe.<br>" +
+        "The LocalStreamingResultReceived event is triggered with the results of each window.")
+    public void RegisterLocalQuery(final String queryName, String querytext, String streamName,
+        String window, String step) {
+      try {
+        SparqlStreamEngine.getInstance().register(queryName, querytext, streamName, window, step,
+            System.currentTimeMillis(), new SparqlStreamEngine.ResultListener() {
+              @Override
+              public void onResults(final String name, long windowEnd,
+                  ResultSetRewindable results) {
+                final YailList solutions = RdfUtil.resultSetUsingYailDictionary(results);
+                mainUIThreadActivity.runOnUiThread(new Runnable() {
+                  @Override
+                  public void run() {
+                    LocalStreamingResultReceived(name, solutions);
+                  }
+                });
+              }
+
+              @Override
+              public void onError(final String name, long windowEnd,
+                  final RuntimeException error) {
+                mainUIThreadActivity.runOnUiThread(new Runnable() {
+                  @Override
+                  public void run() {
+                    form.dispatchErrorOccurredEvent(LinkedDataStreamingClient.this,
+                        "RegisterLocalQuery", ErrorMessages.ERROR_STREAMING_QUERY_FAILED, name,
+                        error.getMessage());
+                  }
+                });
+              }
+            });
+        localQueries.add(queryName);
+      } catch (RuntimeException e) {
+        form.dispatchErrorOccurredEvent(this, "RegisterLocalQuery",
+            ErrorMessages.ERROR_STREAMING_INVALID_QUERY, e.getMessage());
+      }
+    }
+
+    @SimpleFunction(description = "Unregisters a query from the streaming engine on the " +
+        "device. Returns false if no query with the name was registered.")
+    public boolean UnregisterLocalQuery(String queryName) {
+      localQueries.remove(queryName);
+      return SparqlStreamEngine.getInstance().unregister(queryName);
+    }
+
+    @SimpleFunction(description = "Adds a triple to a stream of the streaming engine on the " +
+        "device, with the current time as its timestamp. The object is a resource if it is a " +
+        "URI, and a literal otherwise.")
+    public void AddTriple(String streamName, String subject, String predicate, Object object) {
+      SparqlStreamEngine engine = SparqlStreamEngine.getInstance();
+      if (engine.isActive(streamName)) {
+        engine.add(streamName, new Triple(Node.createURI(RdfUtil.expandQName(subject)),
+            Node.createURI(RdfUtil.expandQName(predicate)), SparqlStreamEngine.toNode(object)),
+            System.currentTimeMillis());
+      }
+    }
+
+    /**
+     * Indicates that a query registered with the streaming engine on the device has been
+     * evaluated over a window.
+     *
+     * @param queryName the name of the query
+     * @param results a list with a dictionary of variable bindings for each solution
+     */
+    @SimpleEvent
+    public void LocalStreamingResultReceived(String queryName, YailList results) {
+      EventDispatcher.dispatchEvent(this, "LocalStreamingResultReceived", queryName, results);
+    }
+
     private static String getResponseContent(HttpURLConnection connection) throws IOException {
       // Use the content encoding to convert bytes to characters.
       String encoding = connection.getContentEncoding();
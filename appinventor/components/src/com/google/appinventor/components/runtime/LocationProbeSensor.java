@@ -172,6 +172,8 @@ public class LocationProbeSensor extends ProbeBase{
 			Log.i(TAG, "mProvider:" + data.get("mProvider").getAsString());
 			Log.i(TAG, "timestamp:" + data.get(LocationKeys.TIMESTAMP).getAsLong());
 			
+			publishToStreams(completeProbeUri, data);
+
 			//save data to DB is enabledSaveToDB is true
 			if(enabledSaveToDB){
 				saveToDB(completeProbeUri, data);
@@ -84,7 +84,10 @@ public class MagneticFieldSensor extends AndroidNonvisibleComponent implements S
 
   @SimpleEvent(description = "Triggers when magnetic field has changed, setting the new values in parameters.")
   public void MagneticChanged(float xStrength, float yStrength, float zStrength, double absoluteStrength) {
-    EventDispatcher.dispatchEvent(this, "MagneticChanged", xStrength, yStrength, zStrength, absoluteStrength);
+    if (EventDispatcher.hasEventHandler(this, "MagneticChanged")) {
+      EventDispatcher.dispatchEvent(this, "MagneticChanged", xStrength, yStrength, zStrength,
+          absoluteStrength);
+    }
   }
 
   @SimpleProperty(category = PropertyCategory.BEHAVIOR, description = "Indicates the absolute strength of the field.")
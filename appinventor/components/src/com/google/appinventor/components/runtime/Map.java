@@ -789,6 +789,7 @@ public class Map extends MapFeatureContainerBase implements MapEventListener {
   @Override
   void addFeature(MapMarker marker) {
     features.add(marker);
+    indexFeature(marker);
     marker.setMap(this);
     mapController.addFeature(marker);
   }
@@ -796,6 +797,7 @@ public class Map extends MapFeatureContainerBase implements MapEventListener {
   @Override
   void addFeature(MapLineString lineString) {
     features.add(lineString);
+    indexFeature(lineString);
     lineString.setMap(this);
     mapController.addFeature(lineString);
   }
@@ -803,6 +805,7 @@ public class Map extends MapFeatureContainerBase implements MapEventListener {
   @Override
   void addFeature(MapPolygon polygon) {
     features.add(polygon);
+    indexFeature(polygon);
     polygon.setMap(this);
     mapController.addFeature(polygon);
   }
@@ -810,6 +813,7 @@ public class Map extends MapFeatureContainerBase implements MapEventListener {
   @Override
   void addFeature(MapRectangle rectangle) {
     features.add(rectangle);
+    indexFeature(rectangle);
     rectangle.setMap(this);
     mapController.addFeature(rectangle);
   }
@@ -817,6 +821,7 @@ public class Map extends MapFeatureContainerBase implements MapEventListener {
   @Override
   void addFeature(MapCircle circle) {
     features.add(circle);
+    indexFeature(circle);
     circle.setMap(this);
     mapController.addFeature(circle);
   }
@@ -824,6 +829,7 @@ public class Map extends MapFeatureContainerBase implements MapEventListener {
   @Override
   public void removeFeature(MapFeature feature) {
     features.remove(feature);
+    unindexFeature(feature);
     mapController.removeFeature(feature);
   }
 }
@@ -427,9 +427,16 @@ public abstract class MapFeatureBase implements MapFeature, HasStroke {
   }
 
   @SuppressWarnings("WeakerAccess")
-  protected final synchronized void clearGeometry() {
-    centroid = null;
-    geometry = null;
+  protected final void clearGeometry() {
+    synchronized (this) {
+      centroid = null;
+      geometry = null;
+    }
+    // The container is told outside of the lock because its index computes geometries while
+    // holding its own lock.
+    if (container instanceof MapFeatureContainerBase) {
+      ((MapFeatureContainerBase) container).featureChanged(this);
+    }
   }
 
   protected abstract Geometry computeGeometry();
@@ -14,12 +14,16 @@ import com.google.appinventor.components.annotations.SimpleObject;
 import com.google.appinventor.components.annotations.SimpleProperty;
 import com.google.appinventor.components.runtime.util.AsynchUtil;
 import com.google.appinventor.components.runtime.util.ErrorMessages;
+import com.google.appinventor.components.runtime.util.GeoJSONReader;
+import com.google.appinventor.components.runtime.util.GeometryUtil;
 import com.google.appinventor.components.runtime.util.MapFactory;
 import com.google.appinventor.components.runtime.util.MapFactory.MapFeature;
+import com.google.appinventor.components.runtime.util.SpatialIndex;
 import com.google.appinventor.components.runtime.util.YailList;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
+import org.locationtech.jts.geom.Envelope;
 
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -29,13 +33,15 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLConnection;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 
-import static com.google.appinventor.components.runtime.util.GeoJSONUtil.getGeoJSONFeatures;
-import static com.google.appinventor.components.runtime.util.GeoJSONUtil.getGeoJSONType;
 import static com.google.appinventor.components.runtime.util.GeoJSONUtil.processGeoJSONFeature;
 
 @SimpleObject
@@ -50,10 +56,13 @@ public abstract class MapFeatureContainerBase extends AndroidViewComponent imple
   private static final String ERROR_IO_EXCEPTION = "Unable to download content from URL";
   private static final String ERROR_MALFORMED_GEOJSON = "Malformed GeoJSON response. Expected FeatureCollection as root element.";
   private static final String ERROR_UNKNOWN_TYPE = "Unrecognized/invalid type in JSON object";
-  private static final String GEOJSON_TYPE = "type";
   private static final String GEOJSON_FEATURECOLLECTION = "FeatureCollection";
   private static final String GEOJSON_GEOMETRYCOLLECTION = "GeometryCollection";
   private static final String GEOJSON_FEATURES = "features";
+  // Radius, in meters, of the first region searched by NearestFeatures
+  private static final double NEAREST_SEARCH_RADIUS = 250;
+  // Past this radius, in meters, every feature on the globe is searched
+  private static final double WHOLE_WORLD_RADIUS = 180 * GeometryUtil.ONE_DEG_IN_METERS;
 
   /**
    * <p>List of {@link MapFactory.MapFeature features} associated with this map, including those that are
@@ -61,6 +70,14 @@ public abstract class MapFeatureContainerBase extends AndroidViewComponent imple
    */
   protected List<MapFeature> features = new CopyOnWriteArrayList<MapFeature>();
 
+  /**
+   * Index of the bounding boxes of {@link #features}, used by the spatial queries to find the
+   * features near a place without measuring all of them. Features that were added or changed
+   * since the last query are kept in {@link #changedFeatures} and measured again by the next one.
+   */
+  private final SpatialIndex<MapFeature> featureIndex = new SpatialIndex<MapFeature>();
+  private final Set<MapFeature> changedFeatures = new HashSet<MapFeature>();
+
   private final MapFactory.MapFeatureVisitor<Void> featureAdder = new MapFactory.MapFeatureVisitor<Void>() {
     @Override
     public Void visit(MapFactory.MapMarker marker, Object... arguments) {
@@ -109,6 +126,10 @@ public abstract class MapFeatureContainerBase extends AndroidViewComponent imple
       feature.removeFromMap();
     }
     this.features.clear();
+    synchronized (featureIndex) {
+      featureIndex.clear();
+      changedFeatures.clear();
+    }
     ListIterator<?> it = features.listIterator(1);
     while (it.hasNext()) {
       Object o = it.next();
@@ -268,6 +289,120 @@ public abstract class MapFeatureContainerBase extends AndroidViewComponent imple
     }
   }
 
+  /**
+   * Returns the features of the `%type%` that lie in or cross the given `boundingBox`, which is
+   * given as `[[North, West], [South, East]]` like the {@link Map#BoundingBox()} of the
+   * {@link Map}.
+   *
+   * @param boundingBox The bounding box to search.
+   * @return A list of the features in the bounding box.
+   */
+  @SimpleFunction(description = "Returns the features of the %type% that lie in or cross the " +
+      "given bounding box, given as [[North, West], [South, East]].")
+  public YailList FeaturesInBoundingBox(YailList boundingBox) {
+    double north = GeometryUtil.coerceToDouble(((YailList) boundingBox.get(1)).get(1));
+    double west = GeometryUtil.coerceToDouble(((YailList) boundingBox.get(1)).get(2));
+    double south = GeometryUtil.coerceToDouble(((YailList) boundingBox.get(2)).get(1));
+    double east = GeometryUtil.coerceToDouble(((YailList) boundingBox.get(2)).get(2));
+    List<Envelope> boxes = new ArrayList<Envelope>();
+    if (west <= east) {
+      boxes.add(new Envelope(west, east, south, north));
+    } else {
+      // The box crosses the antimeridian
+      boxes.add(new Envelope(west, 180, south, north));
+      boxes.add(new Envelope(-180, east, south, north));
+    }
+    Set<MapFeature> result = new LinkedHashSet<MapFeature>();
+    for (Envelope box : boxes) {
+      for (MapFeature feature : findCandidates(box)) {
+        if (GeometryUtil.intersects(feature, box)) {
+          result.add(feature);
+        }
+      }
+    }
+    return YailList.makeList(new ArrayList<MapFeature>(result));
+  }
+
+  /**
+   * Returns the features of the `%type%` that contain the given `latitude` and `longitude`, such
+   * as the polygons and circles that the point is inside of. This is a quick way to test a
+   * location from a {@link LocationSensor} against many geofences.
+   *
+   * @param latitude The latitude of the point.
+   * @param longitude The longitude of the point.
+   * @return A list of the features containing the point.
+   */
+  @SimpleFunction(description = "Returns the features of the %type% that contain the given " +
+      "latitude, longitude point.")
+  public YailList FeaturesContainingPoint(double latitude, double longitude) {
+    List<MapFeature> result = new ArrayList<MapFeature>();
+    for (MapFeature feature : findCandidates(new Envelope(longitude, longitude, latitude,
+        latitude))) {
+      if (feature.DistanceToPoint(latitude, longitude, false) == 0) {
+        result.add(feature);
+      }
+    }
+    return YailList.makeList(result);
+  }
+
+  /**
+   * Returns the features of the `%type%` within `distance` meters of the given `latitude` and
+   * `longitude`, nearest first. If `centroids` is `true`{:.logic.block}, the distance is measured
+   * from the center of each feature. Otherwise, it is measured from the closest point of each
+   * feature, so a feature containing the point is at distance 0.
+   *
+   * @param latitude The latitude of the point.
+   * @param longitude The longitude of the point.
+   * @param distance The largest distance, in meters, of the features to return.
+   * @param centroids A flag to indicate whether the distance should be measured from the centroids
+   *                  of the features (true) or from their edges (false).
+   * @return A list of the features within the distance, nearest first.
+   */
+  @SimpleFunction(description = "Returns the features of the %type% within the given distance, " +
+      "in meters, of a latitude, longitude point, nearest first.")
+  public YailList FeaturesWithinDistance(double latitude, double longitude, double distance,
+      boolean centroids) {
+    if (distance < 0) {
+      return YailList.makeEmptyList();
+    }
+    List<Neighbor> neighbors = measure(latitude, longitude, distance, centroids);
+    Collections.sort(neighbors);
+    return neighborsToList(neighbors, neighbors.size());
+  }
+
+  /**
+   * Returns up to `count` features of the `%type%` that are nearest to the given `latitude` and
+   * `longitude`, nearest first. If `centroids` is `true`{:.logic.block}, the distance is measured
+   * from the center of each feature. Otherwise, it is measured from the closest point of each
+   * feature.
+   *
+   * @param latitude The latitude of the point.
+   * @param longitude The longitude of the point.
+   * @param count The largest number of features to return.
+   * @param centroids A flag to indicate whether the distance should be measured from the centroids
+   *                  of the features (true) or from their edges (false).
+   * @return A list of the nearest features, nearest first.
+   */
+  @SimpleFunction(description = "Returns up to count features of the %type% that are nearest to " +
+      "a latitude, longitude point, nearest first.")
+  public YailList NearestFeatures(double latitude, double longitude, int count,
+      boolean centroids) {
+    if (count <= 0) {
+      return YailList.makeEmptyList();
+    }
+    // Search ever larger regions around the point until they hold enough features. Every feature
+    // nearer than the radius is in the region, so the nearest ones are among those found.
+    double radius = count < features.size() ? NEAREST_SEARCH_RADIUS : WHOLE_WORLD_RADIUS;
+    while (true) {
+      List<Neighbor> neighbors = measure(latitude, longitude, radius, centroids);
+      if (neighbors.size() >= count || radius >= WHOLE_WORLD_RADIUS) {
+        Collections.sort(neighbors);
+        return neighborsToList(neighbors, Math.min(count, neighbors.size()));
+      }
+      radius *= 4;
+    }
+  }
+
   /**
    * The `GotFeatures` event is run when when a feature collection is successfully read from the
    * given `url`{:.variable.block}. The `features`{:.variable.block} parameter will be a list of
@@ -340,6 +475,7 @@ public abstract class MapFeatureContainerBase extends AndroidViewComponent imple
 
   public void removeFeature(MapFactory.MapFeature feature) {
     features.remove(feature);
+    unindexFeature(feature);
     getMap().removeFeature(feature);
   }
 
@@ -350,26 +486,31 @@ public abstract class MapFeatureContainerBase extends AndroidViewComponent imple
 
   void addFeature(MapFactory.MapMarker marker) {
     features.add(marker);
+    indexFeature(marker);
     getMap().addFeature(marker);
   }
 
   void addFeature(MapFactory.MapLineString polyline) {
     features.add(polyline);
+    indexFeature(polyline);
     getMap().addFeature(polyline);
   }
 
   void addFeature(MapFactory.MapPolygon polygon) {
     features.add(polygon);
+    indexFeature(polygon);
     getMap().addFeature(polygon);
   }
 
   void addFeature(MapFactory.MapCircle circle) {
     features.add(circle);
+    indexFeature(circle);
     getMap().addFeature(circle);
   }
 
   void addFeature(MapFactory.MapRectangle rectangle) {
     features.add(rectangle);
+    indexFeature(rectangle);
     getMap().addFeature(rectangle);
   }
 
@@ -378,6 +519,94 @@ public abstract class MapFeatureContainerBase extends AndroidViewComponent imple
     feature.accept(featureAdder);
   }
 
+  /**
+   * Tells the `%type%` that the geometry of one of its features has changed, so that the
+   * spatial queries measure it again. The {@link Map} is also told, because it holds the features
+   * of its feature collections as well.
+   *
+   * @param feature the feature that changed
+   */
+  void featureChanged(MapFeature feature) {
+    synchronized (featureIndex) {
+      // Features not yet in the index are either waiting to be indexed or not ours
+      if (featureIndex.contains(feature)) {
+        changedFeatures.add(feature);
+      }
+    }
+    if (getMap() != this) {
+      getMap().featureChanged(feature);
+    }
+  }
+
+  void indexFeature(MapFeature feature) {
+    synchronized (featureIndex) {
+      changedFeatures.add(feature);
+    }
+  }
+
+  void unindexFeature(MapFeature feature) {
+    synchronized (featureIndex) {
+      featureIndex.remove(feature);
+      changedFeatures.remove(feature);
+    }
+  }
+
+  /**
+   * Finds the features whose bounding boxes intersect the region, after indexing the features
+   * that changed since the last search.
+   */
+  private List<MapFeature> findCandidates(Envelope region) {
+    synchronized (featureIndex) {
+      for (MapFeature feature : changedFeatures) {
+        featureIndex.put(feature, GeometryUtil.getEnvelope(feature));
+      }
+      changedFeatures.clear();
+      return featureIndex.query(region);
+    }
+  }
+
+  /**
+   * Measures the distance to the features within <code>radius</code> meters of a point. If the
+   * radius covers the globe, every feature is measured.
+   */
+  private List<Neighbor> measure(double latitude, double longitude, double radius,
+      boolean centroids) {
+    boolean everywhere = radius >= WHOLE_WORLD_RADIUS;
+    Envelope region = everywhere ? new Envelope(-180, 180, -90, 90)
+        : GeometryUtil.getEnvelope(latitude, longitude, radius);
+    List<Neighbor> neighbors = new ArrayList<Neighbor>();
+    for (MapFeature feature : findCandidates(region)) {
+      double distance = feature.DistanceToPoint(latitude, longitude, centroids);
+      if (distance >= 0 && (everywhere || distance <= radius)) {
+        neighbors.add(new Neighbor(feature, distance));
+      }
+    }
+    return neighbors;
+  }
+
+  private static YailList neighborsToList(List<Neighbor> neighbors, int count) {
+    List<MapFeature> result = new ArrayList<MapFeature>(count);
+    for (int i = 0; i < count; i++) {
+      result.add(neighbors.get(i).feature);
+    }
+    return YailList.makeList(result);
+  }
+
+  private static final class Neighbor implements Comparable<Neighbor> {
+    final MapFeature feature;
+    final double distance;
+
+    Neighbor(MapFeature feature, double distance) {
+      this.feature = feature;
+      this.distance = distance;
+    }
+
+    @Override
+    public int compareTo(Neighbor other) {
+      return Double.compare(distance, other.distance);
+    }
+  }
+
   private void performGet(final String url) {
     try {
       String jsonContent = loadUrl(url);
@@ -440,7 +669,8 @@ public abstract class MapFeatureContainerBase extends AndroidViewComponent imple
 
   @SuppressWarnings("WeakerAccess")
   protected void processGeoJSON(final String url, final String content) throws JSONException {
-    String type = getGeoJSONType(content, GEOJSON_TYPE);
+    GeoJSONReader reader = GeoJSONReader.read(content);
+    String type = reader.getType();
     if (!GEOJSON_FEATURECOLLECTION.equals(type) && !GEOJSON_GEOMETRYCOLLECTION.equals(type)) {
       $form().runOnUiThread(new Runnable() {
         public void run() {
@@ -450,11 +680,48 @@ public abstract class MapFeatureContainerBase extends AndroidViewComponent imple
       });
       return;
     }
-    final List<YailList> yailFeatures = getGeoJSONFeatures(TAG, content);
+    final List<GeoJSONReader.Feature> features = reader.getFeatures();
     $form().runOnUiThread(new Runnable() {
       public void run() {
-        MapFeatureContainerBase.this.GotFeatures(url, YailList.makeList(yailFeatures));
+        MapFeatureContainerBase.this.processFeatures(url, features);
       }
     });
   }
+
+  /**
+   * Hands the features read from a GeoJSON document to the app. If the blocks handle
+   * {@link #GotFeatures(String, YailList)}, they are given the descriptions of the features.
+   * Otherwise the features are created directly from what was read, without building their
+   * descriptions.
+   *
+   * @param url the url of the document
+   * @param features the features of the document
+   */
+  protected void processFeatures(String url, List<GeoJSONReader.Feature> features) {
+    if (EventDispatcher.hasEventHandler(this, "GotFeatures")) {
+      List<YailList> descriptions = new ArrayList<YailList>(features.size());
+      try {
+        for (GeoJSONReader.Feature feature : features) {
+          descriptions.add(feature.getDescription());
+        }
+      } catch (JSONException e) {
+        $form().dispatchErrorOccurredEvent(this, "GotFeatures", ERROR_CODE_MALFORMED_GEOJSON,
+            e.getMessage());
+        return;
+      }
+      GotFeatures(url, YailList.makeList(descriptions));
+      return;
+    }
+    for (GeoJSONReader.Feature feature : features) {
+      try {
+        processGeoJSONFeature(TAG, this, feature);
+      } catch (IllegalArgumentException e) {
+        $form().dispatchErrorOccurredEvent(this, "FeatureFromDescription",
+            ERROR_CODE_MALFORMED_GEOJSON, e.getMessage());
+      } catch (JSONException e) {
+        $form().dispatchErrorOccurredEvent(this, "FeatureFromDescription",
+            ERROR_CODE_MALFORMED_GEOJSON, e.getMessage());
+      }
+    }
+  }
 }
@@ -185,7 +185,9 @@ public class OrientationSensor extends AndroidNonvisibleComponent
     notifyDataObservers("pitch", pitch);
     notifyDataObservers("roll", roll);
 
-    EventDispatcher.dispatchEvent(this, "OrientationChanged", azimuth, pitch, roll);
+    if (EventDispatcher.hasEventHandler(this, "OrientationChanged")) {
+      EventDispatcher.dispatchEvent(this, "OrientationChanged", azimuth, pitch, roll);
+    }
   }
 
   // Properties
@@ -72,6 +72,8 @@ public class PedometerSensor extends ProbeBase{
 			Log.i(TAG, "timestamp:" + data.get(PedometerKeys.TIMESTAMP).getAsLong());
 			Log.i(TAG, "rawVal:" + data.get(PedometerKeys.RAW_VALUE).getAsFloat());
 			
+			publishToStreams(completeProbeUri, data);
+
 			//save data to DB is enabledSaveToDB is true
 			if(enabledSaveToDB){
 				
@@ -345,6 +345,27 @@ public class Polygon extends PolygonBase implements MapPolygon {
     clearGeometry();
   }
 
+  /**
+   * Sets the points and holes of the polygon from lists that need no checking, such as those
+   * read from a GeoJSON document, without the conversions done by {@link #Points(YailList)} and
+   * {@link #HolePoints(YailList)}.
+   *
+   * @param points the outer ring of each polygon
+   * @param holePoints the holes of each polygon
+   * @param multipolygon true if {@link #Points()} should give a list of polygons even if there is
+   *     only one
+   */
+  public void setPoints(List<List<GeoPoint>> points, List<List<List<GeoPoint>>> holePoints,
+      boolean multipolygon) {
+    updatePoints(points);
+    updateHolePoints(holePoints);
+    this.multipolygon = multipolygon;
+    if (initialized) {
+      map.getController().updateFeaturePosition(this);
+      map.getController().updateFeatureHoles(this);
+    }
+  }
+
   @VisibleForTesting
   boolean isInitialized() {
     return initialized;
@@ -61,6 +61,7 @@ import com.google.appinventor.components.annotations.UsesLibraries;
 import com.google.appinventor.components.annotations.UsesPermissions;
 import com.google.appinventor.components.common.PropertyTypeConstants;
 import com.google.appinventor.components.runtime.util.SensorDbUtil;
+import com.google.appinventor.components.runtime.util.SensorStreams;
 
 //import com.google.appinventor.server.flags.Flag;
 import com.google.gson.Gson;
@@ -357,18 +358,36 @@ SensorComponent, OnDestroyListener{
   
   
     
-  protected void saveToDB(IJsonObject completeProbeUri, IJsonObject data){
-    
-    Log.i(TAG, "Writing data: " + completeProbeUri + ": " + data.toString());
+  /**
+   * Lets the continuous queries running on the device see a reading. The data
+   * listener of each probe calls this for every reading, whether or not it is
+   * saved to the database.
+   */
+  protected void publishToStreams(IJsonObject completeProbeUri, IJsonObject data) {
+    if (!SensorStreams.hasListener()) {
+      return;
+    }
+    SensorStreams.publish(completeProbeUri.get("@type").getAsString(),
+        data.get(BaseProbeKeys.TIMESTAMP).getAsBigDecimal(), readingOf(completeProbeUri, data));
+  }
+
+  // The reading with the probe and the time zone added, as it is saved
+  private JsonObject readingOf(IJsonObject completeProbeUri, IJsonObject data) {
     final JsonObject dataObject = data.getAsJsonObject();
     dataObject.add("probe",
         completeProbeUri.get(RuntimeTypeAdapterFactory.TYPE));
     dataObject.add("timezoneOffset", new JsonPrimitive(localOffsetSeconds)); // nice
                                           // move
+    return dataObject;
+  }
+
+  protected void saveToDB(IJsonObject completeProbeUri, IJsonObject data){
+    
+    Log.i(TAG, "Writing data: " + completeProbeUri + ": " + data.toString());
+    final JsonObject dataObject = readingOf(completeProbeUri, data);
     final long timestamp = data.get(BaseProbeKeys.TIMESTAMP).getAsLong();
     final String probeName = completeProbeUri.get("@type").getAsString();
-    
-    
+
     Bundle b = new Bundle();
     b.putString(NameValueDatabaseService.DATABASE_NAME_KEY, PROBE_BASE_NAME);
     b.putLong(NameValueDatabaseService.TIMESTAMP_KEY, timestamp);
@@ -29,6 +29,7 @@ import com.google.appinventor.components.common.ComponentConstants;
 
 import com.google.appinventor.components.runtime.util.AppInvHTTPD;
 import com.google.appinventor.components.runtime.util.ErrorMessages;
+import com.google.appinventor.components.runtime.util.LazyReplDefinition;
 import com.google.appinventor.components.runtime.util.OnInitializeListener;
 import com.google.appinventor.components.runtime.util.QUtil;
 import com.google.appinventor.components.runtime.util.RetValManager;
@@ -37,6 +38,7 @@ import com.google.appinventor.components.runtime.util.WebRTCNativeMgr;
 import dalvik.system.DexClassLoader;
 
 import gnu.expr.Language;
+import gnu.mapping.Environment;
 
 import java.io.File;
 import java.io.FileNotFoundException;
@@ -109,6 +111,7 @@ public class ReplForm extends Form {
                 ReplForm.this.finish();
                 return;
               }
+              LazyReplDefinition.setReplEnvironment(Environment.getCurrent());
               scheme.eval(sexp);
             } catch (Throwable e) {
               Log.e(LOG_TAG, "Exception in scheme processing", e);
@@ -468,6 +471,30 @@ public class ReplForm extends Form {
     schemeInterface.eval(sexp);
   }
 
+  /**
+   * Hides the Screen while the blocks editor loads blocks in bulk, so that
+   * the components those blocks create are laid out once, when
+   * {@link #finishBulkLoad(int, long)} shows it again, rather than as each
+   * one is added. Called on the UI thread before the blocks run.
+   */
+  public void startBulkLoad() {
+    deferLayout(true);
+  }
+
+  /**
+   * Shows the Screen again once blocks loaded in bulk have run, and tells
+   * the blocks editor how long they took.
+   *
+   * @param blocks the number of blocks loaded
+   * @param start the time the Companion received the blocks, in milliseconds
+   */
+  public void finishBulkLoad(int blocks, long start) {
+    deferLayout(false);
+    long millis = System.currentTimeMillis() - start;
+    Log.d(LOG_TAG, "Loaded " + blocks + " blocks in " + millis + " ms");
+    RetValManager.bulkLoaded(blocks, millis);
+  }
+
   @Override
   public String getAssetPath(String asset) {
     return "file://" + replAssetDir + asset;
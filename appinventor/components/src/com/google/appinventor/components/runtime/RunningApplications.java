@@ -86,6 +86,8 @@ public class RunningApplications extends ProbeBase{
 			Log.i(TAG, "mPackage:" + mPackage); // tells which application is running
 			Log.i(TAG, "mClass:" + mClass); // tells which class of this application is currently running
 			
+			publishToStreams(completeProbeUri, data);
+
 			//save data to DB is enabledSaveToDB is true
 			if(enabledSaveToDB){
 				
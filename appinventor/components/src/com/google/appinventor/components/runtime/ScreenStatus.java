@@ -76,6 +76,8 @@ public class ScreenStatus extends ProbeBase{
 			Log.i(TAG, "DATA: " + data.toString());
 			//debug
 			
+			publishToStreams(completeProbeUri, data);
+
 			//save data to DB is enabledSaveToDB is true
 			if(enabledSaveToDB){
 				
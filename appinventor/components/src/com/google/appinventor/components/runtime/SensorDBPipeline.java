@@ -20,6 +20,7 @@ import android.util.Pair;
 import com.google.appinventor.components.runtime.errors.YailRuntimeError;
 import com.google.appinventor.components.runtime.util.JsonUtil;
 import com.google.appinventor.components.runtime.util.SensorDbUtil;
+import com.google.appinventor.components.runtime.util.SensorStreams;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonPrimitive;
@@ -357,6 +358,10 @@ public class SensorDBPipeline implements Pipeline, DataListener{
     final long timestamp = data.get(BaseProbeKeys.TIMESTAMP).getAsLong();
     final String probeName = completeProbeUri.get("@type").getAsString();
 
+    // Let the continuous queries running on the device see the reading
+    SensorStreams.publish(probeName, data.get(BaseProbeKeys.TIMESTAMP).getAsBigDecimal(),
+        dataObject);
+
     Bundle b = new Bundle();
     b.putString(NameValueDatabaseService.DATABASE_NAME_KEY,
         SensorDbUtil.DB_NAME);
@@ -132,6 +132,8 @@ public class SmsHistory extends ProbeBase{
 
 			Log.i(TAG, "DATA: " + data.toString());
 
+			publishToStreams(completeProbeUri, data);
+
 			//save data to DB is enabledSaveToDB is true
 			if(enabledSaveToDB){
 
@@ -238,6 +238,8 @@ public class SocialProximitySensor extends ProbeBase{
 //			Log.i(TAG, "MAC_ADDRESS: " + data.get(BluetoothKeys.DEVICE));
 			
 		   
+			publishToStreams(completeProbeUri, data);
+
 			if(enabledSaveToDB){
 
 				saveToDB(completeProbeUri, data);
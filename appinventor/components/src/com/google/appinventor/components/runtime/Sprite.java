@@ -18,6 +18,7 @@ import com.google.appinventor.components.runtime.errors.IllegalArgumentError;
 import com.google.appinventor.components.runtime.util.BoundingBox;
 import com.google.appinventor.components.runtime.util.TimerInternal;
 
+import android.graphics.Rect;
 import android.os.Handler;
 
 import java.util.HashSet;
@@ -659,6 +660,16 @@ public abstract class Sprite extends VisibleComponent
     return registeredCollisions.contains(other);
   }
 
+  /**
+   * Returns the sprites this sprite is registered as colliding with.  The
+   * caller must not modify the set.
+   *
+   * @return the sprites for which {@link #CollidingWith(Sprite)} is true
+   */
+  Set<Sprite> getRegisteredCollisions() {
+    return registeredCollisions;
+  }
+
   /**
    * Moves the sprite back in bounds if part of it extends out of bounds,
    * having no effect otherwise. If the sprite is too wide to fit on the
@@ -731,7 +742,7 @@ public abstract class Sprite extends VisibleComponent
     // before all components had been constructed.
     if (!initialized) {
       // During REPL, components are not initalized, but we still want to repaint the canvas.
-      canvas.getView().invalidate();
+      canvas.registerUninitializedChange(this);
       return;
     }
     int edge = hitEdge();
@@ -911,6 +922,23 @@ public abstract class Sprite extends VisibleComponent
         xLeft + Width() - 1 + border, yTop + Height() - 1 + border);
   }
 
+  /**
+   * Computes the area of the canvas view, in pixels, that {@link #onDraw}
+   * may draw into.  Subclasses that draw outside of their bounding box should
+   * override this.
+   *
+   * @param bounds the rectangle to set to the area
+   */
+  void getDrawingBounds(Rect bounds) {
+    float density = form.deviceDensity();
+    // Allow for rounding of the coordinates and for anti-aliasing.
+    int margin = (int) Math.ceil(density) + 1;
+    bounds.set((int) Math.floor(xLeft * density) - margin,
+        (int) Math.floor(yTop * density) - margin,
+        (int) Math.ceil((xLeft + Width()) * density) + margin,
+        (int) Math.ceil((yTop + Height()) * density) + margin);
+  }
+
   /**
    * Determines whether two sprites are in collision.  Note that we cannot
    * merely see whether the rectangular regions around each intersect, since
@@ -105,6 +105,8 @@ public class TelephonyInfo extends ProbeBase{
       Log.i(TAG, "receive data of telephony info");
       Log.i(TAG, "DATA: " + data.toString());
       
+      publishToStreams(completeProbeUri, data);
+
       //save data to DB is enabledSaveToDB is true
       if(enabledSaveToDB){
         
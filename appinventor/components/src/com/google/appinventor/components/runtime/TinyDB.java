@@ -16,16 +16,14 @@ import com.google.appinventor.components.common.ComponentCategory;
 import com.google.appinventor.components.common.PropertyTypeConstants;
 import com.google.appinventor.components.common.YaVersion;
 import com.google.appinventor.components.runtime.errors.YailRuntimeError;
-import com.google.appinventor.components.runtime.util.JsonUtil;
+import com.google.appinventor.components.runtime.util.TinyDbCache;
 
 
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 
 import android.content.Context;
-import android.content.SharedPreferences;
 
 import java.util.Set;
 import org.json.JSONException;
@@ -81,11 +79,13 @@ import org.json.JSONException;
 
 @SimpleObject
 public class TinyDB extends AndroidNonvisibleComponent implements Component, Deleteable,
-    ObservableDataSource<String, List> {
+    OnPauseListener, OnDestroyListener, ObservableDataSource<String, List> {
 
   public static final String DEFAULT_NAMESPACE = "TinyDB1";
 
-  private SharedPreferences sharedPreferences;
+  // The values of the namespace, which are written back to its SharedPreferences in the
+  // background, shared with the other TinyDB components using the same namespace
+  private TinyDbCache cache;
   private String namespace;
 
   private Context context;  // this was a local in constructor and final not private
@@ -94,8 +94,8 @@ public class TinyDB extends AndroidNonvisibleComponent implements Component, Del
   private final Set<DataSink<ObservableDataSource<String, List>>> dataSourceObservers
       = new HashSet<>();
 
-  // SharedPreferences listener used to notify observers
-  private final SharedPreferences.OnSharedPreferenceChangeListener sharedPreferenceChangeListener;
+  // Cache listener used to notify observers
+  private final TinyDbCache.ChangeListener cacheChangeListener;
 
 
   /**
@@ -107,15 +107,17 @@ public class TinyDB extends AndroidNonvisibleComponent implements Component, Del
     super(container.$form());
     context = (Context) container.$context();
 
-    sharedPreferenceChangeListener = new SharedPreferences.OnSharedPreferenceChangeListener() {
+    cacheChangeListener = new TinyDbCache.ChangeListener() {
       @Override
-      public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+      public void onValueChanged(String key) {
         // Upon value change, notify the observers with the key and the value
         notifyDataObservers(key, GetValue(key, null));
       }
     };
 
     Namespace(DEFAULT_NAMESPACE);
+    form.registerForOnPause(this);
+    form.registerForOnDestroy(this);
   }
 
   /**
@@ -134,15 +136,15 @@ public class TinyDB extends AndroidNonvisibleComponent implements Component, Del
   public void Namespace(String namespace) {
     this.namespace = namespace;
 
-    // SharedPreferences previously defined; Unregister the change listener.
-    if (sharedPreferences != null) {
-      sharedPreferences.unregisterOnSharedPreferenceChangeListener(sharedPreferenceChangeListener);
+    // Cache previously defined; Unregister the change listener.
+    if (cache != null) {
+      cache.removeChangeListener(cacheChangeListener);
     }
 
-    sharedPreferences = context.getSharedPreferences(namespace, Context.MODE_PRIVATE);
+    cache = TinyDbCache.forNamespace(context, namespace);
 
-    // Register the SharedPreferences change listener
-    sharedPreferences.registerOnSharedPreferenceChangeListener(sharedPreferenceChangeListener);
+    // Register the cache change listener
+    cache.addChangeListener(cacheChangeListener);
   }
 
   @SimpleProperty(description = "Namespace for storing data.")
@@ -161,10 +163,8 @@ public class TinyDB extends AndroidNonvisibleComponent implements Component, Del
   @SimpleFunction(description = "Store the given value under the given tag.  The storage persists "
       + "on the phone when the app is restarted.")
   public void StoreValue(final String tag, final Object valueToStore) {
-    final SharedPreferences.Editor sharedPrefsEditor = sharedPreferences.edit();
     try {
-      sharedPrefsEditor.putString(tag, JsonUtil.getJsonRepresentation(valueToStore));
-      sharedPrefsEditor.commit();
+      cache.put(tag, valueToStore);
     } catch (JSONException e) {
       throw new YailRuntimeError("Value failed to convert to JSON.", "JSON Creation Error.");
     }
@@ -183,10 +183,7 @@ public class TinyDB extends AndroidNonvisibleComponent implements Component, Del
       + "such tag, then return valueIfTagNotThere.")
   public Object GetValue(final String tag, final Object valueIfTagNotThere) {
     try {
-      String value = sharedPreferences.getString(tag, "");
-      // If there's no entry with tag as a key then return the empty string.
-      //    was  return (value.length() == 0) ? "" : JsonUtil.getObjectFromJson(value);
-      return (value.length() == 0) ? valueIfTagNotThere : JsonUtil.getObjectFromJson(value, true);
+      return cache.get(tag, valueIfTagNotThere);
     } catch (JSONException e) {
       throw new YailRuntimeError("Value failed to convert from JSON.", "JSON Creation Error.");
     }
@@ -199,12 +196,7 @@ public class TinyDB extends AndroidNonvisibleComponent implements Component, Del
    */
   @SimpleFunction(description = "Return a list of all the tags in the data store.")
   public Object GetTags() {
-    List<String> keyList = new ArrayList<String>();
-    Map<String, ?> keyValues = sharedPreferences.getAll();
-    // here is the simple way to get keys
-    keyList.addAll(keyValues.keySet());
-    java.util.Collections.sort(keyList);
-    return keyList;
+    return cache.getTags();
   }
 
   /**
@@ -213,9 +205,7 @@ public class TinyDB extends AndroidNonvisibleComponent implements Component, Del
    */
   @SimpleFunction(description = "Clear the entire data store.")
   public void ClearAll() {
-    final SharedPreferences.Editor sharedPrefsEditor = sharedPreferences.edit();
-    sharedPrefsEditor.clear();
-    sharedPrefsEditor.commit();
+    cache.clear();
     notifyDataObservers(null, null); // Notify observers with null value to be interpreted as clear
   }
 
@@ -226,19 +216,28 @@ public class TinyDB extends AndroidNonvisibleComponent implements Component, Del
    */
   @SimpleFunction(description = "Clear the entry with the given tag.")
   public void ClearTag(final String tag) {
-    final SharedPreferences.Editor sharedPrefsEditor = sharedPreferences.edit();
-    sharedPrefsEditor.remove(tag);
-    sharedPrefsEditor.commit();
+    cache.remove(tag);
   }
 
   @Override
   public void onDelete() {
-    final SharedPreferences.Editor sharedPrefsEditor = sharedPreferences.edit();
-    sharedPrefsEditor.clear();
-    sharedPrefsEditor.commit();
+    cache.clear();
+    cache.flush();
     notifyDataObservers(null, null); // Notify observers with null value to be interpreted as clear
   }
 
+  @Override
+  public void onPause() {
+    // Write the pending values before the app may be stopped
+    cache.flush();
+  }
+
+  @Override
+  public void onDestroy() {
+    cache.flush();
+    cache.removeChangeListener(cacheChangeListener);
+  }
+
   /**
    * Returns the specified List object identified by the key. If the
    * value is not a List object, or it does not exist, an empty List
@@ -49,6 +49,7 @@ import com.google.appinventor.components.runtime.util.GingerbreadUtil;
 import com.google.appinventor.components.runtime.util.JsonUtil;
 import com.google.appinventor.components.runtime.util.MediaUtil;
 import com.google.appinventor.components.runtime.util.SdkLevel;
+import com.google.appinventor.components.runtime.util.SharedHttpClient;
 import com.google.appinventor.components.runtime.util.XmlParser;
 import com.google.appinventor.components.runtime.util.YailDictionary;
 import com.google.appinventor.components.runtime.util.YailList;
@@ -58,7 +59,6 @@ import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.StringReader;
 import java.io.UnsupportedEncodingException;
@@ -1120,7 +1120,7 @@ public class Web extends AndroidNonvisibleComponent implements Component, Observ
           }
 
           // Get the response.
-          final int responseCode = connection.getResponseCode();
+          final int responseCode = SharedHttpClient.getResponseCode(connection);
           final String responseType = getResponseType(connection);
           processResponseCookies(connection);
 
@@ -1171,7 +1171,8 @@ public class Web extends AndroidNonvisibleComponent implements Component, Observ
             });
           throw new RequestTimeoutException();
         } finally {
-          connection.disconnect();
+          // Lets the connection be reused by the next request to the host
+          SharedHttpClient.release(connection);
         }
       }
     } catch (PermissionException e) {
@@ -1218,7 +1219,8 @@ public class Web extends AndroidNonvisibleComponent implements Component, Observ
    * them. GET would be the default, and POST is set in writeRequestData or writeRequestFile
    * @param webProps the properties of the connection, set as properties in the component
    * @param httpVerb One of GET/POST/PUT/DELETE
-   * @return a HttpURL Connection
+   * @return a HttpURL Connection, which must be released with
+   *     {@link SharedHttpClient#release(HttpURLConnection)}
    * @throws IOException
    * @throws ClassCastException
    * @throws ProtocolException thrown if the method in setRequestMethod is not correct
@@ -1226,35 +1228,41 @@ public class Web extends AndroidNonvisibleComponent implements Component, Observ
   private static HttpURLConnection openConnection(CapturedProperties webProps, String httpVerb)
       throws IOException, ClassCastException, ProtocolException {
 
-    HttpURLConnection connection = (HttpURLConnection) webProps.url.openConnection();
-    connection.setConnectTimeout(webProps.timeout);
-    connection.setReadTimeout(webProps.timeout);
-
-    if (httpVerb.equals("PUT") || httpVerb.equals("DELETE")){
-      // Set the Request Method; GET is the default, and if it is a POST, it will be marked as such
-      // with setDoOutput in writeRequestFile or writeRequestData
-      connection.setRequestMethod(httpVerb);
-    }
+    HttpURLConnection connection = SharedHttpClient.open(webProps.url);
+    try {
+      connection.setConnectTimeout(webProps.timeout);
+      connection.setReadTimeout(webProps.timeout);
 
-    // Request Headers
-    for (Map.Entry<String, List<String>> header : webProps.requestHeaders.entrySet()) {
-      String name = header.getKey();
-      for (String value : header.getValue()) {
-        connection.addRequestProperty(name, value);
+      if (httpVerb.equals("PUT") || httpVerb.equals("DELETE")){
+        // Set the Request Method; GET is the default, and if it is a POST, it will be marked as such
+        // with setDoOutput in writeRequestFile or writeRequestData
+        connection.setRequestMethod(httpVerb);
       }
-    }
 
-    // Cookies
-    if (webProps.cookies != null) {
-      for (Map.Entry<String, List<String>> cookie : webProps.cookies.entrySet()) {
-        String name = cookie.getKey();
-        for (String value : cookie.getValue()) {
+      // Request Headers
+      for (Map.Entry<String, List<String>> header : webProps.requestHeaders.entrySet()) {
+        String name = header.getKey();
+        for (String value : header.getValue()) {
           connection.addRequestProperty(name, value);
         }
       }
-    }
 
-    return connection;
+      // Cookies
+      if (webProps.cookies != null) {
+        for (Map.Entry<String, List<String>> cookie : webProps.cookies.entrySet()) {
+          String name = cookie.getKey();
+          for (String value : cookie.getValue()) {
+            connection.addRequestProperty(name, value);
+          }
+        }
+      }
+
+      return connection;
+    } catch (Throwable e) {
+      // Return the permit taken by open before passing on the failure
+      SharedHttpClient.release(connection);
+      throw e;
+    }
   }
 
   private static void writeRequestData(HttpURLConnection connection, byte[] postData)
@@ -1330,7 +1338,8 @@ public class Web extends AndroidNonvisibleComponent implements Component, Observ
     if (encoding == null) {
       encoding = "UTF-8";
     }
-    InputStreamReader reader = new InputStreamReader(getConnectionStream(connection), encoding);
+    InputStreamReader reader = new InputStreamReader(SharedHttpClient.getResponseStream(connection),
+        encoding);
     try {
       int contentLength = connection.getContentLength();
       StringBuilder sb = (contentLength != -1)
@@ -1351,7 +1360,8 @@ public class Web extends AndroidNonvisibleComponent implements Component, Observ
       String responseFileName, String responseType) throws IOException {
     File file = createFile(responseFileName, responseType);
 
-    BufferedInputStream in = new BufferedInputStream(getConnectionStream(connection), 0x1000);
+    BufferedInputStream in = new BufferedInputStream(SharedHttpClient.getResponseStream(connection),
+        0x1000);
     try {
       BufferedOutputStream out = new BufferedOutputStream(new FileOutputStream(file), 0x1000);
       try {
@@ -1374,20 +1384,6 @@ public class Web extends AndroidNonvisibleComponent implements Component, Observ
     return file.getAbsolutePath();
   }
 
-  private static InputStream getConnectionStream(HttpURLConnection connection) throws SocketTimeoutException {
-    // According to the Android reference documentation for HttpURLConnection: If the HTTP response
-    // indicates that an error occurred, getInputStream() will throw an IOException. Use
-    // getErrorStream() to read the error response.
-    try {
-      return connection.getInputStream();
-    } catch (SocketTimeoutException e) {
-      throw e; //Rethrow exception - should not attempt to read stream for timeouts
-    } catch (IOException e1) {
-      // Use the error response for all other IO Exceptions.
-      return connection.getErrorStream();
-    }
-  }
-
   private File createFile(String fileName, String responseType)
       throws IOException, FileUtil.FileException {
     // If a fileName was specified, use it.
@@ -148,6 +148,8 @@ public class WifiSensor extends ProbeBase{
 			
 			Log.i(TAG, "DATA: " + data.toString());
 			
+			publishToStreams(completeProbeUri, data);
+
 			//save data to DB is enabledSaveToDB is true
 			if(enabledSaveToDB){
 				
@@ -14,6 +14,8 @@ import java.util.Enumeration;
 import java.util.Formatter;
 import java.util.List;
 import java.util.Properties;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.FileInputStream;
@@ -30,6 +32,7 @@ import android.util.Log;
 
 import kawa.standard.Scheme;
 import gnu.expr.Language;
+import gnu.mapping.Environment;
 
 import android.content.Intent;
 import android.content.pm.PackageInfo;
@@ -76,26 +79,9 @@ public class AppInvHTTPD extends NanoHTTPD {
   {
     Log.d(LOG_TAG,  method + " '" + uri + "' " );
 
-    // Check to see where the connection is from. If we are in "secure" mode (aka running
-    // in the emulator or via the USB Cable, then we should only accept connections from 127.0.0.1
-    // which is the address that "adb" uses when forwarding the connection from the blocks
-    // editor to the Companion.
-
-    if (secure) {
-      InetAddress myAddress = mySocket.getInetAddress();
-      String hostAddress = myAddress.getHostAddress();
-      if (!hostAddress.equals("127.0.0.1")) {
-        Log.d(LOG_TAG, "Debug: hostAddress = " + hostAddress + " while in secure mode, closing connection.");
-        Response res = new Response(HTTP_OK, MIME_JSON, "{\"status\" : \"BAD\", \"message\" : \"Security Error: Invalid Source Location " +  hostAddress + "\"}");
-        // Even though we are blowing this guy off, we return the headers below so the browser
-        // will deliver the status message above. Otherwise it won't due to browser security
-        // restrictions
-        res.addHeader("Access-Control-Allow-Origin", "*");
-        res.addHeader("Access-Control-Allow-Headers", "origin, content-type");
-        res.addHeader("Access-Control-Allow-Methods", "POST,OPTIONS,GET,HEAD,PUT");
-        res.addHeader("Allow", "POST,OPTIONS,GET,HEAD,PUT");
-        return (res);
-      }
+    Response denied = checkSource(mySocket);
+    if (denied != null) {
+      return denied;
     }
 
     if (method.equals("OPTIONS")) { // This is a complete hack. OPTIONS requests are used
@@ -114,6 +100,8 @@ public class AppInvHTTPD extends NanoHTTPD {
       res.addHeader("Access-Control-Allow-Headers", "origin, content-type");
       res.addHeader("Access-Control-Allow-Methods", "POST,OPTIONS,GET,HEAD,PUT");
       res.addHeader("Allow", "POST,OPTIONS,GET,HEAD,PUT");
+      // Lets the browser skip asking again before each /_bulkblocks request
+      res.addHeader("Access-Control-Max-Age", "600");
       return (res);
     }
 
@@ -121,81 +109,23 @@ public class AppInvHTTPD extends NanoHTTPD {
     if (uri.equals("/_newblocks")) { // Handle AJAX calls from the newblocks code
       adoptMainThreadClassLoader();
       String inSeq = parms.getProperty("seq", "0");
-      int iseq = Integer.parseInt(inSeq);
       String blockid = parms.getProperty("blockid");
       String code = parms.getProperty("code");
       String inMac = parms.getProperty("mac", "no key provided");
-      String compMac = "";
       String input_code = code;
-      if (hmacKey != null) {
-        try {
-          Mac hmacSha1 = Mac.getInstance("HmacSHA1");
-          SecretKeySpec key = new SecretKeySpec(hmacKey, "RAW");
-          hmacSha1.init(key);
-          byte [] tmpMac = hmacSha1.doFinal((code + inSeq + blockid).getBytes());
-          StringBuffer sb = new StringBuffer(tmpMac.length * 2);
-          Formatter formatter = new Formatter(sb);
-          for (byte b : tmpMac)
-            formatter.format("%02x", b);
-          compMac = sb.toString();
-        } catch (Exception e) {
-          Log.e(LOG_TAG, "Error working with hmac", e);
-          form.dispatchErrorOccurredEvent(form, "AppInvHTTPD",
-            ErrorMessages.ERROR_REPL_SECURITY_ERROR, "Exception working on HMAC");
-          Response res = new Response(HTTP_OK, MIME_PLAINTEXT, "NOT");
-          return(res);
-        }
-        Log.d(LOG_TAG, "Incoming Mac = " + inMac);
-        Log.d(LOG_TAG, "Computed Mac = " + compMac);
-        Log.d(LOG_TAG, "Incoming seq = " + inSeq);
-        Log.d(LOG_TAG, "Computed seq = " + seq);
-        Log.d(LOG_TAG, "blockid = " + blockid);
-        if (!inMac.equals(compMac)) {
-          Log.e(LOG_TAG, "Hmac does not match");
-          form.dispatchErrorOccurredEvent(form, "AppInvHTTPD",
-            ErrorMessages.ERROR_REPL_SECURITY_ERROR, "Invalid HMAC");
-          Response res = new Response(HTTP_OK, MIME_JSON, "{\"status\" : \"BAD\", \"message\" : \"Security Error: Invalid MAC\"}");
-          return(res);
-        }
-        if ((seq != iseq) && (seq != (iseq+1))) {
-          Log.e(LOG_TAG, "Seq does not match");
-          form.dispatchErrorOccurredEvent(form, "AppInvHTTPD",
-            ErrorMessages.ERROR_REPL_SECURITY_ERROR, "Invalid Seq");
-          Response res = new Response(HTTP_OK, MIME_JSON, "{\"status\" : \"BAD\", \"message\" : \"Security Error: Invalid Seq\"}");
-          return(res);
-        }
-        // Seq Fixup: Sometimes the Companion doesn't increment it's seq if it is in the middle of a project switch
-        // so we tolerate an off-by-one here.
-        if (seq == (iseq+1))
-          Log.e(LOG_TAG, "Seq Fixup Invoked");
-        seq = iseq + 1;
-      } else {                  // No hmacKey
-        Log.e(LOG_TAG, "No HMAC Key");
-        form.dispatchErrorOccurredEvent(form, "AppInvHTTPD",
-          ErrorMessages.ERROR_REPL_SECURITY_ERROR, "No HMAC Key");
-        Response res = new Response(HTTP_OK, MIME_JSON, "{\"status\" : \"BAD\", \"message\" : \"Security Error: No HMAC Key\"}");
-        return(res);
+      denied = authenticate((code + inSeq + blockid).getBytes(), inSeq, inMac, blockid);
+      if (denied != null) {
+        return denied;
       }
 
-      code = "(begin (require <com.google.youngandroid.runtime>) (process-repl-input " + blockid + " (begin " +
-        code + " )))";
-
-      Log.d(LOG_TAG, "To Eval: " + code);
-
       Response res;
-      try {
-        // Don't evaluate a simple "#f" which is used by the poller
-        if (input_code.equals("#f")) {
-          Log.e(LOG_TAG, "Skipping evaluation of #f");
-        } else {
-          scheme.eval(code);
-        }
-        res = new Response(HTTP_OK, MIME_JSON, RetValManager.fetch(false));
-      } catch (Throwable ex) {
-        Log.e(LOG_TAG, "newblocks: Scheme Failure", ex);
-        RetValManager.appendReturnValue(blockid, "BAD", ex.toString());
-        res = new Response(HTTP_OK, MIME_JSON, RetValManager.fetch(false));
+      // Don't evaluate a simple "#f" which is used by the poller
+      if (input_code.equals("#f")) {
+        Log.e(LOG_TAG, "Skipping evaluation of #f");
+      } else {
+        evaluate(blockid, code);
       }
+      res = new Response(HTTP_OK, MIME_JSON, RetValManager.fetch(false));
       res.addHeader("Access-Control-Allow-Origin", "*");
       res.addHeader("Access-Control-Allow-Headers", "origin, content-type");
       res.addHeader("Access-Control-Allow-Methods", "POST,OPTIONS,GET,HEAD,PUT");
@@ -228,10 +158,11 @@ public class AppInvHTTPD extends NanoHTTPD {
         // fcqn = true indicates we accept FullyQualifiedComponentNames (FQCN)
         // This informs the blocks editor whether or not we can accept the new style
         // fully qualified component names
+        // bulk = true indicates we accept blocks in bulk at /_bulkblocks
         res = new Response(HTTP_OK, MIME_JSON, "{\"version\" : \"" + versionName +
           "\", \"fingerprint\" : \"" + Build.FINGERPRINT + "\"," +
           " \"installer\" : \"" + installer + "\", \"package\" : \"" +
-          packageName + "\", \"fqcn\" : true }");
+          packageName + "\", \"fqcn\" : true, \"bulk\" : true }");
       } catch (NameNotFoundException n) {
         n.printStackTrace();
         res = new Response(HTTP_OK, MIME_JSON, "{\"verison\" : \"Unknown\"");
@@ -306,6 +237,201 @@ public class AppInvHTTPD extends NanoHTTPD {
     return serveFile( uri, header, rootDir, true );
   }
 
+  /**
+   * Handles /_bulkblocks, which evaluates many blocks in one request, for
+   * example when a project is first loaded into the Companion. The body is
+   * a series of frames, each a block id followed by its code, and each of
+   * those a 4 byte big-endian length followed by that many bytes of UTF-8.
+   * The blocks are evaluated in order, each on its own as if it had been
+   * sent to /_newblocks, so an error in one block is reported against that
+   * block and does not stop the others. The seq and mac parameters are in
+   * the URI; the mac covers the body followed by the seq.
+   *
+   * @param uri Percent-decoded URI without parameters
+   * @param method      "POST"
+   * @param parms       Parsed, percent decoded parameters from URI.
+   * @param header      Header entries, percent decoded
+   * @param body        The frames
+   * @return HTTP response, see class Response for details
+   */
+  @Override
+  public Response serve(String uri, String method, Properties header, Properties parms, byte[] body, Socket mySocket)
+  {
+    Log.d(LOG_TAG,  method + " '" + uri + "' " + body.length + " bytes");
+    Response denied = checkSource(mySocket);
+    if (denied != null) {
+      return denied;
+    }
+    if (!uri.equals("/_bulkblocks")) {
+      return super.serve(uri, method, header, parms, body, mySocket);
+    }
+
+    adoptMainThreadClassLoader();
+    String inSeq = parms.getProperty("seq", "0");
+    String inMac = parms.getProperty("mac", "no key provided");
+    byte[] seqBytes = inSeq.getBytes();
+    byte[] signed = new byte[body.length + seqBytes.length];
+    System.arraycopy(body, 0, signed, 0, body.length);
+    System.arraycopy(seqBytes, 0, signed, body.length, seqBytes.length);
+    denied = authenticate(signed, inSeq, inMac, "bulk");
+    if (denied != null) {
+      return denied;
+    }
+
+    List<String> frames = new ArrayList<String>();
+    try {
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+      while (in.available() > 0) {
+        int length = in.readInt();
+        if (length < 0 || length > in.available()) {
+          throw new IOException("Invalid frame length " + length);
+        }
+        byte[] frame = new byte[length];
+        in.readFully(frame);
+        frames.add(new String(frame, "UTF-8"));
+      }
+      if (frames.size() % 2 != 0) {
+        throw new IOException("Block id without code");
+      }
+    } catch (IOException e) {
+      Log.e(LOG_TAG, "bulkblocks: Invalid frames", e);
+      return error(e);
+    }
+
+    final long start = System.currentTimeMillis();
+    final int blocks = frames.size() / 2;
+    // The blocks run on the UI thread in the order they are posted, so the
+    // Screen is laid out once, after the last of them
+    androidUIHandler.post(new Runnable() {
+        public void run() {
+          form.startBulkLoad();
+        }
+      });
+    for (int i = 0; i < frames.size(); i += 2) {
+      evaluate(frames.get(i), frames.get(i + 1));
+    }
+    Log.d(LOG_TAG, "bulkblocks: Evaluated " + blocks + " blocks in "
+        + (System.currentTimeMillis() - start) + " ms");
+    androidUIHandler.post(new Runnable() {
+        public void run() {
+          form.finishBulkLoad(blocks, start);
+        }
+      });
+    return json(RetValManager.fetch(false));
+  }
+
+  /**
+   * Checks that a request comes from 127.0.0.1 if we are in "secure" mode.
+   *
+   * @return null if the request may go ahead, otherwise the response to send
+   */
+  private Response checkSource(Socket mySocket) {
+    // Check to see where the connection is from. If we are in "secure" mode (aka running
+    // in the emulator or via the USB Cable, then we should only accept connections from 127.0.0.1
+    // which is the address that "adb" uses when forwarding the connection from the blocks
+    // editor to the Companion.
+
+    if (secure) {
+      InetAddress myAddress = mySocket.getInetAddress();
+      String hostAddress = myAddress.getHostAddress();
+      if (!hostAddress.equals("127.0.0.1")) {
+        Log.d(LOG_TAG, "Debug: hostAddress = " + hostAddress + " while in secure mode, closing connection.");
+        Response res = new Response(HTTP_OK, MIME_JSON, "{\"status\" : \"BAD\", \"message\" : \"Security Error: Invalid Source Location " +  hostAddress + "\"}");
+        // Even though we are blowing this guy off, we return the headers below so the browser
+        // will deliver the status message above. Otherwise it won't due to browser security
+        // restrictions
+        res.addHeader("Access-Control-Allow-Origin", "*");
+        res.addHeader("Access-Control-Allow-Headers", "origin, content-type");
+        res.addHeader("Access-Control-Allow-Methods", "POST,OPTIONS,GET,HEAD,PUT");
+        res.addHeader("Allow", "POST,OPTIONS,GET,HEAD,PUT");
+        return (res);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Checks the HMAC and sequence number of a request that carries code, and
+   * advances the sequence number.
+   *
+   * @param signed the bytes the mac was computed over
+   * @return null if the request may go ahead, otherwise the response to send
+   */
+  private Response authenticate(byte[] signed, String inSeq, String inMac, String blockid) {
+    int iseq = Integer.parseInt(inSeq);
+    String compMac = "";
+    if (hmacKey != null) {
+      try {
+        Mac hmacSha1 = Mac.getInstance("HmacSHA1");
+        SecretKeySpec key = new SecretKeySpec(hmacKey, "RAW");
+        hmacSha1.init(key);
+        byte [] tmpMac = hmacSha1.doFinal(signed);
+        StringBuffer sb = new StringBuffer(tmpMac.length * 2);
+        Formatter formatter = new Formatter(sb);
+        for (byte b : tmpMac)
+          formatter.format("%02x", b);
+        compMac = sb.toString();
+      } catch (Exception e) {
+        Log.e(LOG_TAG, "Error working with hmac", e);
+        form.dispatchErrorOccurredEvent(form, "AppInvHTTPD",
+          ErrorMessages.ERROR_REPL_SECURITY_ERROR, "Exception working on HMAC");
+        Response res = new Response(HTTP_OK, MIME_PLAINTEXT, "NOT");
+        return(res);
+      }
+      Log.d(LOG_TAG, "Incoming Mac = " + inMac);
+      Log.d(LOG_TAG, "Computed Mac = " + compMac);
+      Log.d(LOG_TAG, "Incoming seq = " + inSeq);
+      Log.d(LOG_TAG, "Computed seq = " + seq);
+      Log.d(LOG_TAG, "blockid = " + blockid);
+      if (!inMac.equals(compMac)) {
+        Log.e(LOG_TAG, "Hmac does not match");
+        form.dispatchErrorOccurredEvent(form, "AppInvHTTPD",
+          ErrorMessages.ERROR_REPL_SECURITY_ERROR, "Invalid HMAC");
+        Response res = new Response(HTTP_OK, MIME_JSON, "{\"status\" : \"BAD\", \"message\" : \"Security Error: Invalid MAC\"}");
+        return(res);
+      }
+      if ((seq != iseq) && (seq != (iseq+1))) {
+        Log.e(LOG_TAG, "Seq does not match");
+        form.dispatchErrorOccurredEvent(form, "AppInvHTTPD",
+          ErrorMessages.ERROR_REPL_SECURITY_ERROR, "Invalid Seq");
+        Response res = new Response(HTTP_OK, MIME_JSON, "{\"status\" : \"BAD\", \"message\" : \"Security Error: Invalid Seq\"}");
+        return(res);
+      }
+      // Seq Fixup: Sometimes the Companion doesn't increment it's seq if it is in the middle of a project switch
+      // so we tolerate an off-by-one here.
+      if (seq == (iseq+1))
+        Log.e(LOG_TAG, "Seq Fixup Invoked");
+      seq = iseq + 1;
+      return null;
+    } else {                  // No hmacKey
+      Log.e(LOG_TAG, "No HMAC Key");
+      form.dispatchErrorOccurredEvent(form, "AppInvHTTPD",
+        ErrorMessages.ERROR_REPL_SECURITY_ERROR, "No HMAC Key");
+      Response res = new Response(HTTP_OK, MIME_JSON, "{\"status\" : \"BAD\", \"message\" : \"Security Error: No HMAC Key\"}");
+      return(res);
+    }
+  }
+
+  /**
+   * Evaluates the code of one block, adding its result, or the error it
+   * caused, to the values returned to the blocks editor.
+   */
+  private void evaluate(String blockid, String code) {
+    code = "(begin (require <com.google.youngandroid.runtime>) (process-repl-input " + blockid + " (begin " +
+      code + " )))";
+
+    Log.d(LOG_TAG, "To Eval: " + code);
+
+    try {
+      // Definitions sent to be evaluated lazily are evaluated in this thread's environment
+      LazyReplDefinition.setReplEnvironment(Environment.getCurrent());
+      scheme.eval(code);
+    } catch (Throwable ex) {
+      Log.e(LOG_TAG, "newblocks: Scheme Failure", ex);
+      RetValManager.appendReturnValue(blockid, "BAD", ex.toString());
+    }
+  }
+
   private boolean copyFile(File infile, File outfile) {
     try {
       FileInputStream in = new FileInputStream(infile);
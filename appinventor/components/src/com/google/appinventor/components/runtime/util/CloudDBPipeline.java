@@ -0,0 +1,293 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.components.runtime.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.exceptions.JedisException;
+
+/**
+ * The commands of a CloudDB component that are waiting to be sent to the
+ * Redis server, and the code that sends them.
+ *
+ * <p>Commands are sent in order, as Redis pipelines of up to
+ * {@link #MAX_BATCH_SIZE} commands, so that a batch costs one round trip
+ * however many tags it touches. A command can absorb a later command for the
+ * same tag while it is still waiting, which is how successive stores to one
+ * tag become a single script call.
+ *
+ * <p>Lua scripts are sent with EVAL the first time they are used on a
+ * connection, which also loads them into the server's script cache, and with
+ * EVALSHA after that. If the server has lost a script, the first command
+ * that needed it and every command after it in the batch are sent again in a
+ * second pipeline, starting with EVAL, so that the commands still run in
+ * order. The commands after it that had succeeded run a second time; the
+ * server only loses its scripts when it restarts or its script cache is
+ * flushed.
+ *
+ * <p>Commands are added from any thread, but {@link #sendPending(Jedis)} must
+ * only be called from the thread that owns the connection.
+ *
+ */
+public final class CloudDBPipeline {
+
+  /**
+   * The largest number of commands sent in one pipeline.
+   */
+  public static final int MAX_BATCH_SIZE = 100;
+
+  /**
+   * Receives the outcome of each batch, on the sending thread.
+   */
+  public interface BatchListener {
+    /**
+     * Called after a batch has been sent.
+     *
+     * @param writtenTags the tags of the write commands that succeeded
+     * @param failedTags the tags of the write commands that failed
+     * @param error the message of the first failure in the batch, or null if
+     *     every command succeeded
+     */
+    void onBatchSent(List<String> writtenTags, List<String> failedTags, String error);
+  }
+
+  /**
+   * A command for one tag.
+   */
+  public abstract static class Command {
+    private final String tag;
+    private final boolean write;
+
+    /**
+     * @param tag the tag the command reads or changes
+     * @param write true if the command changes the value of the tag
+     */
+    protected Command(String tag, boolean write) {
+      this.tag = tag;
+      this.write = write;
+    }
+
+    public String getTag() {
+      return tag;
+    }
+
+    /**
+     * Adds the command to the pipeline.
+     */
+    protected abstract Response<?> send(Pipeline pipeline);
+
+    /**
+     * Called with the reply of the server, on the sending thread.
+     */
+    protected void onReply(Object reply) {
+    }
+
+    /**
+     * Absorbs a later command for the same tag, if this command can do the
+     * work of both.
+     *
+     * @return true if the later command need not be sent
+     */
+    protected boolean merge(Command later) {
+      return false;
+    }
+
+    // Used by the pipeline to send script commands
+    Response<?> send(Pipeline pipeline, Set<String> loadedScripts) {
+      return send(pipeline);
+    }
+  }
+
+  /**
+   * A command that runs a Lua script.
+   */
+  public static class ScriptCommand extends Command {
+    private final String script;
+    private final String sha1;
+    private final int keyCount;
+    private final String[] args;
+
+    public ScriptCommand(String tag, boolean write, String script, String sha1, int keyCount,
+        String... args) {
+      super(tag, write);
+      this.script = script;
+      this.sha1 = sha1;
+      this.keyCount = keyCount;
+      this.args = args;
+    }
+
+    /**
+     * Returns the arguments of the script, which subclasses may change until
+     * the command is sent.
+     */
+    protected String[] getArgs() {
+      return args;
+    }
+
+    @Override
+    protected Response<?> send(Pipeline pipeline) {
+      return pipeline.eval(script, keyCount, getArgs());
+    }
+
+    @Override
+    Response<?> send(Pipeline pipeline, Set<String> loadedScripts) {
+      if (loadedScripts.add(sha1)) {
+        return send(pipeline);
+      }
+      return pipeline.evalsha(sha1, keyCount, getArgs());
+    }
+  }
+
+  private final BatchListener listener;
+  private final LinkedList<Command> queue = new LinkedList<Command>();
+  // The last waiting command of each tag
+  private final Map<String, Command> lastCommands = new HashMap<String, Command>();
+  private boolean sendScheduled = false;
+  // The scripts known to be in the script cache of the connection
+  private Jedis scriptConnection = null;
+  private final Set<String> loadedScripts = new HashSet<String>();
+
+  public CloudDBPipeline(BatchListener listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * Adds a command to the queue.
+   *
+   * @return true if the caller must arrange for {@link #sendPending(Jedis)}
+   *     to be called, because no send is scheduled yet
+   */
+  public synchronized boolean add(Command command) {
+    Command last = lastCommands.get(command.getTag());
+    if (last != null && last.merge(command)) {
+      return false;
+    }
+    queue.add(command);
+    lastCommands.put(command.getTag(), command);
+    if (sendScheduled) {
+      return false;
+    }
+    sendScheduled = true;
+    return true;
+  }
+
+  /**
+   * Returns the number of commands waiting to be sent.
+   */
+  public synchronized int size() {
+    return queue.size();
+  }
+
+  /**
+   * Drops the waiting commands.
+   */
+  public synchronized void clear() {
+    queue.clear();
+    lastCommands.clear();
+    sendScheduled = false;
+  }
+
+  /**
+   * Sends the waiting commands, and the commands added while they are being
+   * sent, until the queue is empty.
+   *
+   * @throws JedisException if the connection fails, after the listener has
+   *     been told that the batch failed. The commands that were still
+   *     waiting stay in the queue.
+   */
+  public void sendPending(Jedis jedis) throws JedisException {
+    if (jedis != scriptConnection) {
+      scriptConnection = jedis;
+      loadedScripts.clear();
+    }
+    while (true) {
+      List<Command> batch = new ArrayList<Command>();
+      synchronized (this) {
+        while (batch.size() < MAX_BATCH_SIZE && !queue.isEmpty()) {
+          Command command = queue.removeFirst();
+          if (lastCommands.get(command.getTag()) == command) {
+            lastCommands.remove(command.getTag());
+          }
+          batch.add(command);
+        }
+        if (batch.isEmpty()) {
+          sendScheduled = false;
+          return;
+        }
+      }
+      sendBatch(jedis, batch);
+    }
+  }
+
+  private void sendBatch(Jedis jedis, List<Command> batch) throws JedisException {
+    Set<String> written = new LinkedHashSet<String>();
+    Set<String> failed = new LinkedHashSet<String>();
+    String error = null;
+    try {
+      List<Command> toSend = batch;
+      while (!toSend.isEmpty()) {
+        Pipeline pipeline = jedis.pipelined();
+        List<Response<?>> responses = new ArrayList<Response<?>>(toSend.size());
+        for (Command command : toSend) {
+          responses.add(command.send(pipeline, loadedScripts));
+        }
+        pipeline.sync();
+        List<Command> retry = Collections.emptyList();
+        for (int i = 0; i < toSend.size(); i++) {
+          Command command = toSend.get(i);
+          try {
+            command.onReply(responses.get(i).get());
+            if (command.write) {
+              written.add(command.getTag());
+            }
+          } catch (JedisDataException e) {
+            String message = e.getMessage();
+            if (toSend == batch && message != null && message.startsWith("NOSCRIPT")) {
+              // The server has flushed its script cache. The later commands ran before
+              // this one, so they are sent again after it.
+              loadedScripts.clear();
+              retry = toSend.subList(i, toSend.size());
+              break;
+            }
+            if (command.write) {
+              failed.add(command.getTag());
+            }
+            if (error == null) {
+              error = message;
+            }
+          }
+        }
+        // Scripts are sent with EVAL on the retry, which only happens once
+        toSend = retry;
+      }
+    } catch (JedisException e) {
+      for (Command command : batch) {
+        if (command.write && !written.contains(command.getTag())) {
+          failed.add(command.getTag());
+        }
+      }
+      listener.onBatchSent(new ArrayList<String>(written), new ArrayList<String>(failed),
+          e.getMessage());
+      synchronized (this) {
+        sendScheduled = false;
+      }
+      throw e;
+    }
+    listener.onBatchSent(new ArrayList<String>(written), new ArrayList<String>(failed), error);
+  }
+}
@@ -0,0 +1,269 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.components.runtime.util;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.eclipse.californium.core.CoapClient;
+import org.eclipse.californium.core.CoapHandler;
+import org.eclipse.californium.core.CoapObserveRelation;
+import org.eclipse.californium.core.CoapResponse;
+import org.eclipse.californium.core.network.CoAPEndpoint;
+import org.eclipse.californium.core.network.config.NetworkConfig;
+
+/**
+ * The CoAP requests of an LdpCoapClient component, sent through a single
+ * endpoint.
+ *
+ * <p>All requests share one UDP socket and one message layer, instead of each
+ * request creating a client with an endpoint of its own. Asynchronous requests
+ * are identified by a number, which is passed to the {@link ResponseListener}
+ * together with the response, so that responses to concurrent requests can be
+ * told apart. Observed resources report every notification with the number of
+ * the request that started the observation, until it is cancelled.
+ *
+ * <p>Payloads larger than the block size are sent in blocks, and responses
+ * larger than the block size are requested in blocks of that size, using
+ * block-wise transfers (RFC 7959). The blocks are put together before the
+ * listener is called.
+ *
+ */
+public final class CoapSession {
+
+  /**
+   * Receives the responses to asynchronous requests. It is called on a thread
+   * of the endpoint.
+   */
+  public interface ResponseListener {
+    /**
+     * Called with a response, or with null if the request or observation was
+     * rejected or timed out.
+     */
+    void onResponse(int requestId, CoapResponse response);
+
+    /**
+     * Called with the current state of an observed resource, when the
+     * observation starts and every time the resource changes.
+     */
+    void onNotification(int requestId, CoapResponse response);
+  }
+
+  /**
+   * The default block size, in bytes.
+   */
+  public static final int DEFAULT_BLOCK_SIZE = 512;
+
+  private final ResponseListener listener;
+  private final AtomicInteger nextRequestId = new AtomicInteger(1);
+  private final Map<Integer, CoapObserveRelation> observations =
+      new HashMap<Integer, CoapObserveRelation>();
+
+  private int blockSize = DEFAULT_BLOCK_SIZE;
+  private CoAPEndpoint endpoint;
+
+  public CoapSession(ResponseListener listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * Returns true if the block size is allowed by CoAP, which is a power of two
+   * from 16 to 1024.
+   */
+  public static boolean isValidBlockSize(int blockSize) {
+    return blockSize >= 16 && blockSize <= 1024 && Integer.bitCount(blockSize) == 1;
+  }
+
+  /**
+   * Sets the block size, which also applies to requests that are running.
+   *
+   * @throws IllegalArgumentException if the block size is not valid
+   */
+  public synchronized void setBlockSize(int blockSize) {
+    if (!isValidBlockSize(blockSize)) {
+      throw new IllegalArgumentException("Invalid block size: " + blockSize);
+    }
+    this.blockSize = blockSize;
+    if (endpoint != null) {
+      // The block-wise layer observes its configuration
+      configureBlocks(endpoint.getConfig());
+    }
+  }
+
+  public synchronized int getBlockSize() {
+    return blockSize;
+  }
+
+  /**
+   * Returns a client for the given URI that uses the shared endpoint, for
+   * requests made synchronously.
+   */
+  public synchronized CoapClient newClient(String uri) {
+    return new CoapClient(uri).setEndpoint(getEndpoint());
+  }
+
+  /**
+   * Sends a GET request.
+   *
+   * @return the request id
+   */
+  public int get(String uri, int accept) {
+    int requestId = nextRequestId.getAndIncrement();
+    CoapClient client = newClient(uri).useEarlyNegotiation(getBlockSize());
+    client.get(new Handler(requestId, false), accept);
+    return requestId;
+  }
+
+  /**
+   * Sends a POST request.
+   *
+   * @return the request id
+   */
+  public int post(String uri, byte[] payload, int format) {
+    int requestId = nextRequestId.getAndIncrement();
+    newClient(uri).post(new Handler(requestId, false), payload, format);
+    return requestId;
+  }
+
+  /**
+   * Sends a PUT request.
+   *
+   * @param ifMatch the entity tag the resource must have, or null
+   * @return the request id
+   */
+  public int put(String uri, byte[] payload, int format, byte[] ifMatch) {
+    int requestId = nextRequestId.getAndIncrement();
+    CoapClient client = newClient(uri);
+    if (ifMatch == null) {
+      client.put(new Handler(requestId, false), payload, format);
+    } else {
+      client.putIfMatch(new Handler(requestId, false), payload, format, ifMatch);
+    }
+    return requestId;
+  }
+
+  /**
+   * Sends a DELETE request.
+   *
+   * @return the request id
+   */
+  public int delete(String uri) {
+    int requestId = nextRequestId.getAndIncrement();
+    newClient(uri).delete(new Handler(requestId, false));
+    return requestId;
+  }
+
+  /**
+   * Starts observing a resource. The listener receives the current state of
+   * the resource and then every change, until the observation is cancelled.
+   *
+   * @return the request id, which identifies the observation
+   */
+  public int observe(String uri, int accept) {
+    int requestId = nextRequestId.getAndIncrement();
+    CoapClient client = newClient(uri).useEarlyNegotiation(getBlockSize());
+    CoapObserveRelation relation = client.observe(new Handler(requestId, true), accept);
+    synchronized (this) {
+      observations.put(requestId, relation);
+    }
+    return requestId;
+  }
+
+  /**
+   * Cancels an observation, telling the server to stop sending notifications.
+   *
+   * @return false if there was no such observation
+   */
+  public boolean cancelObservation(int requestId) {
+    CoapObserveRelation relation;
+    synchronized (this) {
+      relation = observations.remove(requestId);
+    }
+    if (relation == null) {
+      return false;
+    }
+    relation.proactiveCancel();
+    return true;
+  }
+
+  /**
+   * Returns the number of observations that have not been cancelled.
+   */
+  public synchronized int getObservationCount() {
+    return observations.size();
+  }
+
+  /**
+   * Cancels all the observations and closes the endpoint. The session can be
+   * used again afterwards, with a new endpoint.
+   */
+  public void shutdown() {
+    Map<Integer, CoapObserveRelation> cancelled;
+    synchronized (this) {
+      cancelled = new HashMap<Integer, CoapObserveRelation>(observations);
+      observations.clear();
+    }
+    for (CoapObserveRelation relation : cancelled.values()) {
+      relation.proactiveCancel();
+    }
+    synchronized (this) {
+      if (endpoint != null) {
+        endpoint.destroy();
+        endpoint = null;
+      }
+    }
+  }
+
+  private synchronized CoAPEndpoint getEndpoint() {
+    if (endpoint == null) {
+      // Without a file, so that Californium does not write its properties
+      // file to the current directory
+      NetworkConfig config = NetworkConfig.createStandardWithoutFile();
+      configureBlocks(config);
+      endpoint = new CoAPEndpoint(config);
+      try {
+        endpoint.start();
+      } catch (IOException e) {
+        endpoint = null;
+        throw new IllegalStateException("Unable to start the CoAP endpoint", e);
+      }
+    }
+    return endpoint;
+  }
+
+  private void configureBlocks(NetworkConfig config) {
+    config.setInt(NetworkConfig.Keys.MAX_MESSAGE_SIZE, blockSize);
+    config.setInt(NetworkConfig.Keys.PREFERRED_BLOCK_SIZE, blockSize);
+  }
+
+  private final class Handler implements CoapHandler {
+    private final int requestId;
+    private final boolean observation;
+
+    Handler(int requestId, boolean observation) {
+      this.requestId = requestId;
+      this.observation = observation;
+    }
+
+    @Override
+    public void onLoad(CoapResponse response) {
+      if (observation) {
+        listener.onNotification(requestId, response);
+      } else {
+        listener.onResponse(requestId, response);
+      }
+    }
+
+    @Override
+    public void onError() {
+      synchronized (CoapSession.this) {
+        observations.remove(requestId);
+      }
+      listener.onResponse(requestId, null);
+    }
+  }
+}
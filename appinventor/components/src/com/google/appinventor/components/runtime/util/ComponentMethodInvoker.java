@@ -0,0 +1,235 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.components.runtime.util;
+
+import gnu.lists.LList;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Calls component methods and property setters for the YAIL runtime.
+ *
+ * <p>Kawa's {@code invoke} looks up the Java method by name, checks which
+ * overloads are applicable to the arguments and converts the arguments every
+ * time it is called. This class does the lookup once per component class,
+ * method name and number of arguments, and remembers how to convert each
+ * argument. It only handles calls with exactly one candidate method whose
+ * parameters are numbers, booleans, strings or objects the arguments are
+ * already instances of. For anything else it returns {@link #NOT_HANDLED}
+ * and runtime.scm falls back to {@code invoke}.
+ *
+ */
+public final class ComponentMethodInvoker {
+
+  /**
+   * Returned by {@link #invoke} for calls it cannot make. The caller has to
+   * use Kawa's {@code invoke} instead.
+   */
+  public static final Object NOT_HANDLED = new Object();
+
+  // How an argument is converted to the type of its parameter
+  private static final int CONVERT_NONE = 0;
+  private static final int CONVERT_INT = 1;
+  private static final int CONVERT_LONG = 2;
+  private static final int CONVERT_FLOAT = 3;
+  private static final int CONVERT_DOUBLE = 4;
+  private static final int CONVERT_SHORT = 5;
+  private static final int CONVERT_BYTE = 6;
+  private static final int CONVERT_BOOLEAN = 7;
+  private static final int CONVERT_STRING = 8;
+
+  // Placeholder for methods we cannot call, so that we do not look for them
+  // again
+  private static final Target NO_TARGET = new Target(null, null);
+
+  // For each component class, the targets found so far, by method name and
+  // then by number of arguments
+  private static final Map<Class<?>, Map<String, Target[]>> TARGETS =
+      new HashMap<Class<?>, Map<String, Target[]>>();
+
+  private static final class Target {
+    final Method method;
+    final Class<?>[] parameterTypes;
+    final int[] conversions;
+
+    Target(Method method, int[] conversions) {
+      this.method = method;
+      this.parameterTypes = (method == null) ? null : method.getParameterTypes();
+      this.conversions = conversions;
+    }
+  }
+
+  private ComponentMethodInvoker() {
+  }
+
+  /**
+   * Calls a method of a component.
+   *
+   * @param component the component
+   * @param methodName the name of the method, as a Kawa symbol or a string
+   * @param args the arguments, already coerced by runtime.scm
+   * @return the result of the method, {@code null} for void methods, or
+   *     {@link #NOT_HANDLED} if the caller has to make the call itself
+   */
+  public static Object invoke(Object component, Object methodName, LList args) {
+    if (component == null) {
+      return NOT_HANDLED;
+    }
+    Object[] argArray = args.toArray();
+    Target target = getTarget(component.getClass(), methodName.toString(), argArray.length);
+    if (target == NO_TARGET || !convertArgs(target, argArray)) {
+      return NOT_HANDLED;
+    }
+    try {
+      return target.method.invoke(component, argArray);
+    } catch (IllegalAccessException e) {
+      return NOT_HANDLED;
+    } catch (InvocationTargetException e) {
+      // getTarget only accepts methods without checked exceptions
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw (Error) cause;
+    }
+  }
+
+  private static synchronized Target getTarget(Class<?> clazz, String name, int arity) {
+    Map<String, Target[]> byName = TARGETS.get(clazz);
+    if (byName == null) {
+      byName = new HashMap<String, Target[]>();
+      TARGETS.put(clazz, byName);
+    }
+    Target[] byArity = byName.get(name);
+    if (byArity == null || byArity.length <= arity) {
+      Target[] grown = new Target[arity + 1];
+      if (byArity != null) {
+        System.arraycopy(byArity, 0, grown, 0, byArity.length);
+      }
+      byArity = grown;
+      byName.put(name, byArity);
+    }
+    if (byArity[arity] == null) {
+      byArity[arity] = findTarget(clazz, name, arity);
+    }
+    return byArity[arity];
+  }
+
+  private static Target findTarget(Class<?> clazz, String name, int arity) {
+    Method found = null;
+    for (Method method : clazz.getMethods()) {
+      if (method.isBridge() || !method.getName().equals(name)
+          || method.getParameterTypes().length != arity) {
+        continue;
+      }
+      if (found != null) {
+        // Overloaded, let Kawa pick the right one
+        return NO_TARGET;
+      }
+      found = method;
+    }
+    if (found == null || !Modifier.isPublic(found.getDeclaringClass().getModifiers())
+        || found.getReturnType() == char.class) {
+      // Kawa returns chars as gnu.text.Char, leave those to it
+      return NO_TARGET;
+    }
+    for (Class<?> exceptionType : found.getExceptionTypes()) {
+      if (!RuntimeException.class.isAssignableFrom(exceptionType)
+          && !Error.class.isAssignableFrom(exceptionType)) {
+        return NO_TARGET;
+      }
+    }
+    Class<?>[] parameterTypes = found.getParameterTypes();
+    int[] conversions = new int[arity];
+    for (int i = 0; i < arity; i++) {
+      conversions[i] = conversionFor(parameterTypes[i]);
+      if (conversions[i] < 0) {
+        return NO_TARGET;
+      }
+    }
+    return new Target(found, conversions);
+  }
+
+  private static int conversionFor(Class<?> type) {
+    if (type == int.class || type == Integer.class) {
+      return CONVERT_INT;
+    } else if (type == long.class || type == Long.class) {
+      return CONVERT_LONG;
+    } else if (type == float.class || type == Float.class) {
+      return CONVERT_FLOAT;
+    } else if (type == double.class || type == Double.class) {
+      return CONVERT_DOUBLE;
+    } else if (type == short.class || type == Short.class) {
+      return CONVERT_SHORT;
+    } else if (type == byte.class || type == Byte.class) {
+      return CONVERT_BYTE;
+    } else if (type == boolean.class || type == Boolean.class) {
+      return CONVERT_BOOLEAN;
+    } else if (type == String.class) {
+      return CONVERT_STRING;
+    } else if (type.isPrimitive()) {
+      return -1;
+    } else {
+      return CONVERT_NONE;
+    }
+  }
+
+  // Converts the arguments in place. Returns false if one of them does not
+  // have the type we expected.
+  private static boolean convertArgs(Target target, Object[] args) {
+    for (int i = 0; i < args.length; i++) {
+      Object arg = args[i];
+      switch (target.conversions[i]) {
+        case CONVERT_BOOLEAN:
+          if (!(arg instanceof Boolean)) {
+            return false;
+          }
+          break;
+        case CONVERT_STRING:
+          if (!(arg instanceof CharSequence)) {
+            return false;
+          }
+          args[i] = arg.toString();
+          break;
+        case CONVERT_NONE:
+          // Method.invoke would throw IllegalArgumentException on a mismatch,
+          // we check first so that Kawa can try to convert the argument
+          if (arg != null && !target.parameterTypes[i].isInstance(arg)) {
+            return false;
+          }
+          break;
+        default:
+          if (!(arg instanceof Number)) {
+            return false;
+          }
+          args[i] = convertNumber(target.conversions[i], (Number) arg);
+          break;
+      }
+    }
+    return true;
+  }
+
+  private static Object convertNumber(int conversion, Number arg) {
+    switch (conversion) {
+      case CONVERT_INT:
+        return arg.intValue();
+      case CONVERT_LONG:
+        return arg.longValue();
+      case CONVERT_FLOAT:
+        return arg.floatValue();
+      case CONVERT_DOUBLE:
+        return arg.doubleValue();
+      case CONVERT_SHORT:
+        return arg.shortValue();
+      default:
+        return arg.byteValue();
+    }
+  }
+}
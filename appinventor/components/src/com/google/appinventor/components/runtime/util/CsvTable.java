@@ -0,0 +1,344 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.components.runtime.util;
+
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A CSV table stored by column, read row by row from a {@link Reader}.
+ *
+ * <p>The first row holds the column names. The cells of the other rows are
+ * stored per column: as long as every cell of a column is a plain decimal
+ * number (such as {@code 12}, {@code -0.50} or an empty cell) the column
+ * keeps the digits and the number of decimals in primitive arrays, and the
+ * cells are formatted back to exactly the text that was read when they are
+ * retrieved. The first other cell turns the column into an array of strings.
+ *
+ * <p>Lists of rows and columns are only built when they are asked for. They
+ * have the same shape as the lists built by {@link CsvUtil#fromCsvTable} and
+ * {@link ChartDataSourceUtil#getTranspose}: rows keep their length, and
+ * columns are padded with empty strings where rows are too short.
+ *
+ */
+public final class CsvTable {
+
+  /**
+   * Receives the number of rows read so far while a table is read.
+   */
+  public interface ProgressListener {
+    void onProgress(int rowsRead);
+  }
+
+  /**
+   * The number of rows between two calls to a {@link ProgressListener}.
+   */
+  public static final int PROGRESS_INTERVAL = 10000;
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  private List<String> columnNames = Collections.emptyList();
+
+  // Column name to the index of the first column with that name
+  private final Map<String, Integer> columnIndices = new HashMap<String, Integer>();
+
+  private final List<Column> columns = new ArrayList<Column>();
+
+  // The number of cells in each row after the first one
+  private int[] rowLengths = new int[INITIAL_CAPACITY];
+  private int dataRowCount = 0;
+
+  /**
+   * The cells of a column, excluding the column name.
+   */
+  private static final class Column {
+    // Scale of an empty cell
+    private static final byte EMPTY = -1;
+
+    // Decimal digits of the numeric cells as an integer, and the number of
+    // those digits after the decimal point. Both are null once the column
+    // holds a cell that is not a number, and strings is used instead.
+    private long[] mantissas;
+    private byte[] scales;
+    private String[] strings;
+    private int size;
+
+    Column(int rows) {
+      int capacity = Math.max(INITIAL_CAPACITY, rows);
+      mantissas = new long[capacity];
+      scales = new byte[capacity];
+      // Rows before the one that introduced the column have no cell in it
+      for (int i = 0; i < rows; i++) {
+        scales[i] = EMPTY;
+      }
+      size = rows;
+    }
+
+    void add(String cell) {
+      if (strings == null) {
+        if (cell.isEmpty()) {
+          ensureCapacity();
+          scales[size++] = EMPTY;
+          return;
+        }
+        long mantissa = parseMantissa(cell);
+        if (mantissa != Long.MIN_VALUE) {
+          ensureCapacity();
+          mantissas[size] = mantissa;
+          scales[size++] = (byte) scaleOf(cell);
+          return;
+        }
+        convertToStrings();
+      }
+      ensureCapacity();
+      strings[size++] = cell;
+    }
+
+    String get(int index) {
+      if (strings != null) {
+        return strings[index];
+      }
+      return format(mantissas[index], scales[index]);
+    }
+
+    private void ensureCapacity() {
+      int capacity = (strings != null) ? strings.length : scales.length;
+      if (size < capacity) {
+        return;
+      }
+      if (strings != null) {
+        strings = Arrays.copyOf(strings, capacity * 2);
+      } else {
+        mantissas = Arrays.copyOf(mantissas, capacity * 2);
+        scales = Arrays.copyOf(scales, capacity * 2);
+      }
+    }
+
+    private void convertToStrings() {
+      strings = new String[scales.length];
+      for (int i = 0; i < size; i++) {
+        strings[i] = format(mantissas[i], scales[i]);
+      }
+      mantissas = null;
+      scales = null;
+    }
+  }
+
+  private CsvTable() {
+  }
+
+  /**
+   * Reads a table. The reader is read to its end but not closed.
+   *
+   * @param in the reader to read the CSV text from
+   * @param listener called every {@link #PROGRESS_INTERVAL} rows, and with
+   *     the total number of rows at the end, so at least once; may be null
+   * @return the table
+   * @throws Exception if the CSV text cannot be parsed or read
+   */
+  public static CsvTable read(Reader in, ProgressListener listener) throws Exception {
+    CsvTable table = new CsvTable();
+    CsvUtil.CsvParser parser = new CsvUtil.CsvParser(in);
+    int rowsRead = 0;
+    while (parser.hasNext()) {
+      table.addRow(parser.next());
+      rowsRead++;
+      if (listener != null && rowsRead % PROGRESS_INTERVAL == 0) {
+        listener.onProgress(rowsRead);
+      }
+    }
+    parser.throwAnyProblem();
+    // The last call has the total, unless it was just made for that many rows
+    if (listener != null && (rowsRead == 0 || rowsRead % PROGRESS_INTERVAL != 0)) {
+      listener.onProgress(rowsRead);
+    }
+    return table;
+  }
+
+  /**
+   * Returns the number of rows, including the row of column names.
+   */
+  public int getRowCount() {
+    return columnNames.isEmpty() && dataRowCount == 0 ? 0 : dataRowCount + 1;
+  }
+
+  /**
+   * Returns the number of columns, which is the length of the longest row.
+   */
+  public int getColumnCount() {
+    return columns.size();
+  }
+
+  /**
+   * Returns the first row.
+   */
+  public YailList getColumnNames() {
+    return YailList.makeList(columnNames);
+  }
+
+  /**
+   * Returns the index of the first column with the given name, or -1 if
+   * there is none.
+   */
+  public int getColumnIndex(String name) {
+    Integer index = columnIndices.get(name);
+    return (index == null) ? -1 : index;
+  }
+
+  /**
+   * Returns a column, starting with its name.
+   */
+  public YailList getColumn(int index) {
+    Column column = columns.get(index);
+    List<String> cells = new ArrayList<String>(dataRowCount + 1);
+    cells.add(index < columnNames.size() ? columnNames.get(index) : "");
+    for (int row = 0; row < dataRowCount; row++) {
+      // Cells missing from short rows were stored as empty cells
+      cells.add(column.get(row));
+    }
+    return YailList.makeList(cells);
+  }
+
+  /**
+   * Returns a row. Row 0 holds the column names.
+   */
+  public YailList getRow(int index) {
+    if (index == 0) {
+      return getColumnNames();
+    }
+    int row = index - 1;
+    if (row >= dataRowCount) {
+      throw new IndexOutOfBoundsException("Row: " + index + ", Rows: " + getRowCount());
+    }
+    List<String> cells = new ArrayList<String>(rowLengths[row]);
+    for (int i = 0; i < rowLengths[row]; i++) {
+      cells.add(columns.get(i).get(row));
+    }
+    return YailList.makeList(cells);
+  }
+
+  /**
+   * Returns all the rows, starting with the column names.
+   */
+  public YailList getRows() {
+    int rowCount = getRowCount();
+    List<YailList> rows = new ArrayList<YailList>(rowCount);
+    for (int i = 0; i < rowCount; i++) {
+      rows.add(getRow(i));
+    }
+    return YailList.makeList(rows);
+  }
+
+  /**
+   * Returns all the columns, each starting with its name.
+   */
+  public YailList getColumns() {
+    List<YailList> result = new ArrayList<YailList>(columns.size());
+    for (int i = 0; i < columns.size(); i++) {
+      result.add(getColumn(i));
+    }
+    return YailList.makeList(result);
+  }
+
+  private void addRow(List<String> cells) {
+    while (columns.size() < cells.size()) {
+      columns.add(new Column(dataRowCount));
+    }
+    if (columnNames.isEmpty() && dataRowCount == 0) {
+      columnNames = cells;
+      for (int i = cells.size() - 1; i >= 0; i--) {
+        columnIndices.put(cells.get(i), i);
+      }
+      return;
+    }
+    if (dataRowCount == rowLengths.length) {
+      rowLengths = Arrays.copyOf(rowLengths, rowLengths.length * 2);
+    }
+    rowLengths[dataRowCount] = cells.size();
+    for (int i = 0; i < columns.size(); i++) {
+      columns.get(i).add(i < cells.size() ? cells.get(i) : "");
+    }
+    dataRowCount++;
+  }
+
+  /**
+   * Returns the decimal digits of a plain decimal number as a long, or
+   * {@link Long#MIN_VALUE} if the text is not one. A plain decimal number
+   * has an optional minus sign, at most 18 digits, no leading zeros, and an
+   * optional decimal point followed by at least one digit. Negative zero is
+   * not accepted, since its sign would be lost.
+   */
+  static long parseMantissa(String text) {
+    int length = text.length();
+    int i = 0;
+    boolean negative = false;
+    if (i < length && text.charAt(i) == '-') {
+      negative = true;
+      i++;
+    }
+    int integerStart = i;
+    long mantissa = 0;
+    int digits = 0;
+    boolean point = false;
+    for (; i < length; i++) {
+      char c = text.charAt(i);
+      if (c == '.' && !point) {
+        if (i == integerStart || i == length - 1) {
+          return Long.MIN_VALUE;
+        }
+        point = true;
+        continue;
+      }
+      if (c < '0' || c > '9' || ++digits > 18) {
+        return Long.MIN_VALUE;
+      }
+      mantissa = mantissa * 10 + (c - '0');
+    }
+    if (digits == 0 || (text.charAt(integerStart) == '0' && integerStart + 1 < length
+        && text.charAt(integerStart + 1) != '.')) {
+      // No digits, or a leading zero
+      return Long.MIN_VALUE;
+    }
+    if (negative && mantissa == 0) {
+      return Long.MIN_VALUE;
+    }
+    return negative ? -mantissa : mantissa;
+  }
+
+  private static int scaleOf(String number) {
+    int point = number.indexOf('.');
+    return (point < 0) ? 0 : number.length() - point - 1;
+  }
+
+  /**
+   * Formats digits and the number of decimals back into the text they were
+   * parsed from.
+   */
+  static String format(long mantissa, int scale) {
+    if (scale == Column.EMPTY) {
+      return "";
+    }
+    if (scale == 0) {
+      return Long.toString(mantissa);
+    }
+    StringBuilder sb = new StringBuilder(24);
+    if (mantissa < 0) {
+      sb.append('-');
+    }
+    String digits = Long.toString(Math.abs(mantissa));
+    for (int i = digits.length(); i <= scale; i++) {
+      sb.append('0');
+    }
+    sb.append(digits);
+    sb.insert(sb.length() - scale, '.');
+    return sb.toString();
+  }
+}
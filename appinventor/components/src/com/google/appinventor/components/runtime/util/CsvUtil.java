@@ -88,7 +88,7 @@ public final class CsvUtil {
    * copied from: java/com/google/collaboration/tables/util/CsvParser.java
    *
    */
-  private static class CsvParser implements Iterator<List<String>> {
+  static class CsvParser implements Iterator<List<String>> {
     /**
      * Escaped quotes in quoted cells are doubled.
      */
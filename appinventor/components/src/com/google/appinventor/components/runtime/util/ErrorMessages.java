@@ -332,6 +332,8 @@ public final class ErrorMessages {
   // for Google Cloud Messaging
   public static final int ERROR_GCM_APPSERVER_INVALID = 2019;
   public static final int ERROR_GCM_NO_REGID_FOR_MESSAGE = 2020;
+  public static final int ERROR_STREAMING_INVALID_QUERY = 2021;
+  public static final int ERROR_STREAMING_QUERY_FAILED = 2022;
 
   // for reasoning
   public static final int ERROR_REASONER_FAILED = 12100;
@@ -680,6 +682,8 @@ public final class ErrorMessages {
     errorMessages.put(ERROR_SENSORDB_NOTACTIVE, "Sensor: %s is not active");
     errorMessages.put(ERROR_SENSORDB_NOTAVAILABLE, "Sensor: %s is not available");
     errorMessages.put(ERROR_GCM_APPSERVER_INVALID, "Cannot connect to GCM app server");
+    errorMessages.put(ERROR_STREAMING_INVALID_QUERY, "Unable to register the streaming query: %s");
+    errorMessages.put(ERROR_STREAMING_QUERY_FAILED, "Unable to evaluate the streaming query %s: %s");
     
  
     //Sharing errors
@@ -0,0 +1,689 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.components.runtime.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.json.JSONException;
+
+/**
+ * A streaming reader for GeoJSON feature collections.
+ *
+ * <p>The reader makes a single pass over the text of the document. The
+ * coordinates of each feature's geometry are read straight into an array of
+ * doubles, without building JSON objects or lists for them, and the
+ * properties of each feature are only located. The properties, and the whole
+ * description of a feature in the form given to the blocks, are read into
+ * {@link YailList}s when they are asked for.
+ *
+ * <p>Descriptions have the same shape as those built from an
+ * {@link org.json.JSONObject}: objects become lists of key-value pairs,
+ * arrays become lists, and null values are left out.
+ *
+ */
+public final class GeoJSONReader {
+
+  private static final String FEATURES = "features";
+  private static final String TYPE = "type";
+  private static final String GEOMETRY = "geometry";
+  private static final String PROPERTIES = "properties";
+  private static final String COORDINATES = "coordinates";
+
+  // Coordinates nested deeper than a MultiPolygon are not read
+  private static final int MAX_DEPTH = 3;
+
+  // The powers of ten that are exactly representable as doubles
+  private static final double[] POWERS_OF_TEN = new double[23];
+
+  static {
+    POWERS_OF_TEN[0] = 1;
+    for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+      POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+    }
+  }
+
+  /**
+   * A feature of a collection.
+   */
+  public static final class Feature {
+    private final String source;
+    private final int start;
+    private final int end;
+    private final int propertiesStart;
+    private final int propertiesEnd;
+    private final String type;
+    private final String geometryType;
+    private final double[] coordinates;
+    private final int depth;
+    private final int positionSize;
+    private final int[][] ends;
+    private final List<String> otherFields;
+
+    private Feature(GeoJSONReader reader, int start, int end, String type, String geometryType) {
+      this.source = reader.source;
+      this.start = start;
+      this.end = end;
+      this.propertiesStart = reader.propertiesStart;
+      this.propertiesEnd = reader.propertiesEnd;
+      this.type = type;
+      this.geometryType = geometryType;
+      this.depth = reader.coordinatesValid ? reader.depth : -1;
+      if (depth >= 0) {
+        this.coordinates = Arrays.copyOf(reader.coordinates, reader.coordinateCount);
+        this.positionSize = reader.positionSize;
+        this.ends = new int[depth + 1][];
+        for (int i = 1; i <= depth; i++) {
+          this.ends[i] = Arrays.copyOf(reader.ends[i], reader.endCounts[i]);
+        }
+      } else {
+        this.coordinates = null;
+        this.positionSize = 0;
+        this.ends = null;
+      }
+      this.otherFields = reader.otherFields.isEmpty()
+          ? Collections.<String>emptyList() : new ArrayList<String>(reader.otherFields);
+    }
+
+    /**
+     * Returns the type of the feature, which should be "Feature", or null if it has none.
+     */
+    public String getType() {
+      return type;
+    }
+
+    /**
+     * Returns the type of the feature's geometry, or null if it has no geometry.
+     */
+    public String getGeometryType() {
+      return geometryType;
+    }
+
+    /**
+     * Returns the depth of the coordinates of the geometry: 0 for a single position, 1 for an
+     * array of positions, 2 for an array of arrays of positions, and so on. Returns -1 if the
+     * coordinates are missing, or if they are not nested arrays of the same depth whose
+     * innermost arrays hold two or more numbers. The coordinates of such geometries are not read.
+     */
+    public int getDepth() {
+      return depth;
+    }
+
+    /**
+     * Returns the number of values in the last position, which is the only one in a Point.
+     */
+    public int getPositionSize() {
+      return positionSize;
+    }
+
+    public int getPointCount() {
+      return coordinates == null ? 0 : coordinates.length / 2;
+    }
+
+    public double getLatitude(int point) {
+      return coordinates[2 * point + 1];
+    }
+
+    public double getLongitude(int point) {
+      return coordinates[2 * point];
+    }
+
+    /**
+     * Returns where each array at the given depth ends, as the number of arrays of the depth
+     * below (or positions, for depth 1) that come before its end. For a MultiPolygon, depth 1
+     * gives the ends of the rings in points and depth 2 the ends of the polygons in rings.
+     */
+    public int[] getEnds(int depth) {
+      return ends[depth];
+    }
+
+    /**
+     * Returns the names of the fields of the feature and its geometry that GeoJSON does not
+     * define for them.
+     */
+    public List<String> getOtherFields() {
+      return otherFields;
+    }
+
+    /**
+     * Returns true if the feature has properties that are not an object.
+     */
+    public boolean hasInvalidProperties() {
+      return propertiesStart == -2;
+    }
+
+    /**
+     * Reads the properties of the feature.
+     *
+     * @return the properties as a list of key-value pairs, or null if the feature has none
+     */
+    public YailList getProperties() throws JSONException {
+      if (propertiesStart < 0) {
+        return null;
+      }
+      return (YailList) new GeoJSONReader(source, propertiesStart, propertiesEnd).readValue();
+    }
+
+    /**
+     * Reads the whole feature as a list of key-value pairs.
+     */
+    public YailList getDescription() throws JSONException {
+      return (YailList) new GeoJSONReader(source, start, end).readValue();
+    }
+  }
+
+  private final String source;
+  private final int limit;
+  private int pos;
+
+  // The state of the feature being read
+  private double[] coordinates = new double[64];
+  private int coordinateCount;
+  private int[][] ends = new int[MAX_DEPTH + 1][];
+  private int[] endCounts = new int[MAX_DEPTH + 1];
+  private int depth;
+  private int positionSize;
+  private boolean coordinatesValid;
+  private int propertiesStart;
+  private int propertiesEnd;
+  private final List<String> otherFields = new ArrayList<String>();
+
+  // The result
+  private String type;
+  private List<Feature> features;
+
+  private GeoJSONReader(String source, int start, int end) {
+    this.source = source;
+    this.pos = start;
+    this.limit = end;
+    for (int i = 1; i <= MAX_DEPTH; i++) {
+      ends[i] = new int[16];
+    }
+  }
+
+  /**
+   * Reads a GeoJSON document.
+   *
+   * @param content the text of the document, which may start with a byte order mark
+   * @throws JSONException if the content is not valid JSON, or the document is not an object or
+   *     has features that are not objects
+   */
+  public static GeoJSONReader read(String content) throws JSONException {
+    int start = content.length() > 0 && content.charAt(0) == '\uFEFF' ? 1 : 0;
+    GeoJSONReader reader = new GeoJSONReader(content, start, content.length());
+    reader.readDocument();
+    return reader;
+  }
+
+  /**
+   * Returns the type of the document, or the empty string if it has none.
+   */
+  public String getType() {
+    return type == null ? "" : type;
+  }
+
+  /**
+   * Returns the features of the document.
+   *
+   * @throws JSONException if the document has no array of features
+   */
+  public List<Feature> getFeatures() throws JSONException {
+    if (features == null) {
+      throw new JSONException("JSONObject[\"features\"] not found.");
+    }
+    return features;
+  }
+
+  private void readDocument() throws JSONException {
+    skipWhitespace();
+    expect('{');
+    if (!nextIsEnd('}')) {
+      do {
+        String key = readKey();
+        if (TYPE.equals(key) && peek() == '"') {
+          type = readString();
+        } else if (FEATURES.equals(key) && peek() == '[') {
+          readFeatures();
+        } else {
+          if (FEATURES.equals(key)) {
+            features = null;
+          }
+          skipValue();
+        }
+      } while (nextIsComma('}'));
+    }
+    skipWhitespace();
+    if (pos < limit) {
+      throw syntaxError("Unexpected text after the end of the document");
+    }
+  }
+
+  private void readFeatures() throws JSONException {
+    features = new ArrayList<Feature>();
+    expect('[');
+    if (nextIsEnd(']')) {
+      return;
+    }
+    do {
+      skipWhitespace();
+      if (peek() != '{') {
+        throw syntaxError("JSONArray[" + features.size() + "] is not a JSONObject.");
+      }
+      features.add(readFeature());
+    } while (nextIsComma(']'));
+  }
+
+  private Feature readFeature() throws JSONException {
+    int start = pos;
+    String featureType = null;
+    String geometryType = null;
+    coordinateCount = 0;
+    Arrays.fill(endCounts, 0);
+    depth = -1;
+    positionSize = 0;
+    coordinatesValid = false;
+    propertiesStart = -1;
+    propertiesEnd = -1;
+    otherFields.clear();
+    expect('{');
+    if (!nextIsEnd('}')) {
+      do {
+        String key = readKey();
+        char c = peek();
+        if (TYPE.equals(key) && c == '"') {
+          featureType = readString();
+        } else if (GEOMETRY.equals(key) && c == '{') {
+          geometryType = readGeometry();
+        } else if (PROPERTIES.equals(key)) {
+          int valueStart = pos;
+          skipValue();
+          if (c == '{') {
+            propertiesStart = valueStart;
+            propertiesEnd = pos;
+          } else if (c != 'n') {
+            propertiesStart = -2;
+          }
+        } else {
+          if (!TYPE.equals(key) && !GEOMETRY.equals(key)) {
+            otherFields.add(key);
+          }
+          skipValue();
+        }
+      } while (nextIsComma('}'));
+    }
+    return new Feature(this, start, pos, featureType, geometryType);
+  }
+
+  private String readGeometry() throws JSONException {
+    String geometryType = null;
+    expect('{');
+    if (!nextIsEnd('}')) {
+      do {
+        String key = readKey();
+        char c = peek();
+        if (TYPE.equals(key) && c == '"') {
+          geometryType = readString();
+        } else if (COORDINATES.equals(key) && c == '[') {
+          coordinatesValid = true;
+          depth = readCoordinates();
+        } else {
+          if (!TYPE.equals(key) && !COORDINATES.equals(key)) {
+            otherFields.add(key);
+          }
+          skipValue();
+        }
+      } while (nextIsComma('}'));
+    }
+    return geometryType;
+  }
+
+  /*
+   * Reads nested arrays of positions into the coordinate buffer, and returns their depth. If they
+   * turn out not to be coordinates, the rest of them is skipped and coordinatesValid is cleared.
+   */
+  private int readCoordinates() throws JSONException {
+    if (!coordinatesValid || peek() != '[') {
+      coordinatesValid = false;
+      skipValue();
+      return -1;
+    }
+    expect('[');
+    if (nextIsEnd(']')) {
+      coordinatesValid = false;
+      return -1;
+    }
+    char c = peek();
+    if (c == '-' || (c >= '0' && c <= '9')) {
+      int count = 0;
+      do {
+        skipWhitespace();
+        c = peek();
+        if (c != '-' && (c < '0' || c > '9')) {
+          coordinatesValid = false;
+          skipValue();
+        } else {
+          double value = readDouble();
+          if (count < 2) {
+            addCoordinate(value);
+          }
+          count++;
+        }
+      } while (nextIsComma(']'));
+      if (count < 2) {
+        coordinatesValid = false;
+      }
+      positionSize = count;
+      return 0;
+    }
+    int childDepth = -1;
+    do {
+      skipWhitespace();
+      int d = readCoordinates();
+      if (childDepth == -1) {
+        childDepth = d;
+      } else if (d != childDepth) {
+        coordinatesValid = false;
+      }
+    } while (nextIsComma(']'));
+    int arrayDepth = childDepth + 1;
+    if (!coordinatesValid || arrayDepth > MAX_DEPTH) {
+      coordinatesValid = false;
+      return -1;
+    }
+    int count = childDepth == 0 ? coordinateCount / 2 : endCounts[childDepth];
+    if (endCounts[arrayDepth] == ends[arrayDepth].length) {
+      ends[arrayDepth] = Arrays.copyOf(ends[arrayDepth], 2 * ends[arrayDepth].length);
+    }
+    ends[arrayDepth][endCounts[arrayDepth]++] = count;
+    return arrayDepth;
+  }
+
+  private void addCoordinate(double value) {
+    if (coordinateCount == coordinates.length) {
+      coordinates = Arrays.copyOf(coordinates, 2 * coordinates.length);
+    }
+    coordinates[coordinateCount++] = value;
+  }
+
+  /*
+   * Reads any value, in the form that jsonObjectToYail gives it.
+   */
+  private Object readValue() throws JSONException {
+    skipWhitespace();
+    char c = peek();
+    if (c == '{') {
+      pos++;
+      List<YailList> pairs = new ArrayList<YailList>();
+      if (!nextIsEnd('}')) {
+        do {
+          String key = readKey();
+          Object value = readValue();
+          if (value != null) {
+            pairs.add(YailList.makeList(new Object[] { key, value }));
+          }
+        } while (nextIsComma('}'));
+      }
+      return YailList.makeList(pairs);
+    } else if (c == '[') {
+      pos++;
+      List<Object> items = new ArrayList<Object>();
+      if (!nextIsEnd(']')) {
+        do {
+          Object value = readValue();
+          if (value != null) {
+            items.add(value);
+          }
+        } while (nextIsComma(']'));
+      }
+      return YailList.makeList(items);
+    } else if (c == '"') {
+      return readString();
+    }
+    String literal = readLiteral();
+    if ("true".equals(literal)) {
+      return Boolean.TRUE;
+    } else if ("false".equals(literal)) {
+      return Boolean.FALSE;
+    } else if ("null".equals(literal)) {
+      return null;
+    }
+    if (literal.indexOf('.') < 0 && literal.indexOf('e') < 0 && literal.indexOf('E') < 0) {
+      try {
+        long value = Long.parseLong(literal);
+        if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+          return (int) value;
+        }
+        return value;
+      } catch (NumberFormatException e) {
+        // Too large for a long, so read it as a double
+      }
+    }
+    try {
+      return Double.valueOf(literal);
+    } catch (NumberFormatException e) {
+      throw syntaxError("Unexpected value " + literal);
+    }
+  }
+
+  private void skipValue() throws JSONException {
+    skipWhitespace();
+    char c = peek();
+    if (c == '"') {
+      skipString();
+    } else if (c == '{' || c == '[') {
+      int nesting = 0;
+      while (pos < limit) {
+        c = source.charAt(pos);
+        if (c == '"') {
+          skipString();
+          continue;
+        }
+        pos++;
+        if (c == '{' || c == '[') {
+          nesting++;
+        } else if (c == '}' || c == ']') {
+          if (--nesting == 0) {
+            return;
+          }
+        }
+      }
+      throw syntaxError("Unterminated object or array");
+    } else {
+      readLiteral();
+    }
+  }
+
+  private String readKey() throws JSONException {
+    skipWhitespace();
+    if (peek() != '"') {
+      throw syntaxError("Expected a key");
+    }
+    String key = readString();
+    skipWhitespace();
+    expect(':');
+    skipWhitespace();
+    return key;
+  }
+
+  private String readString() throws JSONException {
+    int start = ++pos;
+    while (pos < limit) {
+      char c = source.charAt(pos);
+      if (c == '"') {
+        return source.substring(start, pos++);
+      } else if (c == '\\') {
+        break;
+      }
+      pos++;
+    }
+    StringBuilder sb = new StringBuilder(source.substring(start, Math.min(pos, limit)));
+    while (pos < limit) {
+      char c = source.charAt(pos++);
+      if (c == '"') {
+        return sb.toString();
+      } else if (c != '\\') {
+        sb.append(c);
+        continue;
+      }
+      if (pos >= limit) {
+        break;
+      }
+      c = source.charAt(pos++);
+      switch (c) {
+        case 'b': sb.append('\b'); break;
+        case 'f': sb.append('\f'); break;
+        case 'n': sb.append('\n'); break;
+        case 'r': sb.append('\r'); break;
+        case 't': sb.append('\t'); break;
+        case 'u':
+          if (pos + 4 > limit) {
+            throw syntaxError("Unterminated escape sequence");
+          }
+          try {
+            sb.append((char) Integer.parseInt(source.substring(pos, pos + 4), 16));
+          } catch (NumberFormatException e) {
+            throw syntaxError("Invalid escape sequence");
+          }
+          pos += 4;
+          break;
+        default:
+          sb.append(c);
+      }
+    }
+    throw syntaxError("Unterminated string");
+  }
+
+  private void skipString() throws JSONException {
+    pos++;
+    while (pos < limit) {
+      char c = source.charAt(pos++);
+      if (c == '"') {
+        return;
+      } else if (c == '\\') {
+        pos++;
+      }
+    }
+    throw syntaxError("Unterminated string");
+  }
+
+  private String readLiteral() throws JSONException {
+    int start = pos;
+    while (pos < limit) {
+      char c = source.charAt(pos);
+      if (c == ',' || c == '}' || c == ']' || c == ':' || c == '"' || c == '{' || c == '['
+          || c <= ' ') {
+        break;
+      }
+      pos++;
+    }
+    if (pos == start) {
+      throw syntaxError(pos < limit ? "Unexpected character" : "Unexpected end of input");
+    }
+    return source.substring(start, pos);
+  }
+
+  /*
+   * Reads a number. Decimals of up to 15 significant digits, which are all that coordinates
+   * need, are computed directly. The division of two exactly represented doubles is correctly
+   * rounded, so the result is the same as that of Double.parseDouble.
+   */
+  private double readDouble() throws JSONException {
+    int start = pos;
+    boolean negative = false;
+    if (source.charAt(pos) == '-') {
+      negative = true;
+      pos++;
+    }
+    long mantissa = 0;
+    int digits = 0;
+    int scale = 0;
+    boolean fraction = false;
+    while (pos < limit) {
+      char c = source.charAt(pos);
+      if (c >= '0' && c <= '9') {
+        if (mantissa != 0 || c != '0') {
+          digits++;
+        }
+        mantissa = mantissa * 10 + (c - '0');
+        if (fraction) {
+          scale++;
+        }
+      } else if (c == '.' && !fraction) {
+        fraction = true;
+      } else {
+        break;
+      }
+      pos++;
+    }
+    char c = pos < limit ? source.charAt(pos) : ' ';
+    if (digits > 15 || scale >= POWERS_OF_TEN.length || c == 'e' || c == 'E') {
+      pos = start;
+      String literal = readLiteral();
+      try {
+        return Double.parseDouble(literal);
+      } catch (NumberFormatException e) {
+        throw syntaxError("Unexpected value " + literal);
+      }
+    }
+    if (pos == start + (negative ? 1 : 0)) {
+      throw syntaxError("Expected a number");
+    }
+    double value = mantissa / POWERS_OF_TEN[scale];
+    return negative ? -value : value;
+  }
+
+  private void skipWhitespace() {
+    while (pos < limit) {
+      char c = source.charAt(pos);
+      if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+        return;
+      }
+      pos++;
+    }
+  }
+
+  private char peek() throws JSONException {
+    if (pos >= limit) {
+      throw syntaxError("Unexpected end of input");
+    }
+    return source.charAt(pos);
+  }
+
+  private void expect(char expected) throws JSONException {
+    if (peek() != expected) {
+      throw syntaxError("Expected '" + expected + "'");
+    }
+    pos++;
+  }
+
+  // Consumes the closing bracket of an empty object or array
+  private boolean nextIsEnd(char close) throws JSONException {
+    skipWhitespace();
+    if (peek() == close) {
+      pos++;
+      return true;
+    }
+    return false;
+  }
+
+  // Consumes the separator after a member or element, and returns true if another one follows
+  private boolean nextIsComma(char close) throws JSONException {
+    skipWhitespace();
+    char c = peek();
+    pos++;
+    if (c == ',') {
+      return true;
+    } else if (c == close) {
+      return false;
+    }
+    throw syntaxError("Expected ',' or '" + close + "'");
+  }
+
+  private JSONException syntaxError(String message) {
+    return new JSONException(message + " at character " + pos);
+  }
+}
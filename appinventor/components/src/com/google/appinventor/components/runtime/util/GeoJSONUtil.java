@@ -22,7 +22,6 @@ import com.google.common.annotations.VisibleForTesting;
 import gnu.lists.FString;
 import gnu.lists.LList;
 import gnu.lists.Pair;
-import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.osmdroid.util.GeoPoint;
@@ -47,7 +46,6 @@ public final class GeoJSONUtil {
   private static final java.util.Map<String, Integer> colors;
   private static final int ERROR_CODE_MALFORMED_GEOJSON = -3;
   private static final String ERROR_MALFORMED_GEOJSON = "Malformed GeoJSON response. Expected FeatureCollection as root element.";
-  private static final String ERROR_UNKNOWN_TYPE = "Unrecognized/invalid type in JSON object";
   private static final String GEOJSON_COORDINATES = "coordinates";
   private static final String GEOJSON_FEATURE = "Feature";
   private static final String GEOJSON_FEATURECOLLECTION = "FeatureCollection";
@@ -307,6 +305,121 @@ public final class GeoJSONUtil {
     return feature;
   }
 
+  /**
+   * Converts a feature read by {@link GeoJSONReader} into an App Inventor map feature, as
+   * {@link #processGeoJSONFeature(String, MapFeatureContainer, YailList)} does for its
+   * description. Points, LineStrings, Polygons and MultiPolygons with valid coordinates are built
+   * straight from the coordinates that were read, and their properties are only read now. Other
+   * features are converted from their descriptions, so that they fail in the same way.
+   *
+   * @throws IllegalArgumentException if the feature is not valid
+   * @throws JSONException if the description of the feature cannot be read
+   */
+  public static MapFactory.MapFeature processGeoJSONFeature(final String logTag,
+      final MapFactory.MapFeatureContainer container, final GeoJSONReader.Feature feature)
+      throws JSONException {
+    if (!GEOJSON_FEATURE.equals(feature.getType()) || feature.hasInvalidProperties()
+        || !hasSupportedCoordinates(feature)) {
+      return processGeoJSONFeature(logTag, container, feature.getDescription());
+    }
+    for (String field : feature.getOtherFields()) {
+      Log.w(logTag, String.format("Unsupported field \"%s\" in JSON format", field));
+    }
+    MapFactory.MapFeature result;
+    String type = feature.getGeometryType();
+    if (MapFeatureType.TYPE_POINT.equals(type)) {
+      Marker marker = new Marker(container);
+      marker.Latitude(feature.getLatitude(0));
+      marker.Longitude(feature.getLongitude(0));
+      result = marker;
+    } else if (MapFeatureType.TYPE_LINESTRING.equals(type)) {
+      LineString lineString = new LineString(container);
+      lineString.updatePoints(pointsFromFeature(feature, 0, feature.getPointCount()));
+      container.getMap().getController().updateFeaturePosition(lineString);
+      result = lineString;
+    } else {
+      // The rings of a Polygon are those of its only polygon
+      int[] polygonEnds = MapFeatureType.TYPE_POLYGON.equals(type)
+          ? new int[] { feature.getEnds(1).length } : feature.getEnds(2);
+      int[] ringEnds = feature.getEnds(1);
+      List<List<GeoPoint>> points = new ArrayList<List<GeoPoint>>();
+      List<List<List<GeoPoint>>> holePoints = new ArrayList<List<List<GeoPoint>>>();
+      int ring = 0;
+      for (int polygonEnd : polygonEnds) {
+        List<List<GeoPoint>> holes = new ArrayList<List<GeoPoint>>();
+        for (int first = ring; ring < polygonEnd; ring++) {
+          List<GeoPoint> ringPoints = pointsFromFeature(feature,
+              ring == 0 ? 0 : ringEnds[ring - 1], ringEnds[ring]);
+          if (ring == first) {
+            points.add(ringPoints);
+          } else {
+            holes.add(ringPoints);
+          }
+        }
+        holePoints.add(holes);
+      }
+      Polygon polygon = new Polygon(container);
+      boolean multipolygon = MapFeatureType.TYPE_MULTIPOLYGON.equals(type);
+      polygon.setPoints(points, multipolygon || holePoints.get(0).size() > 0
+          ? holePoints : new ArrayList<List<List<GeoPoint>>>(), multipolygon);
+      polygon.Initialize();
+      result = polygon;
+    }
+    YailList properties = feature.getProperties();
+    if (properties != null) {
+      processProperties(logTag, result, properties);
+    }
+    return result;
+  }
+
+  /*
+   * Returns true if the feature has a geometry that can be built from its coordinates, which are
+   * all valid and have the structure that its type needs.
+   */
+  private static boolean hasSupportedCoordinates(GeoJSONReader.Feature feature) {
+    String type = feature.getGeometryType();
+    int depth = feature.getDepth();
+    if (MapFeatureType.TYPE_POINT.equals(type)) {
+      if (depth != 0 || feature.getPositionSize() != 2) {
+        return false;
+      }
+    } else if (MapFeatureType.TYPE_LINESTRING.equals(type)) {
+      if (depth != 1 || feature.getPointCount() < 2) {
+        return false;
+      }
+    } else if (MapFeatureType.TYPE_POLYGON.equals(type)
+        || MapFeatureType.TYPE_MULTIPOLYGON.equals(type)) {
+      if (depth != (MapFeatureType.TYPE_POLYGON.equals(type) ? 2 : 3)) {
+        return false;
+      }
+      int start = 0;
+      for (int end : feature.getEnds(1)) {
+        if (end - start < 3) {
+          return false;
+        }
+        start = end;
+      }
+    } else {
+      return false;
+    }
+    for (int i = 0; i < feature.getPointCount(); i++) {
+      if (!GeometryUtil.isValidLatitude(feature.getLatitude(i))
+          || !GeometryUtil.isValidLongitude(feature.getLongitude(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static List<GeoPoint> pointsFromFeature(GeoJSONReader.Feature feature, int start,
+      int end) {
+    List<GeoPoint> points = new ArrayList<GeoPoint>(end - start);
+    for (int i = start; i < end; i++) {
+      points.add(new GeoPoint(feature.getLatitude(i), feature.getLongitude(i)));
+    }
+    return points;
+  }
+
   private static MapFactory.MapFeature processGeometry(final String logTag,
       final MapFactory.MapFeatureContainer container, final YailList geometry) {
     String type = null;
@@ -451,11 +564,9 @@ public final class GeoJSONUtil {
   }
 
   public static List<YailList> getGeoJSONFeatures(final String logTag, final String content) throws JSONException {
-    JSONObject parsedData = new JSONObject(stripBOM(content));
-    JSONArray features = parsedData.getJSONArray(GEOJSON_FEATURES);
     List<YailList> yailFeatures = new ArrayList<YailList>();
-    for (int i = 0; i < features.length(); i++) {
-      yailFeatures.add(jsonObjectToYail(logTag, features.getJSONObject(i)));
+    for (GeoJSONReader.Feature feature : GeoJSONReader.read(content).getFeatures()) {
+      yailFeatures.add(feature.getDescription());
     }
     return yailFeatures;
   }
@@ -466,53 +577,6 @@ public final class GeoJSONUtil {
     return type;
   }
 
-  private static YailList jsonObjectToYail(final String logTag, final JSONObject object) throws JSONException {
-    List<YailList> pairs = new ArrayList<YailList>();
-    @SuppressWarnings("unchecked")  // json only allows String keys
-        Iterator<String> j = object.keys();
-    while (j.hasNext()) {
-      String key = j.next();
-      Object value = object.get(key);
-      if (value instanceof Boolean ||
-          value instanceof Integer ||
-          value instanceof Long ||
-          value instanceof Double ||
-          value instanceof String) {
-        pairs.add(YailList.makeList(new Object[] { key, value }));
-      } else if (value instanceof JSONArray) {
-        pairs.add(YailList.makeList(new Object[] { key, jsonArrayToYail(logTag, (JSONArray) value)}));
-      } else if (value instanceof JSONObject) {
-        pairs.add(YailList.makeList(new Object[] { key, jsonObjectToYail(logTag, (JSONObject) value)}));
-      } else if (!JSONObject.NULL.equals(value)) {
-        Log.wtf(logTag, ERROR_UNKNOWN_TYPE + ": " + value.getClass());
-        throw new IllegalArgumentException(ERROR_UNKNOWN_TYPE);
-      }
-    }
-    return YailList.makeList(pairs);
-  }
-
-  private static YailList jsonArrayToYail(final String logTag, final JSONArray array) throws JSONException {
-    List<Object> items = new ArrayList<Object>();
-    for (int i = 0; i < array.length(); i++) {
-      Object value = array.get(i);
-      if (value instanceof Boolean ||
-          value instanceof Integer ||
-          value instanceof Long ||
-          value instanceof Double ||
-          value instanceof String) {
-        items.add(value);
-      } else if (value instanceof JSONArray) {
-        items.add(jsonArrayToYail(logTag, (JSONArray) value));
-      } else if (value instanceof JSONObject) {
-        items.add(jsonObjectToYail(logTag, (JSONObject) value));
-      } else if (!JSONObject.NULL.equals(value)) {
-        Log.wtf(logTag, ERROR_UNKNOWN_TYPE + ": " + value.getClass());
-        throw new IllegalArgumentException(ERROR_UNKNOWN_TYPE);
-      }
-    }
-    return YailList.makeList(items);
-  }
-
   private static String stripBOM(String content) {
     if (content.charAt(0) == '\uFEFF') {
       return content.substring(1);
@@ -10,6 +10,7 @@ import com.google.appinventor.components.runtime.errors.IterationError;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.geom.LineString;
@@ -17,9 +18,11 @@ import org.locationtech.jts.geom.LinearRing;
 import org.locationtech.jts.geom.Point;
 import org.locationtech.jts.geom.Polygon;
 import org.locationtech.jts.geom.PrecisionModel;
+import org.locationtech.jts.simplify.DouglasPeuckerSimplifier;
 import org.osmdroid.api.IGeoPoint;
 
 import com.google.appinventor.components.runtime.util.MapFactory.MapCircle;
+import com.google.appinventor.components.runtime.util.MapFactory.MapFeature;
 import com.google.appinventor.components.runtime.util.MapFactory.MapLineString;
 import com.google.appinventor.components.runtime.util.MapFactory.MapMarker;
 import com.google.appinventor.components.runtime.util.MapFactory.MapPolygon;
@@ -187,6 +190,113 @@ public final class GeometryUtil {
     return jtsPointToGeoPoint(createGeometry(points, holes).getCentroid());
   }
 
+  /**
+   * Computes the bounding box of a feature, with longitude as x and latitude as y. The box of a
+   * circle includes its radius.
+   *
+   * @param feature The feature to measure.
+   * @return the bounding box of the feature, or the whole world if the feature has no geometry
+   *         yet, so that it is never lost from a search.
+   */
+  public static Envelope getEnvelope(MapFeature feature) {
+    Envelope envelope;
+    try {
+      envelope = new Envelope(feature.getGeometry().getEnvelopeInternal());
+    } catch (RuntimeException e) {
+      // Features that are still being built may have too few points for a geometry
+      return new Envelope(-180, 180, -90, 90);
+    }
+    if (feature instanceof MapCircle) {
+      double latitude = ((MapCircle) feature).Latitude();
+      double radius = ((MapCircle) feature).Radius() / ONE_DEG_IN_METERS;
+      double cos = Math.cos(Math.toRadians(latitude));
+      envelope.expandBy(cos > 1e-6 ? Math.min(radius / cos, 360) : 360, radius);
+    }
+    return envelope;
+  }
+
+  /**
+   * Computes a bounding box, with longitude as x and latitude as y, that holds every point within
+   * <code>distance</code> meters of the given point. The box is large enough for both the great
+   * circle distances measured from markers and circles and the planar distances measured from
+   * the other features.
+   *
+   * @param latitude The latitude of the point.
+   * @param longitude The longitude of the point.
+   * @param distance The distance in meters.
+   * @return the bounding box, which spans all longitudes if it would reach a pole or cross the
+   *         antimeridian.
+   */
+  public static Envelope getEnvelope(double latitude, double longitude, double distance) {
+    double latitudeSpan = distance / ONE_DEG_IN_METERS;
+    double north = latitude + latitudeSpan;
+    double south = latitude - latitudeSpan;
+    if (north >= 90 || south <= -90) {
+      return new Envelope(-180, 180, Math.max(south, -90), Math.min(north, 90));
+    }
+    // Degrees of longitude are shortest at the latitude farthest from the equator
+    double cos = Math.cos(Math.toRadians(Math.max(Math.abs(north), Math.abs(south))));
+    double longitudeSpan = latitudeSpan / cos;
+    if (longitude - longitudeSpan < -180 || longitude + longitudeSpan > 180) {
+      return new Envelope(-180, 180, south, north);
+    }
+    return new Envelope(longitude - longitudeSpan, longitude + longitudeSpan, south, north);
+  }
+
+  /**
+   * Tests whether a feature lies in or crosses a bounding box. A circle crosses the box if its
+   * center is within its radius of the box, as in
+   * {@link #distanceBetweenEdges(MapCircle, MapRectangle)}.
+   *
+   * @param feature The feature to test.
+   * @param box The bounding box, with longitude as x and latitude as y.
+   * @return true if the feature and the box intersect, otherwise false.
+   */
+  public static boolean intersects(MapFeature feature, Envelope box) {
+    Geometry region = FACTORY.toGeometry(box);
+    try {
+      if (feature instanceof MapCircle) {
+        MapCircle circle = (MapCircle) feature;
+        return ONE_DEG_IN_METERS * region.distance(createGeometry(circle.getCentroid()))
+            <= circle.Radius();
+      }
+      return feature.getGeometry().intersects(region);
+    } catch (RuntimeException e) {
+      // Features that are still being built may have too few points for a geometry
+      return false;
+    }
+  }
+
+  /**
+   * Simplifies a line or ring with the Douglas-Peucker algorithm.
+   *
+   * @param points The points of the line or ring.
+   * @param tolerance The largest distance, in degrees, that a removed point may lie from the
+   *                  simplified line.
+   * @param ring True if the points describe a ring, which must keep at least four points.
+   * @return the simplified points, or <code>points</code> if nothing could be removed.
+   */
+  public static List<GeoPoint> simplify(List<GeoPoint> points, double tolerance, boolean ring) {
+    if (points.size() < 3) {
+      return points;
+    }
+    Coordinate[] coordinates = new Coordinate[points.size()];
+    int i = 0;
+    for (GeoPoint p : points) {
+      coordinates[i++] = geoPointToCoordinate(p);
+    }
+    Coordinate[] simplified = DouglasPeuckerSimplifier.simplify(
+        FACTORY.createLineString(coordinates), tolerance).getCoordinates();
+    if (simplified.length == coordinates.length || (ring && simplified.length < 4)) {
+      return points;
+    }
+    List<GeoPoint> result = new ArrayList<GeoPoint>(simplified.length);
+    for (Coordinate c : simplified) {
+      result.add(new GeoPoint(c.y, c.x));
+    }
+    return result;
+  }
+
   public static Polygon ringToPolygon(List<GeoPoint> ring) {
     return FACTORY.createPolygon(geoPointsToLinearRing(ring));
   }
@@ -0,0 +1,182 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.components.runtime.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cache of GraphQL responses used by the GraphQL component, keyed by the
+ * normalized text of the query and kept for a limited time.
+ *
+ * <p>Queries that differ only in whitespace, commas or comments are the same
+ * query to a GraphQL server, so {@link #normalize(String)} removes those
+ * before the text is used as a key. The cache holds the JSON text of the
+ * response data rather than the converted dictionaries, since those may be
+ * modified by the blocks that receive them.
+ *
+ * <p>At most {@link #MAX_ENTRIES} responses are kept; the least recently used
+ * one is dropped first. Entries older than the time to live are never
+ * returned. All methods are thread safe.
+ *
+ */
+public final class GqlResponseCache {
+
+  /**
+   * The maximum number of responses kept.
+   */
+  public static final int MAX_ENTRIES = 64;
+
+  private static final class Entry {
+    final String response;
+    final long expires;
+
+    Entry(String response, long expires) {
+      this.response = response;
+      this.expires = expires;
+    }
+  }
+
+  private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+      return size() > MAX_ENTRIES;
+    }
+  };
+
+  private long timeToLive = 0;
+
+  /**
+   * Sets how long responses are kept, in milliseconds. A time of 0 disables
+   * the cache and drops everything in it.
+   */
+  public synchronized void setTimeToLive(long timeToLive) {
+    this.timeToLive = Math.max(0, timeToLive);
+    if (this.timeToLive == 0) {
+      entries.clear();
+    }
+  }
+
+  public synchronized long getTimeToLive() {
+    return timeToLive;
+  }
+
+  /**
+   * Returns the response stored for a normalized query, or null if there is
+   * none that is recent enough.
+   */
+  public String get(String normalizedQuery) {
+    return get(normalizedQuery, System.currentTimeMillis());
+  }
+
+  /**
+   * Stores the response to a normalized query, unless the cache is disabled.
+   */
+  public void put(String normalizedQuery, String response) {
+    put(normalizedQuery, response, System.currentTimeMillis());
+  }
+
+  /**
+   * Drops all the stored responses.
+   */
+  public synchronized void clear() {
+    entries.clear();
+  }
+
+  synchronized String get(String normalizedQuery, long now) {
+    Entry entry = entries.get(normalizedQuery);
+    if (entry == null) {
+      return null;
+    }
+    if (entry.expires <= now) {
+      entries.remove(normalizedQuery);
+      return null;
+    }
+    return entry.response;
+  }
+
+  synchronized void put(String normalizedQuery, String response, long now) {
+    if (timeToLive > 0) {
+      entries.put(normalizedQuery, new Entry(response, now + timeToLive));
+    }
+  }
+
+  /**
+   * Returns the query with comments removed and every run of whitespace and
+   * commas outside of string values replaced by a single space, or removed
+   * next to punctuation.
+   */
+  public static String normalize(String query) {
+    StringBuilder sb = new StringBuilder(query.length());
+    boolean pendingSpace = false;
+    int length = query.length();
+    int i = 0;
+    while (i < length) {
+      char c = query.charAt(i);
+      if (c == '#') {
+        // A comment runs to the end of the line
+        while (i < length && query.charAt(i) != '\n' && query.charAt(i) != '\r') {
+          i++;
+        }
+        pendingSpace = true;
+        continue;
+      }
+      if (c == ',' || Character.isWhitespace(c) || c == '\uFEFF') {
+        pendingSpace = true;
+        i++;
+        continue;
+      }
+      if (pendingSpace && sb.length() > 0 && isNamePart(sb.charAt(sb.length() - 1))
+          && (isNamePart(c) || c == '"' || c == '$' || c == '.')) {
+        sb.append(' ');
+      }
+      pendingSpace = false;
+      if (c == '"') {
+        int end = endOfString(query, i);
+        sb.append(query, i, end);
+        i = end;
+        continue;
+      }
+      sb.append(c);
+      i++;
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Returns true if the normalized query is a mutation, whose response must
+   * not be cached.
+   */
+  public static boolean isMutation(String normalizedQuery) {
+    return normalizedQuery.startsWith("mutation ") || normalizedQuery.startsWith("mutation{")
+        || normalizedQuery.startsWith("mutation(");
+  }
+
+  private static boolean isNamePart(char c) {
+    return c == '_' || (c >= '0' && c <= '9') || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+  }
+
+  // Returns the index after the string value or block string starting at start
+  private static int endOfString(String query, int start) {
+    int length = query.length();
+    if (query.startsWith("\"\"\"", start)) {
+      int end = query.indexOf("\"\"\"", start + 3);
+      while (end > 0 && query.charAt(end - 1) == '\\') {
+        end = query.indexOf("\"\"\"", end + 1);
+      }
+      return (end < 0) ? length : end + 3;
+    }
+    for (int i = start + 1; i < length; i++) {
+      char c = query.charAt(i);
+      if (c == '\\') {
+        i++;
+      } else if (c == '"' || c == '\n') {
+        return i + 1;
+      }
+    }
+    return length;
+  }
+}
@@ -0,0 +1,363 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.components.runtime.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * A cache on disk of content downloaded over HTTP, which is checked with the
+ * server every time it is used.
+ *
+ * <p>Each request for a URL is sent to the server. If a copy of the URL's
+ * content is on disk, the request carries the <code>ETag</code> and
+ * <code>Last-Modified</code> validators the server gave with it, and a
+ * <code>304 Not Modified</code> answer is served from the copy. The content
+ * is never out of date, but content that did not change is not downloaded
+ * again. Responses without validators, or marked <code>no-store</code>, are
+ * not kept. Requests go through {@link SharedHttpClient}, so they share
+ * connections with the other components that use the network.
+ *
+ * <p>Every response has a validator string that changes when the content
+ * does, so that callers can keep things made from the content, such as a
+ * decoded image, and know when to make them again. Responses the server
+ * gave no validator for use a checksum of their content.
+ *
+ * <p>The least recently used copies are deleted once the cache holds more
+ * than its size. All methods are thread safe.
+ *
+ */
+public final class HttpDiskCache {
+
+  private static final int MAX_REDIRECTS = 5;
+  private static final String META_SUFFIX = ".meta";
+  private static final String TEMP_SUFFIX = ".tmp";
+
+  /**
+   * Content read from a URL, either from the server or from the disk.
+   */
+  public static final class Response {
+    private final String validator;
+    private final HttpDiskCache cache;
+    private final String key;
+    private final String[] meta;
+    private byte[] content;
+
+    Response(String validator, byte[] content) {
+      this.validator = validator;
+      this.cache = null;
+      this.key = null;
+      this.meta = null;
+      this.content = content;
+    }
+
+    Response(String validator, HttpDiskCache cache, String key, String[] meta) {
+      this.validator = validator;
+      this.cache = cache;
+      this.key = key;
+      this.meta = meta;
+      this.content = null;
+    }
+
+    /**
+     * Returns a string that changes whenever the content changes.
+     */
+    public String getValidator() {
+      return validator;
+    }
+
+    /**
+     * Returns true if the server said the content had not changed, so it is
+     * read from the disk.
+     */
+    public boolean isNotModified() {
+      return cache != null;
+    }
+
+    /**
+     * Returns the content. Content that was not downloaded is read from the
+     * disk on the first call, or downloaded again if the copy was deleted or
+     * replaced since the server was asked about it.
+     */
+    public synchronized byte[] getContent() throws IOException {
+      if (content == null) {
+        content = cache.readCopy(key, meta);
+        if (content == null) {
+          content = cache.get(meta[0], 0, false).getContent();
+        }
+      }
+      return content;
+    }
+  }
+
+  private final File directory;
+  private final long maxSize;
+
+  /**
+   * Creates a cache that keeps its copies in the given directory, which it
+   * owns, up to the given number of bytes.
+   */
+  public HttpDiskCache(File directory, long maxSize) {
+    this.directory = directory;
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Reads the content of a URL, following redirects.
+   *
+   * @param url the http or https URL to read
+   * @return the response
+   * @throws IOException if the content cannot be read
+   */
+  public Response get(String url) throws IOException {
+    return get(url, 0, true);
+  }
+
+  private Response get(String url, int redirects, boolean revalidate) throws IOException {
+    String key = hash(url);
+    String[] meta = revalidate ? readMeta(key, url) : null;
+    String location;
+    HttpURLConnection conn = SharedHttpClient.open(new URL(url));
+    try {
+      // Redirects are followed here, so that the copy of the URL redirected to is revalidated
+      conn.setInstanceFollowRedirects(false);
+      if (meta != null) {
+        if (meta[1].length() > 0) {
+          conn.setRequestProperty("If-None-Match", meta[1]);
+        }
+        if (meta[2].length() > 0) {
+          conn.setRequestProperty("If-Modified-Since", meta[2]);
+        }
+      }
+      int response = SharedHttpClient.getResponseCode(conn);
+      if (response == HttpURLConnection.HTTP_NOT_MODIFIED && meta != null) {
+        // Marks the copy as recently used
+        new File(directory, key).setLastModified(System.currentTimeMillis());
+        return new Response(validator(meta[1], meta[2], null), this, key, meta);
+      }
+      if (response >= 400 || response < 200) {
+        throw new IOException("Unable to load " + url + ": HTTP " + response);
+      }
+      if (response < 300) {
+        InputStream in = SharedHttpClient.getResponseStream(conn);
+        byte[] content = in == null ? new byte[0] : readStream(in);
+        String etag = conn.getHeaderField("ETag");
+        String lastModified = conn.getHeaderField("Last-Modified");
+        String cacheControl = conn.getHeaderField("Cache-Control");
+        boolean store = (!isEmpty(etag) || !isEmpty(lastModified))
+            && (cacheControl == null || !cacheControl.toLowerCase().contains("no-store"))
+            && content.length <= maxSize;
+        if (store) {
+          store(key, url, etag, lastModified, content);
+        } else if (meta != null) {
+          delete(key);
+        }
+        return new Response(validator(etag, lastModified, content), content);
+      }
+      location = conn.getHeaderField("Location");
+    } finally {
+      SharedHttpClient.release(conn);
+    }
+    if (location == null || redirects >= MAX_REDIRECTS) {
+      throw new IOException("Unable to follow redirect from " + url);
+    }
+    return get(new URL(new URL(url), location).toString(), redirects + 1, revalidate);
+  }
+
+  /**
+   * Deletes every copy in the cache.
+   */
+  public synchronized void clear() {
+    File[] files = directory.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+  }
+
+  private static boolean isEmpty(String header) {
+    return header == null || header.length() == 0;
+  }
+
+  private static String validator(String etag, String lastModified, byte[] content) {
+    if (!isEmpty(etag)) {
+      return "ETag " + etag;
+    } else if (!isEmpty(lastModified)) {
+      return "Last-Modified " + lastModified;
+    }
+    return checksum(content);
+  }
+
+  /**
+   * Returns a validator for content that has no other, made from its length
+   * and checksum.
+   */
+  static String checksum(byte[] content) {
+    CRC32 crc = new CRC32();
+    crc.update(content);
+    return "CRC " + content.length + " " + Long.toHexString(crc.getValue());
+  }
+
+  /**
+   * Reads the URL, ETag and Last-Modified stored with a copy, or returns
+   * null if there is no copy of the URL.
+   */
+  private synchronized String[] readMeta(String key, String url) {
+    File file = new File(directory, key);
+    File metaFile = new File(directory, key + META_SUFFIX);
+    if (!file.exists() || !metaFile.exists()) {
+      return null;
+    }
+    try {
+      String[] meta = new String(readFile(metaFile), "UTF-8").split("\n", -1);
+      return meta.length >= 3 && meta[0].equals(url) ? meta : null;
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Reads a copy, or returns null if it was deleted or no longer has the
+   * given URL, ETag and Last-Modified. Holding the lock keeps {@link #trim}
+   * from deleting the copy while it is read.
+   */
+  private synchronized byte[] readCopy(String key, String[] meta) {
+    if (!Arrays.equals(meta, readMeta(key, meta[0]))) {
+      return null;
+    }
+    try {
+      return readFile(new File(directory, key));
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  private synchronized void store(String key, String url, String etag, String lastModified,
+      byte[] content) throws IOException {
+    if (!directory.exists() && !directory.mkdirs()) {
+      return;
+    }
+    String meta = url + "\n" + (etag == null ? "" : etag) + "\n"
+        + (lastModified == null ? "" : lastModified);
+    File file = new File(directory, key);
+    File metaFile = new File(directory, key + META_SUFFIX);
+    File temp = new File(directory, key + TEMP_SUFFIX);
+    writeFile(temp, content);
+    if (!temp.renameTo(file)) {
+      temp.delete();
+      return;
+    }
+    writeFile(temp, meta.getBytes("UTF-8"));
+    if (!temp.renameTo(metaFile)) {
+      temp.delete();
+      file.delete();
+      return;
+    }
+    trim();
+  }
+
+  private synchronized void delete(String key) {
+    new File(directory, key).delete();
+    new File(directory, key + META_SUFFIX).delete();
+  }
+
+  /**
+   * Deletes the least recently used copies until the cache fits in its size.
+   */
+  private void trim() {
+    File[] files = directory.listFiles();
+    if (files == null) {
+      return;
+    }
+    List<File> copies = new ArrayList<File>();
+    long size = 0;
+    for (File file : files) {
+      String name = file.getName();
+      if (!name.endsWith(META_SUFFIX) && !name.endsWith(TEMP_SUFFIX)) {
+        copies.add(file);
+        size += file.length();
+      }
+    }
+    if (size <= maxSize) {
+      return;
+    }
+    Collections.sort(copies, new Comparator<File>() {
+      @Override
+      public int compare(File a, File b) {
+        long x = a.lastModified();
+        long y = b.lastModified();
+        return x < y ? -1 : (x == y ? 0 : 1);
+      }
+    });
+    for (File file : copies) {
+      if (size <= maxSize) {
+        break;
+      }
+      size -= file.length();
+      delete(file.getName());
+    }
+  }
+
+  private static String hash(String url) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-1");
+      byte[] bytes = digest.digest(url.getBytes("UTF-8"));
+      StringBuilder sb = new StringBuilder(bytes.length * 2);
+      for (byte b : bytes) {
+        sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+        sb.append(Character.forDigit(b & 0xF, 16));
+      }
+      return sb.toString();
+    } catch (NoSuchAlgorithmException e) {
+      return Integer.toHexString(url.hashCode());
+    } catch (IOException e) {
+      return Integer.toHexString(url.hashCode());
+    }
+  }
+
+  private static byte[] readFile(File file) throws IOException {
+    return readStream(new FileInputStream(file));
+  }
+
+  private static byte[] readStream(InputStream in) throws IOException {
+    try {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buf = new byte[4096];
+      int read;
+      while ((read = in.read(buf)) > 0) {
+        out.write(buf, 0, read);
+      }
+      return out.toByteArray();
+    } finally {
+      in.close();
+    }
+  }
+
+  private static void writeFile(File file, byte[] content) throws IOException {
+    OutputStream out = new FileOutputStream(file);
+    try {
+      out.write(content);
+    } finally {
+      out.close();
+    }
+  }
+}
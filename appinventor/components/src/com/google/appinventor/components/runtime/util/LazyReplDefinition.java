@@ -0,0 +1,88 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.components.runtime.util;
+
+import gnu.mapping.Environment;
+import gnu.mapping.Procedure;
+import gnu.mapping.ProcedureN;
+import gnu.mapping.Symbol;
+import kawa.standard.Scheme;
+
+/**
+ * Stands in the Companion for an event handler or procedure whose YAIL
+ * has been received but not yet evaluated.
+ *
+ * <p>When the blocks editor loads a whole project into the Companion, most
+ * event handlers and procedures are not called for a long time, if at all.
+ * Expanding and evaluating their YAIL up front is the largest part of the
+ * time it takes to load a big project, so the blocks editor sends their
+ * definitions as strings instead and runtime.scm binds each name to one of
+ * these. The first call evaluates the definition, which replaces the
+ * binding with the real handler or procedure, and then calls that. Errors
+ * in the definition are therefore reported when it is first called rather
+ * than when it is loaded.
+ *
+ */
+public class LazyReplDefinition extends ProcedureN {
+
+  private static volatile Environment replEnvironment;
+
+  private final Symbol name;
+  private final String definition;
+  private final Procedure lookup;
+  private final Environment environment;
+
+  /**
+   * Sets the environment the REPL evaluates code in, which has the bindings
+   * of the runtime. Kawa environments belong to a thread, and definitions
+   * are evaluated on the UI thread, so the environment of the thread that
+   * received the code is kept for them.
+   */
+  public static void setReplEnvironment(Environment environment) {
+    replEnvironment = environment;
+  }
+
+  /**
+   * Creates a definition that is evaluated when it is first called.
+   *
+   * @param name the name the definition binds
+   * @param definition the YAIL of the definition
+   * @param lookup a procedure that takes the name and returns what it is
+   *     bound to, so that the real definition can be found once evaluated
+   */
+  public LazyReplDefinition(Symbol name, String definition, Procedure lookup) {
+    super(name.getName());
+    this.name = name;
+    this.definition = definition;
+    this.lookup = lookup;
+    Environment environment = replEnvironment;
+    this.environment = environment == null ? Environment.getCurrent() : environment;
+  }
+
+  @Override
+  public Object applyN(Object[] args) throws Throwable {
+    Object procedure = lookup.apply1(name);
+    if (procedure == this) {
+      evaluate();
+      procedure = lookup.apply1(name);
+    }
+    if (procedure == this || !(procedure instanceof Procedure)) {
+      throw new IllegalStateException("Unable to define " + name);
+    }
+    return ((Procedure) procedure).applyN(args);
+  }
+
+  private void evaluate() throws Throwable {
+    Environment previous = Environment.getCurrent();
+    Environment.setCurrent(environment);
+    try {
+      Scheme.getInstance("scheme").eval(
+          "(begin (require <com.google.youngandroid.runtime>) " + definition + ")");
+    } finally {
+      Environment.setCurrent(previous);
+    }
+  }
+}
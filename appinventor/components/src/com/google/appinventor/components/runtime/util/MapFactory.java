@@ -670,6 +670,16 @@ public final class MapFactory {
      */
     void HideInfobox();
 
+    /**
+     * Computes the distance, in meters, between the feature and a point.
+     * @param latitude the latitude of the point
+     * @param longitude the longitude of the point
+     * @param centroid true if the distance should be measured from the centroid of the feature,
+     *                 otherwise it is measured from the closest point of the feature.
+     * @return the distance to the point, or -1 if there was an error.
+     */
+    double DistanceToPoint(double latitude, double longitude, boolean centroid);
+
     // Events
 
     /**
@@ -61,6 +61,40 @@ public class MediaUtil {
   // tempFileMap maps cached media (assets, etc) to their respective temp files.
   private static final Map<String, File> tempFileMap = new HashMap<String, File>();
 
+  // The share of the heap that decoded images may use
+  private static final int IMAGE_CACHE_HEAP_FRACTION = 8;
+
+  // The largest number of bytes of images from the internet kept on disk
+  private static final long IMAGE_DISK_CACHE_SIZE = 10 * 1024 * 1024;
+
+  // The validator of images decoded from assets, which never change
+  private static final String ASSET_VALIDATOR = "asset";
+
+  // An image in the imageCache, with the validator of the content it was decoded from
+  private static final class CachedImage {
+    final String validator;
+    final Bitmap bitmap;
+
+    CachedImage(String validator, Bitmap bitmap) {
+      this.validator = validator;
+      this.bitmap = bitmap;
+    }
+  }
+
+  // imageCache maps media paths and the sizes they were decoded for to the decoded images. The
+  // bitmaps are shared by every drawable made from them, so they must never be changed.
+  private static final SizedLruCache<String, CachedImage> imageCache =
+      new SizedLruCache<String, CachedImage>(
+          Runtime.getRuntime().maxMemory() / IMAGE_CACHE_HEAP_FRACTION) {
+        @Override
+        protected long sizeOf(CachedImage image) {
+          return (long) image.bitmap.getRowBytes() * image.bitmap.getHeight();
+        }
+      };
+
+  // imageDiskCache keeps copies of images from the internet, created when first used.
+  private static HttpDiskCache imageDiskCache = null;
+
   // this class is used by getBitmapDrawable so it can call the asynchronous version
   // (getBitMapDrawableAsync) and await the result (blocking the UI Thread :-()
   private static class Synchronizer<T> {
@@ -435,6 +469,24 @@ public class MediaUtil {
    */
   public static BitmapDrawable getBitmapDrawable(Form form, String mediaPath)
     throws IOException {
+    return getBitmapDrawable(form, mediaPath, 0, 0);
+  }
+
+  /**
+   * Loads the image specified by mediaPath for drawing at the given size and
+   * returns a Drawable. An image much larger than the size is decoded with
+   * fewer pixels, though never fewer than the size.
+   *
+   * <p/>If mediaPath is null or empty, null is returned.
+   *
+   * @param form the Form
+   * @param mediaPath the path to the media
+   * @param width the width, in pixels, at which the image will be drawn, or 0 if not known
+   * @param height the height, in pixels, at which the image will be drawn, or 0 if not known
+   * @return a Drawable or null
+   */
+  public static BitmapDrawable getBitmapDrawable(Form form, String mediaPath, int width,
+      int height) throws IOException {
     if (mediaPath == null || mediaPath.length() == 0) {
       return null;
     }
@@ -449,7 +501,7 @@ public class MediaUtil {
           syncer.wakeup(result);
         }
       };
-    getBitmapDrawableAsync(form, mediaPath, continuation);
+    getBitmapDrawableAsync(form, mediaPath, width, height, continuation);
     syncer.waitfor();
     BitmapDrawable result = (BitmapDrawable) syncer.getResult();
     if (result == null) {
@@ -476,33 +528,80 @@ public class MediaUtil {
    * handler will be triggered.
    */
   public static void getBitmapDrawableAsync(final Form form, final String mediaPath, final AsyncCallbackPair<BitmapDrawable> continuation) {
+    getBitmapDrawableAsync(form, mediaPath, 0, 0, continuation);
+  }
+
+  /**
+   * Loads the image specified by mediaPath for drawing at the given size and
+   * returns a Drawable.
+   *
+   * <p/>Decoded images are kept in a cache, keyed by mediaPath and size, so
+   * that showing the same image again does not decode it again. Before a
+   * cached image is used, the media is checked for changes: files by their
+   * modification time and length, images from the internet with the
+   * validators the server gave for them (see {@link HttpDiskCache}), and
+   * other media by a checksum of their content. Unlike other types of media,
+   * images from the internet are never used without asking the server,
+   * because the image at a particular URL, such as an image from a web cam,
+   * may change over time.
+   *
+   * <p/>If mediaPath is null or empty, null is returned.
+   *
+   * @param form the Form
+   * @param mediaPath the path to the media
+   * @param width the width, in pixels, at which the image will be drawn, or 0 if not known
+   * @param height the height, in pixels, at which the image will be drawn, or 0 if not known
+   * @param continuation An AsyncCallbackPair that will receive a
+   * BitmapDrawable on success. On exception or failure the appropriate
+   * handler will be triggered.
+   */
+  public static void getBitmapDrawableAsync(final Form form, final String mediaPath,
+      final int width, final int height, final AsyncCallbackPair<BitmapDrawable> continuation) {
     if (mediaPath == null || mediaPath.length() == 0) {
       continuation.onSuccess(null);
       return;
     }
 
     final MediaSource mediaSource = determineMediaSource(form, mediaPath);
+    final int[] limits = getImageLimits(form);
+    final String key = mediaPath + "\n" + width + "x" + height + "\n" + limits[0] + "x" + limits[1];
+
+    if (mediaSource == MediaSource.ASSET) {
+      // Assets never change, so an image decoded from one can be used without reading it.
+      BitmapDrawable drawable = getCachedImage(form, key, ASSET_VALIDATOR);
+      if (drawable != null) {
+        continuation.onSuccess(drawable);
+        return;
+      }
+    }
 
     Runnable loadImage = new Runnable() {
       @Override
       public void run() {
-        // Unlike other types of media, we don't cache image files from the internet to temp files.
-        // The image at a particular URL, such as an image from a web cam, may change over time.
-        // When the app says to fetch the image, we need to get the latest image, not one that we
-        // cached previously.
-
         Log.d(LOG_TAG, "mediaPath = " + mediaPath);
-        InputStream is = null;
-        ByteArrayOutputStream bos = new ByteArrayOutputStream();
-        byte[] buf = new byte[4096];
-        int read;
+        byte[] content = null;
+        String validator;
         try {
-          // copy the input stream to an in-memory buffer
-          is = openMedia(form, mediaPath, mediaSource);
-          while ((read = is.read(buf)) > 0) {
-            bos.write(buf, 0, read);
+          validator = getImageValidator(form, mediaPath, mediaSource);
+          HttpDiskCache.Response response = null;
+          if (validator == null) {
+            if (mediaSource == MediaSource.URL && mediaPath.startsWith("http")) {
+              response = getImageDiskCache(form).get(mediaPath);
+              validator = response.getValidator();
+            } else {
+              content = readMedia(form, mediaPath, mediaSource);
+              validator = HttpDiskCache.checksum(content);
+            }
+          }
+          BitmapDrawable drawable = getCachedImage(form, key, validator);
+          if (drawable != null) {
+            continuation.onSuccess(drawable);
+            return;
+          }
+          if (content == null) {
+            content = response != null ? response.getContent()
+                : readMedia(form, mediaPath, mediaSource);
           }
-          buf = bos.toByteArray();
         } catch (PermissionException e) {
           continuation.onFailure("PERMISSION_DENIED:" + e.getPermissionNeeded());
           return;
@@ -518,79 +617,167 @@ public class MediaUtil {
           Log.d(LOG_TAG, "IOException reading file.", e);
           continuation.onFailure(e.getMessage());
           return;
-        } finally {
-          if (is != null) {
-            try {
-              is.close();
-            } catch(IOException e) {
-              // suppress error on close
-              Log.w(LOG_TAG, "Unexpected error on close", e);
-            }
-          }
-          is = null;
-          try {
-            bos.close();
-          } catch(IOException e) {
-            // Should never fail to close a ByteArrayOutputStream
-          }
-          bos = null;
         }
-        ByteArrayInputStream bis = new ByteArrayInputStream(buf);
-        read = buf.length;
-        buf = null;
         try {
-          bis.mark(read);
-          BitmapFactory.Options options = getBitmapOptions(form, bis, mediaPath);
-          bis.reset();
-          BitmapDrawable originalBitmapDrawable = new BitmapDrawable(form.getResources(), decodeStream(bis, null, options));
-          // If options.inSampleSize == 1, then the image was not unreasonably large and may represent
-          // the actual size the user intended for the image. However we still have to scale it by
-          // the device density.
-          // However if we *did* sample the image to make it smaller, then that means that the image
-          // was not sized specifically for the application. In that case it makes no sense to
-          // scale it, so we don't.
-          // When we scale the image we do the following steps:
-          //   1. set the density in the returned bitmap drawable.
-          //   2. calculate scaled width and height
-          //   3. create a scaled bitmap with the scaled measures
-          //   4. create a new bitmap drawable with the scaled bitmap
-          //   5. set the density in the scaled bitmap.
-
-          originalBitmapDrawable.setTargetDensity(form.getResources().getDisplayMetrics());
-          if ((options.inSampleSize != 1) || (form.deviceDensity() == 1.0f)) {
-            continuation.onSuccess(originalBitmapDrawable);
+          Bitmap bitmap = decodeImage(form, mediaPath, content, width, height, limits);
+          if (bitmap == null) {
+            continuation.onFailure("Unable to decode image " + mediaPath + ".");
             return;
           }
-          int scaledWidth = (int) (form.deviceDensity() * originalBitmapDrawable.getIntrinsicWidth());
-          int scaledHeight = (int) (form.deviceDensity() * originalBitmapDrawable.getIntrinsicHeight());
-          Log.d(LOG_TAG, "form.deviceDensity() = " + form.deviceDensity());
-          Log.d(LOG_TAG, "originalBitmapDrawable.getIntrinsicWidth() = " + originalBitmapDrawable.getIntrinsicWidth());
-          Log.d(LOG_TAG, "originalBitmapDrawable.getIntrinsicHeight() = " + originalBitmapDrawable.getIntrinsicHeight());
-          Bitmap scaledBitmap = Bitmap.createScaledBitmap(originalBitmapDrawable.getBitmap(),
-              scaledWidth, scaledHeight, false);
-          BitmapDrawable scaledBitmapDrawable = new BitmapDrawable(form.getResources(), scaledBitmap);
-          scaledBitmapDrawable.setTargetDensity(form.getResources().getDisplayMetrics());
-          originalBitmapDrawable = null; // So it will get GC'd on the next line
-          System.gc();                   // We likely used a lot of memory, so gc now.
-          continuation.onSuccess(scaledBitmapDrawable);
+          imageCache.put(key, new CachedImage(validator, bitmap));
+          continuation.onSuccess(newImageDrawable(form, bitmap));
         } catch(Exception e) {
           Log.w(LOG_TAG, "Exception while loading media.", e);
           continuation.onFailure(e.getMessage());
-        } finally {
-          if (bis != null) {
-            try {
-              bis.close();
-            } catch(IOException e) {
-              // suppress error on close
-              Log.w(LOG_TAG, "Unexpected error on close", e);
-            }
-          }
         }
       }
     };
     AsynchUtil.runAsynchronously(loadImage);
   }
 
+  /**
+   * Drops every decoded image kept in memory, for example when the system is
+   * low on memory.
+   */
+  public static void clearImageCache() {
+    imageCache.clear();
+  }
+
+  private static BitmapDrawable getCachedImage(Form form, String key, String validator) {
+    CachedImage image = imageCache.get(key);
+    if (image == null) {
+      return null;
+    }
+    if (!image.validator.equals(validator)) {
+      // The media changed since the image was decoded
+      imageCache.remove(key);
+      return null;
+    }
+    return newImageDrawable(form, image.bitmap);
+  }
+
+  private static BitmapDrawable newImageDrawable(Form form, Bitmap bitmap) {
+    BitmapDrawable drawable = new BitmapDrawable(form.getResources(), bitmap);
+    drawable.setTargetDensity(form.getResources().getDisplayMetrics());
+    return drawable;
+  }
+
+  /**
+   * Returns a string that changes when the media changes, or null if the
+   * media must be read to tell. Files are checked by their modification time
+   * and length. This checks permissions as {@link #openMedia} does, since a
+   * cached image may be used without opening the media.
+   */
+  private static String getImageValidator(Form form, String mediaPath, MediaSource mediaSource)
+      throws IOException {
+    File file;
+    switch (mediaSource) {
+      case ASSET:
+        return ASSET_VALIDATOR;
+
+      case REPL_ASSET:
+        form.assertPermission(READ_EXTERNAL_STORAGE);
+        file = new File(URI.create(form.getAssetPath(mediaPath)));
+        break;
+
+      case SDCARD:
+        form.assertPermission(READ_EXTERNAL_STORAGE);
+        file = new File(mediaPath);
+        break;
+
+      case FILE_URL:
+        if (isExternalFileUrl(form, mediaPath)) {
+          form.assertPermission(READ_EXTERNAL_STORAGE);
+        }
+        file = new File(fileUrlToFilePath(mediaPath));
+        break;
+
+      default:
+        return null;
+    }
+    if (!file.isFile()) {
+      return null;
+    }
+    return "file " + file.lastModified() + " " + file.length();
+  }
+
+  private static synchronized HttpDiskCache getImageDiskCache(Form form) {
+    if (imageDiskCache == null) {
+      imageDiskCache = new HttpDiskCache(new File(form.getCacheDir(), "AI_ImageCache"),
+          IMAGE_DISK_CACHE_SIZE);
+    }
+    return imageDiskCache;
+  }
+
+  /**
+   * Reads the whole of the media specified by mediaPath into memory.
+   */
+  private static byte[] readMedia(Form form, String mediaPath, MediaSource mediaSource)
+      throws IOException {
+    InputStream is = null;
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    byte[] buf = new byte[4096];
+    int read;
+    try {
+      is = openMedia(form, mediaPath, mediaSource);
+      while ((read = is.read(buf)) > 0) {
+        bos.write(buf, 0, read);
+      }
+      return bos.toByteArray();
+    } finally {
+      if (is != null) {
+        try {
+          is.close();
+        } catch(IOException e) {
+          // suppress error on close
+          Log.w(LOG_TAG, "Unexpected error on close", e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Decodes an image, sampling it down if it is much larger than the screen
+   * or than the size it will be drawn at.
+   *
+   * @return the bitmap, or null if the content is not an image
+   */
+  private static Bitmap decodeImage(Form form, String mediaPath, byte[] content, int width,
+      int height, int[] limits) {
+    ByteArrayInputStream bis = new ByteArrayInputStream(content);
+    BitmapFactory.Options options = getBitmapOptions(bis, mediaPath, width, height, limits);
+    bis.reset();
+    Bitmap bitmap = decodeStream(bis, null, options);
+    if (bitmap == null) {
+      return null;
+    }
+    // If options.inSampleSize == 1, then the image was not unreasonably large and may represent
+    // the actual size the user intended for the image. However we still have to scale it by
+    // the device density.
+    // However if we *did* sample the image to make it smaller, then that means that the image
+    // was not sized specifically for the application. In that case it makes no sense to
+    // scale it, so we don't.
+    // When we scale the image we do the following steps:
+    //   1. set the density in the returned bitmap drawable.
+    //   2. calculate scaled width and height
+    //   3. create a scaled bitmap with the scaled measures
+    // The caller creates a new bitmap drawable with the scaled bitmap and sets its density.
+    if ((options.inSampleSize != 1) || (form.deviceDensity() == 1.0f)) {
+      return bitmap;
+    }
+    BitmapDrawable originalBitmapDrawable = newImageDrawable(form, bitmap);
+    int scaledWidth = (int) (form.deviceDensity() * originalBitmapDrawable.getIntrinsicWidth());
+    int scaledHeight = (int) (form.deviceDensity() * originalBitmapDrawable.getIntrinsicHeight());
+    Log.d(LOG_TAG, "form.deviceDensity() = " + form.deviceDensity());
+    Log.d(LOG_TAG, "originalBitmapDrawable.getIntrinsicWidth() = " + originalBitmapDrawable.getIntrinsicWidth());
+    Log.d(LOG_TAG, "originalBitmapDrawable.getIntrinsicHeight() = " + originalBitmapDrawable.getIntrinsicHeight());
+    Bitmap scaledBitmap = Bitmap.createScaledBitmap(bitmap, scaledWidth, scaledHeight, false);
+    originalBitmapDrawable = null; // So it will get GC'd on the next line
+    bitmap = null;
+    System.gc();                   // We likely used a lot of memory, so gc now.
+    return scaledBitmap;
+  }
+
   private static Bitmap decodeStream(InputStream is, Rect outPadding, BitmapFactory.Options opts) {
     // We wrap a FlushedInputStream around the given InputStream. This works around a problem in
     // BitmapFactory.decodeStream where it fails to load the image if the InputStream's skip method
@@ -624,14 +811,11 @@ public class MediaUtil {
     }
   }
 
-  private static BitmapFactory.Options getBitmapOptions(Form form, InputStream is, String mediaPath) {
-    // Get the size of the image.
-    BitmapFactory.Options options = new BitmapFactory.Options();
-    options.inJustDecodeBounds = true;
-    decodeStream(is, null, options);
-    int imageWidth = options.outWidth;
-    int imageHeight = options.outHeight;
-
+  /**
+   * Returns the largest width and height of an image that is not sampled
+   * down.
+   */
+  private static int[] getImageLimits(Form form) {
     // Get the screen size.
     Display display = ((WindowManager) form.getSystemService(Context.WINDOW_SERVICE)).
         getDefaultDisplay();
@@ -651,15 +835,35 @@ public class MediaUtil {
       maxWidth = (int) (display.getWidth() / form.deviceDensity());
       maxHeight = (int) (display.getHeight() / form.deviceDensity());
     }
+    return new int[] { maxWidth, maxHeight };
+  }
+
+  private static BitmapFactory.Options getBitmapOptions(InputStream is, String mediaPath,
+      int width, int height, int[] limits) {
+    // Get the size of the image.
+    BitmapFactory.Options options = new BitmapFactory.Options();
+    options.inJustDecodeBounds = true;
+    decodeStream(is, null, options);
+    int imageWidth = options.outWidth;
+    int imageHeight = options.outHeight;
+    int maxWidth = limits[0];
+    int maxHeight = limits[1];
 
     int sampleSize = 1;
     while ((imageWidth / sampleSize > maxWidth) && (imageHeight / sampleSize > maxHeight)) {
       sampleSize *= 2;
     }
+    if (width > 0 && height > 0) {
+      // An image drawn at a known size needs no more pixels than that size.
+      while ((imageWidth / (sampleSize * 2) >= width)
+          && (imageHeight / (sampleSize * 2) >= height)) {
+        sampleSize *= 2;
+      }
+    }
     options = new BitmapFactory.Options();
     Log.d(LOG_TAG, "getBitmapOptions: sampleSize = " + sampleSize + " mediaPath = " + mediaPath
-      + " maxWidth = " + maxWidth + " maxHeight = " + maxHeight +
-      " display width = " + display.getWidth() + " display height = " + display.getHeight());
+      + " maxWidth = " + maxWidth + " maxHeight = " + maxHeight
+      + " width = " + width + " height = " + height);
     options.inSampleSize = sampleSize;
     return options;
   }
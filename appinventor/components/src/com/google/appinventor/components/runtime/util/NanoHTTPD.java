@@ -3,8 +3,11 @@
 // and Copyright (C) 2010 by Konstantinos Togias <info@ktogias.gr>
 // See Details at end of file.
 package com.google.appinventor.components.runtime.util;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -15,7 +18,9 @@ import java.io.PrintStream;
 import java.io.PrintWriter;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
 import java.net.URLEncoder;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -54,6 +59,8 @@ import android.util.Log;
  *    <li> Supports file upload (since version 1.2, 2010) </li>
  *    <li> Supports partial content (streaming)</li>
  *    <li> Supports ETags</li>
+ *    <li> Supports persistent (keep-alive) connections and pipelined requests</li>
+ *    <li> Supports POST requests with a binary body</li>
  *    <li> Never caches anything </li>
  *    <li> Doesn't limit bandwidth, request time or simultaneous connections </li>
  *    <li> Default code serves files and shows all HTTP parameters and headers</li>
@@ -130,6 +137,24 @@ public class NanoHTTPD
                 return serveFile( uri, header, myRootDir, true );
         }
 
+        /**
+         * Override this to accept POST requests whose content type is
+         * application/octet-stream.<p>
+         *
+         * (By default, this answers 400 Bad Request.)
+         *
+         * @param uri   Percent-decoded URI without parameters, for example "/index.cgi"
+         * @param method        "POST"
+         * @param parms Parsed, percent decoded parameters from URI.
+         * @param header        Header entries, percent decoded
+         * @param body  The body of the request, as it was sent
+         * @return HTTP response, see class Response for details
+         */
+        public Response serve( String uri, String method, Properties header, Properties parms, byte[] body, Socket mySocket )
+        {
+                return new Response( HTTP_BADREQUEST, MIME_PLAINTEXT, "BAD REQUEST: Binary content is not supported." );
+        }
+
         /**
          * HTTP response.
          * Return one of these from serve().
@@ -232,6 +257,17 @@ public class NanoHTTPD
 
         private static final int REPL_STACK_SIZE = 256*1024;
 
+        /**
+         * How long a persistent connection waits for its next request
+         * before it is closed, in milliseconds.
+         */
+        private static final int KEEP_ALIVE_TIMEOUT = 30*1000;
+
+        /**
+         * The largest request header accepted, in bytes.
+         */
+        private static final int MAX_HEADER_SIZE = 8192;
+
         /**
          * Starts a HTTP server to given port.<p>
          * Throws an IOException if the socket is already in use
@@ -328,14 +364,18 @@ public class NanoHTTPD
          * We start with 2 threads (one for handling _newblocks calls and one for the long
          * running _values call. Max of 10 (in case of a spike of some kind, should really never
          * have more then 2 or 3). Shutdown any execess idle threads (above 2) after 5 seconds.
+         * A thread serves one connection until the connection is closed or has been idle for
+         * KEEP_ALIVE_TIMEOUT; connections beyond the maximum are closed at once.
          */
 
         private ThreadPoolExecutor myExecutor = new ThreadPoolExecutor(2, 10, 5,
           TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), new myThreadFactory());
 
         /**
-         * Handles one session, i.e. parses the HTTP request
-         * and returns the response.
+         * Handles one connection, i.e. parses each HTTP request
+         * and returns its response. HTTP/1.1 connections, and HTTP/1.0
+         * connections that ask for keep-alive, stay open for further
+         * requests, which are answered in the order they arrive.
          */
         private class HTTPSession implements Runnable
         {
@@ -343,169 +383,227 @@ public class NanoHTTPD
                 {
                         mySocket = s;
                         Log.d(LOG_TAG, "NanoHTTPD: getPoolSize() = " + myExecutor.getPoolSize());
-                        myExecutor.execute(this);
+                        try
+                        {
+                                myExecutor.execute(this);
+                        }
+                        catch ( RejectedExecutionException ree )
+                        {
+                                Log.w(LOG_TAG, "NanoHTTPD: Too many connections, closing " + s.getInetAddress());
+                                try { mySocket.close(); } catch( Throwable t ) {}
+                        }
                 }
 
                 public void run()
                 {
                         try
                         {
-                                InputStream is = mySocket.getInputStream();
-                                if ( is == null) return;
-
-                                // Read the first 8192 bytes.
-                                // The full header should fit in here.
-                                // Apache's default header limit is 8KB.
-                                int bufsize = 8192;
-                                byte[] buf = new byte[bufsize];
-                                int rlen = is.read(buf, 0, bufsize);
-                                if (rlen <= 0) return;
-
-                                // Create a BufferedReader for parsing the header.
-                                ByteArrayInputStream hbis = new ByteArrayInputStream(buf, 0, rlen);
-                                BufferedReader hin = new BufferedReader( new InputStreamReader( hbis ));
-                                Properties pre = new Properties();
-                                Properties parms = new Properties();
-                                Properties header = new Properties();
-                                Properties files = new Properties();
-
-                                // Decode the header into parms and header java properties
-                                decodeHeader(hin, pre, parms, header);
-                                String method = pre.getProperty("method");
-                                String uri = pre.getProperty("uri");
-
-                                long size = 0x7FFFFFFFFFFFFFFFl;
-                                String contentLength = header.getProperty("content-length");
-                                if (contentLength != null)
+                                // Responses are small and the client waits for each one, so
+                                // don't let Nagle's algorithm hold them back.
+                                mySocket.setTcpNoDelay( true );
+                                mySocket.setSoTimeout( KEEP_ALIVE_TIMEOUT );
+                                out = new BufferedOutputStream( mySocket.getOutputStream(), theBufferSize );
+                                InputStream is = new BufferedInputStream( mySocket.getInputStream(), theBufferSize );
+                                while ( serveRequest( is ))
+                                        ;
+                        }
+                        catch ( SocketTimeoutException ste )
+                        {
+                                // The connection was idle for too long.
+                        }
+                        catch ( IOException ioe )
+                        {
+                                try
                                 {
-                                        try { size = Integer.parseInt(contentLength); }
-                                        catch (NumberFormatException ex) {}
+                                        sendError( HTTP_INTERNALERROR, "SERVER INTERNAL ERROR: IOException: " + ioe.getMessage());
                                 }
+                                catch ( Throwable t ) {}
+                        }
+                        catch ( InterruptedException ie )
+                        {
+                                // Thrown by sendError, ignore and exit the thread.
+                        }
+                        finally
+                        {
+                                try { mySocket.close(); } catch( Throwable t ) {}
+                        }
+                }
 
-                                // We are looking for the byte separating header from body.
-                                // It must be the last byte of the first two sequential new lines.
-                                int splitbyte = 0;
-                                boolean sbfound = false;
-                                while (splitbyte < rlen)
+                /**
+                 * Reads one request from the connection and sends its response.
+                 *
+                 * @return true if the connection stays open for the next request
+                 */
+                private boolean serveRequest( InputStream is ) throws IOException, InterruptedException
+                {
+                        keepAlive = false;      // Until the request asks for it; errors close the connection
+                        byte[] head = readHeader( is );
+                        if ( head == null ) return false;   // The client closed the connection
+
+                        // Create a BufferedReader for parsing the header.
+                        BufferedReader hin = new BufferedReader( new InputStreamReader( new ByteArrayInputStream( head )));
+                        Properties pre = new Properties();
+                        Properties parms = new Properties();
+                        Properties header = new Properties();
+                        Properties files = new Properties();
+
+                        // Decode the header into parms and header java properties
+                        decodeHeader(hin, pre, parms, header);
+                        String method = pre.getProperty("method");
+                        String uri = pre.getProperty("uri");
+                        if ( method == null ) return false;
+                        httpVersion = pre.getProperty("version", "HTTP/1.0");
+                        String connection = header.getProperty("connection", "").toLowerCase();
+                        boolean persistent = httpVersion.equals("HTTP/1.1") ? !connection.contains("close")
+                                : connection.contains("keep-alive");
+
+                        // A request without a Content-Length has no body.
+                        long size = 0;
+                        String contentLength = header.getProperty("content-length");
+                        if (contentLength != null)
+                        {
+                                try { size = Long.parseLong(contentLength.trim()); }
+                                catch (NumberFormatException ex)
                                 {
-                                        if (buf[splitbyte] == '\r' && buf[++splitbyte] == '\n' && buf[++splitbyte] == '\r' && buf[++splitbyte] == '\n') {
-                                                sbfound = true;
-                                                break;
-                                        }
-                                        splitbyte++;
+                                        sendError( HTTP_BADREQUEST, "BAD REQUEST: Invalid Content-Length." );
                                 }
-                                splitbyte++;
+                        }
 
-                                // Write the part of body already read to ByteArrayOutputStream f
-                                OutputStream f;
-                                if ( method.equalsIgnoreCase( "PUT" ) )
+                        // Write the body to f
+                        OutputStream f;
+                        if ( method.equalsIgnoreCase( "PUT" ) )
+                        {
+                                File tmpfile = File.createTempFile("upload", "bin");
+                                tmpfile.deleteOnExit();
+                                f = new FileOutputStream(tmpfile);
+                                files.put("content", tmpfile.getAbsolutePath());
+                        }
+                        else
+                        {
+                                f = new ByteArrayOutputStream();
+                        }
+
+                        // Read the body, but not a byte more, since the next request may follow it.
+                        byte[] buf = new byte[theBufferSize];
+                        try
+                        {
+                                while ( size > 0 )
                                 {
-                                        File tmpfile = File.createTempFile("upload", "bin");
-                                        tmpfile.deleteOnExit();
-                                        f = new FileOutputStream(tmpfile);
-                                        files.put("content", tmpfile.getAbsolutePath());
+                                        int rlen = is.read(buf, 0, (int) Math.min(buf.length, size));
+                                        if ( rlen < 0 )
+                                                throw new EOFException( "Connection closed before the end of the request body" );
+                                        size -= rlen;
+                                        f.write(buf, 0, rlen);
                                 }
-                                else
+                        }
+                        finally
+                        {
+                                if ( method.equalsIgnoreCase( "PUT" ) )
+                                        f.close();  // Close open file
+                        }
+
+                        // If the method is POST, there may be parameters
+                        // in data section, too, read it:
+                        byte[] body = null;
+                        if ( method.equalsIgnoreCase( "POST" ))
+                        {
+                                // Get the raw body as a byte []
+                                byte [] fbuf = ((ByteArrayOutputStream)f).toByteArray();
+
+                                // Create a BufferedReader for easily reading it as string.
+                                ByteArrayInputStream bin = new ByteArrayInputStream(fbuf);
+                                BufferedReader in = new BufferedReader( new InputStreamReader(bin));
+
+                                String contentType = "";
+                                String contentTypeHeader = header.getProperty("content-type", "");
+                                StringTokenizer st = new StringTokenizer( contentTypeHeader , "; " );
+                                if ( st.hasMoreTokens()) {
+                                        contentType = st.nextToken();
+                                }
+
+                                if (contentType.equalsIgnoreCase("multipart/form-data"))
                                 {
-                                        f = new ByteArrayOutputStream();
+                                        // Handle multipart/form-data
+                                        if ( !st.hasMoreTokens())
+                                                sendError( HTTP_BADREQUEST, "BAD REQUEST: Content type is multipart/form-data but boundary missing. Usage: GET /example/file.html" );
+                                        String boundaryExp = st.nextToken();
+                                        st = new StringTokenizer( boundaryExp , "=" );
+                                        if (st.countTokens() != 2)
+                                                sendError( HTTP_BADREQUEST, "BAD REQUEST: Content type is multipart/form-data but boundary syntax error. Usage: GET /example/file.html" );
+                                        st.nextToken();
+                                        String boundary = st.nextToken();
+
+                                        decodeMultipartData(boundary, fbuf, in, parms, files);
                                 }
-                                if (splitbyte < rlen) f.write(buf, splitbyte, rlen-splitbyte);
-
-                                // While Firefox sends on the first read all the data fitting
-                                // our buffer, Chrome and Opera sends only the headers even if
-                                // there is data for the body. So we do some magic here to find
-                                // out whether we have already consumed part of body, if we
-                                // have reached the end of the data to be sent or we should
-                                // expect the first byte of the body at the next read.
-                                if (splitbyte < rlen)
-                                        size -= rlen - splitbyte +1;
-                                else if (!sbfound || size == 0x7FFFFFFFFFFFFFFFl)
-                                        size = 0;
-
-                                // Now read all the body and write it to f
-                                buf = new byte[512];
-                                while ( rlen >= 0 && size > 0 )
+                                else if (contentType.equalsIgnoreCase(MIME_DEFAULT_BINARY))
                                 {
-                                        rlen = is.read(buf, 0, 512);
-                                        size -= rlen;
-                                        if (rlen > 0)
-                                                f.write(buf, 0, rlen);
+                                        // Binary content is passed on as it is
+                                        body = fbuf;
                                 }
-
-                                // If the method is POST, there may be parameters
-                                // in data section, too, read it:
-                                if ( method.equalsIgnoreCase( "POST" ))
+                                else
                                 {
-                                        // Get the raw body as a byte []
-                                        byte [] fbuf = ((ByteArrayOutputStream)f).toByteArray();
-
-                                        // Create a BufferedReader for easily reading it as string.
-                                        ByteArrayInputStream bin = new ByteArrayInputStream(fbuf);
-                                        BufferedReader in = new BufferedReader( new InputStreamReader(bin));
-
-                                        String contentType = "";
-                                        String contentTypeHeader = header.getProperty("content-type");
-                                        StringTokenizer st = new StringTokenizer( contentTypeHeader , "; " );
-                                        if ( st.hasMoreTokens()) {
-                                                contentType = st.nextToken();
-                                        }
-
-                                        if (contentType.equalsIgnoreCase("multipart/form-data"))
+                                        // Handle application/x-www-form-urlencoded
+                                        String postLine = "";
+                                        char pbuf[] = new char[512];
+                                        int read = in.read(pbuf);
+                                        while ( read >= 0 && !postLine.endsWith("\r\n") )
                                         {
-                                                // Handle multipart/form-data
-                                                if ( !st.hasMoreTokens())
-                                                        sendError( HTTP_BADREQUEST, "BAD REQUEST: Content type is multipart/form-data but boundary missing. Usage: GET /example/file.html" );
-                                                String boundaryExp = st.nextToken();
-                                                st = new StringTokenizer( boundaryExp , "=" );
-                                                if (st.countTokens() != 2)
-                                                        sendError( HTTP_BADREQUEST, "BAD REQUEST: Content type is multipart/form-data but boundary syntax error. Usage: GET /example/file.html" );
-                                                st.nextToken();
-                                                String boundary = st.nextToken();
-
-                                                decodeMultipartData(boundary, fbuf, in, parms, files);
+                                                postLine += String.valueOf(pbuf, 0, read);
+                                                read = in.read(pbuf);
                                         }
-                                        else
-                                        {
-                                                // Handle application/x-www-form-urlencoded
-                                                String postLine = "";
-                                                char pbuf[] = new char[512];
-                                                int read = in.read(pbuf);
-                                                while ( read >= 0 && !postLine.endsWith("\r\n") )
-                                                {
-                                                        postLine += String.valueOf(pbuf, 0, read);
-                                                        read = in.read(pbuf);
-                                                }
-                                                postLine = postLine.trim();
-                                                decodeParms( postLine, parms );
-                                        }
-                                        in.close();
-                                }
-                                else if ( method.equalsIgnoreCase( "PUT " ) )
-                                {
-                                        f.close();  // Close open file
+                                        postLine = postLine.trim();
+                                        decodeParms( postLine, parms );
                                 }
+                                in.close();
+                        }
 
-                                // Ok, now do the serve()
-                                Response r = serve( uri, method, header, parms, files, mySocket );
-                                if ( r == null )
-                                        sendError( HTTP_INTERNALERROR, "SERVER INTERNAL ERROR: Serve() returned a null response." );
-                                else
-                                        sendResponse( r.status, r.mimeType, r.header, r.data );
+                        // Ok, now do the serve()
+                        keepAlive = persistent;
+                        Response r;
+                        if ( body != null )
+                                r = serve( uri, method, header, parms, body, mySocket );
+                        else
+                                r = serve( uri, method, header, parms, files, mySocket );
+                        if ( r == null )
+                                sendError( HTTP_INTERNALERROR, "SERVER INTERNAL ERROR: Serve() returned a null response." );
+                        else
+                                sendResponse( r.status, r.mimeType, r.header, r.data );
+                        return keepAlive;
+                }
 
-                                is.close();
-                        }
-                        catch ( IOException ioe )
+                /**
+                 * Reads the header of a request, up to and including the empty
+                 * line that ends it. Line breaks before the request line are
+                 * skipped, and carriage returns are dropped.
+                 *
+                 * @return the header, or null if the connection was closed first
+                 */
+                private byte[] readHeader( InputStream is ) throws IOException, InterruptedException
+                {
+                        ByteArrayOutputStream head = new ByteArrayOutputStream();
+                        int newlines = 0;       // Line breaks since the last other character
+                        int c;
+                        while (( c = is.read()) >= 0 )
                         {
-                                try
+                                if ( c == '\r' )
+                                        continue;
+                                if ( c == '\n' )
                                 {
-                                        sendError( HTTP_INTERNALERROR, "SERVER INTERNAL ERROR: IOException: " + ioe.getMessage());
+                                        if ( head.size() == 0 )
+                                                continue;
+                                        if ( ++newlines == 2 )
+                                                return head.toByteArray();
                                 }
-                                catch ( Throwable t ) {}
-                        }
-                        catch ( InterruptedException ie )
-                        {
-                                // Thrown by sendError, ignore and exit the thread.
+                                else
+                                {
+                                        newlines = 0;
+                                }
+                                head.write( c );
+                                // Apache's default header limit is 8KB.
+                                if ( head.size() > MAX_HEADER_SIZE )
+                                        sendError( HTTP_BADREQUEST, "BAD REQUEST: Header too large." );
                         }
+                        return null;
                 }
 
                 /**
@@ -541,11 +639,12 @@ public class NanoHTTPD
                                 else uri = decodePercent(uri);
 
                                 // If there's another token, it's protocol version,
-                                // followed by HTTP headers. Ignore version but parse headers.
+                                // followed by HTTP headers.
                                 // NOTE: this now forces header names lowercase since they are
                                 // case insensitive and vary by client.
                                 if ( st.hasMoreTokens())
                                 {
+                                        pre.put("version", st.nextToken().toUpperCase());
                                         String line = in.readLine();
                                         while ( line != null && line.trim().length() > 0 )
                                         {
@@ -789,6 +888,7 @@ public class NanoHTTPD
                  */
                 private void sendError( String status, String msg ) throws InterruptedException
                 {
+                        keepAlive = false;
                         sendResponse( status, MIME_PLAINTEXT, null, new ByteArrayInputStream( msg.getBytes()));
                         throw new InterruptedException();
                 }
@@ -803,9 +903,8 @@ public class NanoHTTPD
                                 if ( status == null )
                                         throw new Error( "sendResponse(): Status can't be null." );
 
-                                OutputStream out = mySocket.getOutputStream();
                                 PrintWriter pw = new PrintWriter( out );
-                                pw.print("HTTP/1.0 " + status + " \r\n");
+                                pw.print(httpVersion + " " + status + " \r\n");
 
                                 if ( mime != null )
                                         pw.print("Content-Type: " + mime + "\r\n");
@@ -813,6 +912,21 @@ public class NanoHTTPD
                                 if ( header == null || header.getProperty( "Date" ) == null )
                                         pw.print( "Date: " + gmtFrmt.format( new Date()) + "\r\n");
 
+                                // The client finds the end of the response by its length
+                                // when the connection stays open.
+                                if ( header == null || header.getProperty( "Content-Length" ) == null )
+                                        pw.print( "Content-Length: " + ( data == null ? 0 : data.available()) + "\r\n");
+
+                                if ( keepAlive )
+                                {
+                                        pw.print( "Connection: keep-alive\r\n" );
+                                        pw.print( "Keep-Alive: timeout=" + ( KEEP_ALIVE_TIMEOUT / 1000 ) + "\r\n" );
+                                }
+                                else
+                                {
+                                        pw.print( "Connection: close\r\n" );
+                                }
+
                                 if ( header != null )
                                 {
                                         Enumeration e = header.keys();
@@ -840,18 +954,21 @@ public class NanoHTTPD
                                         }
                                 }
                                 out.flush();
-                                out.close();
                                 if ( data != null )
                                         data.close();
                         }
                         catch( IOException ioe )
                         {
                                 // Couldn't write? No can do.
+                                keepAlive = false;
                                 try { mySocket.close(); } catch( Throwable t ) {}
                         }
                 }
 
                 private Socket mySocket;
+                private OutputStream out;
+                private String httpVersion = "HTTP/1.0";
+                private boolean keepAlive = false;
         }
 
         /**
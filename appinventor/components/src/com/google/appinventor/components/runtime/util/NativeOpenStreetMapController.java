@@ -6,9 +6,12 @@
 package com.google.appinventor.components.runtime.util;
 
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
+import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Picture;
+import android.graphics.Point;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.graphics.drawable.PictureDrawable;
@@ -52,9 +55,12 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import org.locationtech.jts.geom.Envelope;
 import org.osmdroid.api.IGeoPoint;
 import org.osmdroid.config.Configuration;
 import org.osmdroid.events.MapListener;
@@ -127,9 +133,89 @@ class NativeOpenStreetMapController implements MapController, MapListener {
    */
   private Set<MapFeature> hiddenFeatures = new HashSet<>();
 
+  private static final int COLOR_CLUSTER = 0xFF2F80ED;
+
   private static final float[] ANCHOR_HORIZONTAL = { Float.NaN, 0.0f, 1.0f, 0.5f };
   private static final float[] ANCHOR_VERTICAL = { Float.NaN, 0.0f, 0.5f, 1.0f };
 
+  /*
+   * Maps with many features only keep overlays for the features near the visible part of the map.
+   * The features are found with a spatial index, and the overlays are brought up to date by a
+   * pass that runs after the map is scrolled or zoomed, or after features change.
+   */
+
+  /**
+   * The number of features above which only the features near the viewport have overlays.
+   */
+  private static final int CULLING_THRESHOLD = 200;
+
+  /**
+   * The fraction of the viewport's width and height by which the region with overlays extends past
+   * each side of the viewport, so that short scrolls do not show missing features.
+   */
+  private static final double CULLING_MARGIN = 0.5;
+
+  /**
+   * The delay, in milliseconds, between the last change to the map and the culling pass.
+   */
+  private static final long CULLING_DELAY = 100;
+
+  /**
+   * The number of markers in the culling region above which nearby markers are drawn as one.
+   */
+  private static final int CLUSTERING_THRESHOLD = 100;
+
+  /**
+   * The size, in dp, of the cells of the grid that markers are grouped by.
+   */
+  private static final int CLUSTER_CELL_SIZE = 64;
+
+  /**
+   * The size, in dp, of the marker that stands for a cluster.
+   */
+  private static final int CLUSTER_ICON_SIZE = 40;
+
+  /**
+   * The number of points above which the lines and polygons drawn in a culled map are simplified
+   * to the resolution of the current zoom level.
+   */
+  private static final int SIMPLIFICATION_THRESHOLD = 32;
+
+  /**
+   * Every feature that has been added to the map, in order.
+   */
+  private final Set<MapFeature> features = new LinkedHashSet<>();
+
+  /**
+   * The bounding boxes of the features. The boxes of the features in {@link #movedFeatures} are
+   * out of date.
+   */
+  private final SpatialIndex<MapFeature> featureIndex = new SpatialIndex<>();
+
+  /**
+   * Features that were added or moved since the last culling pass.
+   */
+  private final Set<MapFeature> movedFeatures = new HashSet<>();
+
+  /**
+   * Markers whose overlays are replaced by a cluster marker.
+   */
+  private Set<MapMarker> clusteredMarkers = new HashSet<>();
+
+  private final List<Marker> clusterOverlays = new ArrayList<>();
+
+  /**
+   * The zoom level at which the points of a simplified line or polygon were computed.
+   */
+  private final Map<MapFeature, Integer> simplifiedZoom = new HashMap<>();
+
+  private final Runnable cullingPass = new Runnable() {
+    @Override
+    public void run() {
+      updateRenderedFeatures();
+    }
+  };
+
   private static class AppInventorLocationSensorAdapter implements IMyLocationProvider,
       LocationSensor.LocationSensorListener {
     private LocationSensor source;
@@ -268,6 +354,9 @@ class NativeOpenStreetMapController implements MapController, MapListener {
     protected void onSizeChanged(int w, int h, int oldw, int oldh) {
       scrollTo(getScrollX() + (oldw - w) / 2, getScrollY() + (oldh - h) / 2);
       super.onSizeChanged(w, h, oldw, oldh);
+      if (isCulling()) {
+        scheduleCulling();
+      }
     }
 
     @Override
@@ -514,6 +603,12 @@ class NativeOpenStreetMapController implements MapController, MapListener {
 
   @Override
   public void addFeature(final MapMarker aiMarker) {
+    if (registerFeature(aiMarker)) {
+      createMarkerOverlay(aiMarker);
+    }
+  }
+
+  private void createMarkerOverlay(final MapMarker aiMarker) {
     createNativeMarker(aiMarker, new AsyncCallbackPair<Marker>() {
       @Override
       public void onFailure(String message) {
@@ -553,6 +648,7 @@ class NativeOpenStreetMapController implements MapController, MapListener {
           public void onMarkerDragEnd(Marker marker) {
             IGeoPoint point = marker.getPosition();
             aiMarker.updateLocation(point.getLatitude(), point.getLongitude());
+            featureMoved(aiMarker);
             for (MapEventListener listener : eventListeners) {
               listener.onFeatureStopDrag(aiMarker);
             }
@@ -565,7 +661,12 @@ class NativeOpenStreetMapController implements MapController, MapListener {
             }
           }
         });
-        if (aiMarker.Visible()) {
+        if (featureOverlays.get(aiMarker) != overlay) {
+          // The marker was removed or culled while its icon was loading
+          return;
+        }
+        if (aiMarker.Visible() && !hiddenFeatures.contains(aiMarker)
+            && !clusteredMarkers.contains(aiMarker)) {
           showOverlay(overlay);
         } else {
           hideOverlay(overlay);
@@ -577,6 +678,12 @@ class NativeOpenStreetMapController implements MapController, MapListener {
 
   @Override
   public void addFeature(final MapLineString aiPolyline) {
+    if (registerFeature(aiPolyline)) {
+      createLineStringOverlay(aiPolyline);
+    }
+  }
+
+  private void createLineStringOverlay(final MapLineString aiPolyline) {
     Polyline polyline = createNativePolyline(aiPolyline);
     featureOverlays.put(aiPolyline, polyline);
     polyline.setOnClickListener(new Polyline.OnClickListener() {
@@ -617,12 +724,13 @@ class NativeOpenStreetMapController implements MapController, MapListener {
       @Override
       public void onDragEnd(Polyline polyline) {
         aiPolyline.updatePoints(polyline.getPoints());
+        featureMoved(aiPolyline);
         for (MapEventListener listener : eventListeners) {
           listener.onFeatureStopDrag(aiPolyline);
         }
       }
     });
-    if (aiPolyline.Visible()) {
+    if (aiPolyline.Visible() && !hiddenFeatures.contains(aiPolyline)) {
       showOverlay(polyline);
     } else {
       hideOverlay(polyline);
@@ -696,12 +804,13 @@ class NativeOpenStreetMapController implements MapController, MapListener {
           ((MapPolygon) component).updatePoints(((MultiPolygon) polygon).getMultiPoints());
           ((MapPolygon) component).updateHolePoints(((MultiPolygon) polygon).getMultiHoles());
         }
+        featureMoved(component);
         for (MapEventListener listener : eventListeners) {
           listener.onFeatureStopDrag(component);
         }
       }
     });
-    if (component.Visible()) {
+    if (component.Visible() && !hiddenFeatures.contains(component)) {
       showOverlay(polygon);
     } else {
       hideOverlay(polygon);
@@ -710,27 +819,71 @@ class NativeOpenStreetMapController implements MapController, MapListener {
 
   @Override
   public void addFeature(final MapPolygon aiPolygon) {
-    configurePolygon(aiPolygon, createNativePolygon(aiPolygon));
+    if (registerFeature(aiPolygon)) {
+      configurePolygon(aiPolygon, createNativePolygon(aiPolygon));
+    }
   }
 
   @Override
   public void addFeature(MapCircle aiCircle) {
-    configurePolygon(aiCircle, createNativeCircle(aiCircle));
+    if (registerFeature(aiCircle)) {
+      configurePolygon(aiCircle, createNativeCircle(aiCircle));
+    }
   }
 
   @Override
   public void addFeature(MapRectangle aiRectangle) {
-    configurePolygon(aiRectangle, createNativeRectangle(aiRectangle));
+    if (registerFeature(aiRectangle)) {
+      configurePolygon(aiRectangle, createNativeRectangle(aiRectangle));
+    }
+  }
+
+  /**
+   * Records a new feature.
+   *
+   * @return true if the feature needs an overlay now, false if the culling pass will decide
+   */
+  private boolean registerFeature(MapFeature aiFeature) {
+    features.add(aiFeature);
+    movedFeatures.add(aiFeature);
+    if (isCulling()) {
+      scheduleCulling();
+      return false;
+    }
+    return true;
+  }
+
+  private void createOverlay(MapFeature aiFeature) {
+    if (aiFeature instanceof MapMarker) {
+      createMarkerOverlay((MapMarker) aiFeature);
+    } else if (aiFeature instanceof MapLineString) {
+      createLineStringOverlay((MapLineString) aiFeature);
+    } else if (aiFeature instanceof MapPolygon) {
+      configurePolygon(aiFeature, createNativePolygon((MapPolygon) aiFeature));
+    } else if (aiFeature instanceof MapCircle) {
+      configurePolygon(aiFeature, createNativeCircle((MapCircle) aiFeature));
+    } else if (aiFeature instanceof MapRectangle) {
+      configurePolygon(aiFeature, createNativeRectangle((MapRectangle) aiFeature));
+    }
   }
 
   @Override
   public void removeFeature(MapFeature aiFeature) {
     view.getOverlayManager().remove(featureOverlays.get(aiFeature));
     featureOverlays.remove(aiFeature);
+    boolean wasCulling = isCulling();
+    features.remove(aiFeature);
+    featureIndex.remove(aiFeature);
+    movedFeatures.remove(aiFeature);
+    simplifiedZoom.remove(aiFeature);
+    if (clusteredMarkers.remove(aiFeature) || wasCulling) {
+      scheduleCulling();
+    }
   }
 
   @Override
   public void updateFeaturePosition(MapMarker aiMarker) {
+    featureMoved(aiMarker);
     Marker marker = (Marker)featureOverlays.get(aiMarker);
     if (marker != null) {
       marker.setAnchor(ANCHOR_HORIZONTAL[aiMarker.AnchorHorizontal()],
@@ -742,6 +895,7 @@ class NativeOpenStreetMapController implements MapController, MapListener {
 
   @Override
   public void updateFeaturePosition(MapLineString aiPolyline) {
+    featureMoved(aiPolyline);
     Polyline overlay = (Polyline) featureOverlays.get(aiPolyline);
     if (overlay != null) {
       overlay.setPoints(aiPolyline.getPoints());
@@ -751,6 +905,7 @@ class NativeOpenStreetMapController implements MapController, MapListener {
 
   @Override
   public void updateFeaturePosition(MapPolygon aiPolygon) {
+    featureMoved(aiPolygon);
     MultiPolygon polygon = (MultiPolygon) featureOverlays.get(aiPolygon);
     if (polygon != null) {
       polygon.setMultiPoints(aiPolygon.getPoints());
@@ -769,6 +924,7 @@ class NativeOpenStreetMapController implements MapController, MapListener {
 
   @Override
   public void updateFeaturePosition(MapCircle aiCircle) {
+    featureMoved(aiCircle);
     GeoPoint center = new GeoPoint(aiCircle.Latitude(), aiCircle.Longitude());
     Polygon polygon = (Polygon) featureOverlays.get(aiCircle);
     if (polygon != null) {
@@ -781,6 +937,7 @@ class NativeOpenStreetMapController implements MapController, MapListener {
   @Override
   @SuppressWarnings("unchecked")
   public void updateFeaturePosition(MapRectangle aiRectangle) {
+    featureMoved(aiRectangle);
     Polygon polygon = (Polygon) featureOverlays.get(aiRectangle);
     if (polygon != null) {
       List<GeoPoint> geopoints = (List) Polygon.pointsAsRect(new BoundingBox(aiRectangle.NorthLatitude(),
@@ -1160,7 +1317,14 @@ class NativeOpenStreetMapController implements MapController, MapListener {
   @Override
   public void showFeature(MapFeature feature) {
     if (!hiddenFeatures.contains(feature)) {
-      showOverlay(featureOverlays.get(feature));
+      OverlayWithIW overlay = featureOverlays.get(feature);
+      if (overlay != null) {
+        showOverlay(overlay);
+      }
+      if (isCulling()) {
+        // Creates the overlay if the feature is in view, or clusters the marker
+        scheduleCulling();
+      }
     }
   }
 
@@ -1171,7 +1335,13 @@ class NativeOpenStreetMapController implements MapController, MapListener {
 
   @Override
   public void hideFeature(MapFeature feature) {
-    hideOverlay(featureOverlays.get(feature));
+    OverlayWithIW overlay = featureOverlays.get(feature);
+    if (overlay != null) {
+      hideOverlay(overlay);
+    }
+    if (clusteredMarkers.remove(feature)) {
+      scheduleCulling();
+    }
   }
 
   protected void hideOverlay(OverlayWithIW overlay) {
@@ -1182,7 +1352,12 @@ class NativeOpenStreetMapController implements MapController, MapListener {
   @Override
   public boolean isFeatureVisible(MapFeature feature) {
     OverlayWithIW overlay = featureOverlays.get(feature);
-    return overlay != null && view.getOverlayManager().contains(overlay);
+    if (overlay == null || clusteredMarkers.contains(feature)) {
+      // Culled and clustered features are visible, even though they are not drawn
+      return features.contains(feature) && (overlay != null || isCulling())
+          && feature.Visible() && !hiddenFeatures.contains(feature);
+    }
+    return view.getOverlayManager().contains(overlay);
   }
 
   @Override
@@ -1217,13 +1392,22 @@ class NativeOpenStreetMapController implements MapController, MapListener {
   @Override
   public void showInfobox(MapFeature feature) {
     OverlayWithIW overlay = featureOverlays.get(feature);
-    overlay.showInfoWindow();
+    if (overlay == null && features.contains(feature)) {
+      // The feature was culled. Its overlay is kept while the infobox is open.
+      createOverlay(feature);
+      overlay = featureOverlays.get(feature);
+    }
+    if (overlay != null) {
+      overlay.showInfoWindow();
+    }
   }
 
   @Override
   public void hideInfobox(MapFeature feature) {
     OverlayWithIW overlay = featureOverlays.get(feature);
-    overlay.closeInfoWindow();
+    if (overlay != null) {
+      overlay.closeInfoWindow();
+    }
   }
 
   @Override
@@ -1232,6 +1416,257 @@ class NativeOpenStreetMapController implements MapController, MapListener {
     return overlay != null && overlay.isInfoWindowOpen();
   }
 
+  private boolean isCulling() {
+    return features.size() > CULLING_THRESHOLD;
+  }
+
+  private void scheduleCulling() {
+    view.removeCallbacks(cullingPass);
+    view.postDelayed(cullingPass, CULLING_DELAY);
+  }
+
+  private void featureMoved(MapFeature aiFeature) {
+    if (features.contains(aiFeature)) {
+      movedFeatures.add(aiFeature);
+      simplifiedZoom.remove(aiFeature);
+      if (isCulling()) {
+        scheduleCulling();
+      }
+    }
+  }
+
+  private boolean isShown(MapFeature aiFeature) {
+    return aiFeature.Visible() && !hiddenFeatures.contains(aiFeature);
+  }
+
+  /**
+   * Brings the overlays up to date with the viewport. If the map has few features, every feature
+   * has an overlay. Otherwise only the features near the viewport have overlays, markers that
+   * would overlap are drawn as clusters, and long lines and polygons are simplified.
+   */
+  private void updateRenderedFeatures() {
+    for (MapFeature feature : movedFeatures) {
+      featureIndex.put(feature, GeometryUtil.getEnvelope(feature));
+    }
+    movedFeatures.clear();
+    Envelope region = getCullingRegion();
+    if (isCulling() && region == null) {
+      // Wait for the view to be laid out
+      return;
+    } else if (!isCulling()) {
+      updateClusters(Collections.<MapMarker>emptyList());
+      for (MapFeature feature : features) {
+        if (!featureOverlays.containsKey(feature) && isShown(feature)) {
+          createOverlay(feature);
+        }
+      }
+      view.invalidate();
+      return;
+    }
+    Set<MapFeature> inRegion = new HashSet<>(featureIndex.query(region));
+    Iterator<Map.Entry<MapFeature, OverlayWithIW>> it = featureOverlays.entrySet().iterator();
+    while (it.hasNext()) {
+      Map.Entry<MapFeature, OverlayWithIW> entry = it.next();
+      if (!inRegion.contains(entry.getKey()) && !entry.getValue().isInfoWindowOpen()) {
+        view.getOverlayManager().remove(entry.getValue());
+        simplifiedZoom.remove(entry.getKey());
+        it.remove();
+      }
+    }
+    List<MapMarker> markers = new ArrayList<>();
+    int zoom = getZoom();
+    for (MapFeature feature : inRegion) {
+      if (!isShown(feature)) {
+        continue;
+      }
+      if (feature instanceof MapMarker) {
+        markers.add((MapMarker) feature);
+        continue;
+      }
+      if (!featureOverlays.containsKey(feature)) {
+        createOverlay(feature);
+      }
+      simplify(feature, zoom);
+    }
+    updateClusters(markers);
+    view.invalidate();
+  }
+
+  /**
+   * Returns the region in which features get overlays, or null if the view has not been laid out.
+   */
+  private Envelope getCullingRegion() {
+    if (view.getWidth() == 0 || view.getHeight() == 0) {
+      return null;
+    }
+    BoundingBox bbox = view.getBoundingBox();
+    double west = bbox.getLonWest();
+    double east = bbox.getLonEast();
+    double south = bbox.getLatSouth();
+    double north = bbox.getLatNorth();
+    if (west > east) {
+      // The viewport crosses the antimeridian
+      west = -180;
+      east = 180;
+    }
+    double dx = (east - west) * CULLING_MARGIN;
+    double dy = (north - south) * CULLING_MARGIN;
+    return new Envelope(west - dx, east + dx, south - dy, north + dy);
+  }
+
+  /**
+   * Groups the markers that fall in the same cell of a screen grid, and replaces the overlays of
+   * each group with one marker showing the size of the group. Markers are only grouped if there
+   * are more than {@link #CLUSTERING_THRESHOLD} of them.
+   *
+   * @param markers the visible markers near the viewport
+   */
+  private void updateClusters(List<MapMarker> markers) {
+    for (Marker cluster : clusterOverlays) {
+      view.getOverlayManager().remove(cluster);
+    }
+    clusterOverlays.clear();
+    Map<Long, List<MapMarker>> cells = new LinkedHashMap<>();
+    if (markers.size() > CLUSTERING_THRESHOLD) {
+      float cellSize = CLUSTER_CELL_SIZE
+          * view.getContext().getResources().getDisplayMetrics().density;
+      Point point = new Point();
+      for (MapMarker marker : markers) {
+        view.getProjection().toPixels(new GeoPoint(marker.Latitude(), marker.Longitude()), point);
+        long key = ((long) Math.floor(point.x / cellSize) << 32)
+            | ((long) Math.floor(point.y / cellSize) & 0xffffffffL);
+        List<MapMarker> cell = cells.get(key);
+        if (cell == null) {
+          cell = new ArrayList<>();
+          cells.put(key, cell);
+        }
+        cell.add(marker);
+      }
+    } else {
+      for (MapMarker marker : markers) {
+        cells.put((long) cells.size(), Collections.singletonList(marker));
+      }
+    }
+    Set<MapMarker> nearby = new HashSet<>(markers);
+    Set<MapMarker> wasClustered = clusteredMarkers;
+    clusteredMarkers = new HashSet<>();
+    for (List<MapMarker> cell : cells.values()) {
+      if (cell.size() > 1) {
+        clusteredMarkers.addAll(cell);
+        addClusterOverlay(cell);
+      }
+    }
+    for (MapMarker marker : markers) {
+      OverlayWithIW overlay = featureOverlays.get(marker);
+      if (clusteredMarkers.contains(marker)) {
+        if (overlay != null && !wasClustered.contains(marker)) {
+          view.getOverlayManager().remove(overlay);
+        }
+      } else if (overlay == null) {
+        createOverlay(marker);
+      } else if (wasClustered.contains(marker)) {
+        showOverlay(overlay);
+      }
+    }
+    // Markers that were clustered but are no longer near the viewport have lost their overlays,
+    // except those kept for an open infobox
+    for (MapMarker marker : wasClustered) {
+      OverlayWithIW overlay = featureOverlays.get(marker);
+      if (overlay != null && !clusteredMarkers.contains(marker) && !nearby.contains(marker)
+          && isShown(marker)) {
+        showOverlay(overlay);
+      }
+    }
+  }
+
+  private void addClusterOverlay(List<MapMarker> cell) {
+    double north = -90, east = -180, south = 90, west = 180;
+    double latitude = 0, longitude = 0;
+    for (MapMarker marker : cell) {
+      north = Math.max(north, marker.Latitude());
+      south = Math.min(south, marker.Latitude());
+      east = Math.max(east, marker.Longitude());
+      west = Math.min(west, marker.Longitude());
+      latitude += marker.Latitude();
+      longitude += marker.Longitude();
+    }
+    final BoundingBox bounds = new BoundingBox(north, east, south, west);
+    Marker cluster = new Marker(view);
+    cluster.setPosition(new GeoPoint(latitude / cell.size(), longitude / cell.size()));
+    cluster.setAnchor(Marker.ANCHOR_CENTER, Marker.ANCHOR_CENTER);
+    cluster.setIcon(createClusterIcon(cell.size()));
+    cluster.setOnMarkerClickListener(new OnMarkerClickListener() {
+      @Override
+      public boolean onMarkerClick(Marker marker, MapView mapView) {
+        mapView.zoomToBoundingBox(bounds.increaseByScale(1.2f), true);
+        return true;
+      }
+
+      @Override
+      public boolean onMarkerLongPress(Marker marker, MapView mapView) {
+        return false;
+      }
+    });
+    clusterOverlays.add(cluster);
+    view.getOverlayManager().add(cluster);
+  }
+
+  private Drawable createClusterIcon(int count) {
+    float density = view.getContext().getResources().getDisplayMetrics().density;
+    int size = (int) (CLUSTER_ICON_SIZE * density);
+    Bitmap bitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+    Canvas canvas = new Canvas(bitmap);
+    Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    paint.setColor(Color.WHITE);
+    canvas.drawCircle(size / 2f, size / 2f, size / 2f, paint);
+    paint.setColor(COLOR_CLUSTER);
+    canvas.drawCircle(size / 2f, size / 2f, size / 2f - 2 * density, paint);
+    paint.setColor(Color.WHITE);
+    paint.setTextAlign(Paint.Align.CENTER);
+    paint.setTextSize(14 * density);
+    paint.setFakeBoldText(true);
+    canvas.drawText(Integer.toString(count), size / 2f,
+        size / 2f - (paint.descent() + paint.ascent()) / 2, paint);
+    return new BitmapDrawable(view.getContext().getResources(), bitmap);
+  }
+
+  /**
+   * Replaces the points of a long line or polygon with fewer points that look the same at the
+   * given zoom level. Draggable features keep all of their points, since dragging writes the
+   * points of the overlay back to the component.
+   */
+  private void simplify(MapFeature aiFeature, int zoom) {
+    OverlayWithIW overlay = featureOverlays.get(aiFeature);
+    if (overlay == null || aiFeature.Draggable() || (simplifiedZoom.containsKey(aiFeature)
+        && simplifiedZoom.get(aiFeature) == zoom)) {
+      return;
+    }
+    // One pixel, in degrees, near the center of the map
+    float density = view.getContext().getResources().getDisplayMetrics().density;
+    double tolerance = 360.0 / (256 * density * Math.pow(2, zoom))
+        * Math.cos(Math.toRadians(getLatitude()));
+    if (aiFeature instanceof MapLineString) {
+      List<GeoPoint> points = ((MapLineString) aiFeature).getPoints();
+      if (points.size() > SIMPLIFICATION_THRESHOLD) {
+        ((Polyline) overlay).setPoints(GeometryUtil.simplify(points, tolerance, false));
+      }
+    } else if (aiFeature instanceof MapPolygon) {
+      List<List<GeoPoint>> rings = ((MapPolygon) aiFeature).getPoints();
+      List<List<GeoPoint>> simplified = new ArrayList<>(rings.size());
+      boolean changed = false;
+      for (List<GeoPoint> ring : rings) {
+        List<GeoPoint> points = ring.size() > SIMPLIFICATION_THRESHOLD
+            ? GeometryUtil.simplify(ring, tolerance, true) : ring;
+        changed |= points != ring;
+        simplified.add(points);
+      }
+      if (changed) {
+        ((MultiPolygon) overlay).setMultiPoints(simplified);
+      }
+    }
+    simplifiedZoom.put(aiFeature, zoom);
+  }
+
   @Override
   public BoundingBox getBoundingBox() {
     return view.getBoundingBox();
@@ -1245,6 +1680,9 @@ class NativeOpenStreetMapController implements MapController, MapListener {
 
   @Override
   public boolean onScroll(ScrollEvent event) {
+    if (isCulling()) {
+      scheduleCulling();
+    }
     for (MapEventListener listener : eventListeners) {
       listener.onBoundsChanged();
     }
@@ -1254,6 +1692,9 @@ class NativeOpenStreetMapController implements MapController, MapListener {
   @Override
   public boolean onZoom(ZoomEvent event) {
     zoomControls.updateButtons();
+    if (isCulling()) {
+      scheduleCulling();
+    }
     for (MapEventListener listener : eventListeners) {
       listener.onZoom();
     }
@@ -549,7 +549,7 @@ public final class RdfUtil {
     model.write(baos, "TTL");
     HttpURLConnection conn = null;
     try {
-      conn = (HttpURLConnection) uri.toURL().openConnection();
+      conn = SharedHttpClient.open(uri.toURL());
       conn.setDoInput(true);
       conn.setDoOutput(true);
       conn.setRequestMethod("PUT");
@@ -558,19 +558,22 @@ public final class RdfUtil {
       conn.connect();
       OutputStream os = conn.getOutputStream();
       baos.writeTo(os);
-      int status = conn.getResponseCode();
+      int status = SharedHttpClient.getResponseCode(conn);
       if(status == 200 || status == 201 || status == 204) {
         success = true;
       } else {
         Log.w(LOG_TAG, "Unable to put graph due to HTTP code "+status+" "+conn.getResponseMessage());
       }
-      conn.disconnect();
     } catch (MalformedURLException e) {
       Log.w(LOG_TAG, "Unable to publish graph due to malformed URL", e);
     } catch (ProtocolException e) {
       Log.w(LOG_TAG, "Unable to perform HTTP PUT for given URI", e);
     } catch (IOException e) {
       Log.w(LOG_TAG, "Unable to publish graph due to IO failure", e);
+    } finally {
+      if (conn != null) {
+        SharedHttpClient.release(conn);
+      }
     }
     return success;
   }
@@ -628,7 +631,7 @@ public final class RdfUtil {
     Log.i(LOG_TAG, "Sending update to server:");
     Log.d(LOG_TAG, prefixes.toString());
     try {
-      conn = (HttpURLConnection) uri.toURL().openConnection();
+      conn = SharedHttpClient.open(uri.toURL());
       conn.setDoInput(true);
       conn.setDoOutput(true);
       conn.setRequestMethod("POST");
@@ -649,7 +652,7 @@ public final class RdfUtil {
       PrintStream ps = new PrintStream(os);
       ps.print(prefixes);
       ps.close();
-      int status = conn.getResponseCode();
+      int status = SharedHttpClient.getResponseCode(conn);
       Log.d(LOG_TAG, "HTTP Status = " + status);
       if(status == 200) {
         success = true;
@@ -658,13 +661,16 @@ public final class RdfUtil {
         Log.w(LOG_TAG, "HTTP status for update was "+status);
         Log.w(LOG_TAG, "HTTP response msg was "+conn.getResponseMessage());
       }
-      conn.disconnect();
     } catch (MalformedURLException e) {
       Log.w(LOG_TAG, "Unable to insert triples due to malformed URL.");
     } catch (ProtocolException e) {
       Log.w(LOG_TAG, "Unable to perform HTTP POST to given URI.", e);
     } catch (IOException e) {
       Log.w(LOG_TAG, "Unable to insert triples due to communication issue.", e);
+    } finally {
+      if (conn != null) {
+        SharedHttpClient.release(conn);
+      }
     }
     return success;
   }
@@ -722,7 +728,7 @@ public final class RdfUtil {
     Log.i(LOG_TAG, "Sending update to server:");
     Log.d(LOG_TAG, prefixes.toString());
     try {
-      conn = (HttpURLConnection) uri.toURL().openConnection();
+      conn = SharedHttpClient.open(uri.toURL());
       conn.setDoInput(true);
       conn.setDoOutput(true);
       conn.setRequestMethod("POST");
@@ -743,7 +749,7 @@ public final class RdfUtil {
       PrintStream ps = new PrintStream(os);
       ps.print("query=" + URLEncoder.encode(prefixes.toString()));
       ps.close();
-      int status = conn.getResponseCode();
+      int status = SharedHttpClient.getResponseCode(conn);
       Log.d(LOG_TAG, "HTTP Status = " + status);
       if(status == 200) {
         success = true;
@@ -753,13 +759,16 @@ public final class RdfUtil {
         Log.w(LOG_TAG, "HTTP response msg was "+conn.getResponseMessage());
         Log.w(LOG_TAG, "HTTP response msg was "+conn.getContent().toString());
       }
-      conn.disconnect();
     } catch (MalformedURLException e) {
       Log.w(LOG_TAG, "Unable to insert triples due to malformed URL.");
     } catch (ProtocolException e) {
       Log.w(LOG_TAG, "Unable to perform HTTP POST to given URI.", e);
     } catch (IOException e) {
       Log.w(LOG_TAG, "Unable to insert triples due to communication issue.", e);
+    } finally {
+      if (conn != null) {
+        SharedHttpClient.release(conn);
+      }
     }
     return success;
   }
@@ -813,15 +822,17 @@ public final class RdfUtil {
       prefixes.append(sb);
       prefixes.append("}\r\n");
       sb = null;
-      HttpsURLConnection conn = null;
+      HttpURLConnection conn = null;
       Log.i(LOG_TAG, "Sending update to server:");   
       Log.d(LOG_TAG, prefixes.toString());
       Log.d(LOG_TAG, "uri: " + uri);
       try {
-        conn = (HttpsURLConnection) uri.toURL().openConnection();
+        conn = SharedHttpClient.open(uri.toURL());
+        // Cast after open so that the finally block releases the connection of a non-https URI
+        HttpsURLConnection httpsConn = (HttpsURLConnection) conn;
         SSLContext context = generateSSLContext(inputStream);;
-        conn.setSSLSocketFactory(context.getSocketFactory());
-        conn.setHostnameVerifier(new BrowserCompatHostnameVerifier());
+        httpsConn.setSSLSocketFactory(context.getSocketFactory());
+        httpsConn.setHostnameVerifier(new BrowserCompatHostnameVerifier());
         conn.setDoInput(true);
         conn.setDoOutput(true);
         conn.setRequestMethod("POST");
@@ -843,7 +854,7 @@ public final class RdfUtil {
         PrintStream ps = new PrintStream(os);
         ps.print("query=" + URLEncoder.encode(prefixes.toString()));
         ps.close();
-        int status = conn.getResponseCode();
+        int status = SharedHttpClient.getResponseCode(conn);
         Log.d(LOG_TAG, "HTTP Status = " + status);
         if(status == 200) {
           success = true;
@@ -853,13 +864,16 @@ public final class RdfUtil {
           Log.w(LOG_TAG, "HTTP response msg was "+conn.getResponseMessage());
           Log.w(LOG_TAG, "HTTP response msg was "+conn.getContent().toString());
         }
-        conn.disconnect();
       } catch (MalformedURLException e) {
         Log.w(LOG_TAG, "Unable to insert triples due to malformed URL.");
       } catch (ProtocolException e) {
         Log.w(LOG_TAG, "Unable to perform HTTP POST to given URI.", e);
       } catch (IOException e) {
         Log.w(LOG_TAG, "Unable to insert triples due to communication issue.", e);
+      } finally {
+        if (conn != null) {
+          SharedHttpClient.release(conn);
+        }
       }
       return success;
     }
@@ -964,7 +978,7 @@ public final class RdfUtil {
     Log.i(LOG_TAG, "Sending update to server:");
     Log.d(LOG_TAG, prefixes.toString());
     try {
-      conn = (HttpURLConnection) uri.toURL().openConnection();
+      conn = SharedHttpClient.open(uri.toURL());
       conn.setDoInput(true);
       conn.setDoOutput(true);
       conn.setRequestMethod("POST");
@@ -985,7 +999,7 @@ public final class RdfUtil {
       PrintStream ps = new PrintStream(os);
       ps.print(prefixes);
       ps.close();
-      int status = conn.getResponseCode();
+      int status = SharedHttpClient.getResponseCode(conn);
       Log.d(LOG_TAG, "HTTP Status = " + status);
       if(status == 200) {
         success = true;
@@ -993,13 +1007,16 @@ public final class RdfUtil {
         success = false;
         Log.w(LOG_TAG, "HTTP status for update was "+status);
       }
-      conn.disconnect();
     } catch (MalformedURLException e) {
       Log.w(LOG_TAG, "Unable to insert triples due to malformed URL.");
     } catch (ProtocolException e) {
       Log.w(LOG_TAG, "Unable to perform HTTP POST to given URI.", e);
     } catch (IOException e) {
       Log.w(LOG_TAG, "Unable to insert triples due to communication issue.", e);
+    } finally {
+      if (conn != null) {
+        SharedHttpClient.release(conn);
+      }
     }
     return success;
   }
@@ -1106,7 +1123,7 @@ public final class RdfUtil {
     Log.i(LOG_TAG, "Sending update to server:");
     Log.d(LOG_TAG, contents);
     try {
-      conn = (HttpURLConnection) uri.toURL().openConnection();
+      conn = SharedHttpClient.open(uri.toURL());
       conn.setDoInput(true);
       conn.setDoOutput(true);
       conn.setRequestMethod("POST");
@@ -1125,7 +1142,7 @@ public final class RdfUtil {
       PrintStream ps = new PrintStream(os);
       ps.print(contents);
       ps.close();
-      int status = conn.getResponseCode();
+      int status = SharedHttpClient.getResponseCode(conn);
       Log.d(LOG_TAG, "HTTP Status = " + status);
       if(status == 200) {
         success = true;
@@ -1133,13 +1150,16 @@ public final class RdfUtil {
         success = false;
         Log.w(LOG_TAG, "HTTP status for update was "+status);
       }
-      conn.disconnect();
     } catch (MalformedURLException e) {
       Log.w(LOG_TAG, "Unable to insert triples due to malformed URL.");
     } catch (ProtocolException e) {
       Log.w(LOG_TAG, "Unable to perform HTTP POST to given URI.", e);
     } catch (IOException e) {
       Log.w(LOG_TAG, "Unable to insert triples due to communication issue.", e);
+    } finally {
+      if (conn != null) {
+        SharedHttpClient.release(conn);
+      }
     }
     return success;
   }
@@ -1164,7 +1184,7 @@ public final class RdfUtil {
 	public static boolean performHttpsRequest(String urlString, InputStream inputStream,
 			String securityToken, String filePath) throws IOException {
 		boolean success = false;
-		HttpsURLConnection conn = null;
+		HttpURLConnection conn = null;
 		DataOutputStream dos = null;
 
 		String lineEnd = "\r\n";
@@ -1177,7 +1197,9 @@ public final class RdfUtil {
 		
 		try {
 			URL url = new URL(urlString);
-			conn = (HttpsURLConnection) url.openConnection();
+			conn = SharedHttpClient.open(url);
+			// Cast after open so that the finally block releases the connection of a non-https URL
+			HttpsURLConnection httpsConn = (HttpsURLConnection) conn;
 			conn.setDoInput(true);
 			conn.setDoOutput(true);
 			conn.setUseCaches(false);
@@ -1188,8 +1210,8 @@ public final class RdfUtil {
 			conn.setRequestProperty("securityToken", securityToken);
 			
 			SSLContext context = generateSSLContext(inputStream);
-			conn.setSSLSocketFactory(context.getSocketFactory());
-			conn.setHostnameVerifier(new BrowserCompatHostnameVerifier());
+			httpsConn.setSSLSocketFactory(context.getSocketFactory());
+			httpsConn.setHostnameVerifier(new BrowserCompatHostnameVerifier());
 
 			dos = new DataOutputStream(conn.getOutputStream());
 			dos.writeBytes(twoHyphens + boundary + lineEnd);
@@ -1218,7 +1240,7 @@ public final class RdfUtil {
 			fileInputStream.close();
 			dos.flush();
 			
-      int status = conn.getResponseCode();
+      int status = SharedHttpClient.getResponseCode(conn);
       Log.d(LOG_TAG, "HTTPS Status = " + status);
       if(status == 200) {
         success = true;
@@ -1227,8 +1249,12 @@ public final class RdfUtil {
         Log.w(LOG_TAG, "HTTPS response msg was "+conn.getResponseMessage());
       }
 		} finally {
-			dos.close();
-			conn.disconnect();
+			if (dos != null) {
+				dos.close();
+			}
+			if (conn != null) {
+				SharedHttpClient.release(conn);
+			}
 		}
 		return success;
 	}
@@ -199,6 +199,34 @@ public class RetValManager {
     }
   }
 
+  /*
+   * bulkLoaded
+   *
+   * @param blocks the number of blocks loaded in bulk
+   * @param millis how long they took to load, in milliseconds
+   */
+  public static void bulkLoaded(int blocks, long millis) {
+    synchronized (semaphore) {
+      JSONObject retval = new JSONObject();
+      try {
+        retval.put("status", "OK");
+        retval.put("type", "bulkLoaded");
+        retval.put("blocks", blocks);
+        retval.put("value", millis);
+      } catch (JSONException e) {
+        Log.e(LOG_TAG, "Error building retval", e);
+        return;
+      }
+      boolean sendNotify = currentArray.isEmpty();
+      currentArray.add(retval);
+      if (PhoneStatus.getUseWebRTC()) {
+        webRTCsendCurrent();
+      } else if (sendNotify) {
+        semaphore.notifyAll();
+      }
+    }
+  }
+
   /*
    * fetch -- Fetch all pending results as a JSON encoded array.
    *
@@ -0,0 +1,91 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.components.runtime.util;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Passes the readings of the sensor probes on to a stream processor, if the
+ * app has one.
+ *
+ * <p>The sensor components and the SensorDB pipeline publish every reading
+ * here, whether or not they also save it to the database. The listener
+ * receives plain Java values, so that neither side depends on the libraries
+ * of the other.
+ *
+ */
+public final class SensorStreams {
+
+  /**
+   * Receives the sensor readings.
+   */
+  public interface Listener {
+    /**
+     * Called with a reading of a probe.
+     *
+     * @param probeType the class name of the probe
+     * @param timestamp the time of the reading, in milliseconds
+     * @param fields the fields of the reading, whose values are booleans,
+     *     numbers, strings, or the JSON text of nested values
+     */
+    void addReading(String probeType, long timestamp, Map<String, Object> fields);
+  }
+
+  private static volatile Listener listener;
+
+  private SensorStreams() {
+  }
+
+  /**
+   * Sets the listener that receives the readings, or null to drop them.
+   */
+  public static void setListener(Listener listener) {
+    SensorStreams.listener = listener;
+  }
+
+  /**
+   * Returns true if a listener receives the readings, so that callers can
+   * skip preparing readings nobody receives.
+   */
+  public static boolean hasListener() {
+    return listener != null;
+  }
+
+  /**
+   * Publishes a reading.
+   *
+   * @param timestamp the time of the reading, in seconds, as recorded by the
+   *     probes
+   */
+  public static void publish(String probeType, BigDecimal timestamp, JsonObject data) {
+    Listener current = listener;
+    if (current == null) {
+      return;
+    }
+    Map<String, Object> fields = new LinkedHashMap<String, Object>();
+    for (Map.Entry<String, JsonElement> field : data.entrySet()) {
+      JsonElement value = field.getValue();
+      if (value.isJsonPrimitive()) {
+        JsonPrimitive primitive = value.getAsJsonPrimitive();
+        if (primitive.isBoolean()) {
+          fields.put(field.getKey(), primitive.getAsBoolean());
+        } else if (primitive.isNumber()) {
+          fields.put(field.getKey(), primitive.getAsBigDecimal());
+        } else {
+          fields.put(field.getKey(), primitive.getAsString());
+        }
+      } else if (!value.isJsonNull()) {
+        fields.put(field.getKey(), value.toString());
+      }
+    }
+    current.addReading(probeType, timestamp.movePointRight(3).longValue(), fields);
+  }
+}
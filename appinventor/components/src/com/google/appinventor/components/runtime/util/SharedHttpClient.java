@@ -0,0 +1,347 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.components.runtime.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Opens and finishes the HTTP connections of the Web, GraphQL and LinkedData
+ * components, so that they share connections and limits.
+ *
+ * <p>HttpURLConnection keeps the socket of a finished request and reuses it
+ * for the next request to the same host, saving the TCP and TLS handshakes,
+ * but only if the response body was read to the end and closed and
+ * {@code disconnect()} was not called. Connections opened with
+ * {@link #open(URL)} are handed back with {@link #release(HttpURLConnection)},
+ * which does exactly that. Callers must read the status with
+ * {@link #getResponseCode(HttpURLConnection)} and the body with
+ * {@link #getResponseStream(HttpURLConnection)}, so that release knows
+ * whether the response arrived and what is left to read.
+ *
+ * <p>At most {@link #getMaxConnectionsPerHost()} requests to the same host
+ * run at the same time; {@code open} waits for one of them to be released.
+ * This keeps a burst of requests from opening more sockets than the platform
+ * keeps alive per host.
+ *
+ * <p>Android's HttpURLConnection already asks for gzip compressed responses
+ * and decompresses them, as long as the caller does not set Accept-Encoding
+ * itself, so this class leaves that header alone. It does not use HTTP/2.
+ *
+ * <p>The number of requests and the time they took are recorded per host,
+ * see {@link #getSummary()}.
+ *
+ */
+public final class SharedHttpClient {
+  private static final String LOG_TAG = "SharedHttpClient";
+
+  /**
+   * The default maximum number of simultaneous requests to a host.
+   */
+  public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 5;
+
+  // Up to this many bytes of an unread response body are skipped to keep the
+  // connection. Larger bodies are cheaper to abandon with the connection.
+  private static final int MAX_DRAIN_BYTES = 64 * 1024;
+
+  private static int maxConnectionsPerHost = DEFAULT_MAX_CONNECTIONS_PER_HOST;
+
+  // Host key (see hostKey()) to the permits for requests to that host
+  private static final Map<String, Semaphore> permits = new HashMap<String, Semaphore>();
+
+  // The connections that have been opened and not released yet
+  private static final Map<HttpURLConnection, Exchange> exchanges =
+      new IdentityHashMap<HttpURLConnection, Exchange>();
+
+  // Host key to the number of requests, the number of requests that failed
+  // before a response arrived, the total time until the response arrived and
+  // the total time until release, in nanoseconds
+  private static final Map<String, long[]> statistics = new LinkedHashMap<String, long[]>();
+
+  private static final class Exchange {
+    final String host;
+    final Semaphore permit;
+    final long start;
+    long responseTime = -1;
+    ResponseStream stream;
+
+    Exchange(String host, Semaphore permit, long start) {
+      this.host = host;
+      this.permit = permit;
+      this.start = start;
+    }
+  }
+
+  /**
+   * A response body that knows whether it has been read to the end or closed.
+   */
+  private static final class ResponseStream extends FilterInputStream {
+    boolean finished = false;
+
+    ResponseStream(InputStream in) {
+      super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = super.read();
+      if (b == -1) {
+        finished = true;
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+      int n = super.read(buffer, offset, length);
+      if (n == -1) {
+        finished = true;
+      }
+      return n;
+    }
+
+    @Override
+    public void close() throws IOException {
+      finished = true;
+      super.close();
+    }
+  }
+
+  private SharedHttpClient() {
+  }
+
+  /**
+   * Sets the maximum number of simultaneous requests to a host. Requests
+   * already running are not affected.
+   */
+  public static void setMaxConnectionsPerHost(int max) {
+    if (max < 1) {
+      throw new IllegalArgumentException("max must be positive");
+    }
+    synchronized (permits) {
+      maxConnectionsPerHost = max;
+      permits.clear();
+    }
+  }
+
+  public static int getMaxConnectionsPerHost() {
+    synchronized (permits) {
+      return maxConnectionsPerHost;
+    }
+  }
+
+  /**
+   * Opens a connection, waiting if there are too many requests to the host
+   * already. The connection must be passed to
+   * {@link #release(HttpURLConnection)} when the caller is done with it,
+   * whether or not the request succeeded.
+   *
+   * @param url an http or https URL
+   * @return the connection, which has not connected yet
+   * @throws IOException if the connection cannot be opened or the thread was
+   *     interrupted while waiting
+   * @throws ClassCastException if the URL is not an http or https URL
+   */
+  public static HttpURLConnection open(URL url) throws IOException {
+    String host = hostKey(url);
+    Semaphore permit;
+    synchronized (permits) {
+      permit = permits.get(host);
+      if (permit == null) {
+        permit = new Semaphore(maxConnectionsPerHost, true);
+        permits.put(host, permit);
+      }
+    }
+    try {
+      permit.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for a connection to " + host);
+    }
+    boolean opened = false;
+    try {
+      HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+      synchronized (exchanges) {
+        exchanges.put(connection, new Exchange(host, permit, System.nanoTime()));
+      }
+      opened = true;
+      return connection;
+    } finally {
+      if (!opened) {
+        permit.release();
+      }
+    }
+  }
+
+  /**
+   * Returns the status code of the response, waiting for the response to
+   * arrive if necessary.
+   */
+  public static int getResponseCode(HttpURLConnection connection) throws IOException {
+    int responseCode = connection.getResponseCode();
+    synchronized (exchanges) {
+      Exchange exchange = exchanges.get(connection);
+      if (exchange != null && exchange.responseTime < 0) {
+        exchange.responseTime = System.nanoTime() - exchange.start;
+      }
+    }
+    return responseCode;
+  }
+
+  /**
+   * Returns the body of the response, which is the error body if the status
+   * code indicates an error.
+   *
+   * @return the body, or null if there is none
+   * @throws SocketTimeoutException if the server did not respond in time
+   */
+  public static InputStream getResponseStream(HttpURLConnection connection) throws IOException {
+    InputStream in;
+    // According to the Android reference documentation for HttpURLConnection: If the HTTP
+    // response indicates that an error occurred, getInputStream() will throw an IOException.
+    // Use getErrorStream() to read the error response.
+    try {
+      getResponseCode(connection);
+      in = connection.getInputStream();
+    } catch (SocketTimeoutException e) {
+      throw e;  // Should not attempt to read the stream for timeouts
+    } catch (IOException e) {
+      in = connection.getErrorStream();
+    }
+    if (in == null) {
+      return null;
+    }
+    ResponseStream stream = new ResponseStream(in);
+    synchronized (exchanges) {
+      Exchange exchange = exchanges.get(connection);
+      if (exchange != null) {
+        exchange.stream = stream;
+      }
+    }
+    return stream;
+  }
+
+  /**
+   * Finishes a connection opened with {@link #open(URL)}. If the response
+   * arrived, what is left of its body is read and closed, so that the
+   * connection can be reused. Otherwise the connection is closed.
+   */
+  public static void release(HttpURLConnection connection) {
+    Exchange exchange;
+    synchronized (exchanges) {
+      exchange = exchanges.remove(connection);
+    }
+    if (exchange == null) {
+      // Not opened by us, or released already
+      return;
+    }
+    try {
+      if (exchange.responseTime < 0) {
+        // The request failed before the response arrived; the connection
+        // may be in any state.
+        connection.disconnect();
+      } else {
+        finishBody(connection, exchange);
+      }
+    } finally {
+      exchange.permit.release();
+      record(exchange, System.nanoTime() - exchange.start);
+    }
+  }
+
+  /**
+   * Returns the statistics of every host, one per line as the host followed
+   * by the number of requests, the number of requests that failed before a
+   * response arrived, and the average time in milliseconds until the
+   * response arrived and until the connection was released.
+   */
+  public static String getSummary() {
+    StringBuilder sb = new StringBuilder();
+    synchronized (statistics) {
+      for (Map.Entry<String, long[]> entry : statistics.entrySet()) {
+        long[] stats = entry.getValue();
+        long responses = stats[0] - stats[1];
+        sb.append(entry.getKey())
+            .append(' ').append(stats[0])
+            .append(' ').append(stats[1])
+            .append(' ').append(responses == 0 ? 0 : stats[2] / responses / 1000000)
+            .append(' ').append(stats[3] / stats[0] / 1000000)
+            .append('\n');
+      }
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Forgets the recorded statistics.
+   */
+  public static void clearStatistics() {
+    synchronized (statistics) {
+      statistics.clear();
+    }
+  }
+
+  private static void finishBody(HttpURLConnection connection, Exchange exchange) {
+    InputStream in = exchange.stream;
+    if (in == null) {
+      // The caller only looked at the status
+      try {
+        in = connection.getInputStream();
+      } catch (IOException e) {
+        in = connection.getErrorStream();
+      }
+    } else if (exchange.stream.finished) {
+      return;
+    }
+    if (in == null) {
+      return;
+    }
+    try {
+      byte[] buffer = new byte[4096];
+      int drained = 0;
+      int n;
+      while (drained < MAX_DRAIN_BYTES && (n = in.read(buffer)) != -1) {
+        drained += n;
+      }
+    } catch (IOException e) {
+      // The connection will not be reused
+    } finally {
+      IOUtils.closeQuietly(LOG_TAG, in);
+    }
+  }
+
+  private static void record(Exchange exchange, long totalTime) {
+    synchronized (statistics) {
+      long[] stats = statistics.get(exchange.host);
+      if (stats == null) {
+        stats = new long[4];
+        statistics.put(exchange.host, stats);
+      }
+      stats[0]++;
+      if (exchange.responseTime < 0) {
+        stats[1]++;
+      } else {
+        stats[2] += exchange.responseTime;
+      }
+      stats[3] += totalTime;
+    }
+  }
+
+  private static String hostKey(URL url) {
+    int port = (url.getPort() != -1) ? url.getPort() : url.getDefaultPort();
+    return url.getProtocol() + "://" + url.getHost() + ":" + port;
+  }
+}
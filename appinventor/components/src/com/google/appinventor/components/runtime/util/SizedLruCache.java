@@ -0,0 +1,100 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.components.runtime.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cache that holds values up to a total size, dropping the least recently
+ * used values first. Subclasses say how large each value is, for example the
+ * number of bytes in a bitmap.
+ *
+ * <p>This plays the part of <code>android.util.LruCache</code>, which is not
+ * available on the oldest Android versions that App Inventor supports. All
+ * methods are thread safe.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+public abstract class SizedLruCache<K, V> {
+
+  private final Map<K, V> entries = new LinkedHashMap<K, V>(16, 0.75f, true);
+  private final long maxSize;
+  private long size = 0;
+
+  /**
+   * Creates a cache that holds values up to the given total size, in the
+   * units of {@link #sizeOf(Object)}.
+   */
+  protected SizedLruCache(long maxSize) {
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Returns the size of a value. This must not change while the value is in
+   * the cache.
+   */
+  protected abstract long sizeOf(V value);
+
+  /**
+   * Returns the value stored for a key and marks it as the most recently
+   * used, or returns null if there is none.
+   */
+  public synchronized V get(K key) {
+    return entries.get(key);
+  }
+
+  /**
+   * Stores a value, replacing any value stored for the key, and drops the
+   * least recently used values until the cache fits in its size. A value
+   * larger than the whole cache is not stored.
+   */
+  public synchronized void put(K key, V value) {
+    remove(key);
+    long valueSize = sizeOf(value);
+    if (valueSize > maxSize) {
+      return;
+    }
+    entries.put(key, value);
+    size += valueSize;
+    Iterator<V> it = entries.values().iterator();
+    while (size > maxSize) {
+      size -= sizeOf(it.next());
+      it.remove();
+    }
+  }
+
+  /**
+   * Removes the value stored for a key.
+   *
+   * @return the value that was removed, or null if there was none
+   */
+  public synchronized V remove(K key) {
+    V old = entries.remove(key);
+    if (old != null) {
+      size -= sizeOf(old);
+    }
+    return old;
+  }
+
+  public synchronized void clear() {
+    entries.clear();
+    size = 0;
+  }
+
+  /**
+   * Returns the total size of the values in the cache.
+   */
+  public synchronized long size() {
+    return size;
+  }
+
+  public long getMaxSize() {
+    return maxSize;
+  }
+}
@@ -0,0 +1,446 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.components.runtime.util;
+
+import android.util.Log;
+import com.hp.hpl.jena.datatypes.xsd.XSDDatatype;
+import com.hp.hpl.jena.graph.Factory;
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.query.Query;
+import com.hp.hpl.jena.query.QueryExecution;
+import com.hp.hpl.jena.query.QueryExecutionFactory;
+import com.hp.hpl.jena.query.QueryFactory;
+import com.hp.hpl.jena.query.ResultSetFactory;
+import com.hp.hpl.jena.query.ResultSetRewindable;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.vocabulary.RDF;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Evaluates continuous SPARQL queries on the device, over time windows of
+ * named streams of timestamped triples, in the manner of C-SPARQL.
+ *
+ * <p>A query is registered on a stream with a window RANGE and STEP. Every
+ * STEP, the SELECT query is evaluated over the triples of the stream whose
+ * timestamps fall in the last RANGE, and the results are passed to the
+ * query's {@link ResultListener}. Each query keeps an in-memory graph of its
+ * current window, to which arriving triples are added and from which expired
+ * triples are removed, so a window is never rebuilt from scratch.
+ *
+ * <p>Adding triples only queues them, which is cheap enough to do from the UI
+ * thread or a sensor callback; triples for streams that no query is
+ * registered on are dropped right away. The queue is processed, and the
+ * windows evaluated, on a single background thread that wakes up at the next
+ * window boundary. {@link #process(long)} does the same work on the calling
+ * thread.
+ *
+ */
+public final class SparqlStreamEngine implements SensorStreams.Listener {
+
+  /**
+   * Receives the results of a registered query, on the thread of the engine.
+   */
+  public interface ResultListener {
+    /**
+     * Called with the results of the query over the window ending at
+     * windowEnd, in milliseconds.
+     */
+    void onResults(String queryName, long windowEnd, ResultSetRewindable results);
+
+    /**
+     * Called instead of onResults when evaluating the query, or onResults
+     * itself, failed. The query stays registered and is evaluated again at
+     * the next step.
+     */
+    void onError(String queryName, long windowEnd, RuntimeException error);
+  }
+
+  /**
+   * The namespace of the streams, classes and properties of sensor readings.
+   */
+  public static final String SENSOR_NS = "http://appinventor.mit.edu/sensor#";
+
+  private static final String LOG_TAG = "SparqlStreamEngine";
+
+  private static final Pattern FROM_STREAM = Pattern.compile(
+      "FROM\\s+STREAM\\s*<([^>]*)>\\s*\\[\\s*RANGE\\s+(\\w+)\\s+STEP\\s+(\\w+)\\s*\\]",
+      Pattern.CASE_INSENSITIVE);
+  private static final Pattern REGISTER = Pattern.compile(
+      "^\\s*REGISTER\\s+(QUERY|STREAM)\\s+\\S+\\s+AS\\s+", Pattern.CASE_INSENSITIVE);
+  private static final Pattern DURATION = Pattern.compile("(\\d+)\\s*(ms|s|m|h|d)");
+
+  private static SparqlStreamEngine instance;
+
+  private final Map<String, WindowedQuery> queries = new LinkedHashMap<String, WindowedQuery>();
+  private final ConcurrentLinkedQueue<TimedTriple> pending =
+      new ConcurrentLinkedQueue<TimedTriple>();
+  // Replaced rather than modified, so that add does not need the lock
+  private volatile Set<String> activeStreams = Collections.emptySet();
+  private final boolean background;
+  private ScheduledExecutorService executor;
+  private ScheduledFuture<?> wakeUp;
+
+  /**
+   * Creates an engine.
+   *
+   * @param background whether a background thread processes the triples and
+   *     evaluates the windows, rather than only calls to process
+   */
+  SparqlStreamEngine(boolean background) {
+    this.background = background;
+  }
+
+  /**
+   * Returns the engine shared by the components of the app.
+   */
+  public static synchronized SparqlStreamEngine getInstance() {
+    if (instance == null) {
+      instance = new SparqlStreamEngine(true);
+      SensorStreams.setListener(instance);
+    }
+    return instance;
+  }
+
+  /**
+   * Registers a continuous query, replacing any query with the same name. The
+   * query text may be plain SPARQL or C-SPARQL: a REGISTER QUERY prefix and a
+   * FROM STREAM clause are removed, and the stream, range and step in the
+   * clause are used when the corresponding arguments are empty.
+   *
+   * @param range the window range, such as "10s", "500ms" or "1m"
+   * @param step the time between evaluations, in the same format
+   * @param now the current time in milliseconds; the first window ends one
+   *     step later
+   * @throws IllegalArgumentException if the query is not a SELECT query, or
+   *     the stream, range or step is missing or invalid
+   * @throws com.hp.hpl.jena.query.QueryParseException if the query does not
+   *     parse
+   */
+  public void register(String name, String queryText, String stream, String range, String step,
+      long now, ResultListener listener) {
+    String text = REGISTER.matcher(queryText).replaceFirst("");
+    Matcher m = FROM_STREAM.matcher(text);
+    if (m.find()) {
+      stream = stream.isEmpty() ? m.group(1) : stream;
+      range = range.isEmpty() ? m.group(2) : range;
+      step = step.isEmpty() ? m.group(3) : step;
+      text = text.substring(0, m.start()) + text.substring(m.end());
+    }
+    if (stream.isEmpty()) {
+      throw new IllegalArgumentException("No stream given for query " + name);
+    }
+    Query query = QueryFactory.create(text);
+    if (!query.isSelectType()) {
+      throw new IllegalArgumentException("Only SELECT queries can be registered");
+    }
+    WindowedQuery windowed = new WindowedQuery(name, query, stream, parseDuration(range),
+        parseDuration(step), listener);
+    windowed.nextBoundary = now + windowed.step;
+    synchronized (this) {
+      queries.put(name, windowed);
+      updateActiveStreams();
+      schedule(nextBoundary() - now);
+    }
+  }
+
+  /**
+   * Unregisters a query.
+   *
+   * @return false if there was no query with the name
+   */
+  public synchronized boolean unregister(String name) {
+    boolean removed = queries.remove(name) != null;
+    updateActiveStreams();
+    return removed;
+  }
+
+  /**
+   * Returns true if at least one query is registered on the stream.
+   */
+  public boolean isActive(String stream) {
+    return activeStreams.contains(stream);
+  }
+
+  /**
+   * Adds a triple with the given timestamp, in milliseconds, to a stream.
+   */
+  public void add(String stream, Triple triple, long timestamp) {
+    if (activeStreams.contains(stream)) {
+      pending.add(new TimedTriple(stream, triple, timestamp));
+    }
+  }
+
+  /**
+   * Adds a sensor reading, as produced by the sensor probes, to the stream
+   * named after the probe. The reading becomes a resource of the class named
+   * after the probe, with a property for each field of the reading.
+   *
+   * @param probeType the class name of the probe
+   * @param timestamp the time of the reading, in milliseconds
+   */
+  @Override
+  public void addReading(String probeType, long timestamp, Map<String, Object> fields) {
+    String probe = probeType.substring(probeType.lastIndexOf('.') + 1);
+    String stream = SENSOR_NS + probe;
+    if (!activeStreams.contains(stream)) {
+      return;
+    }
+    Node subject = Node.createURI(SENSOR_NS + probe + "/" + timestamp);
+    add(stream, new Triple(subject, RDF.type.asNode(), Node.createURI(stream)), timestamp);
+    for (Map.Entry<String, Object> field : fields.entrySet()) {
+      add(stream, new Triple(subject, Node.createURI(SENSOR_NS + field.getKey()),
+          toNode(field.getValue())), timestamp);
+    }
+  }
+
+  /**
+   * Adds the queued triples to the windows and evaluates every window that
+   * ended at or before now.
+   */
+  public synchronized void process(long now) {
+    TimedTriple t;
+    while ((t = pending.poll()) != null) {
+      for (WindowedQuery query : queries.values()) {
+        if (query.stream.equals(t.stream)) {
+          // Close the windows that end before this triple
+          query.advanceTo(t.timestamp);
+          query.insert(t);
+        }
+      }
+    }
+    for (WindowedQuery query : queries.values()) {
+      query.advanceTo(now + 1);
+    }
+  }
+
+  /**
+   * Returns the node for a value given by the app: an IRI for text that looks
+   * like one, a typed literal for numbers and booleans, and a plain literal
+   * otherwise.
+   */
+  public static Node toNode(Object value) {
+    if (value instanceof Boolean) {
+      return Node.createLiteral(value.toString(), null, XSDDatatype.XSDboolean);
+    }
+    String text = value.toString();
+    if (value instanceof Number) {
+      if (text.matches("-?\\d+")) {
+        return Node.createLiteral(text, null, XSDDatatype.XSDinteger);
+      }
+      try {
+        Double.parseDouble(text);
+        return Node.createLiteral(text, null, XSDDatatype.XSDdouble);
+      } catch (NumberFormatException e) {
+        return Node.createLiteral(text);
+      }
+    }
+    if (text.startsWith("urn:") || text.matches("^[a-zA-Z][a-zA-Z0-9+.-]*://\\S+$")) {
+      return Node.createURI(text);
+    }
+    return Node.createLiteral(text);
+  }
+
+  /**
+   * Parses a C-SPARQL duration, such as "10s", into milliseconds.
+   *
+   * @throws IllegalArgumentException if the duration is not valid
+   */
+  public static long parseDuration(String duration) {
+    Matcher m = DURATION.matcher(duration.trim());
+    if (!m.matches() || Long.parseLong(m.group(1)) <= 0) {
+      throw new IllegalArgumentException("Invalid window duration: " + duration);
+    }
+    long value = Long.parseLong(m.group(1));
+    String unit = m.group(2);
+    if (unit.equals("ms")) {
+      return value;
+    } else if (unit.equals("s")) {
+      return TimeUnit.SECONDS.toMillis(value);
+    } else if (unit.equals("m")) {
+      return TimeUnit.MINUTES.toMillis(value);
+    } else if (unit.equals("h")) {
+      return TimeUnit.HOURS.toMillis(value);
+    }
+    return TimeUnit.DAYS.toMillis(value);
+  }
+
+  private void updateActiveStreams() {
+    Set<String> streams = new HashSet<String>();
+    for (WindowedQuery query : queries.values()) {
+      streams.add(query.stream);
+    }
+    activeStreams = streams;
+    if (queries.isEmpty()) {
+      pending.clear();
+      if (executor != null) {
+        executor.shutdownNow();
+        executor = null;
+        wakeUp = null;
+      }
+    }
+  }
+
+  // Wakes the background thread up after the delay, instead of when it was
+  // going to wake up before
+  private synchronized void schedule(long delay) {
+    if (!background || queries.isEmpty()) {
+      return;
+    }
+    if (executor == null) {
+      executor = new ScheduledThreadPoolExecutor(1);
+    }
+    if (wakeUp != null) {
+      wakeUp.cancel(false);
+    }
+    wakeUp = executor.schedule(new Runnable() {
+      @Override
+      public void run() {
+        long now = System.currentTimeMillis();
+        try {
+          process(now);
+        } finally {
+          // A task that throws is not run again, so the next one is scheduled regardless
+          schedule(nextBoundary() - now);
+        }
+      }
+    }, Math.max(0, delay), TimeUnit.MILLISECONDS);
+  }
+
+  private synchronized long nextBoundary() {
+    long next = Long.MAX_VALUE;
+    for (WindowedQuery query : queries.values()) {
+      next = Math.min(next, query.nextBoundary);
+    }
+    return next;
+  }
+
+  private static final class TimedTriple implements Comparable<TimedTriple> {
+    final String stream;
+    final Triple triple;
+    final long timestamp;
+
+    TimedTriple(String stream, Triple triple, long timestamp) {
+      this.stream = stream;
+      this.triple = triple;
+      this.timestamp = timestamp;
+    }
+
+    @Override
+    public int compareTo(TimedTriple other) {
+      return timestamp < other.timestamp ? -1 : (timestamp == other.timestamp ? 0 : 1);
+    }
+  }
+
+  private static final class WindowedQuery {
+    final String name;
+    final Query query;
+    final String stream;
+    final long range;
+    final long step;
+    final ResultListener listener;
+    // The window content, in timestamp order for eviction
+    final PriorityQueue<TimedTriple> window = new PriorityQueue<TimedTriple>();
+    // How many times each triple is in the window; the graph holds one copy
+    final Map<Triple, int[]> counts = new HashMap<Triple, int[]>();
+    final Graph graph = Factory.createGraphMem();
+    final Model model = ModelFactory.createModelForGraph(graph);
+    long nextBoundary;
+    boolean evaluatedEmpty = false;
+
+    WindowedQuery(String name, Query query, String stream, long range, long step,
+        ResultListener listener) {
+      this.name = name;
+      this.query = query;
+      this.stream = stream;
+      this.range = range;
+      this.step = step;
+      this.listener = listener;
+    }
+
+    void insert(TimedTriple t) {
+      if (t.timestamp < nextBoundary - range) {
+        // Too old for any window that is still to come
+        return;
+      }
+      window.add(t);
+      int[] count = counts.get(t.triple);
+      if (count == null) {
+        counts.put(t.triple, new int[] {1});
+        graph.add(t.triple);
+      } else {
+        count[0]++;
+      }
+    }
+
+    // Evaluates the windows that end before time
+    void advanceTo(long time) {
+      while (nextBoundary < time) {
+        evict(nextBoundary - range);
+        if (window.isEmpty()) {
+          if (!evaluatedEmpty) {
+            evaluate(nextBoundary);
+            evaluatedEmpty = true;
+          }
+          // Nothing changes until a triple arrives, so skip the empty windows
+          long skipped = (time - 1 - nextBoundary) / step;
+          nextBoundary += (skipped + 1) * step;
+        } else {
+          evaluate(nextBoundary);
+          evaluatedEmpty = false;
+          nextBoundary += step;
+        }
+      }
+    }
+
+    private void evict(long start) {
+      while (!window.isEmpty() && window.peek().timestamp < start) {
+        Triple triple = window.poll().triple;
+        int[] count = counts.get(triple);
+        if (--count[0] == 0) {
+          counts.remove(triple);
+          graph.delete(triple);
+        }
+      }
+    }
+
+    // Reports a failure to the listener, so that it does not stop the other queries
+    private void evaluate(long windowEnd) {
+      try {
+        QueryExecution execution = QueryExecutionFactory.create(query, model);
+        ResultSetRewindable results;
+        try {
+          results = ResultSetFactory.copyResults(execution.execSelect());
+        } finally {
+          execution.close();
+        }
+        listener.onResults(name, windowEnd, results);
+      } catch (RuntimeException e) {
+        Log.e(LOG_TAG, "Unable to evaluate query " + name, e);
+        try {
+          listener.onError(name, windowEnd, e);
+        } catch (RuntimeException e2) {
+          Log.e(LOG_TAG, "Unable to report the failure of query " + name, e2);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,251 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.components.runtime.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A uniform grid over the plane that indexes items by their bounding boxes.
+ *
+ * <p>Each item is stored in every cell its bounding box overlaps, so that
+ * {@link #query} only has to look at the cells overlapping the query box.
+ * Items whose bounding boxes cover more than {@link #MAX_CELLS_PER_ITEM}
+ * cells are kept in a separate list that every query checks, so a few very
+ * large items do not fill the grid. Moving an item within the cells it
+ * already occupies costs a comparison of four integers.
+ *
+ * <p>Query results are candidates only: an item is returned if its bounding
+ * box might overlap the query box. Items are compared by identity.
+ *
+ * @param <T> the type of the items
+ */
+public final class SpatialGrid<T> {
+
+  /**
+   * Items covering more cells than this are not stored in the grid.
+   */
+  public static final int MAX_CELLS_PER_ITEM = 64;
+
+  private static final int MAX_CELL = 1 << 30;
+
+  private final double cellSize;
+
+  // Cell key (see key()) to the items in that cell
+  private final Map<Long, List<T>> cells = new HashMap<Long, List<T>>();
+
+  // Item to the range of cells it occupies
+  private final Map<T, CellRange> ranges = new IdentityHashMap<T, CellRange>();
+
+  // Items covering too many cells to be stored in the grid
+  private final List<T> oversized = new ArrayList<T>();
+
+  private static final class CellRange {
+    final int left;
+    final int top;
+    final int right;
+    final int bottom;
+
+    CellRange(int left, int top, int right, int bottom) {
+      this.left = left;
+      this.top = top;
+      this.right = right;
+      this.bottom = bottom;
+    }
+
+    boolean sameAs(int left, int top, int right, int bottom) {
+      return this.left == left && this.top == top && this.right == right
+          && this.bottom == bottom;
+    }
+
+    boolean isOversized() {
+      return (long) (right - left + 1) * (bottom - top + 1) > MAX_CELLS_PER_ITEM;
+    }
+  }
+
+  /**
+   * Creates an empty grid.
+   *
+   * @param cellSize the width and height of a cell
+   */
+  public SpatialGrid(double cellSize) {
+    if (cellSize <= 0) {
+      throw new IllegalArgumentException("cellSize must be positive");
+    }
+    this.cellSize = cellSize;
+  }
+
+  /**
+   * Adds an item, or moves it if it is already in the grid.
+   *
+   * @param item the item
+   * @param left the smallest x coordinate of the item's bounding box
+   * @param top the smallest y coordinate of the item's bounding box
+   * @param right the largest x coordinate of the item's bounding box
+   * @param bottom the largest y coordinate of the item's bounding box
+   */
+  public void update(T item, double left, double top, double right, double bottom) {
+    int cellLeft = cell(left);
+    int cellTop = cell(top);
+    int cellRight = Math.max(cellLeft, cell(right));
+    int cellBottom = Math.max(cellTop, cell(bottom));
+    CellRange range = ranges.get(item);
+    if (range != null) {
+      if (range.sameAs(cellLeft, cellTop, cellRight, cellBottom)) {
+        return;
+      }
+      removeFromCells(item, range);
+    }
+    range = new CellRange(cellLeft, cellTop, cellRight, cellBottom);
+    ranges.put(item, range);
+    if (range.isOversized()) {
+      oversized.add(item);
+      return;
+    }
+    for (int x = range.left; x <= range.right; x++) {
+      for (int y = range.top; y <= range.bottom; y++) {
+        Long key = key(x, y);
+        List<T> items = cells.get(key);
+        if (items == null) {
+          items = new ArrayList<T>(4);
+          cells.put(key, items);
+        }
+        items.add(item);
+      }
+    }
+  }
+
+  /**
+   * Removes an item. Does nothing if the item is not in the grid.
+   *
+   * @param item the item
+   */
+  public void remove(T item) {
+    CellRange range = ranges.remove(item);
+    if (range != null) {
+      removeFromCells(item, range);
+    }
+  }
+
+  /**
+   * Returns whether the item is in the grid.
+   */
+  public boolean contains(T item) {
+    return ranges.containsKey(item);
+  }
+
+  /**
+   * Returns the number of items in the grid.
+   */
+  public int size() {
+    return ranges.size();
+  }
+
+  /**
+   * Removes all items.
+   */
+  public void clear() {
+    cells.clear();
+    ranges.clear();
+    oversized.clear();
+  }
+
+  /**
+   * Adds the items whose bounding boxes may overlap the given box to
+   * {@code result}. Each item is added once.
+   *
+   * @param left the smallest x coordinate of the box
+   * @param top the smallest y coordinate of the box
+   * @param right the largest x coordinate of the box
+   * @param bottom the largest y coordinate of the box
+   * @param result the collection the items are added to
+   */
+  public void query(double left, double top, double right, double bottom,
+      Collection<? super T> result) {
+    int cellLeft = cell(left);
+    int cellTop = cell(top);
+    int cellRight = Math.max(cellLeft, cell(right));
+    int cellBottom = Math.max(cellTop, cell(bottom));
+    Map<T, Boolean> seen = new IdentityHashMap<T, Boolean>();
+    if ((long) (cellRight - cellLeft + 1) * (cellBottom - cellTop + 1) > cells.size()) {
+      // The box covers more cells than are occupied, so look at the occupied ones instead
+      for (List<T> items : cells.values()) {
+        for (T item : items) {
+          if (overlaps(ranges.get(item), cellLeft, cellTop, cellRight, cellBottom)
+              && seen.put(item, Boolean.TRUE) == null) {
+            result.add(item);
+          }
+        }
+      }
+    } else {
+      for (int x = cellLeft; x <= cellRight; x++) {
+        for (int y = cellTop; y <= cellBottom; y++) {
+          List<T> items = cells.get(key(x, y));
+          if (items != null) {
+            for (T item : items) {
+              if (seen.put(item, Boolean.TRUE) == null) {
+                result.add(item);
+              }
+            }
+          }
+        }
+      }
+    }
+    for (T item : oversized) {
+      if (overlaps(ranges.get(item), cellLeft, cellTop, cellRight, cellBottom)
+          && seen.put(item, Boolean.TRUE) == null) {
+        result.add(item);
+      }
+    }
+  }
+
+  private void removeFromCells(T item, CellRange range) {
+    if (range.isOversized()) {
+      removeByIdentity(oversized, item);
+      return;
+    }
+    for (int x = range.left; x <= range.right; x++) {
+      for (int y = range.top; y <= range.bottom; y++) {
+        Long key = key(x, y);
+        List<T> items = cells.get(key);
+        if (items != null) {
+          removeByIdentity(items, item);
+          if (items.isEmpty()) {
+            cells.remove(key);
+          }
+        }
+      }
+    }
+  }
+
+  private static <T> void removeByIdentity(List<T> items, T item) {
+    for (int i = items.size() - 1; i >= 0; i--) {
+      if (items.get(i) == item) {
+        items.remove(i);
+        return;
+      }
+    }
+  }
+
+  private static boolean overlaps(CellRange range, int left, int top, int right, int bottom) {
+    return range.left <= right && left <= range.right && range.top <= bottom
+        && top <= range.bottom;
+  }
+
+  private int cell(double coordinate) {
+    // Clamped so that iterating up to the last cell cannot overflow
+    double cell = Math.floor(coordinate / cellSize);
+    return (int) Math.max(-MAX_CELL, Math.min(MAX_CELL, cell));
+  }
+
+  private static Long key(int x, int y) {
+    return ((long) x << 32) | (y & 0xFFFFFFFFL);
+  }
+}
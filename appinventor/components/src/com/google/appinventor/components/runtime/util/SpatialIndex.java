@@ -0,0 +1,151 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.components.runtime.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.index.strtree.STRtree;
+
+/**
+ * An index of items by their bounding boxes, for finding the items in a
+ * region without looking at all of them.
+ *
+ * <p>The items are kept in an R-tree packed with the Sort-Tile-Recursive
+ * algorithm ({@link STRtree}), which answers queries quickly but cannot be
+ * changed once it is built. Items that are added or moved after the tree was
+ * built are kept in a short list that queries scan, and items that are
+ * removed or moved are skipped when the tree returns them. The tree is
+ * rebuilt on the next query once the list or the skipped items grow past a
+ * fraction of the tree, so that a run of changes costs one rebuild.
+ *
+ * <p>Bounding boxes use longitude as x and latitude as y. The index is not
+ * thread safe.
+ *
+ * @param <T> the type of the items
+ */
+public final class SpatialIndex<T> {
+
+  // The number of changes below which the tree is never rebuilt
+  private static final int MIN_CHANGES_BEFORE_REBUILD = 32;
+
+  private static final class Entry<T> {
+    final T item;
+    final Envelope envelope;
+
+    Entry(T item, Envelope envelope) {
+      this.item = item;
+      this.envelope = envelope;
+    }
+  }
+
+  private final Map<T, Entry<T>> entries = new HashMap<T, Entry<T>>();
+  private STRtree tree = null;
+  private int treeSize = 0;
+  // Entries that are not in the tree
+  private final Set<Entry<T>> recent = new LinkedHashSet<Entry<T>>();
+  // The number of entries in the tree that have been removed or replaced
+  private int stale = 0;
+
+  /**
+   * Adds an item, or moves it if it is already in the index.
+   */
+  public void put(T item, Envelope envelope) {
+    Entry<T> entry = new Entry<T>(item, envelope);
+    Entry<T> old = entries.put(item, entry);
+    if (old != null && !recent.remove(old)) {
+      stale++;
+    }
+    recent.add(entry);
+  }
+
+  /**
+   * Removes an item.
+   *
+   * @return true if the item was in the index
+   */
+  public boolean remove(T item) {
+    Entry<T> old = entries.remove(item);
+    if (old == null) {
+      return false;
+    }
+    if (!recent.remove(old)) {
+      stale++;
+    }
+    return true;
+  }
+
+  public boolean contains(T item) {
+    return entries.containsKey(item);
+  }
+
+  /**
+   * Returns the bounding box of an item, or null if it is not in the index.
+   */
+  public Envelope getEnvelope(T item) {
+    Entry<T> entry = entries.get(item);
+    return entry == null ? null : entry.envelope;
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  public void clear() {
+    entries.clear();
+    recent.clear();
+    tree = null;
+    treeSize = 0;
+    stale = 0;
+  }
+
+  /**
+   * Returns the items whose bounding boxes intersect the region, in no
+   * particular order.
+   */
+  @SuppressWarnings("unchecked")
+  public List<T> query(Envelope region) {
+    rebuildIfNeeded();
+    List<T> result = new ArrayList<T>();
+    if (tree != null) {
+      for (Object o : tree.query(region)) {
+        Entry<T> entry = (Entry<T>) o;
+        if (entries.get(entry.item) == entry) {
+          result.add(entry.item);
+        }
+      }
+    }
+    for (Entry<T> entry : recent) {
+      if (entry.envelope.intersects(region)) {
+        result.add(entry.item);
+      }
+    }
+    return result;
+  }
+
+  private void rebuildIfNeeded() {
+    int changes = Math.max(recent.size(), stale);
+    if (changes < MIN_CHANGES_BEFORE_REBUILD || changes * 4 < treeSize) {
+      return;
+    }
+    if (entries.isEmpty()) {
+      clear();
+      return;
+    }
+    tree = new STRtree();
+    for (Entry<T> entry : entries.values()) {
+      tree.insert(entry.envelope, entry);
+    }
+    tree.build();
+    treeSize = entries.size();
+    recent.clear();
+    stale = 0;
+  }
+}
@@ -0,0 +1,292 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.components.runtime.util;
+
+/**
+ * A series of (x, y) points kept sorted by x in a growable ring buffer of
+ * primitive floats.
+ *
+ * <p>Points are added after all the points with the same or a smaller x
+ * value, so points with equal x values stay in the order they were added.
+ * Adding a point with the largest x value and removing the first point both
+ * take constant time, which is what a real-time series does all the time.
+ * Inserting or removing elsewhere moves the points on the shorter side.
+ * Points are found by x value with a binary search.
+ *
+ * <p>{@link #downsample(int)} picks a subset of the points that keeps the
+ * shape of the series, so that a long series can be drawn with about as
+ * many points as there are pixels.
+ *
+ */
+public final class TimeSeriesBuffer {
+
+  private static final int DEFAULT_CAPACITY = 16;
+
+  // The capacity is always a power of two, so that the position of the i-th
+  // point is (head + i) & (capacity - 1).
+  private float[] xs;
+  private float[] ys;
+  private int head = 0;
+  private int size = 0;
+
+  /**
+   * Creates an empty series.
+   */
+  public TimeSeriesBuffer() {
+    xs = new float[DEFAULT_CAPACITY];
+    ys = new float[DEFAULT_CAPACITY];
+  }
+
+  /**
+   * Returns the number of points in the series.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the x value of the point at the given index.
+   */
+  public float getX(int index) {
+    checkIndex(index, size);
+    return xs[position(index)];
+  }
+
+  /**
+   * Returns the y value of the point at the given index.
+   */
+  public float getY(int index) {
+    checkIndex(index, size);
+    return ys[position(index)];
+  }
+
+  /**
+   * Adds a point after all the points whose x value is the same or smaller.
+   *
+   * @return the index of the new point
+   */
+  public int add(float x, float y) {
+    int index = (size == 0 || Float.compare(xs[position(size - 1)], x) <= 0)
+        ? size : upperBound(x);
+    insert(index, x, y);
+    return index;
+  }
+
+  /**
+   * Inserts a point at the given index. The caller is responsible for
+   * keeping the series sorted by x value.
+   */
+  public void insert(int index, float x, float y) {
+    checkIndex(index, size + 1);
+    if (size == xs.length) {
+      grow();
+    }
+    int mask = xs.length - 1;
+    if (index < size / 2) {
+      // Move the points before the index one place towards the front
+      head = (head - 1) & mask;
+      for (int i = 0; i < index; i++) {
+        move(i + 1, i);
+      }
+    } else {
+      for (int i = size; i > index; i--) {
+        move(i - 1, i);
+      }
+    }
+    int position = position(index);
+    xs[position] = x;
+    ys[position] = y;
+    size++;
+  }
+
+  /**
+   * Replaces the point at the given index. The caller is responsible for
+   * keeping the series sorted by x value.
+   */
+  public void set(int index, float x, float y) {
+    checkIndex(index, size);
+    int position = position(index);
+    xs[position] = x;
+    ys[position] = y;
+  }
+
+  /**
+   * Removes the point at the given index.
+   */
+  public void remove(int index) {
+    checkIndex(index, size);
+    int mask = xs.length - 1;
+    if (index < size / 2) {
+      for (int i = index; i > 0; i--) {
+        move(i - 1, i);
+      }
+      head = (head + 1) & mask;
+    } else {
+      for (int i = index; i < size - 1; i++) {
+        move(i + 1, i);
+      }
+    }
+    size--;
+  }
+
+  /**
+   * Removes all the points.
+   */
+  public void clear() {
+    head = 0;
+    size = 0;
+  }
+
+  /**
+   * Returns the index of the first point whose x value is not smaller than
+   * the given one, or {@link #size()} if there is none.
+   */
+  public int lowerBound(float x) {
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (Float.compare(xs[position(middle)], x) < 0) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Returns the index of the first point whose x value is larger than the
+   * given one, or {@link #size()} if there is none.
+   */
+  public int upperBound(float x) {
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (Float.compare(xs[position(middle)], x) <= 0) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Returns the index of the first point with the given x and y values, or
+   * -1 if there is none.
+   */
+  public int indexOf(float x, float y) {
+    for (int i = lowerBound(x); i < size; i++) {
+      int position = position(i);
+      if (xs[position] != x) {
+        break;
+      }
+      if (ys[position] == y) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Picks at most {@code threshold} points that keep the visual shape of the
+   * series, using the Largest-Triangle-Three-Buckets algorithm: the first and
+   * the last point are always kept, the points in between are split into
+   * buckets, and from each bucket the point forming the largest triangle with
+   * the point kept from the previous bucket and the average of the next
+   * bucket is kept.
+   *
+   * @param threshold the maximum number of points to keep
+   * @return the indices of the points to keep, in increasing order. If the
+   *     series has no more than {@code threshold} points, or
+   *     {@code threshold} is smaller than 3, all the indices are returned.
+   */
+  public int[] downsample(int threshold) {
+    if (threshold >= size || threshold < 3) {
+      int[] all = new int[size];
+      for (int i = 0; i < size; i++) {
+        all[i] = i;
+      }
+      return all;
+    }
+    int[] kept = new int[threshold];
+    int count = 0;
+    kept[count++] = 0;
+    // The points between the first and the last one are split into
+    // threshold - 2 buckets
+    double bucketSize = (double) (size - 2) / (threshold - 2);
+    int previous = 0;
+    for (int bucket = 0; bucket < threshold - 2; bucket++) {
+      int start = (int) (bucket * bucketSize) + 1;
+      int end = (int) ((bucket + 1) * bucketSize) + 1;
+
+      // Average of the next bucket, which is the last point for the last bucket
+      int nextStart = end;
+      int nextEnd = Math.min((int) ((bucket + 2) * bucketSize) + 1, size);
+      double averageX = 0;
+      double averageY = 0;
+      for (int i = nextStart; i < nextEnd; i++) {
+        averageX += xs[position(i)];
+        averageY += ys[position(i)];
+      }
+      int nextCount = nextEnd - nextStart;
+      averageX /= nextCount;
+      averageY /= nextCount;
+
+      double previousX = xs[position(previous)];
+      double previousY = ys[position(previous)];
+      double largestArea = -1;
+      int largest = start;
+      for (int i = start; i < end; i++) {
+        // Twice the area of the triangle, which is enough for comparing
+        double area = Math.abs((previousX - averageX) * (ys[position(i)] - previousY)
+            - (previousX - xs[position(i)]) * (averageY - previousY));
+        if (area > largestArea) {
+          largestArea = area;
+          largest = i;
+        }
+      }
+      kept[count++] = largest;
+      previous = largest;
+    }
+    kept[count] = size - 1;
+    return kept;
+  }
+
+  private int position(int index) {
+    return (head + index) & (xs.length - 1);
+  }
+
+  // Copies the point at index from to index to
+  private void move(int from, int to) {
+    int fromPosition = position(from);
+    int toPosition = position(to);
+    xs[toPosition] = xs[fromPosition];
+    ys[toPosition] = ys[fromPosition];
+  }
+
+  private void grow() {
+    int capacity = xs.length;
+    float[] newXs = new float[capacity * 2];
+    float[] newYs = new float[capacity * 2];
+    int first = Math.min(size, capacity - head);
+    System.arraycopy(xs, head, newXs, 0, first);
+    System.arraycopy(ys, head, newYs, 0, first);
+    System.arraycopy(xs, 0, newXs, first, size - first);
+    System.arraycopy(ys, 0, newYs, first, size - first);
+    xs = newXs;
+    ys = newYs;
+    head = 0;
+  }
+
+  private void checkIndex(int index, int limit) {
+    if (index < 0 || index >= limit) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+  }
+}
@@ -0,0 +1,319 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.components.runtime.util;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.WeakHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONException;
+
+/**
+ * The values of a TinyDB namespace, kept in memory in decoded form and
+ * written back to the SharedPreferences of the namespace in the background.
+ *
+ * <p>Storing a value encodes it to JSON right away, so that errors are
+ * reported to the caller and later changes to the stored object have no
+ * effect, but the write itself is only recorded. Recorded writes to the same
+ * tag replace each other, and are written together with
+ * {@link SharedPreferences.Editor#apply()} a short time after the first one,
+ * or when {@link #flush()} is called. Reading a value decodes its JSON once;
+ * later reads return a copy of the decoded value, so that blocks that modify
+ * the returned list or dictionary do not modify the stored value.
+ *
+ * <p>There is one cache per namespace, shared by all the TinyDB components
+ * of the app that use it. Its {@link ChangeListener}s are called when a value
+ * is stored or removed through the cache, and when another writer changes a
+ * value in the SharedPreferences directly.
+ *
+ */
+public final class TinyDbCache {
+
+  /**
+   * Receives the tags whose values have changed, on the thread that changed
+   * them.
+   */
+  public interface ChangeListener {
+    void onValueChanged(String tag);
+  }
+
+  /**
+   * The time between the first recorded write and the write to the
+   * SharedPreferences, in milliseconds.
+   */
+  public static final long FLUSH_DELAY = 500;
+
+  private static final Map<String, TinyDbCache> CACHES = new HashMap<String, TinyDbCache>();
+  private static ScheduledExecutorService flusher;
+
+  private static final class Entry {
+    final String json;
+    boolean decoded;
+    Object value;
+
+    Entry(String json) {
+      this.json = json;
+    }
+
+    boolean isPresent() {
+      return json != null && json.length() > 0;
+    }
+  }
+
+  private final SharedPreferences sharedPreferences;
+  private final long flushDelay;
+  private final Map<String, Entry> entries = new HashMap<String, Entry>();
+  // The writes not yet flushed, in order; a null value removes the tag
+  private final Map<String, String> pendingWrites = new LinkedHashMap<String, String>();
+  private boolean clearPending = false;
+  private boolean flushScheduled = false;
+  // Held weakly, like the listeners of SharedPreferences
+  private final Set<ChangeListener> listeners =
+      Collections.newSetFromMap(new WeakHashMap<ChangeListener, Boolean>());
+
+  private final Runnable flushTask = new Runnable() {
+    @Override
+    public void run() {
+      flush();
+    }
+  };
+
+  // Held here, because SharedPreferences only keeps a weak reference
+  private final SharedPreferences.OnSharedPreferenceChangeListener preferenceListener =
+      new SharedPreferences.OnSharedPreferenceChangeListener() {
+        @Override
+        public void onSharedPreferenceChanged(SharedPreferences preferences, String tag) {
+          if (tag != null && invalidate(tag, preferences.getString(tag, null))) {
+            notifyListeners(tag);
+          }
+        }
+      };
+
+  /**
+   * Returns the cache of the namespace.
+   */
+  public static synchronized TinyDbCache forNamespace(Context context, String namespace) {
+    TinyDbCache cache = CACHES.get(namespace);
+    if (cache == null) {
+      cache = new TinyDbCache(context.getSharedPreferences(namespace, Context.MODE_PRIVATE),
+          FLUSH_DELAY);
+      CACHES.put(namespace, cache);
+    }
+    return cache;
+  }
+
+  /**
+   * Creates a cache of the given SharedPreferences.
+   *
+   * @param flushDelay the time between the first recorded write and the write
+   *     to the SharedPreferences, or 0 to only write on calls to flush
+   */
+  TinyDbCache(SharedPreferences sharedPreferences, long flushDelay) {
+    this.sharedPreferences = sharedPreferences;
+    this.flushDelay = flushDelay;
+    sharedPreferences.registerOnSharedPreferenceChangeListener(preferenceListener);
+  }
+
+  public synchronized void addChangeListener(ChangeListener listener) {
+    listeners.add(listener);
+  }
+
+  public synchronized void removeChangeListener(ChangeListener listener) {
+    listeners.remove(listener);
+  }
+
+  /**
+   * Returns the value stored under the tag, or valueIfTagNotThere.
+   *
+   * @throws JSONException if the stored value is not valid JSON
+   */
+  public synchronized Object get(String tag, Object valueIfTagNotThere) throws JSONException {
+    Entry entry = entries.get(tag);
+    if (entry == null) {
+      entry = new Entry(clearPending ? null : sharedPreferences.getString(tag, null));
+      entries.put(tag, entry);
+    }
+    if (!entry.isPresent()) {
+      return valueIfTagNotThere;
+    }
+    if (!entry.decoded) {
+      entry.value = JsonUtil.getObjectFromJson(entry.json, true);
+      entry.decoded = true;
+    }
+    return copyOf(entry.value);
+  }
+
+  /**
+   * Stores a value under the tag.
+   *
+   * @throws JSONException if the value cannot be represented as JSON
+   */
+  public void put(String tag, Object value) throws JSONException {
+    String json = JsonUtil.getJsonRepresentation(value);
+    synchronized (this) {
+      entries.put(tag, new Entry(json));
+      recordWrite(tag, json);
+    }
+    notifyListeners(tag);
+  }
+
+  /**
+   * Removes the value stored under the tag.
+   */
+  public void remove(String tag) {
+    synchronized (this) {
+      entries.put(tag, new Entry(null));
+      recordWrite(tag, null);
+    }
+    notifyListeners(tag);
+  }
+
+  /**
+   * Removes all the values. Like {@link SharedPreferences.Editor#clear()},
+   * this does not call the listeners.
+   */
+  public synchronized void clear() {
+    entries.clear();
+    pendingWrites.clear();
+    clearPending = true;
+    scheduleFlush();
+  }
+
+  /**
+   * Returns the tags that have values, in order.
+   */
+  public synchronized List<String> getTags() {
+    Set<String> tags = new TreeSet<String>();
+    if (!clearPending) {
+      tags.addAll(sharedPreferences.getAll().keySet());
+    }
+    for (Map.Entry<String, String> write : pendingWrites.entrySet()) {
+      if (write.getValue() == null) {
+        tags.remove(write.getKey());
+      } else {
+        tags.add(write.getKey());
+      }
+    }
+    return new ArrayList<String>(tags);
+  }
+
+  /**
+   * Writes the recorded writes to the SharedPreferences, with apply.
+   */
+  public synchronized void flush() {
+    flushScheduled = false;
+    if (!clearPending && pendingWrites.isEmpty()) {
+      return;
+    }
+    SharedPreferences.Editor editor = sharedPreferences.edit();
+    if (clearPending) {
+      editor.clear();
+    }
+    for (Map.Entry<String, String> write : pendingWrites.entrySet()) {
+      if (write.getValue() == null) {
+        editor.remove(write.getKey());
+      } else {
+        editor.putString(write.getKey(), write.getValue());
+      }
+    }
+    clearPending = false;
+    pendingWrites.clear();
+    // Applied while holding the lock, so that flushes reach the disk in order
+    editor.apply();
+  }
+
+  private void recordWrite(String tag, String json) {
+    // Reinserted, so that the writes stay in order
+    pendingWrites.remove(tag);
+    pendingWrites.put(tag, json);
+    scheduleFlush();
+  }
+
+  private void scheduleFlush() {
+    if (flushScheduled || flushDelay <= 0) {
+      return;
+    }
+    flushScheduled = true;
+    getFlusher().schedule(flushTask, flushDelay, TimeUnit.MILLISECONDS);
+  }
+
+  // Drops the cached value of a tag that was changed in the SharedPreferences,
+  // unless the change is one this cache wrote, and returns true if it did so.
+  private synchronized boolean invalidate(String tag, String json) {
+    if (clearPending || pendingWrites.containsKey(tag)) {
+      // The write that is still to come replaces the change
+      return false;
+    }
+    Entry entry = entries.get(tag);
+    if (entry != null && (entry.json == null ? json == null : entry.json.equals(json))) {
+      return false;
+    }
+    entries.remove(tag);
+    return true;
+  }
+
+  private void notifyListeners(String tag) {
+    List<ChangeListener> copy;
+    synchronized (this) {
+      copy = new ArrayList<ChangeListener>(listeners);
+    }
+    for (ChangeListener listener : copy) {
+      listener.onValueChanged(tag);
+    }
+  }
+
+  private static synchronized ScheduledExecutorService getFlusher() {
+    if (flusher == null) {
+      flusher = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+          Thread thread = new Thread(runnable, "TinyDbCache");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    return flusher;
+  }
+
+  // Copies the lists and dictionaries of a decoded value
+  @SuppressWarnings("unchecked")
+  private static Object copyOf(Object value) {
+    if (value instanceof YailDictionary) {
+      YailDictionary copy = new YailDictionary();
+      for (Map.Entry<Object, Object> item : ((YailDictionary) value).entrySet()) {
+        copy.put(item.getKey(), copyOf(item.getValue()));
+      }
+      return copy;
+    } else if (value instanceof YailList) {
+      // Its iterator also returns the *list* header, which toArray leaves out
+      Object[] items = ((YailList) value).toArray();
+      for (int i = 0; i < items.length; i++) {
+        items[i] = copyOf(items[i]);
+      }
+      return YailList.makeList(items);
+    } else if (value instanceof List) {
+      List<Object> list = (List<Object>) value;
+      List<Object> copy = new ArrayList<Object>(list.size());
+      for (Object item : list) {
+        copy.add(copyOf(item));
+      }
+      return copy;
+    }
+    return value;
+  }
+}
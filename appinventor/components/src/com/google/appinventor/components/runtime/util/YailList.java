@@ -21,6 +21,14 @@ import org.json.JSONException;
  * by the Kawa framework. YailList is the main list primitive used
  * by App Inventor components.
  *
+ * <p>A YailList is still a cons list, so that Scheme code can walk it with
+ * car and cdr. To make the index loops of blocks programs linear instead of
+ * quadratic, it remembers its size, the last element that was accessed by
+ * index and its last pair. These caches are only valid as long as the
+ * structure of the list is changed through the methods of this class, or
+ * followed by a call to {@link #structureChanged()}. The list primitives in
+ * runtime.scm take care of that.
+ *
  */
 @SuppressWarnings("rawtypes")
 public class YailList extends Pair implements YailObject {
@@ -35,6 +43,16 @@ public class YailList extends Pair implements YailObject {
   // legitimate Yail data types.  See the definition of sanitization
   // in runtime.scm.
 
+  // Number of elements, or -1 if it has to be counted
+  private int cachedSize = -1;
+
+  // The pair holding the element at index cursorIndex (0 based), or null
+  private Pair cursor;
+  private int cursorIndex;
+
+  // The last pair of the list, or null if unknown
+  private Pair tail;
+
   /**
    * Create an empty YailList.
    */
@@ -169,8 +187,113 @@ public class YailList extends Pair implements YailObject {
    * Return the size of this YailList.
    */
   @Override
-  public int size() {
-    return super.size() - 1;
+  public synchronized int size() {
+    if (cachedSize < 0) {
+      cachedSize = super.size() - 1;
+    }
+    return cachedSize;
+  }
+
+  /**
+   * Return the item at the given index, where index 0 is the list header.
+   */
+  @Override
+  public Object get(int index) {
+    if (index == 0) {
+      return car;
+    }
+    if (index < 0 || index > size()) {
+      throw new IndexOutOfBoundsException();
+    }
+    return pairAt(index - 1).getCar();
+  }
+
+  /**
+   * Replace the Object at the given index.
+   */
+  public void setObject(int index, Object value) {
+    if (index < 0 || index >= size()) {
+      throw new IndexOutOfBoundsException();
+    }
+    pairAt(index).setCar(value);
+  }
+
+  /**
+   * Append the elements of a Kawa list to this YailList. The pairs of
+   * {@code items} become part of this list, so the caller must not share
+   * them with another list.
+   */
+  public synchronized void appendContents(LList items) {
+    if (items == LList.Empty) {
+      return;
+    }
+    Pair last = findTail();
+    last.setCdr(items);
+    int added = 0;
+    Pair p = (Pair) items;
+    while (true) {
+      added++;
+      if (!(p.getCdr() instanceof Pair)) {
+        break;
+      }
+      p = (Pair) p.getCdr();
+    }
+    if (cachedSize >= 0) {
+      cachedSize += added;
+    }
+    tail = p;
+  }
+
+  /**
+   * Tell the list that its structure was changed behind its back, for
+   * example by set-cdr! in Scheme code. Changing elements with set-car!
+   * does not need this.
+   */
+  public synchronized void structureChanged() {
+    cachedSize = -1;
+    cursor = null;
+    tail = null;
+  }
+
+  @Override
+  public void setCdr(Object cdr) {
+    super.setCdr(cdr);
+    structureChanged();
+  }
+
+  // Returns the pair holding the element at the given 0 based index, which
+  // must be smaller than size(). Walks forward from the cursor if it can, so
+  // that visiting the elements in order takes linear time overall.
+  private synchronized Pair pairAt(int index) {
+    Pair p;
+    int i;
+    if (cursor != null && cursorIndex <= index) {
+      p = cursor;
+      i = cursorIndex;
+    } else {
+      p = (Pair) cdr;
+      i = 0;
+    }
+    while (i < index) {
+      p = (Pair) p.getCdr();
+      i++;
+    }
+    cursor = p;
+    cursorIndex = index;
+    return p;
+  }
+
+  // Returns the last pair of the list, which is the header pair if the list
+  // is empty.
+  private Pair findTail() {
+    if (tail == null) {
+      Pair p = (cursor != null) ? cursor : this;
+      while (p.getCdr() instanceof Pair) {
+        p = (Pair) p.getCdr();
+      }
+      tail = p;
+    }
+    return tail;
   }
 
   /**
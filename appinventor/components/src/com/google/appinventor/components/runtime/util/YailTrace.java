@@ -0,0 +1,144 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.components.runtime.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Records how often the event handlers of an app run and how long they take.
+ *
+ * <p>The event handlers generated by runtime.scm call {@link #start()} on
+ * entry and {@link #end(Object, long)} on exit. Tracing is off by default, in
+ * which case {@code start} returns 0 without reading the clock and
+ * {@code end} returns immediately. When tracing is on, the last
+ * {@link #CAPACITY} executions are kept in a ring buffer, and a count and a
+ * total time are kept for every handler.
+ *
+ */
+public final class YailTrace {
+
+  /**
+   * The number of executions kept in the ring buffer.
+   */
+  public static final int CAPACITY = 1024;
+
+  private static volatile boolean enabled = false;
+
+  // Ring buffer of the last executions. next is where the next one goes,
+  // recorded is how many executions were recorded in total.
+  private static final Object[] names = new Object[CAPACITY];
+  private static final long[] durations = new long[CAPACITY];
+  private static int next = 0;
+  private static long recorded = 0;
+
+  // Count and total time (in nanoseconds) per handler
+  private static final Map<Object, long[]> totals = new LinkedHashMap<Object, long[]>();
+
+  private YailTrace() {
+  }
+
+  /**
+   * Turns tracing on or off. Turning tracing off keeps what was recorded.
+   */
+  public static void setEnabled(boolean enable) {
+    enabled = enable;
+  }
+
+  public static boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Forgets everything recorded so far.
+   */
+  public static synchronized void clear() {
+    for (int i = 0; i < CAPACITY; i++) {
+      names[i] = null;
+    }
+    next = 0;
+    recorded = 0;
+    totals.clear();
+  }
+
+  /**
+   * Marks the start of an execution.
+   *
+   * @return the value to pass to {@link #end(Object, long)}, 0 if tracing is
+   *     off
+   */
+  public static long start() {
+    if (!enabled) {
+      return 0;
+    }
+    long now = System.nanoTime();
+    // 0 means "not traced"
+    return now == 0 ? 1 : now;
+  }
+
+  /**
+   * Records the end of an execution.
+   *
+   * @param name the name of the event handler
+   * @param start the value returned by {@link #start()}
+   */
+  public static void end(Object name, long start) {
+    if (start == 0) {
+      return;
+    }
+    long duration = System.nanoTime() - start;
+    synchronized (YailTrace.class) {
+      names[next] = name;
+      durations[next] = duration;
+      next = (next + 1) % CAPACITY;
+      recorded++;
+      long[] total = totals.get(name);
+      if (total == null) {
+        total = new long[2];
+        totals.put(name, total);
+      }
+      total[0]++;
+      total[1] += duration;
+    }
+  }
+
+  /**
+   * Returns the total number of executions recorded since the last
+   * {@link #clear()}, including the ones no longer in the ring buffer.
+   */
+  public static synchronized long getRecordedCount() {
+    return recorded;
+  }
+
+  /**
+   * Returns the executions in the ring buffer, oldest first, one per line as
+   * the handler name followed by the duration in microseconds.
+   */
+  public static synchronized String getRecent() {
+    StringBuilder sb = new StringBuilder();
+    int count = (int) Math.min(recorded, CAPACITY);
+    int first = (next - count + CAPACITY) % CAPACITY;
+    for (int i = 0; i < count; i++) {
+      int index = (first + i) % CAPACITY;
+      sb.append(names[index]).append(' ').append(durations[index] / 1000).append('\n');
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Returns the count and total time of every handler, one per line as the
+   * handler name followed by the count and the total time in microseconds.
+   */
+  public static synchronized String getSummary() {
+    StringBuilder sb = new StringBuilder();
+    for (Map.Entry<Object, long[]> entry : totals.entrySet()) {
+      long[] total = entry.getValue();
+      sb.append(entry.getKey()).append(' ').append(total[0]).append(' ')
+          .append(total[1] / 1000).append('\n');
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,170 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.components.runtime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link EventDispatcher}.
+ */
+public class EventDispatcherTest {
+
+  /**
+   * A dispatch delegate that binds component names to components the way the form
+   * environment in runtime.scm does.
+   */
+  private static class FakeDelegate implements HandlesEventDispatching {
+    final Map<String, Component> components = new HashMap<String, Component>();
+    final List<String> dispatchCalls = new ArrayList<String>();
+    final List<String> handled = new ArrayList<String>();
+    final List<String> genericHandled = new ArrayList<String>();
+
+    @Override
+    public boolean canDispatchEvent(Component component, String eventName) {
+      return true;
+    }
+
+    @Override
+    public boolean dispatchEvent(Component component, String componentName, String eventName,
+        Object[] args) {
+      dispatchCalls.add(componentName);
+      if (components.get(componentName) == component) {
+        handled.add(componentName + "." + eventName);
+        return true;
+      }
+      return false;
+    }
+
+    @Override
+    public void dispatchErrorOccurredEvent(Component component, String functionName,
+        int errorCode, Object... args) {
+    }
+
+    @Override
+    public void dispatchGenericEvent(Component component, String eventName,
+        boolean notAlreadyHandled, Object[] args) {
+      genericHandled.add(eventName + ":" + notAlreadyHandled);
+    }
+  }
+
+  private class FakeComponent implements Component {
+    @Override
+    public HandlesEventDispatching getDispatchDelegate() {
+      return delegate;
+    }
+  }
+
+  private FakeDelegate delegate;
+
+  @Before
+  public void setUp() {
+    delegate = new FakeDelegate();
+  }
+
+  @After
+  public void tearDown() {
+    EventDispatcher.removeDispatchDelegate(delegate);
+  }
+
+  private FakeComponent addComponent(String name) {
+    FakeComponent component = new FakeComponent();
+    delegate.components.put(name, component);
+    return component;
+  }
+
+  @Test
+  public void testDispatchAsksDelegateOnceAfterFirstEvent() {
+    List<FakeComponent> buttons = new ArrayList<FakeComponent>();
+    for (int i = 0; i < 50; i++) {
+      buttons.add(addComponent("Button" + i));
+      EventDispatcher.registerEventForDelegation(delegate, "Button" + i, "Click");
+    }
+    assertTrue(EventDispatcher.dispatchEvent(buttons.get(7), "Click"));
+    assertEquals("[Button7.Click]", delegate.handled.toString());
+
+    delegate.dispatchCalls.clear();
+    assertTrue(EventDispatcher.dispatchEvent(buttons.get(7), "Click"));
+    assertEquals("[Button7]", delegate.dispatchCalls.toString());
+  }
+
+  @Test
+  public void testNoHandler() {
+    FakeComponent button1 = addComponent("Button1");
+    FakeComponent button2 = addComponent("Button2");
+    assertFalse(EventDispatcher.hasEventHandler(button1, "Click"));
+    assertFalse(EventDispatcher.dispatchEvent(button1, "Click"));
+
+    EventDispatcher.registerEventForDelegation(delegate, "Button1", "Click");
+    EventDispatcher.registerEventForDelegation(delegate, "Button1", "LongClick");
+    assertTrue(EventDispatcher.hasEventHandler(button1, "Click"));
+    assertFalse(EventDispatcher.hasEventHandler(button1, "GotFocus"));
+
+    // Once Button1 has been dispatched to, we know that it has no handler for events that
+    // only Button2 handles
+    EventDispatcher.registerEventForDelegation(delegate, "Button2", "LostFocus");
+    assertTrue(EventDispatcher.dispatchEvent(button1, "Click"));
+    assertFalse(EventDispatcher.hasEventHandler(button1, "LostFocus"));
+    assertTrue(EventDispatcher.hasEventHandler(button2, "LostFocus"));
+    delegate.dispatchCalls.clear();
+    assertFalse(EventDispatcher.dispatchEvent(button1, "LostFocus"));
+    assertTrue(delegate.dispatchCalls.isEmpty());
+    assertTrue(delegate.genericHandled.isEmpty());
+  }
+
+  @Test
+  public void testGenericEvents() {
+    FakeComponent button1 = addComponent("Button1");
+    FakeComponent button2 = addComponent("Button2");
+    EventDispatcher.registerEventForDelegation(delegate, "Button1", "Click");
+    EventDispatcher.registerGenericEventForDelegation(delegate, "FakeComponent", "Click");
+    assertTrue(EventDispatcher.hasEventHandler(button2, "Click"));
+    EventDispatcher.dispatchEvent(button1, "Click");
+    EventDispatcher.dispatchEvent(button2, "Click");
+    assertEquals("[Click:false, Click:true]", delegate.genericHandled.toString());
+
+    EventDispatcher.unregisterAllEventsForDelegation();
+    assertFalse(EventDispatcher.hasEventHandler(button2, "Click"));
+  }
+
+  @Test
+  public void testGenericHandlerBesideSpecificHandler() {
+    FakeComponent canvas1 = addComponent("Canvas1");
+    addComponent("Canvas2");
+    EventDispatcher.registerEventForDelegation(delegate, "Canvas1", "Touched");
+    EventDispatcher.registerEventForDelegation(delegate, "Canvas2", "Dragged");
+    EventDispatcher.registerGenericEventForDelegation(delegate, "FakeComponent", "Dragged");
+    // Canvas1's id is known once it has been dispatched to, and it has no specific handler
+    // for Dragged, but the generic handler still handles it
+    assertTrue(EventDispatcher.dispatchEvent(canvas1, "Touched"));
+    assertTrue(EventDispatcher.hasEventHandler(canvas1, "Dragged"));
+    assertFalse(EventDispatcher.dispatchEvent(canvas1, "Dragged"));
+    assertEquals("[Dragged:true]", delegate.genericHandled.toString());
+  }
+
+  @Test
+  public void testRename() {
+    FakeComponent button = addComponent("Button1");
+    EventDispatcher.registerEventForDelegation(delegate, "Button1", "Click");
+    EventDispatcher.registerEventForDelegation(delegate, "Button2", "Click");
+    assertTrue(EventDispatcher.dispatchEvent(button, "Click"));
+
+    delegate.components.remove("Button1");
+    delegate.components.put("Button2", button);
+    EventDispatcher.componentIdsChanged();
+    assertTrue(EventDispatcher.dispatchEvent(button, "Click"));
+    assertEquals("[Button1.Click, Button2.Click]", delegate.handled.toString());
+  }
+}
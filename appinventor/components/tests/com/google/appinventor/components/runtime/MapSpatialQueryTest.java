@@ -0,0 +1,86 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.components.runtime;
+
+import com.google.appinventor.components.runtime.util.YailList;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static com.google.appinventor.components.runtime.util.GeometryUtil.ONE_DEG_IN_METERS;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the spatial queries of {@link Map} and {@link FeatureCollection}.
+ */
+public class MapSpatialQueryTest extends MapTestBase {
+
+  @Test
+  public void testFeaturesContainingPoint() {
+    Polygon polygon = makePolygon(getMap(), 1.0, -1.0, -1.0, 1.0);
+    Circle circle = makeCircle(getMap(), 0.5, 0.5, ONE_DEG_IN_METERS);
+    Marker marker = new Marker(getMap());
+    marker.SetLocation(0.5, 0.5);
+    makeRectangle(getMap(), 10.0, 10.0, 9.0, 11.0);
+
+    List<Object> found = Arrays.asList(getMap().FeaturesContainingPoint(0.2, 0.2).toArray());
+    assertEquals(2, found.size());
+    assertTrue(found.contains(polygon));
+    assertTrue(found.contains(circle));
+    assertArrayEquals(new Object[] { circle },
+        getMap().FeaturesContainingPoint(1.2, 1.2).toArray());
+    assertEquals(0, getMap().FeaturesContainingPoint(-5.0, -5.0).size());
+  }
+
+  @Test
+  public void testDistanceQueries() {
+    Marker far = new Marker(getMap());
+    far.SetLocation(0.0, 3.0);
+    Marker near = new Marker(getMap());
+    near.SetLocation(0.0, 1.0);
+    LineString line = makeLineString(getMap(), 1.0, 2.0, -1.0, 2.0);
+
+    assertArrayEquals(new Object[] { near, line },
+        getMap().FeaturesWithinDistance(0.0, 0.0, 2.5 * ONE_DEG_IN_METERS, false).toArray());
+    assertArrayEquals(new Object[] { near },
+        getMap().NearestFeatures(0.0, 0.0, 1, false).toArray());
+    assertArrayEquals(new Object[] { near, line, far },
+        getMap().NearestFeatures(0.0, 0.0, 5, false).toArray());
+    // The nearest features are found however far away they are
+    assertArrayEquals(new Object[] { far },
+        getMap().NearestFeatures(0.0, 179.0, 1, true).toArray());
+    assertEquals(0, getMap().FeaturesWithinDistance(0.0, 0.0, -1, false).size());
+  }
+
+  @Test
+  public void testQueriesFollowChanges() {
+    FeatureCollection collection = new FeatureCollection(getMap());
+    Marker marker = new Marker(collection);
+    marker.SetLocation(0.5, 0.5);
+    YailList boundingBox = YailList.makeList(new Object[] {
+        YailList.makeList(new Object[] { 1.0, 0.0 }),
+        YailList.makeList(new Object[] { 0.0, 1.0 })
+    });
+    assertArrayEquals(new Object[] { marker },
+        collection.FeaturesInBoundingBox(boundingBox).toArray());
+    assertArrayEquals(new Object[] { marker },
+        getMap().FeaturesInBoundingBox(boundingBox).toArray());
+
+    // Moving a feature moves it in the indexes of the collection and the map
+    marker.SetLocation(20.0, 20.0);
+    assertEquals(0, collection.FeaturesInBoundingBox(boundingBox).size());
+    assertEquals(0, getMap().FeaturesInBoundingBox(boundingBox).size());
+    assertArrayEquals(new Object[] { marker },
+        getMap().FeaturesWithinDistance(20.0, 20.0, 1, false).toArray());
+
+    collection.removeFeature(marker);
+    assertEquals(0, collection.FeaturesWithinDistance(20.0, 20.0, 1, false).size());
+    assertEquals(0, getMap().FeaturesWithinDistance(20.0, 20.0, 1, false).size());
+  }
+}
@@ -0,0 +1,50 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.components.runtime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.appinventor.components.runtime.util.YailDictionary;
+import com.google.appinventor.components.runtime.util.YailList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * Tests for the {@link TinyDB} component.
+ */
+public class TinyDBTest extends RobolectricTestBase {
+
+  private TinyDB tinyDB;
+
+  @Override
+  public void setUp() {
+    super.setUp();
+    tinyDB = new TinyDB(getForm());
+    tinyDB.Namespace("TinyDBTest");
+    tinyDB.ClearAll();
+  }
+
+  @Test
+  public void testNestedListsReadBack() {
+    YailList inner = YailList.makeList(Arrays.asList(2, 3));
+    tinyDB.StoreValue("list", YailList.makeList(Arrays.<Object>asList(1, inner)));
+    YailDictionary dict = new YailDictionary();
+    dict.put("items", inner);
+    tinyDB.StoreValue("dict", dict);
+
+    List<?> list = (List<?>) tinyDB.GetValue("list", null);
+    assertEquals(2, list.size());
+    assertEquals(1, list.get(0));
+    // No *list* header shows up as an item of the nested lists
+    assertTrue(list.get(1) instanceof YailList);
+    assertEquals("(2 3)", list.get(1).toString());
+    YailDictionary value = (YailDictionary) tinyDB.GetValue("dict", null);
+    assertTrue(value.get("items") instanceof YailList);
+    assertEquals("(2 3)", value.get("items").toString());
+  }
+}
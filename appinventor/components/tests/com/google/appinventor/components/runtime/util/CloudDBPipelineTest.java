@@ -0,0 +1,315 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.components.runtime.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+
+/**
+ * Tests for {@link CloudDBPipeline}, against a small stand-in for a Redis
+ * server.
+ */
+public class CloudDBPipelineTest {
+
+  private static final String SCRIPT = "return 'OK'";
+  private static final String FAILING_SCRIPT = "return error('You can only append to a list')";
+
+  private final List<String> batches = new ArrayList<String>();
+  private final CloudDBPipeline pipeline = new CloudDBPipeline(
+      new CloudDBPipeline.BatchListener() {
+        @Override
+        public void onBatchSent(List<String> writtenTags, List<String> failedTags,
+            String error) {
+          batches.add(writtenTags + " " + failedTags + " " + error);
+        }
+      });
+  private FakeRedis server;
+  private Jedis jedis;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new FakeRedis();
+    jedis = new Jedis("localhost", server.getPort());
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    jedis.close();
+    server.close();
+  }
+
+  @Test
+  public void testCommandsArePipelined() throws Exception {
+    assertTrue(pipeline.add(new Store("a", "1")));
+    assertFalse(pipeline.add(new Store("b", "2")));
+    assertFalse(pipeline.add(new Store("a", "3")));
+    final List<Object> replies = new ArrayList<Object>();
+    pipeline.add(new CloudDBPipeline.Command("a", false) {
+      @Override
+      protected Response<?> send(Pipeline pipeline) {
+        return pipeline.get("a");
+      }
+
+      @Override
+      protected void onReply(Object reply) {
+        replies.add(reply);
+      }
+    });
+    // Stores after a read of the same tag are not merged into earlier ones
+    pipeline.add(new Store("a", "4"));
+    assertEquals(4, pipeline.size());
+
+    pipeline.sendPending(jedis);
+    assertEquals(0, pipeline.size());
+    assertEquals(Arrays.asList("[a, b] [] null"), batches);
+    assertEquals(Arrays.asList(new Object[] { null }), replies);
+    // The script is loaded by its first use, all in one round trip
+    assertEquals(Arrays.asList("EVAL a 1,3", "EVALSHA b 2", "GET a", "EVALSHA a 4"),
+        server.commands);
+    assertEquals(1, server.roundTrips);
+    assertTrue(pipeline.add(new Store("c", "5")));
+  }
+
+  @Test
+  public void testErrors() throws Exception {
+    pipeline.add(new Store("a", "1"));
+    pipeline.sendPending(jedis);
+    server.scripts.clear();
+    server.commands.clear();
+
+    pipeline.add(new Store("a", "2"));
+    pipeline.add(new CloudDBPipeline.ScriptCommand("b", true, FAILING_SCRIPT,
+        sha1(FAILING_SCRIPT), 1, "b"));
+    pipeline.add(new Store("c", "3"));
+    pipeline.sendPending(jedis);
+    // The server lost its scripts, so the batch is sent again from the first store
+    assertEquals(Arrays.asList("EVALSHA a 2", "EVAL b", "EVALSHA c 3", "EVAL a 2", "EVAL b",
+        "EVALSHA c 3"), server.commands);
+    assertEquals("[a, c] [b] ERR You can only append to a list", batches.get(1));
+
+    for (int i = 0; i < CloudDBPipeline.MAX_BATCH_SIZE + 10; i++) {
+      pipeline.add(new Store("t" + i, "x"));
+    }
+    server.failAfter(5);
+    try {
+      pipeline.sendPending(jedis);
+      fail();
+    } catch (JedisConnectionException e) {
+      // expected
+    }
+    assertEquals(CloudDBPipeline.MAX_BATCH_SIZE, batches.get(2).split(",").length);
+    assertTrue(batches.get(2).startsWith("[] [t0, t1, "));
+    assertEquals(10, pipeline.size());
+  }
+
+  @Test
+  public void testLostScriptsKeepOrder() throws Exception {
+    pipeline.add(new Store("a", "1"));
+    pipeline.sendPending(jedis);
+    server.scripts.clear();
+    server.commands.clear();
+
+    pipeline.add(new Store("a", "2"));
+    pipeline.add(new CloudDBPipeline.Command("a", true) {
+      @Override
+      protected Response<?> send(Pipeline pipeline) {
+        return pipeline.del("a");
+      }
+    });
+    pipeline.sendPending(jedis);
+    // The delete ran before the store that failed, so it runs again after it
+    assertEquals(Arrays.asList("EVALSHA a 2", "DEL a", "EVAL a 2", "DEL a"), server.commands);
+    assertEquals("[a] [] null", batches.get(1));
+  }
+
+  @Test
+  public void testLargeQueues() throws Exception {
+    for (int i = 0; i < 250; i++) {
+      pipeline.add(new Store("t" + (i % 125), Integer.toString(i)));
+    }
+    // The second store to each tag is merged into the first
+    assertEquals(125, pipeline.size());
+    pipeline.sendPending(jedis);
+    assertEquals(2, batches.size());
+    assertEquals(2, server.roundTrips);
+    assertEquals(125, server.commands.size());
+    assertEquals("EVALSHA t124 124,249", server.commands.get(124));
+  }
+
+  private static String sha1(String script) throws Exception {
+    byte[] digest = MessageDigest.getInstance("SHA-1").digest(script.getBytes("UTF-8"));
+    return String.format("%040x", new BigInteger(1, digest));
+  }
+
+  // Like the store command of CloudDB, which absorbs later stores to its tag
+  private static class Store extends CloudDBPipeline.ScriptCommand {
+    private final List<String> values = new ArrayList<String>();
+
+    Store(String tag, String value) throws Exception {
+      super(tag, true, SCRIPT, sha1(SCRIPT), 1);
+      values.add(value);
+    }
+
+    @Override
+    protected String[] getArgs() {
+      StringBuilder sb = new StringBuilder();
+      for (String value : values) {
+        sb.append(sb.length() == 0 ? "" : ",").append(value);
+      }
+      return new String[] { getTag(), sb.toString() };
+    }
+
+    @Override
+    protected boolean merge(CloudDBPipeline.Command later) {
+      if (later instanceof Store) {
+        values.addAll(((Store) later).values);
+        return true;
+      }
+      return false;
+    }
+  }
+
+  // Answers the commands of one connection: scripts return OK unless they
+  // raise an error, GET finds nothing, and DEL deletes one key
+  private static class FakeRedis implements Runnable {
+    final List<String> commands = Collections.synchronizedList(new ArrayList<String>());
+    final Set<String> scripts = Collections.synchronizedSet(new HashSet<String>());
+    volatile int roundTrips = 0;
+    private volatile int failAfter = -1;
+    private final ServerSocket serverSocket = new ServerSocket(0);
+    private final Thread thread = new Thread(this);
+
+    FakeRedis() throws IOException {
+      thread.setDaemon(true);
+      thread.start();
+    }
+
+    int getPort() {
+      return serverSocket.getLocalPort();
+    }
+
+    // Closes the connection after the given number of further commands
+    void failAfter(int count) {
+      failAfter = count;
+    }
+
+    void close() throws IOException {
+      serverSocket.close();
+    }
+
+    @Override
+    public void run() {
+      try {
+        Socket socket = serverSocket.accept();
+        InputStream in = new BufferedInputStream(socket.getInputStream());
+        OutputStream out = socket.getOutputStream();
+        while (true) {
+          List<String> command = readCommand(in);
+          if (command == null || failAfter == 0) {
+            socket.close();
+            return;
+          }
+          if (failAfter > 0) {
+            failAfter--;
+          }
+          if (in.available() == 0) {
+            // The client waits for the replies after the last command it sent
+            roundTrips++;
+          }
+          out.write(reply(command).getBytes("UTF-8"));
+        }
+      } catch (Exception e) {
+        // The test is over
+      }
+    }
+
+    private String reply(List<String> command) throws Exception {
+      String name = command.get(0).toUpperCase();
+      if (name.equals("GET")) {
+        commands.add("GET " + command.get(1));
+        return "$-1\r\n";
+      } else if (name.equals("DEL")) {
+        commands.add("DEL " + command.get(1));
+        return ":1\r\n";
+      }
+      StringBuilder description = new StringBuilder(name);
+      for (String arg : command.subList(Math.min(3, command.size()), command.size())) {
+        description.append(' ').append(arg);
+      }
+      commands.add(description.toString());
+      String script;
+      if (name.equals("EVAL")) {
+        script = command.get(1);
+        scripts.add(sha1(script));
+      } else if (name.equals("EVALSHA")) {
+        if (!scripts.contains(command.get(1))) {
+          return "-NOSCRIPT No matching script. Please use EVAL.\r\n";
+        }
+        script = command.get(1).equals(sha1(SCRIPT)) ? SCRIPT : FAILING_SCRIPT;
+      } else {
+        return "-ERR unknown command\r\n";
+      }
+      return script.equals(SCRIPT) ? "+OK\r\n" : "-ERR You can only append to a list\r\n";
+    }
+
+    private static List<String> readCommand(InputStream in) throws IOException {
+      String header = readLine(in);
+      if (header == null) {
+        return null;
+      }
+      int count = Integer.parseInt(header.substring(1));
+      List<String> parts = new ArrayList<String>(count);
+      for (int i = 0; i < count; i++) {
+        int length = Integer.parseInt(readLine(in).substring(1));
+        byte[] bytes = new byte[length + 2];
+        int read = 0;
+        while (read < bytes.length) {
+          read += in.read(bytes, read, bytes.length - read);
+        }
+        parts.add(new String(bytes, 0, length, "UTF-8"));
+      }
+      return parts;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+      StringBuilder sb = new StringBuilder();
+      int c;
+      while ((c = in.read()) != '\n') {
+        if (c < 0) {
+          return null;
+        }
+        if (c != '\r') {
+          sb.append((char) c);
+        }
+      }
+      return sb.toString();
+    }
+  }
+}
@@ -0,0 +1,147 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.components.runtime.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.californium.core.CoapResource;
+import org.eclipse.californium.core.CoapResponse;
+import org.eclipse.californium.core.CoapServer;
+import org.eclipse.californium.core.coap.CoAP;
+import org.eclipse.californium.core.coap.MediaTypeRegistry;
+import org.eclipse.californium.core.network.config.NetworkConfig;
+import org.eclipse.californium.core.server.resources.CoapExchange;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link CoapSession}, against a local Californium server.
+ */
+public class CoapSessionTest {
+
+  private static final char[] LARGE = new char[5000];
+
+  static {
+    Arrays.fill(LARGE, 'x');
+  }
+
+  private CoapServer server;
+  private CoapSession session;
+  private CoapResource observable;
+  private String baseUri;
+  private volatile String state = "0";
+  private volatile int postedLength = -1;
+  private final BlockingQueue<Object[]> responses = new LinkedBlockingQueue<Object[]>();
+
+  @Before
+  public void setUp() {
+    // Keep the server from writing Californium.properties
+    NetworkConfig.setStandard(NetworkConfig.createStandardWithoutFile());
+    server = new CoapServer(0);
+    server.add(new CoapResource("large") {
+      @Override
+      public void handleGET(CoapExchange exchange) {
+        exchange.respond(CoAP.ResponseCode.CONTENT, new String(LARGE),
+            MediaTypeRegistry.TEXT_TURTLE);
+      }
+    });
+    server.add(new CoapResource("sink") {
+      @Override
+      public void handlePOST(CoapExchange exchange) {
+        postedLength = exchange.getRequestPayload().length;
+        exchange.respond(CoAP.ResponseCode.CREATED);
+      }
+    });
+    observable = new CoapResource("observable") {
+      @Override
+      public void handleGET(CoapExchange exchange) {
+        exchange.respond(CoAP.ResponseCode.CONTENT, state, MediaTypeRegistry.TEXT_PLAIN);
+      }
+    };
+    observable.setObservable(true);
+    server.add(observable);
+    server.start();
+    baseUri = "coap://127.0.0.1:" + server.getEndpoints().get(0).getAddress().getPort() + "/";
+
+    session = new CoapSession(new CoapSession.ResponseListener() {
+      @Override
+      public void onResponse(int requestId, CoapResponse response) {
+        responses.add(new Object[] {requestId, response});
+      }
+
+      @Override
+      public void onNotification(int requestId, CoapResponse response) {
+        responses.add(new Object[] {requestId, response});
+      }
+    });
+  }
+
+  @After
+  public void tearDown() {
+    session.shutdown();
+    server.destroy();
+  }
+
+  @Test
+  public void testConcurrentRequests() throws Exception {
+    session.setBlockSize(256);
+    int get = session.get(baseUri + "large", MediaTypeRegistry.TEXT_TURTLE);
+    int post = session.post(baseUri + "sink", new String(LARGE).getBytes("UTF-8"),
+        MediaTypeRegistry.TEXT_TURTLE);
+    assertTrue(get != post);
+    Map<Integer, CoapResponse> byId = new HashMap<Integer, CoapResponse>();
+    for (int i = 0; i < 2; i++) {
+      Object[] response = responses.poll(10, TimeUnit.SECONDS);
+      assertNotNull("timed out", response);
+      byId.put((Integer) response[0], (CoapResponse) response[1]);
+    }
+    // The large payloads went through block-wise transfers in both directions
+    assertEquals(new String(LARGE), byId.get(get).getResponseText());
+    assertEquals(CoAP.ResponseCode.CREATED, byId.get(post).getCode());
+    assertEquals(LARGE.length, postedLength);
+  }
+
+  @Test
+  public void testObserve() throws Exception {
+    int id = session.observe(baseUri + "observable", MediaTypeRegistry.TEXT_PLAIN);
+    assertEquals("0", nextResponseText(id));
+    state = "1";
+    observable.changed();
+    assertEquals("1", nextResponseText(id));
+    assertEquals(1, session.getObservationCount());
+
+    assertTrue(session.cancelObservation(id));
+    assertFalse(session.cancelObservation(id));
+    assertEquals(0, session.getObservationCount());
+  }
+
+  @Test
+  public void testBlockSize() {
+    assertTrue(CoapSession.isValidBlockSize(16));
+    assertTrue(CoapSession.isValidBlockSize(1024));
+    assertFalse(CoapSession.isValidBlockSize(8));
+    assertFalse(CoapSession.isValidBlockSize(2048));
+    assertFalse(CoapSession.isValidBlockSize(500));
+    assertEquals(CoapSession.DEFAULT_BLOCK_SIZE, session.getBlockSize());
+  }
+
+  private String nextResponseText(int id) throws InterruptedException {
+    Object[] response = responses.poll(10, TimeUnit.SECONDS);
+    assertNotNull("timed out", response);
+    assertEquals(id, response[0]);
+    return ((CoapResponse) response[1]).getResponseText();
+  }
+}
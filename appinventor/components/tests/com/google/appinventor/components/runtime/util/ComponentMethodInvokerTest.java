@@ -0,0 +1,104 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.components.runtime.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import gnu.lists.FString;
+import gnu.lists.LList;
+import gnu.math.DFloNum;
+import gnu.math.IntNum;
+import java.io.IOException;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ComponentMethodInvoker}.
+ */
+public class ComponentMethodInvokerTest {
+
+  public static class Target {
+    int width;
+    String text;
+
+    public void Width(int width) {
+      this.width = width;
+    }
+
+    public int Width() {
+      return width;
+    }
+
+    public String Concat(String a, double b, boolean c) {
+      return a + b + c;
+    }
+
+    public void Text(String text) {
+      this.text = text;
+    }
+
+    public void Overloaded(int value) {
+    }
+
+    public void Overloaded(String value) {
+    }
+
+    public void Throws(String message) {
+      throw new IllegalStateException(message);
+    }
+
+    public void Checked() throws IOException {
+    }
+  }
+
+  @Test
+  public void testPropertySetterAndGetter() {
+    Target target = new Target();
+    assertNull(ComponentMethodInvoker.invoke(target, "Width", LList.list1(IntNum.make(42))));
+    assertEquals(42, target.width);
+    assertEquals(42, ComponentMethodInvoker.invoke(target, "Width", LList.Empty));
+
+    // Kawa numbers of any kind are converted to the parameter type
+    ComponentMethodInvoker.invoke(target, "Width", LList.list1(new DFloNum(7.9)));
+    assertEquals(7, target.width);
+  }
+
+  @Test
+  public void testConversions() {
+    Target target = new Target();
+    assertEquals("a1.5true", ComponentMethodInvoker.invoke(target, "Concat",
+        LList.list3(new FString("a"), new DFloNum(1.5), Boolean.TRUE)));
+    ComponentMethodInvoker.invoke(target, "Text", LList.list1(new FString("hello")));
+    assertEquals("hello", target.text);
+  }
+
+  @Test
+  public void testNotHandled() {
+    Target target = new Target();
+    assertSame(ComponentMethodInvoker.NOT_HANDLED,
+        ComponentMethodInvoker.invoke(target, "Overloaded", LList.list1(IntNum.make(1))));
+    assertSame(ComponentMethodInvoker.NOT_HANDLED,
+        ComponentMethodInvoker.invoke(target, "Checked", LList.Empty));
+    assertSame(ComponentMethodInvoker.NOT_HANDLED,
+        ComponentMethodInvoker.invoke(target, "Missing", LList.Empty));
+    assertSame(ComponentMethodInvoker.NOT_HANDLED,
+        ComponentMethodInvoker.invoke(target, "Width", LList.list1("not a number")));
+    assertSame(ComponentMethodInvoker.NOT_HANDLED,
+        ComponentMethodInvoker.invoke(null, "Width", LList.Empty));
+  }
+
+  @Test
+  public void testExceptionsPropagate() {
+    try {
+      ComponentMethodInvoker.invoke(new Target(), "Throws", LList.list1("boom"));
+      fail();
+    } catch (IllegalStateException e) {
+      assertEquals("boom", e.getMessage());
+    }
+  }
+}
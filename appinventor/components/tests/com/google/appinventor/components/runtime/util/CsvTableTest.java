@@ -0,0 +1,88 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.components.runtime.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * Tests for {@link CsvTable}.
+ */
+public class CsvTableTest {
+
+  @Test
+  public void testMatchesCsvUtil() throws Exception {
+    String csv = "time,value,label\n"
+        + "0,1.50,a\n"
+        + "1,-0.05,\"b, c\"\n"
+        + "2,,d,extra\n"
+        + "3,007\n"
+        + "4,-0,e\n";
+    CsvTable table = CsvTable.read(new StringReader(csv), null);
+    YailList rows = CsvUtil.fromCsvTable(csv);
+    assertEquals(rows.size(), table.getRowCount());
+    assertEquals(rows.toString(), table.getRows().toString());
+    assertEquals(ChartDataSourceUtil.getTranspose(rows).toString(),
+        table.getColumns().toString());
+    assertEquals(4, table.getColumnCount());
+    assertEquals(1, table.getColumnIndex("value"));
+    assertEquals(-1, table.getColumnIndex("missing"));
+    assertEquals("(value 1.50 -0.05  007 -0)", table.getColumn(1).toString());
+  }
+
+  @Test
+  public void testNumbers() {
+    String[] numbers = {"0", "12", "-3", "0.0", "1.50", "-0.05", "123456789012345678"};
+    for (String number : numbers) {
+      long mantissa = CsvTable.parseMantissa(number);
+      int point = number.indexOf('.');
+      int scale = (point < 0) ? 0 : number.length() - point - 1;
+      assertEquals(number, CsvTable.format(mantissa, scale));
+    }
+    String[] notNumbers = {"-", ".5", "5.", "1.2.3", "007", "-0", "-0.0", "1e5", "+1", "x",
+        "1234567890123456789"};
+    for (String text : notNumbers) {
+      assertEquals(text, Long.MIN_VALUE, CsvTable.parseMantissa(text));
+    }
+  }
+
+  @Test
+  public void testProgress() throws Exception {
+    StringBuilder csv = new StringBuilder("x,y\n");
+    for (int i = 0; i < 2 * CsvTable.PROGRESS_INTERVAL + 5; i++) {
+      csv.append(i).append(',').append(i * 2).append('\n');
+    }
+    final List<Integer> progress = new ArrayList<Integer>();
+    CsvTable table = CsvTable.read(new StringReader(csv.toString()),
+        new CsvTable.ProgressListener() {
+          @Override
+          public void onProgress(int rowsRead) {
+            progress.add(rowsRead);
+          }
+        });
+    assertEquals(2 * CsvTable.PROGRESS_INTERVAL + 6, table.getRowCount());
+    assertEquals("[10000, 20000, 20006]", progress.toString());
+    assertEquals("(20004 40008)", table.getRow(table.getRowCount() - 1).toString());
+  }
+
+  @Test
+  public void testProgressOfSmallTable() throws Exception {
+    final List<Integer> progress = new ArrayList<Integer>();
+    CsvTable.ProgressListener listener = new CsvTable.ProgressListener() {
+      @Override
+      public void onProgress(int rowsRead) {
+        progress.add(rowsRead);
+      }
+    };
+    CsvTable.read(new StringReader("x,y\n1,2\n3,4\n"), listener);
+    CsvTable.read(new StringReader(""), listener);
+    assertEquals("[3, 0]", progress.toString());
+  }
+}
@@ -0,0 +1,140 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.components.runtime.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.List;
+import org.json.JSONException;
+import org.junit.Test;
+
+/**
+ * Tests for {@link GeoJSONReader}.
+ */
+public class GeoJSONReaderTest {
+
+  @Test
+  public void testGeometries() throws Exception {
+    GeoJSONReader reader = GeoJSONReader.read("\uFEFF{\"type\": \"FeatureCollection\", "
+        + "\"features\": [\n"
+        + "{\"type\": \"Feature\", \"geometry\": {\"type\": \"Point\", "
+        + "\"coordinates\": [-71.0873, 42.3604]}},\n"
+        + "{\"geometry\": {\"coordinates\": [[1, 2, 30], [3.5, -4e1]], \"type\": \"LineString\"}, "
+        + "\"type\": \"Feature\", \"id\": 7},\n"
+        + "{\"type\": \"Feature\", \"geometry\": {\"type\": \"Polygon\", \"coordinates\": "
+        + "[[[0, 0], [10, 0], [10, 10], [0, 0]], [[1, 1], [2, 1], [2, 2], [1, 1]]]}},\n"
+        + "{\"type\": \"Feature\", \"geometry\": {\"type\": \"MultiPolygon\", \"coordinates\": "
+        + "[[[[0, 0], [1, 0], [1, 1]]], [[[5, 5], [6, 5], [6, 6]], [[5.1, 5.1], [5.2, 5.1], "
+        + "[5.2, 5.2]]]]}}]}");
+    assertEquals("FeatureCollection", reader.getType());
+    List<GeoJSONReader.Feature> features = reader.getFeatures();
+    assertEquals(4, features.size());
+
+    GeoJSONReader.Feature point = features.get(0);
+    assertEquals("Feature", point.getType());
+    assertEquals("Point", point.getGeometryType());
+    assertEquals(0, point.getDepth());
+    assertEquals(2, point.getPositionSize());
+    assertEquals(42.3604, point.getLatitude(0), 0);
+    assertEquals(-71.0873, point.getLongitude(0), 0);
+
+    // Altitudes are dropped
+    GeoJSONReader.Feature line = features.get(1);
+    assertEquals(1, line.getDepth());
+    assertEquals(2, line.getPointCount());
+    assertEquals(-40, line.getLatitude(1), 0);
+    assertArrayEquals(new int[] { 2 }, line.getEnds(1));
+    assertEquals(Arrays.asList("id"), line.getOtherFields());
+
+    GeoJSONReader.Feature polygon = features.get(2);
+    assertEquals(2, polygon.getDepth());
+    assertArrayEquals(new int[] { 4, 8 }, polygon.getEnds(1));
+    assertArrayEquals(new int[] { 2 }, polygon.getEnds(2));
+
+    GeoJSONReader.Feature multipolygon = features.get(3);
+    assertEquals(3, multipolygon.getDepth());
+    assertEquals(9, multipolygon.getPointCount());
+    assertArrayEquals(new int[] { 3, 6, 9 }, multipolygon.getEnds(1));
+    assertArrayEquals(new int[] { 1, 3 }, multipolygon.getEnds(2));
+    assertArrayEquals(new int[] { 2 }, multipolygon.getEnds(3));
+    assertEquals(5.2, multipolygon.getLongitude(8), 0);
+  }
+
+  @Test
+  public void testDescriptions() throws Exception {
+    GeoJSONReader reader = GeoJSONReader.read("{\"features\": [{\"type\": \"Feature\", "
+        + "\"properties\": {\"title\": \"A \\\"b\\\" \\u00e9\", \"n\": 5, \"big\": 12345678901, "
+        + "\"x\": 1.5, \"none\": null, \"tags\": [true, null, {\"k\": false}]}, "
+        + "\"geometry\": {\"type\": \"Point\", \"coordinates\": [1, 2]}}], "
+        + "\"type\": \"FeatureCollection\"}");
+    GeoJSONReader.Feature feature = reader.getFeatures().get(0);
+    YailList properties = feature.getProperties();
+    assertEquals("A \"b\" \u00e9", ((YailList) properties.get(1)).get(2));
+    assertEquals(5, ((YailList) properties.get(2)).get(2));
+    assertEquals(12345678901L, ((YailList) properties.get(3)).get(2));
+    assertEquals(1.5, ((YailList) properties.get(4)).get(2));
+    // Null values are left out
+    assertEquals(5, properties.size());
+    assertEquals("(tags (true ((k false))))", properties.get(5).toString());
+
+    YailList description = feature.getDescription();
+    assertEquals(3, description.size());
+    assertEquals("(type Feature)", description.get(1).toString());
+    assertEquals("(geometry ((type Point) (coordinates (1 2))))", description.get(3).toString());
+
+    GeoJSONReader.Feature bare = GeoJSONReader.read("{\"features\": [{\"type\": \"Feature\", "
+        + "\"properties\": null, \"geometry\": null}]}").getFeatures().get(0);
+    assertNull(bare.getProperties());
+    assertNull(bare.getGeometryType());
+    assertEquals(-1, bare.getDepth());
+  }
+
+  @Test
+  public void testMalformedDocuments() throws Exception {
+    // Coordinates that are not all numbers, or not all at the same depth, are not read
+    List<GeoJSONReader.Feature> features = GeoJSONReader.read("{\"features\": ["
+        + "{\"geometry\": {\"type\": \"Point\", \"coordinates\": [\"1\", 2]}},"
+        + "{\"geometry\": {\"type\": \"LineString\", \"coordinates\": [[1, 2], 3]}},"
+        + "{\"geometry\": {\"type\": \"LineString\", \"coordinates\": [[1], [2, 3]]}},"
+        + "{\"geometry\": {\"type\": \"Polygon\", \"coordinates\": [[[1, 2]], [[[3, 4]]]]}},"
+        + "{\"geometry\": {\"type\": \"Point\", \"coordinates\": []}, \"properties\": [1]}"
+        + "]}").getFeatures();
+    assertEquals(5, features.size());
+    for (GeoJSONReader.Feature feature : features) {
+      assertEquals(-1, feature.getDepth());
+    }
+    assertTrue(features.get(4).hasInvalidProperties());
+    assertEquals("", GeoJSONReader.read("{}").getType());
+
+    assertMalformed("");
+    assertMalformed("[]");
+    assertMalformed("{\"features\": [1]}");
+    assertMalformed("{\"features\": [{\"type\": \"Feature\"}");
+    assertMalformed("{\"type\": \"FeatureCollection\", \"features\": [{\"a\": \"b}]}");
+    assertMalformed("{\"type\" \"FeatureCollection\"}");
+    assertMalformed("{\"features\": []} x");
+    try {
+      GeoJSONReader.read("{\"type\": \"FeatureCollection\"}").getFeatures();
+      fail();
+    } catch (JSONException e) {
+      // expected
+    }
+  }
+
+  private static void assertMalformed(String content) {
+    try {
+      GeoJSONReader.read(content);
+      fail(content);
+    } catch (JSONException e) {
+      // expected
+    }
+  }
+}
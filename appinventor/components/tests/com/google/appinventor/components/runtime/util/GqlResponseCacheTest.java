@@ -0,0 +1,63 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.components.runtime.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link GqlResponseCache}.
+ */
+public class GqlResponseCacheTest {
+
+  @Test
+  public void testNormalize() {
+    assertEquals("query Q($id:ID!){user(id:$id){name friends{...F}}}",
+        GqlResponseCache.normalize("query Q($id: ID!) {\n"
+            + "  user(id: $id) {  # the user\n"
+            + "    name,\n"
+            + "    friends { ... F }\n"
+            + "  }\n"
+            + "}\n"));
+    // Whitespace, commas and # inside strings are kept
+    assertEquals("{search(text:\"a,  b # c\"block:\"\"\"x\n  y\"\"\"){id}}",
+        GqlResponseCache.normalize("{ search(text: \"a,  b # c\", block: \"\"\"x\n  y\"\"\") { id } }"));
+    assertEquals(GqlResponseCache.normalize("{a b}"), GqlResponseCache.normalize("{ a, b }"));
+  }
+
+  @Test
+  public void testIsMutation() {
+    assertTrue(GqlResponseCache.isMutation(GqlResponseCache.normalize("  mutation { like }")));
+    assertTrue(GqlResponseCache.isMutation(GqlResponseCache.normalize("mutation Like($id: ID) { like }")));
+    assertFalse(GqlResponseCache.isMutation(GqlResponseCache.normalize("{ mutation }")));
+    assertFalse(GqlResponseCache.isMutation(GqlResponseCache.normalize("query mutations { a }")));
+  }
+
+  @Test
+  public void testTimeToLive() {
+    GqlResponseCache cache = new GqlResponseCache();
+    cache.put("{a}", "{\"a\":1}", 0);
+    assertNull("disabled cache stores nothing", cache.get("{a}", 0));
+
+    cache.setTimeToLive(1000);
+    cache.put("{a}", "{\"a\":1}", 0);
+    assertEquals("{\"a\":1}", cache.get("{a}", 999));
+    assertNull(cache.get("{a}", 1000));
+
+    for (int i = 0; i <= GqlResponseCache.MAX_ENTRIES; i++) {
+      cache.put("{a" + i + "}", "{}", 0);
+    }
+    assertNull("least recently used entry is dropped", cache.get("{a0}", 1));
+    assertEquals("{}", cache.get("{a1}", 1));
+
+    cache.setTimeToLive(0);
+    assertNull(cache.get("{a1}", 1));
+  }
+}
@@ -0,0 +1,153 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.components.runtime.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for {@link HttpDiskCache}.
+ */
+public class HttpDiskCacheTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private HttpServer server;
+  private final AtomicInteger downloads = new AtomicInteger();
+  private volatile String content = "first";
+  private File directory;
+
+  @Before
+  public void setUp() throws IOException {
+    directory = new File(folder.getRoot(), "cache");
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String etag = "\"" + content + "\"";
+        if (path.equals("/redirect")) {
+          exchange.getResponseHeaders().set("Location", "/etag");
+          exchange.sendResponseHeaders(302, -1);
+        } else if (path.equals("/missing")) {
+          exchange.sendResponseHeaders(404, -1);
+        } else if (path.equals("/etag")
+            && etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+          exchange.sendResponseHeaders(304, -1);
+        } else {
+          if (path.equals("/etag")) {
+            exchange.getResponseHeaders().set("ETag", etag);
+          }
+          byte[] body = content.getBytes("UTF-8");
+          downloads.incrementAndGet();
+          exchange.sendResponseHeaders(200, body.length);
+          OutputStream out = exchange.getResponseBody();
+          out.write(body);
+        }
+        exchange.close();
+      }
+    });
+    server.start();
+  }
+
+  @After
+  public void tearDown() {
+    server.stop(0);
+  }
+
+  @Test
+  public void testNotModifiedIsReadFromDisk() throws IOException {
+    HttpDiskCache cache = new HttpDiskCache(directory, 1024);
+    HttpDiskCache.Response response = cache.get(url("/etag"));
+    assertFalse(response.isNotModified());
+    assertEquals("ETag \"first\"", response.getValidator());
+
+    response = cache.get(url("/etag"));
+    assertTrue(response.isNotModified());
+    assertEquals("ETag \"first\"", response.getValidator());
+    assertArrayEquals("first".getBytes("UTF-8"), response.getContent());
+    assertEquals(1, downloads.get());
+
+    content = "second";
+    response = cache.get(url("/etag"));
+    assertFalse(response.isNotModified());
+    assertEquals("ETag \"second\"", response.getValidator());
+    assertEquals(2, downloads.get());
+
+    // Redirects lead to the same copy
+    assertTrue(cache.get(url("/redirect")).isNotModified());
+  }
+
+  @Test
+  public void testNotModifiedCopyDeleted() throws IOException {
+    HttpDiskCache cache = new HttpDiskCache(directory, 1024);
+    cache.get(url("/etag"));
+    HttpDiskCache.Response response = cache.get(url("/etag"));
+    assertTrue(response.isNotModified());
+    // As if another thread trimmed the cache before the content was read
+    cache.clear();
+    assertArrayEquals("first".getBytes("UTF-8"), response.getContent());
+    assertEquals(2, downloads.get());
+  }
+
+  @Test
+  public void testContentWithoutValidator() throws IOException {
+    HttpDiskCache cache = new HttpDiskCache(directory, 1024);
+    HttpDiskCache.Response first = cache.get(url("/plain"));
+    HttpDiskCache.Response second = cache.get(url("/plain"));
+    assertFalse(second.isNotModified());
+    assertEquals(2, downloads.get());
+    assertEquals(first.getValidator(), second.getValidator());
+    assertEquals(HttpDiskCache.checksum("first".getBytes("UTF-8")), second.getValidator());
+    content = "other";
+    assertFalse(first.getValidator().equals(cache.get(url("/plain")).getValidator()));
+    try {
+      cache.get(url("/missing"));
+      fail("expected an IOException");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testSizeLimit() throws IOException {
+    HttpDiskCache cache = new HttpDiskCache(directory, 8);
+    cache.get(url("/etag"));
+    for (File file : directory.listFiles()) {
+      file.setLastModified(file.lastModified() - 60000);
+    }
+    content = "second";
+    cache.get(url("/etag?other"));
+    // Only the most recently used copy fits
+    assertEquals(2, directory.listFiles().length);
+    content = "first";
+    assertFalse(cache.get(url("/etag")).isNotModified());
+    cache.clear();
+    assertEquals(0, directory.listFiles().length);
+  }
+
+  private String url(String path) {
+    return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+  }
+}
@@ -0,0 +1,130 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.components.runtime.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Properties;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the connection handling of {@link NanoHTTPD}.
+ */
+public class NanoHTTPDTest {
+
+  private NanoHTTPD server;
+  private int port;
+
+  @Before
+  public void setUp() throws IOException {
+    ServerSocket probe = new ServerSocket(0);
+    port = probe.getLocalPort();
+    probe.close();
+    server = new NanoHTTPD(port, new File(".")) {
+      @Override
+      public Response serve(String uri, String method, Properties header, Properties parms,
+          Properties files, Socket mySocket) {
+        return new Response(HTTP_OK, MIME_PLAINTEXT,
+            method + " " + uri + " " + parms.getProperty("x"));
+      }
+    };
+  }
+
+  @After
+  public void tearDown() {
+    server.stop();
+  }
+
+  @Test
+  public void testPipelinedRequests() throws IOException {
+    Socket socket = new Socket("127.0.0.1", port);
+    try {
+      OutputStream out = socket.getOutputStream();
+      // Both requests are sent before either response is read
+      out.write(("GET /a?x=1 HTTP/1.1\r\nHost: test\r\n\r\n"
+          + "POST /b HTTP/1.1\r\nContent-Type: application/x-www-form-urlencoded\r\n"
+          + "Content-Length: 3\r\n\r\nx=2"
+          + "GET /c?x=3 HTTP/1.1\r\nConnection: close\r\n\r\n").getBytes("UTF-8"));
+      out.flush();
+      InputStream in = socket.getInputStream();
+      String first = readResponse(in);
+      assertTrue(first, first.startsWith("HTTP/1.1 200 OK"));
+      assertTrue(first, first.contains("Connection: keep-alive"));
+      assertTrue(first, first.endsWith("GET /a 1"));
+      assertTrue(readResponse(in).endsWith("POST /b 2"));
+      String last = readResponse(in);
+      assertTrue(last, last.contains("Connection: close"));
+      assertTrue(last, last.endsWith("GET /c 3"));
+      assertEquals("the server closes the connection", -1, in.read());
+    } finally {
+      socket.close();
+    }
+  }
+
+  @Test
+  public void testHttp10ClosesConnection() throws IOException {
+    Socket socket = new Socket("127.0.0.1", port);
+    try {
+      socket.getOutputStream().write("GET /a?x=1 HTTP/1.0\r\n\r\n".getBytes("UTF-8"));
+      InputStream in = socket.getInputStream();
+      String response = readResponse(in);
+      assertTrue(response, response.startsWith("HTTP/1.0 200 OK"));
+      assertEquals(-1, in.read());
+    } finally {
+      socket.close();
+    }
+  }
+
+  @Test
+  public void testBinaryBody() throws IOException {
+    Socket socket = new Socket("127.0.0.1", port);
+    try {
+      OutputStream out = socket.getOutputStream();
+      out.write(("POST /bin HTTP/1.1\r\nContent-Type: application/octet-stream\r\n"
+          + "Content-Length: 4\r\n\r\n").getBytes("UTF-8"));
+      out.write(new byte[] { 0, '&', '%', 0 });
+      out.write("GET /a?x=1 HTTP/1.1\r\n\r\n".getBytes("UTF-8"));
+      InputStream in = socket.getInputStream();
+      // Binary bodies are not accepted unless the subclass overrides serve for them
+      assertTrue(readResponse(in).startsWith("HTTP/1.1 400 Bad Request"));
+      assertTrue(readResponse(in).endsWith("GET /a 1"));
+    } finally {
+      socket.close();
+    }
+  }
+
+  /**
+   * Reads one response, using its Content-Length to find its end.
+   */
+  private static String readResponse(InputStream in) throws IOException {
+    ByteArrayOutputStream head = new ByteArrayOutputStream();
+    while (!head.toString("UTF-8").endsWith("\r\n\r\n")) {
+      int c = in.read();
+      if (c < 0) {
+        throw new IOException("Connection closed in the header: " + head.toString("UTF-8"));
+      }
+      head.write(c);
+    }
+    String header = head.toString("UTF-8");
+    int start = header.indexOf("Content-Length: ") + "Content-Length: ".length();
+    int length = Integer.parseInt(header.substring(start, header.indexOf("\r\n", start)));
+    byte[] body = new byte[length];
+    for (int read = 0; read < length; ) {
+      read += in.read(body, read, length - read);
+    }
+    return header + new String(body, "UTF-8");
+  }
+}
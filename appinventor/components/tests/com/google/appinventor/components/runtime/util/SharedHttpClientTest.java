@@ -0,0 +1,124 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.components.runtime.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link SharedHttpClient}.
+ */
+public class SharedHttpClientTest {
+
+  private HttpServer server;
+  private final Set<Integer> clientPorts = new HashSet<Integer>();
+
+  @Before
+  public void setUp() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        synchronized (clientPorts) {
+          clientPorts.add(exchange.getRemoteAddress().getPort());
+        }
+        boolean missing = exchange.getRequestURI().getPath().equals("/missing");
+        byte[] body = (missing ? "not found" : "hello").getBytes("UTF-8");
+        exchange.sendResponseHeaders(missing ? 404 : 200, body.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(body);
+        out.close();
+      }
+    });
+    server.start();
+    SharedHttpClient.clearStatistics();
+  }
+
+  @After
+  public void tearDown() {
+    server.stop(0);
+    SharedHttpClient.setMaxConnectionsPerHost(SharedHttpClient.DEFAULT_MAX_CONNECTIONS_PER_HOST);
+  }
+
+  @Test
+  public void testConnectionIsReused() throws Exception {
+    for (int i = 0; i < 3; i++) {
+      HttpURLConnection connection = SharedHttpClient.open(url("/"));
+      try {
+        assertEquals(200, SharedHttpClient.getResponseCode(connection));
+        // The body is left unread; release drains it
+      } finally {
+        SharedHttpClient.release(connection);
+      }
+    }
+    assertEquals(1, clientPorts.size());
+    String summary = SharedHttpClient.getSummary();
+    assertTrue(summary, summary.startsWith("http://127.0.0.1:" + port() + " 3 0 "));
+  }
+
+  @Test
+  public void testErrorBody() throws Exception {
+    HttpURLConnection connection = SharedHttpClient.open(url("/missing"));
+    try {
+      assertEquals("not found", IOUtils.readStream(SharedHttpClient.getResponseStream(connection)));
+      assertEquals(404, connection.getResponseCode());
+    } finally {
+      SharedHttpClient.release(connection);
+      // Releasing twice does nothing
+      SharedHttpClient.release(connection);
+    }
+    assertTrue(SharedHttpClient.getSummary().contains(" 1 0 "));
+  }
+
+  @Test
+  public void testConnectionsPerHostAreLimited() throws Exception {
+    SharedHttpClient.setMaxConnectionsPerHost(1);
+    HttpURLConnection first = SharedHttpClient.open(url("/"));
+    final HttpURLConnection[] second = new HttpURLConnection[1];
+    Thread thread = new Thread() {
+      @Override
+      public void run() {
+        try {
+          second[0] = SharedHttpClient.open(url("/"));
+        } catch (IOException e) {
+          // second[0] stays null
+        }
+      }
+    };
+    thread.start();
+    thread.join(200);
+    assertTrue(thread.isAlive());
+    // Released without a response, which counts as a failed request
+    SharedHttpClient.release(first);
+    thread.join(5000);
+    assertFalse(thread.isAlive());
+    SharedHttpClient.release(second[0]);
+    assertTrue(SharedHttpClient.getSummary().contains(" 2 2 "));
+  }
+
+  private int port() {
+    return server.getAddress().getPort();
+  }
+
+  private URL url(String path) throws IOException {
+    return new URL("http://127.0.0.1:" + port() + path);
+  }
+}
@@ -0,0 +1,62 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.components.runtime.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link SizedLruCache}.
+ */
+public class SizedLruCacheTest {
+
+  private static SizedLruCache<String, String> newCache(long maxSize) {
+    return new SizedLruCache<String, String>(maxSize) {
+      @Override
+      protected long sizeOf(String value) {
+        return value.length();
+      }
+    };
+  }
+
+  @Test
+  public void testEvictsLeastRecentlyUsed() {
+    SizedLruCache<String, String> cache = newCache(10);
+    cache.put("a", "aaaa");
+    cache.put("b", "bbbb");
+    assertEquals("aaaa", cache.get("a"));  // b is now the least recently used
+    cache.put("c", "cccc");
+    assertNull(cache.get("b"));
+    assertEquals("aaaa", cache.get("a"));
+    assertEquals("cccc", cache.get("c"));
+    assertEquals(8, cache.size());
+  }
+
+  @Test
+  public void testReplaceAndRemove() {
+    SizedLruCache<String, String> cache = newCache(10);
+    cache.put("a", "aaaa");
+    cache.put("a", "aa");
+    assertEquals(2, cache.size());
+    assertEquals("aa", cache.remove("a"));
+    assertNull(cache.remove("a"));
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testValueLargerThanCache() {
+    SizedLruCache<String, String> cache = newCache(10);
+    cache.put("a", "aaaa");
+    cache.put("b", "bbbbbbbbbbb");
+    assertNull("values larger than the cache are not stored", cache.get("b"));
+    assertEquals("aaaa", cache.get("a"));
+    cache.clear();
+    assertNull(cache.get("a"));
+    assertEquals(0, cache.size());
+  }
+}
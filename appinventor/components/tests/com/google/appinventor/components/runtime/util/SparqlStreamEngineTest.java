@@ -0,0 +1,163 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.components.runtime.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.gson.JsonObject;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.query.ResultSetRewindable;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * Tests for {@link SparqlStreamEngine}.
+ */
+public class SparqlStreamEngineTest {
+
+  private static final String STREAM = "http://example.com/stream";
+  private static final String COUNT_QUERY = "SELECT (COUNT(?s) AS ?n) "
+      + "WHERE { ?s <http://example.com/temp> ?t FILTER (?t > 20) }";
+
+  private final SparqlStreamEngine engine = new SparqlStreamEngine(false);
+  private final List<String> results = new ArrayList<String>();
+
+  private final SparqlStreamEngine.ResultListener listener =
+      new SparqlStreamEngine.ResultListener() {
+        @Override
+        public void onResults(String queryName, long windowEnd, ResultSetRewindable rs) {
+          String n = rs.hasNext() ? rs.next().getLiteral("n").getLexicalForm() : "";
+          results.add(queryName + "@" + windowEnd + "=" + n);
+        }
+
+        @Override
+        public void onError(String queryName, long windowEnd, RuntimeException error) {
+          results.add(queryName + "@" + windowEnd + "!" + error.getMessage());
+        }
+      };
+
+  @Test
+  public void testSlidingWindow() {
+    engine.register("hot", COUNT_QUERY, STREAM, "10s", "5s", 0, listener);
+    addTemperature("a", 25, 1000);
+    addTemperature("b", 15, 2000);
+    addTemperature("c", 30, 6000);
+    engine.process(9000);
+    // The window ending at 5s holds a and b, and the one at 10s also holds c
+    assertEquals("[hot@5000=1]", results.toString());
+    engine.process(10000);
+    assertEquals("[hot@5000=1, hot@10000=2]", results.toString());
+    // Adding a triple later than a window boundary closes that window first
+    addTemperature("d", 40, 16000);
+    engine.process(16000);
+    assertEquals("hot@15000=1", results.get(2));
+    // Windows without triples are only evaluated once
+    engine.process(60000);
+    assertEquals("[hot@5000=1, hot@10000=2, hot@15000=1, hot@20000=1, hot@25000=1, "
+        + "hot@30000=0]", results.toString());
+    assertTrue(engine.unregister("hot"));
+    assertFalse(engine.isActive(STREAM));
+  }
+
+  @Test
+  public void testFailingQuery() {
+    engine.register("a", COUNT_QUERY, STREAM, "10s", "5s", 0, listener);
+    engine.register("b", COUNT_QUERY, STREAM, "10s", "5s", 0,
+        new SparqlStreamEngine.ResultListener() {
+          private boolean failed = false;
+
+          @Override
+          public void onResults(String queryName, long windowEnd, ResultSetRewindable rs) {
+            if (!failed) {
+              failed = true;
+              throw new IllegalStateException("listener failed");
+            }
+            listener.onResults(queryName, windowEnd, rs);
+          }
+
+          @Override
+          public void onError(String queryName, long windowEnd, RuntimeException error) {
+            listener.onError(queryName, windowEnd, error);
+          }
+        });
+    addTemperature("a", 25, 1000);
+    engine.process(5000);
+    addTemperature("b", 30, 6000);
+    engine.process(10000);
+    // The failure is reported, and neither query stops being evaluated
+    assertEquals("[a@5000=1, b@5000!listener failed, a@10000=2, b@10000=2]",
+        results.toString());
+  }
+
+  @Test
+  public void testCSparqlQuery() {
+    engine.register("q", "REGISTER QUERY q AS " + COUNT_QUERY.replace("WHERE",
+        "FROM STREAM <" + STREAM + "> [RANGE 1m STEP 30s] WHERE"), "", "", "", 0, listener);
+    assertTrue(engine.isActive(STREAM));
+    addTemperature("a", 25, 1000);
+    engine.process(30000);
+    assertEquals("[q@30000=1]", results.toString());
+
+    assertEquals(500, SparqlStreamEngine.parseDuration("500ms"));
+    assertEquals(7200000, SparqlStreamEngine.parseDuration("2h"));
+    try {
+      SparqlStreamEngine.parseDuration("TRIPLES 10");
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    try {
+      engine.register("ask", "ASK { ?s ?p ?o }", STREAM, "1s", "1s", 0, listener);
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testSensorReading() {
+    String stream = SparqlStreamEngine.SENSOR_NS + "BatteryProbe";
+    engine.register("battery", "PREFIX s: <" + SparqlStreamEngine.SENSOR_NS + "> "
+        + "SELECT (SUM(?level) AS ?n) WHERE { ?r a s:BatteryProbe ; s:level ?level }",
+        stream, "1s", "1s", 0, listener);
+    JsonObject reading = new JsonObject();
+    reading.addProperty("level", 80);
+    reading.addProperty("plugged", true);
+    reading.addProperty("technology", "Li-ion");
+    SensorStreams.setListener(engine);
+    try {
+      // The probes record timestamps in seconds
+      SensorStreams.publish("edu.mit.media.funf.probe.builtin.BatteryProbe",
+          new BigDecimal("0.5"), reading);
+      reading.addProperty("level", 70);
+      SensorStreams.publish("edu.mit.media.funf.probe.builtin.BatteryProbe",
+          new BigDecimal("0.6"), reading);
+      SensorStreams.publish("edu.mit.media.funf.probe.builtin.WifiProbe",
+          new BigDecimal("0.7"), reading);
+    } finally {
+      SensorStreams.setListener(null);
+    }
+    engine.process(1000);
+    assertEquals("[battery@1000=150]", results.toString());
+
+    assertTrue(SparqlStreamEngine.toNode("http://example.com/x").isURI());
+    assertEquals("Li-ion", SparqlStreamEngine.toNode("Li-ion").getLiteralLexicalForm());
+    Node number = SparqlStreamEngine.toNode(2.5);
+    assertEquals("http://www.w3.org/2001/XMLSchema#double", number.getLiteralDatatypeURI());
+  }
+
+  private void addTemperature(String name, int temperature, long timestamp) {
+    engine.add(STREAM, new Triple(Node.createURI("http://example.com/" + name),
+        Node.createURI("http://example.com/temp"), SparqlStreamEngine.toNode(temperature)),
+        timestamp);
+  }
+}
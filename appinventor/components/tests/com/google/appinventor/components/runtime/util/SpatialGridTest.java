@@ -0,0 +1,91 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.components.runtime.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Test;
+
+/**
+ * Tests for {@link SpatialGrid}.
+ */
+public class SpatialGridTest {
+
+  @Test
+  public void testQuery() {
+    SpatialGrid<String> grid = new SpatialGrid<String>(10);
+    grid.update("a", 0, 0, 5, 5);
+    grid.update("b", 50, 50, 55, 55);
+    grid.update("c", -30, -30, -25, -25);
+    assertEquals(Collections.singletonList("a"), query(grid, 1, 1, 2, 2));
+    assertEquals(Collections.singletonList("c"), query(grid, -26, -26, -20, -20));
+    assertEquals(3, query(grid, -100, -100, 100, 100).size());
+
+    // Moving an item takes it out of its old cells
+    grid.update("a", 52, 52, 58, 58);
+    assertTrue(query(grid, 1, 1, 2, 2).isEmpty());
+    assertEquals(2, query(grid, 50, 50, 51, 51).size());
+
+    grid.remove("b");
+    assertFalse(grid.contains("b"));
+    assertEquals(Collections.singletonList("a"), query(grid, 50, 50, 59, 59));
+    assertEquals(2, grid.size());
+  }
+
+  @Test
+  public void testOversizedItems() {
+    SpatialGrid<String> grid = new SpatialGrid<String>(1);
+    grid.update("big", 0, 0, 1000, 1000);
+    grid.update("small", 2000, 2000, 2001, 2001);
+    assertEquals(Collections.singletonList("big"), query(grid, 500, 500, 501, 501));
+    assertTrue(query(grid, 1500, 1500, 1501, 1501).isEmpty());
+    grid.update("big", 0, 0, 1, 1);
+    assertEquals(Collections.singletonList("big"), query(grid, 0, 0, 0, 0));
+    assertTrue(query(grid, 500, 500, 501, 501).isEmpty());
+  }
+
+  @Test
+  public void testMatchesBruteForce() {
+    Random random = new Random(42);
+    SpatialGrid<Integer> grid = new SpatialGrid<Integer>(16);
+    double[][] boxes = new double[200][];
+    for (int step = 0; step < 2000; step++) {
+      int item = random.nextInt(boxes.length);
+      double x = random.nextDouble() * 400 - 50;
+      double y = random.nextDouble() * 400 - 50;
+      double size = random.nextDouble() * (random.nextInt(10) == 0 ? 300 : 30);
+      boxes[item] = new double[] { x, y, x + size, y + size };
+      grid.update(item, x, y, x + size, y + size);
+
+      double qx = random.nextDouble() * 400 - 50;
+      double qy = random.nextDouble() * 400 - 50;
+      double qsize = random.nextDouble() * 60;
+      Set<Integer> found = new HashSet<Integer>(query(grid, qx, qy, qx + qsize, qy + qsize));
+      for (int i = 0; i < boxes.length; i++) {
+        double[] box = boxes[i];
+        if (box != null && box[0] <= qx + qsize && qx <= box[2] && box[1] <= qy + qsize
+            && qy <= box[3]) {
+          assertTrue("missing " + i, found.contains(i));
+        }
+      }
+    }
+  }
+
+  private static <T> List<T> query(SpatialGrid<T> grid, double left, double top, double right,
+      double bottom) {
+    List<T> result = new ArrayList<T>();
+    grid.query(left, top, right, bottom, result);
+    return result;
+  }
+}
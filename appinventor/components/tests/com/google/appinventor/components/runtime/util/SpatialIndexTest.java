@@ -0,0 +1,107 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.components.runtime.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Test;
+import org.locationtech.jts.geom.Envelope;
+
+/**
+ * Tests for {@link SpatialIndex}.
+ */
+public class SpatialIndexTest {
+
+  @Test
+  public void testQuery() {
+    SpatialIndex<String> index = new SpatialIndex<String>();
+    index.put("a", new Envelope(0, 5, 0, 5));
+    index.put("b", new Envelope(50, 55, 50, 55));
+    index.put("c", new Envelope(-30, -25, -30, -25));
+    assertEquals(Collections.singletonList("a"), index.query(new Envelope(1, 2, 1, 2)));
+    assertEquals(3, index.query(new Envelope(-100, 100, -100, 100)).size());
+
+    // Moving an item takes it out of its old place
+    index.put("a", new Envelope(52, 58, 52, 58));
+    assertTrue(index.query(new Envelope(1, 2, 1, 2)).isEmpty());
+    assertEquals(2, index.query(new Envelope(50, 53, 50, 53)).size());
+
+    assertTrue(index.remove("b"));
+    assertFalse(index.remove("b"));
+    assertFalse(index.contains("b"));
+    assertNull(index.getEnvelope("b"));
+    assertEquals(Collections.singletonList("a"), index.query(new Envelope(50, 59, 50, 59)));
+    assertEquals(2, index.size());
+  }
+
+  @Test
+  public void testChangesAfterRebuild() {
+    SpatialIndex<Integer> index = new SpatialIndex<Integer>();
+    for (int i = 0; i < 1000; i++) {
+      index.put(i, new Envelope(i, i + 0.5, 0, 1));
+    }
+    // Builds the tree
+    assertEquals(Collections.singletonList(10), index.query(new Envelope(10, 10.2, 0, 1)));
+    // Changes that are too few to rebuild the tree
+    index.put(10, new Envelope(2000, 2001, 0, 1));
+    index.remove(11);
+    index.put(5000, new Envelope(10, 11.2, 0, 1));
+    assertEquals(Collections.singletonList(5000), index.query(new Envelope(10, 11.2, 0, 1)));
+    assertEquals(Collections.singletonList(10), index.query(new Envelope(1999, 2000, 0, 1)));
+
+    for (int i = 0; i < 1000; i++) {
+      index.remove(i);
+    }
+    assertEquals(Collections.singletonList(5000), index.query(new Envelope(-1, 3000, -1, 2)));
+    index.clear();
+    assertEquals(0, index.size());
+    assertTrue(index.query(new Envelope(-1, 3000, -1, 2)).isEmpty());
+  }
+
+  @Test
+  public void testMatchesBruteForce() {
+    Random random = new Random(42);
+    SpatialIndex<Integer> index = new SpatialIndex<Integer>();
+    List<Envelope> envelopes = new ArrayList<Envelope>();
+    for (int i = 0; i < 500; i++) {
+      envelopes.add(randomEnvelope(random));
+      index.put(i, envelopes.get(i));
+    }
+    for (int round = 0; round < 50; round++) {
+      // Move some items between queries
+      for (int i = 0; i < 20; i++) {
+        int item = random.nextInt(envelopes.size());
+        envelopes.set(item, randomEnvelope(random));
+        index.put(item, envelopes.get(item));
+      }
+      Envelope region = randomEnvelope(random);
+      Set<Integer> expected = new HashSet<Integer>();
+      for (int i = 0; i < envelopes.size(); i++) {
+        if (envelopes.get(i).intersects(region)) {
+          expected.add(i);
+        }
+      }
+      List<Integer> found = index.query(region);
+      assertEquals(expected.size(), found.size());
+      assertEquals(expected, new HashSet<Integer>(found));
+    }
+  }
+
+  private static Envelope randomEnvelope(Random random) {
+    double x = random.nextDouble() * 360 - 180;
+    double y = random.nextDouble() * 180 - 90;
+    return new Envelope(x, x + random.nextDouble() * 20, y, y + random.nextDouble() * 10);
+  }
+}
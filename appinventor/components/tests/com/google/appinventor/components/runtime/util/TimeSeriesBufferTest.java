@@ -0,0 +1,102 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.components.runtime.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Tests for {@link TimeSeriesBuffer}.
+ */
+public class TimeSeriesBufferTest {
+
+  @Test
+  public void testAddKeepsOrder() {
+    TimeSeriesBuffer series = new TimeSeriesBuffer();
+    assertEquals(0, series.add(2, 20));
+    assertEquals(1, series.add(4, 40));
+    assertEquals(1, series.add(3, 30));
+    assertEquals(0, series.add(1, 10));
+    // Equal x values go after the existing ones
+    assertEquals(2, series.add(2, 21));
+    float[] expectedX = {1, 2, 2, 3, 4};
+    float[] expectedY = {10, 20, 21, 30, 40};
+    assertEquals(expectedX.length, series.size());
+    for (int i = 0; i < expectedX.length; i++) {
+      assertEquals(expectedX[i], series.getX(i), 0);
+      assertEquals(expectedY[i], series.getY(i), 0);
+    }
+    assertEquals(1, series.lowerBound(2));
+    assertEquals(3, series.upperBound(2));
+    assertEquals(5, series.lowerBound(5));
+    assertEquals(2, series.indexOf(2, 21));
+    assertEquals(-1, series.indexOf(2, 22));
+  }
+
+  @Test
+  public void testMatchesList() {
+    // Random inserts and removes that wrap around the ring and grow it
+    Random random = new Random(42);
+    TimeSeriesBuffer series = new TimeSeriesBuffer();
+    List<Float> expected = new ArrayList<Float>();
+    for (int step = 0; step < 5000; step++) {
+      int operation = random.nextInt(4);
+      if (operation == 0 && !expected.isEmpty()) {
+        int index = random.nextInt(expected.size());
+        series.remove(index);
+        expected.remove(index);
+      } else if (operation == 1 && !expected.isEmpty()) {
+        series.remove(0);
+        expected.remove(0);
+      } else {
+        float x = random.nextInt(100);
+        int index = series.add(x, -x);
+        expected.add(index, x);
+      }
+      assertEquals(expected.size(), series.size());
+    }
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(expected.get(i), series.getX(i), 0);
+      assertEquals(-expected.get(i), series.getY(i), 0);
+    }
+  }
+
+  @Test
+  public void testDownsample() {
+    TimeSeriesBuffer series = new TimeSeriesBuffer();
+    for (int i = 0; i < 1000; i++) {
+      // Flat except for one spike, which must survive downsampling
+      series.add(i, i == 500 ? 100 : 0);
+    }
+    int[] kept = series.downsample(50);
+    assertEquals(50, kept.length);
+    assertEquals(0, kept[0]);
+    assertEquals(999, kept[kept.length - 1]);
+    boolean spike = false;
+    for (int i = 1; i < kept.length; i++) {
+      assertTrue(kept[i] > kept[i - 1]);
+      spike |= kept[i] == 500;
+    }
+    assertTrue(spike);
+
+    assertArrayEquals(new int[] {0, 1, 2}, small().downsample(3));
+    assertArrayEquals(new int[] {0, 1, 2}, small().downsample(2));
+  }
+
+  private static TimeSeriesBuffer small() {
+    TimeSeriesBuffer series = new TimeSeriesBuffer();
+    series.add(0, 0);
+    series.add(1, 1);
+    series.add(2, 0);
+    return series;
+  }
+}
@@ -0,0 +1,241 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.components.runtime.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.content.SharedPreferences;
+import gnu.lists.Pair;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.Test;
+
+/**
+ * Tests for {@link TinyDbCache}.
+ */
+public class TinyDbCacheTest {
+
+  private final FakePreferences preferences = new FakePreferences();
+  private final TinyDbCache cache = new TinyDbCache(preferences, 0);
+  private final List<String> changes = new ArrayList<String>();
+  private final TinyDbCache.ChangeListener listener = new TinyDbCache.ChangeListener() {
+    @Override
+    public void onValueChanged(String tag) {
+      changes.add(tag);
+    }
+  };
+
+  @Test
+  public void testWritesAreCoalesced() throws Exception {
+    preferences.values.put("c", "3");
+    for (int i = 0; i < 100; i++) {
+      cache.put("counter", i);
+    }
+    cache.put("list", Arrays.asList(1, 2));
+    cache.remove("c");
+    assertEquals(0, preferences.applies);
+    assertEquals(99, cache.get("counter", null));
+    assertEquals(Arrays.asList("counter", "list"), cache.getTags());
+
+    cache.flush();
+    assertEquals(1, preferences.applies);
+    assertEquals("99", preferences.values.get("counter"));
+    assertEquals("[1,2]", preferences.values.get("list"));
+    assertTrue(!preferences.values.containsKey("c"));
+    cache.flush();
+    assertEquals(1, preferences.applies);
+
+    cache.clear();
+    assertEquals("gone", cache.get("counter", "gone"));
+    assertEquals(0, cache.getTags().size());
+    cache.flush();
+    assertEquals(0, preferences.values.size());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testReadsAreCached() throws Exception {
+    preferences.values.put("list", "[1,[2,3]]");
+    List<Object> first = (List<Object>) cache.get("list", null);
+    // Nested lists stay YailLists, without their *list* header as an item
+    YailList nested = (YailList) first.get(1);
+    assertEquals("[1, (2 3)]", first.toString());
+    first.add(4);
+    ((Pair) nested.getCdr()).setCar(5);
+    // The stored value does not change when the returned one does
+    List<Object> second = (List<Object>) cache.get("list", null);
+    assertEquals("[1, (2 3)]", second.toString());
+    assertTrue(second.get(1) instanceof YailList);
+    assertEquals("missing", cache.get("other", "missing"));
+    cache.get("other", "missing");
+    assertEquals(2, preferences.reads);
+  }
+
+  @Test
+  public void testListeners() throws Exception {
+    cache.addChangeListener(listener);
+    cache.put("a", 1);
+    cache.remove("b");
+    cache.flush();
+    // Writing the values back does not report them again
+    assertEquals(Arrays.asList("a", "b"), changes);
+
+    // A change made directly to the preferences replaces the cached value
+    preferences.edit().putString("a", "2").apply();
+    assertEquals(Arrays.asList("a", "b", "a"), changes);
+    assertEquals(2, cache.get("a", null));
+
+    cache.removeChangeListener(listener);
+    cache.put("a", 3);
+    assertEquals(3, changes.size());
+  }
+
+  // Keeps the values in memory and calls the listeners when changes are applied
+  private static class FakePreferences implements SharedPreferences {
+    final Map<String, String> values = new HashMap<String, String>();
+    final List<OnSharedPreferenceChangeListener> listeners =
+        new ArrayList<OnSharedPreferenceChangeListener>();
+    int applies = 0;
+    int reads = 0;
+
+    @Override
+    public Map<String, ?> getAll() {
+      return new HashMap<String, String>(values);
+    }
+
+    @Override
+    public String getString(String key, String defValue) {
+      reads++;
+      return values.containsKey(key) ? values.get(key) : defValue;
+    }
+
+    @Override
+    public Set<String> getStringSet(String key, Set<String> defValues) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int getInt(String key, int defValue) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public long getLong(String key, long defValue) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public float getFloat(String key, float defValue) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean getBoolean(String key, boolean defValue) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean contains(String key) {
+      return values.containsKey(key);
+    }
+
+    @Override
+    public Editor edit() {
+      return new FakeEditor();
+    }
+
+    @Override
+    public void registerOnSharedPreferenceChangeListener(
+        OnSharedPreferenceChangeListener listener) {
+      listeners.add(listener);
+    }
+
+    @Override
+    public void unregisterOnSharedPreferenceChangeListener(
+        OnSharedPreferenceChangeListener listener) {
+      listeners.remove(listener);
+    }
+
+    private class FakeEditor implements Editor {
+      final Map<String, String> changes = new HashMap<String, String>();
+      boolean clear = false;
+
+      @Override
+      public Editor putString(String key, String value) {
+        changes.put(key, value);
+        return this;
+      }
+
+      @Override
+      public Editor putStringSet(String key, Set<String> values) {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public Editor putInt(String key, int value) {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public Editor putLong(String key, long value) {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public Editor putFloat(String key, float value) {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public Editor putBoolean(String key, boolean value) {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public Editor remove(String key) {
+        changes.put(key, null);
+        return this;
+      }
+
+      @Override
+      public Editor clear() {
+        clear = true;
+        return this;
+      }
+
+      @Override
+      public boolean commit() {
+        apply();
+        return true;
+      }
+
+      @Override
+      public void apply() {
+        applies++;
+        if (clear) {
+          values.clear();
+        }
+        for (Map.Entry<String, String> change : changes.entrySet()) {
+          if (change.getValue() == null) {
+            values.remove(change.getKey());
+          } else {
+            values.put(change.getKey(), change.getValue());
+          }
+        }
+        for (String key : changes.keySet()) {
+          for (OnSharedPreferenceChangeListener listener : listeners) {
+            listener.onSharedPreferenceChanged(FakePreferences.this, key);
+          }
+        }
+      }
+    }
+  }
+}
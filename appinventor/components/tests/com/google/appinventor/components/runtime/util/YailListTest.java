@@ -7,6 +7,8 @@
 package com.google.appinventor.components.runtime.util;
 
 import gnu.lists.FString;
+import gnu.lists.LList;
+import gnu.lists.Pair;
 import gnu.math.IntNum;
 
 import org.junit.Test;
@@ -235,4 +237,49 @@ public class YailListTest {
     assertEquals(Long.toString(Long.MAX_VALUE), strings[0]);
     assertEquals(Long.toString(Long.MAX_VALUE), strings[1]);
   }
+
+  @Test
+  public void testIndexedAccessAfterStructureChange() {
+    YailList list = YailList.makeList(new Object[] { "a", "b", "c", "d" });
+    assertEquals("c", list.getObject(2));
+    assertEquals("d", list.getObject(3));
+    assertEquals("a", list.getObject(0));
+
+    // Remove "b" the way runtime.scm does
+    Pair first = (Pair) list.getCdr();
+    first.setCdr(((Pair) first.getCdr()).getCdr());
+    list.structureChanged();
+    assertEquals(3, list.size());
+    assertEquals("c", list.getObject(1));
+    assertEquals("d", list.getObject(2));
+
+    list.setObject(2, "e");
+    assertEquals("(a c e)", list.toString());
+    try {
+      list.setObject(3, "f");
+      fail();
+    } catch (IndexOutOfBoundsException e) {
+      // this is the intended behavior
+    }
+  }
+
+  @Test
+  public void testAppendContents() {
+    YailList list = new YailList();
+    list.appendContents(LList.Empty);
+    assertEquals(0, list.size());
+    for (int i = 0; i < 100; i++) {
+      list.appendContents(LList.list1(i));
+    }
+    list.appendContents(LList.list2("x", "y"));
+    assertEquals(102, list.size());
+    assertEquals(50, list.getObject(50));
+    assertEquals("y", list.getObject(101));
+    assertEquals(102, list.toArray().length);
+
+    list.setCdr(LList.list1("z"));
+    assertEquals(1, list.size());
+    list.appendContents(LList.list1("w"));
+    assertEquals("(z w)", list.toString());
+  }
 }
@@ -0,0 +1,59 @@
+// -*- mode: java; c-basic-offset: 2; -*-
+// Copyright 2021 MIT, All rights reserved
+// Released under the Apache License, Version 2.0
+// http://www.apache.org/licenses/LICENSE-2.0
+
+package com.google.appinventor.components.runtime.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests for {@link YailTrace}.
+ */
+public class YailTraceTest {
+
+  @After
+  public void tearDown() {
+    YailTrace.setEnabled(false);
+    YailTrace.clear();
+  }
+
+  @Test
+  public void testDisabledRecordsNothing() {
+    long start = YailTrace.start();
+    assertEquals(0, start);
+    YailTrace.end("Button1$Click", start);
+    assertEquals(0, YailTrace.getRecordedCount());
+    assertEquals("", YailTrace.getSummary());
+  }
+
+  @Test
+  public void testSummaryCountsPerHandler() {
+    YailTrace.setEnabled(true);
+    for (int i = 0; i < 3; i++) {
+      YailTrace.end("Button1$Click", YailTrace.start());
+    }
+    YailTrace.end("Clock1$Timer", YailTrace.start());
+    assertEquals(4, YailTrace.getRecordedCount());
+    String summary = YailTrace.getSummary();
+    assertTrue(summary, summary.startsWith("Button1$Click 3 "));
+    assertTrue(summary, summary.contains("\nClock1$Timer 1 "));
+  }
+
+  @Test
+  public void testRingBufferKeepsLatest() {
+    YailTrace.setEnabled(true);
+    for (int i = 0; i < YailTrace.CAPACITY + 10; i++) {
+      YailTrace.end("handler" + i, YailTrace.start());
+    }
+    assertEquals(YailTrace.CAPACITY + 10, YailTrace.getRecordedCount());
+    String[] lines = YailTrace.getRecent().split("\n");
+    assertEquals(YailTrace.CAPACITY, lines.length);
+    assertTrue(lines[0].startsWith("handler10 "));
+    assertTrue(lines[lines.length - 1].startsWith("handler" + (YailTrace.CAPACITY + 9) + " "));
+  }
+}